@@ -0,0 +1,175 @@
+/*************************************************************************
+ * Copyright 2009-2015 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.auth;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import com.eucalyptus.auth.entities.AccessKeyEntity;
+import com.eucalyptus.auth.entities.AccountEntity;
+import com.eucalyptus.auth.entities.GroupEntity;
+import com.eucalyptus.auth.entities.PolicyEntity;
+import com.eucalyptus.auth.entities.UserEntity;
+import com.eucalyptus.auth.principal.UserPrincipal;
+import com.eucalyptus.entities.EntityChanges;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Cache of principals by access key identifier.
+ *
+ * Entries expire after {@link AuthenticationProperties#ACCESS_KEY_PRINCIPAL_CACHE_TTL_SECS}
+ * and all entries are stale once an access key, user, group, policy or
+ * account is changed on this host. Changes made on other hosts (or in other
+ * regions) are only seen once entries expire.
+ *
+ * Callers must obtain the generation before loading a principal and cache
+ * the principal with that generation, so a principal loaded concurrently
+ * with a change is not cached as current.
+ */
+public class AccessKeyPrincipalCache {
+
+  private static final List<AtomicLong> changeCounters = ImmutableList.of(
+      EntityChanges.counter( AccessKeyEntity.class ),
+      EntityChanges.counter( UserEntity.class ),
+      EntityChanges.counter( GroupEntity.class ),
+      EntityChanges.counter( PolicyEntity.class ),
+      EntityChanges.counter( AccountEntity.class )
+  );
+
+  private static final Cache<String,CachedPrincipal> principalCache = CacheBuilder.newBuilder( )
+      .maximumSize( 10_000 )
+      .build( );
+
+  private static final AtomicLong hits = new AtomicLong( );
+  private static final AtomicLong misses = new AtomicLong( );
+  private static final AtomicLong stale = new AtomicLong( );
+  private static final AtomicLong expired = new AtomicLong( );
+
+  /**
+   * Get the current generation, changed when any relevant entity is changed.
+   */
+  public static long generation( ) {
+    long generation = 0;
+    for ( final AtomicLong counter : changeCounters ) {
+      generation += counter.get( );
+    }
+    return generation;
+  }
+
+  /**
+   * Get a cached principal for the access key.
+   *
+   * @param accessKeyId The access key identifier
+   * @return The principal or null if not cached or no longer current
+   */
+  @Nullable
+  public static UserPrincipal get( @Nonnull final String accessKeyId ) {
+    final long ttl = ttlMillis( );
+    if ( ttl <= 0 ) return null;
+    final CachedPrincipal cached = principalCache.getIfPresent( accessKeyId );
+    if ( cached == null ) {
+      misses.incrementAndGet( );
+    } else if ( cached.generation != generation( ) ) {
+      stale.incrementAndGet( );
+      principalCache.asMap( ).remove( accessKeyId, cached );
+    } else if ( ( System.currentTimeMillis( ) - cached.timestamp ) > ttl ) {
+      expired.incrementAndGet( );
+      principalCache.asMap( ).remove( accessKeyId, cached );
+    } else {
+      hits.incrementAndGet( );
+      return cached.principal;
+    }
+    return null;
+  }
+
+  /**
+   * Cache the principal for the access key.
+   *
+   * @param accessKeyId The access key identifier
+   * @param principal The principal
+   * @param generation The generation obtained before the principal was loaded
+   */
+  public static void put( @Nonnull  final String accessKeyId,
+                          @Nonnull  final UserPrincipal principal,
+                                    final long generation ) {
+    if ( ttlMillis( ) > 0 && generation == generation( ) ) {
+      principalCache.put( accessKeyId, new CachedPrincipal( principal, generation ) );
+    }
+  }
+
+  public static void invalidate( @Nonnull final String accessKeyId ) {
+    principalCache.invalidate( accessKeyId );
+  }
+
+  public static void invalidateAll( ) {
+    principalCache.invalidateAll( );
+  }
+
+  public static long size( ) {
+    return principalCache.size( );
+  }
+
+  public static long getHits( ) {
+    return hits.get( );
+  }
+
+  public static long getMisses( ) {
+    return misses.get( );
+  }
+
+  /**
+   * Number of lookups for entries invalidated by a change.
+   */
+  public static long getStale( ) {
+    return stale.get( );
+  }
+
+  /**
+   * Number of lookups for entries older than the TTL.
+   */
+  public static long getExpired( ) {
+    return expired.get( );
+  }
+
+  public static String describe( ) {
+    return String.format( "size=%d hits=%d misses=%d stale=%d expired=%d",
+        size( ), getHits( ), getMisses( ), getStale( ), getExpired( ) );
+  }
+
+  private static long ttlMillis( ) {
+    final Integer ttl = AuthenticationProperties.ACCESS_KEY_PRINCIPAL_CACHE_TTL_SECS;
+    return ttl == null ? 0L : TimeUnit.SECONDS.toMillis( ttl );
+  }
+
+  private static final class CachedPrincipal {
+    private final UserPrincipal principal;
+    private final long generation;
+    private final long timestamp = System.currentTimeMillis( );
+
+    private CachedPrincipal( final UserPrincipal principal, final long generation ) {
+      this.principal = principal;
+      this.generation = generation;
+    }
+  }
+}
@@ -120,6 +120,9 @@ public class AuthenticationProperties {
   @ConfigurableField( description = "Limit for signing certificates per user", initial = "2", changeListener = PropertyChangeListeners.IsPositiveInteger.class )
   public static volatile Integer SIGNING_CERTIFICATES_LIMIT = 2;
 
+  @ConfigurableField( description = "Time to cache principals looked up by access key for request authentication (seconds), 0 to disable", initial = "15" )
+  public static volatile Integer ACCESS_KEY_PRINCIPAL_CACHE_TTL_SECS = 15;
+
   @ConfigurableField( description = "Process quotas for system accounts", initial = "true" )
   public static volatile Boolean SYSTEM_ACCOUNT_QUOTA_ENABLED = true;
 
@@ -0,0 +1,132 @@
+/*************************************************************************
+ * Copyright 2009-2015 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.auth.policy;
+
+import java.util.List;
+import java.util.Set;
+import com.eucalyptus.auth.principal.Authorization;
+import com.eucalyptus.auth.principal.Condition;
+import com.eucalyptus.auth.principal.Principal;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Authorization with action and resource patterns compiled for evaluation.
+ *
+ * Compiled authorizations are cached with the parsed policy so patterns are
+ * compiled once per policy rather than once per request.
+ */
+final class CompiledAuthorization implements Authorization {
+
+  private final Authorization authorization;
+  private final CompiledPatterns actions;
+  private final CompiledPatterns resources;
+
+  private CompiledAuthorization( final Authorization authorization ) {
+    this.authorization = authorization;
+    this.actions = CompiledPatterns.of( authorization.getActions( ) );
+    this.resources = CompiledPatterns.of( authorization.getResources( ) );
+  }
+
+  static ImmutableList<Authorization> compile( final Iterable<? extends Authorization> authorizations ) {
+    final ImmutableList.Builder<Authorization> builder = ImmutableList.builder( );
+    for ( final Authorization authorization : authorizations ) {
+      builder.add( authorization instanceof CompiledAuthorization ?
+          authorization :
+          new CompiledAuthorization( authorization ) );
+    }
+    return builder.build( );
+  }
+
+  /**
+   * Match the action against the action patterns (ignoring NotAction)
+   */
+  boolean matchesAction( final String action ) {
+    return actions.matches( action );
+  }
+
+  /**
+   * Match the resource against the resource patterns (ignoring NotResource)
+   */
+  boolean matchesResource( final String resource ) {
+    return resources.matches( resource );
+  }
+
+  @Override
+  public EffectType getEffect( ) {
+    return authorization.getEffect( );
+  }
+
+  @Override
+  public String getAccount( ) {
+    return authorization.getAccount( );
+  }
+
+  @Override
+  public String getType( ) {
+    return authorization.getType( );
+  }
+
+  @Override
+  public boolean isNotAction( ) {
+    return authorization.isNotAction( );
+  }
+
+  @Override
+  public Set<String> getActions( ) {
+    return authorization.getActions( );
+  }
+
+  @Override
+  public boolean isNotResource( ) {
+    return authorization.isNotResource( );
+  }
+
+  @Override
+  public Set<String> getResources( ) {
+    return authorization.getResources( );
+  }
+
+  @Override
+  public List<Condition> getConditions( ) {
+    return authorization.getConditions( );
+  }
+
+  @Override
+  public Principal getPrincipal( ) {
+    return authorization.getPrincipal( );
+  }
+
+  @Override
+  public boolean equals( final Object o ) {
+    if ( this == o ) return true;
+    if ( o == null || getClass( ) != o.getClass( ) ) return false;
+    return authorization.equals( ( (CompiledAuthorization) o ).authorization );
+  }
+
+  @Override
+  public int hashCode( ) {
+    return authorization.hashCode( );
+  }
+
+  @Override
+  public String toString( ) {
+    return authorization.toString( );
+  }
+}
@@ -0,0 +1,97 @@
+/*************************************************************************
+ * Copyright 2009-2015 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.auth.policy;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+/**
+ * A set of IAM action or resource patterns compiled for matching.
+ *
+ * Patterns without wildcards are matched by set lookup, the remaining
+ * patterns are converted and compiled once.
+ */
+final class CompiledPatterns {
+
+  private static final LoadingCache<String,Pattern> patternCache = CacheBuilder
+      .newBuilder( )
+      .maximumSize( 10_000 )
+      .expireAfterAccess( 1, TimeUnit.HOURS )
+      .build( new CacheLoader<String,Pattern>( ) {
+        @Override
+        public Pattern load( final String pattern ) {
+          return Pattern.compile( PolicyUtils.toJavaPattern( pattern ) );
+        }
+      } );
+
+  private final Set<String> exact;
+  private final List<Pattern> wildcards;
+
+  private CompiledPatterns( final Set<String> exact, final List<Pattern> wildcards ) {
+    this.exact = exact;
+    this.wildcards = wildcards;
+  }
+
+  static CompiledPatterns of( final Iterable<String> patterns ) {
+    final Set<String> exact = Sets.newHashSet( );
+    final List<Pattern> wildcards = Lists.newArrayList( );
+    for ( final String pattern : patterns ) {
+      if ( pattern == null ) continue;
+      if ( isWildcard( pattern ) ) {
+        wildcards.add( pattern( pattern ) );
+      } else {
+        exact.add( pattern );
+      }
+    }
+    return new CompiledPatterns( ImmutableSet.copyOf( exact ), ImmutableList.copyOf( wildcards ) );
+  }
+
+  /**
+   * Get the compiled java pattern for an IAM pattern.
+   */
+  static Pattern pattern( final String pattern ) {
+    return patternCache.getUnchecked( pattern );
+  }
+
+  static boolean isWildcard( final String pattern ) {
+    return pattern.indexOf( '*' ) >= 0 || pattern.indexOf( '?' ) >= 0;
+  }
+
+  boolean matches( final String instance ) {
+    if ( exact.contains( instance ) ) {
+      return true;
+    }
+    for ( final Pattern pattern : wildcards ) {
+      if ( pattern.matcher( instance ).matches( ) ) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
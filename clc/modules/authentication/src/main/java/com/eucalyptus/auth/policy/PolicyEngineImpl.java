@@ -147,11 +147,10 @@ public class PolicyEngineImpl implements PolicyEngine {
   private static final Matcher PATTERN_MATCHER = new Matcher( ) {
     @Override
     public boolean match( String pattern, String instance ) {
-      pattern = PolicyUtils.toJavaPattern( pattern );
       if ( pattern == null ) {
         return false;
       }
-      return Pattern.matches( pattern, instance );
+      return CompiledPatterns.pattern( pattern ).matcher( instance ).matches( );
     }
   };
   
@@ -356,7 +355,7 @@ public class PolicyEngineImpl implements PolicyEngine {
 
     final String accountNumber = evaluationContext.getRequestAccountNumber( );
     if ( resourceAccountNumber != null && !resourceAccountNumber.equals( accountNumber ) && !evaluationContext.isSystemUser() ) {
-      final Decision decision = processAuthorizations( evaluationContext.lookupAuthorizations( ), authorizationMatch ,action, resourceAccountNumber ,resourceName, keyEval, contractEval );
+      final Decision decision = processAuthorizations( evaluationContext.lookupAuthorizations( authorizationMatch ), authorizationMatch ,action, resourceAccountNumber ,resourceName, keyEval, contractEval );
       if ( decision == Decision.DENY ) {
         LOG.debug( "Request is rejected by authorization check, due to decision " + decision );
       }
@@ -364,7 +363,7 @@ public class PolicyEngineImpl implements PolicyEngine {
       return decision == Decision.ALLOW ? Decision.DEFAULT : decision;
     } else {
       // If not denied by global authorizations, check local (intra-account) authorizations.
-      final Decision decision = processAuthorizations( evaluationContext.lookupAuthorizations(), authorizationMatch, action, resourceAccountNumber, resourceName, keyEval, contractEval );
+      final Decision decision = processAuthorizations( evaluationContext.lookupAuthorizations( authorizationMatch ), authorizationMatch, action, resourceAccountNumber, resourceName, keyEval, contractEval );
       // Denied by explicit or default deny
       if ( decision == Decision.DENY || decision == Decision.DEFAULT ) {
         LOG.debug( "Request is rejected by authorization check, due to decision " + decision );
@@ -433,6 +432,9 @@ public class PolicyEngineImpl implements PolicyEngine {
   }
   
   private boolean matchActions( Authorization auth, String action ) throws AuthException {
+    if ( auth instanceof CompiledAuthorization ) {
+      return evaluateElement( ( (CompiledAuthorization) auth ).matchesAction( action ), auth.isNotAction( ) );
+    }
     return evaluateElement( matchOne( auth.getActions( ), action, PATTERN_MATCHER ), auth.isNotAction( ) );
   }
 
@@ -459,7 +461,9 @@ public class PolicyEngineImpl implements PolicyEngine {
       return evaluateElement( matchOne( auth.getResources( ), resource, ADDRESS_MATCHER ), auth.isNotResource( ) );
     } else if ( String.format("%s:%s", PolicySpec.VENDOR_IAM, PolicySpec.IAM_RESOURCE_SERVER_CERTIFICATE).equals ( auth.getType( ))){
       return evaluateElement( matchOne( auth.getResources( ), resource, SERVER_CERTIFICATE_MATCHER), auth.isNotResource() );
-    }else {
+    } else if ( auth instanceof CompiledAuthorization ) {
+      return evaluateElement( ( (CompiledAuthorization) auth ).matchesResource( resource ), auth.isNotResource( ) );
+    } else {
       return evaluateElement( matchOne( auth.getResources( ), resource, PATTERN_MATCHER ), auth.isNotResource( ) );
     }
   }
@@ -596,6 +600,7 @@ public class PolicyEngineImpl implements PolicyEngine {
     private Boolean systemUser;
     private Map<String,String> evaluatedKeys;
     private List<Authorization> authorizations;
+    private List<Authorization> denyFirstAuthorizations;
     private List<Pair<PolicyVersion,Authorization>> quotaAuthorizations;
     private final List<PolicyVersion> policies;
 
@@ -702,12 +707,33 @@ public class PolicyEngineImpl implements PolicyEngine {
       return authorizations;
     }
 
+    /**
+     * Authorizations in evaluation order for the given match.
+     *
+     * Unless matching is unconditional the decision does not depend on the
+     * order of the authorizations so deny statements are evaluated first,
+     * allowing evaluation to stop at the first matching deny.
+     */
+    List<Authorization> lookupAuthorizations( final AuthorizationMatch authorizationMatch ) throws AuthException {
+      if ( authorizationMatch == AuthorizationMatch.Unconditional ) {
+        return lookupAuthorizations( );
+      }
+      if ( denyFirstAuthorizations == null ) {
+        final List<Authorization> authorizations = lookupAuthorizations( );
+        this.denyFirstAuthorizations = ImmutableList.copyOf( Iterables.concat(
+            Iterables.filter( authorizations, AuthorizationPredicates.DENY_EFFECT ),
+            Iterables.filter( authorizations, Predicates.not( AuthorizationPredicates.DENY_EFFECT ) )
+        ) );
+      }
+      return denyFirstAuthorizations;
+    }
+
     static List<Authorization> authorizations( final PolicyVersion policy, final boolean resourcePolicy ) throws AuthException {
       try {
         return authorizationCache.get( policy.getPolicyHash( ), new Callable<ImmutableList<Authorization>>() {
           @Override
           public ImmutableList<Authorization> call() throws Exception {
-            return ImmutableList.copyOf(  ( resourcePolicy ? PolicyParser.getResourceInstance( ) : PolicyParser.getInstance( ) ).parse( policy.getPolicy( ) ).getAuthorizations( ) );
+            return CompiledAuthorization.compile( ( resourcePolicy ? PolicyParser.getResourceInstance( ) : PolicyParser.getInstance( ) ).parse( policy.getPolicy( ) ).getAuthorizations( ) );
           }
         } );
       } catch ( final ExecutionException e ) {
@@ -741,6 +767,12 @@ public class PolicyEngineImpl implements PolicyEngine {
         return authorization != null && authorization.getEffect( ) == EffectType.Allow;
       }
     },
+    DENY_EFFECT {
+      @Override
+      public boolean apply( @Nullable final Authorization authorization ) {
+        return authorization != null && authorization.getEffect( ) == EffectType.Deny;
+      }
+    },
     ALL_RESOURCE {
       @Override
       public boolean apply( @Nullable final Authorization authorization ) {
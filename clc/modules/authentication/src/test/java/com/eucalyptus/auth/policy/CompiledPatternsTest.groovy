@@ -0,0 +1,68 @@
+/*************************************************************************
+ * Copyright 2009-2015 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.auth.policy
+
+import static org.junit.Assert.*
+import org.junit.Test
+
+class CompiledPatternsTest {
+
+  @Test
+  void testExactMatch( ) {
+    assertMatches( [ "ec2:describeinstances" ], "ec2:describeinstances" )
+    assertMatches( [ "a.c" ], "a.c" )
+    assertNotMatches( [ "a.c" ], "abc" )
+    assertNotMatches( [ "ec2:describeinstances" ], "ec2:describeimages" )
+  }
+
+  @Test
+  void testWildcardMatch( ) {
+    assertMatches( [ "ec2:describe*" ], "ec2:describeinstances" )
+    assertMatches( [ "ec2:*instances" ], "ec2:describeinstances" )
+    assertMatches( [ "arn:aws:s3:::bucket/?" ], "arn:aws:s3:::bucket/a" )
+    assertMatches( [ "*" ], "" )
+    assertNotMatches( [ "ec2:describe*" ], "ec2:runinstances" )
+    assertNotMatches( [ "arn:aws:s3:::bucket/?" ], "arn:aws:s3:::bucket/ab" )
+  }
+
+  @Test
+  void testMultipleMatch( ) {
+    List<String> patterns = [ "ec2:runinstances", "ec2:describe*", "iam:get?ser" ]
+    assertMatches( patterns, "ec2:runinstances" )
+    assertMatches( patterns, "ec2:describevolumes" )
+    assertMatches( patterns, "iam:getuser" )
+    assertNotMatches( patterns, "ec2:terminateinstances" )
+    assertNotMatches( patterns, "iam:getusers" )
+  }
+
+  @Test
+  void testEmpty( ) {
+    assertNotMatches( [ ], "ec2:runinstances" )
+    assertNotMatches( [ null ], "ec2:runinstances" )
+  }
+
+  void assertMatches( List<String> patterns, String value ) {
+    assertTrue( patterns+"~="+value, CompiledPatterns.of( patterns ).matches( value ) )
+  }
+
+  void assertNotMatches( List<String> patterns, String value ) {
+    assertFalse( patterns+"!="+value, CompiledPatterns.of( patterns ).matches( value ) )
+  }
+}
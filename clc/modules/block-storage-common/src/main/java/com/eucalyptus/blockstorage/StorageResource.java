@@ -64,6 +64,7 @@ package com.eucalyptus.blockstorage;
 
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 
 /**
  * Abstract class for encapsulating a storage device and mechanisms for IO operations
@@ -132,6 +133,17 @@ public abstract class StorageResource {
    */
   public abstract OutputStream getOutputStream() throws Exception;
 
+  /**
+   * Returns a {@link java.nio.channels.FileChannel} to the storage device for writing at arbitrary positions, null if the device does not support
+   * positional writes
+   * 
+   * @return FileChannel or null
+   * @throws Exception
+   */
+  public FileChannel getWritableChannel() throws Exception {
+    return null;
+  }
+
   /**
    * If download and write to the storage device can be synchronous, this method returns true. Otherwise it returns false
    * 
@@ -0,0 +1,133 @@
+/*************************************************************************
+ * Copyright 2009-2015 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.blockstorage.entities;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+import com.eucalyptus.entities.AbstractPersistent;
+
+/**
+ * A content addressed block of incremental snapshots in objectstorage.
+ *
+ * The reference count is the number of snapshot manifests that contain the block, blocks that are no longer referenced are deleted from
+ * objectstorage by the block collector. Not cached as references are updated under a row lock.
+ *
+ * A block that is not stored may not exist in objectstorage and must not be referenced, it is uploaded again.
+ */
+@Entity
+@PersistenceContext(name = "eucalyptus_storage")
+@Table(name = "snapshot_blocks", uniqueConstraints = @UniqueConstraint(columnNames = {"bucket_name", "block_hash"}))
+public class SnapshotBlock extends AbstractPersistent {
+
+  public static enum SnapshotBlockState {
+    stored, // the block exists in objectstorage
+    deleting, // marked for deletion by the block collector, the block may have been deleted
+    uploading // uploading again after deletion was interrupted
+  };
+
+  @Column(name = "bucket_name", nullable = false)
+  private String bucketName;
+
+  @Column(name = "block_hash", nullable = false)
+  private String blockHash;
+
+  @Column(name = "compressed_size")
+  private Long compressedSize;
+
+  @Column(name = "reference_count", nullable = false)
+  private Integer referenceCount;
+
+  @Column(name = "state")
+  @Enumerated(EnumType.STRING)
+  private SnapshotBlockState state;
+
+  public SnapshotBlock() {}
+
+  public SnapshotBlock(String bucketName, String blockHash) {
+    this.bucketName = bucketName;
+    this.blockHash = blockHash;
+  }
+
+  public SnapshotBlock(String bucketName, String blockHash, Long compressedSize) {
+    this(bucketName, blockHash);
+    this.compressedSize = compressedSize;
+    this.referenceCount = 1;
+    this.state = SnapshotBlockState.stored;
+  }
+
+  public String getBucketName() {
+    return bucketName;
+  }
+
+  public void setBucketName(String bucketName) {
+    this.bucketName = bucketName;
+  }
+
+  public String getBlockHash() {
+    return blockHash;
+  }
+
+  public void setBlockHash(String blockHash) {
+    this.blockHash = blockHash;
+  }
+
+  public Long getCompressedSize() {
+    return compressedSize;
+  }
+
+  public void setCompressedSize(Long compressedSize) {
+    this.compressedSize = compressedSize;
+  }
+
+  public Integer getReferenceCount() {
+    return referenceCount;
+  }
+
+  public void setReferenceCount(Integer referenceCount) {
+    this.referenceCount = referenceCount;
+  }
+
+  public SnapshotBlockState getState() {
+    return state;
+  }
+
+  public void setState(SnapshotBlockState state) {
+    this.state = state;
+  }
+
+  /**
+   * Is the block stored in objectstorage, a block without a state was stored before states were recorded.
+   */
+  public boolean isStored() {
+    return state == null || state == SnapshotBlockState.stored;
+  }
+
+  @Override
+  public String toString() {
+    return "SnapshotBlock [bucketName=" + bucketName + ", blockHash=" + blockHash + ", referenceCount=" + referenceCount + ", state=" + state
+        + "]";
+  }
+}
@@ -109,6 +109,9 @@ public class StorageInfo extends AbstractPersistent {
   private static final Integer DEFAULT_SNAPSHOT_TRANSFER_TIMEOUT = 48;
   private static final Integer DEFAULT_READ_BUFFER_SIZE_IN_MB = 1;
   private static final Integer DEFAULT_WRITE_BUFFER_SIZE_IN_MB = 100;
+  private static final Integer DEFAULT_MAX_CONCURRENT_SNAPSHOT_PART_DOWNLOADS = 4;
+  private static final Boolean DEFAULT_INCREMENTAL_SNAPSHOT_UPLOADS = Boolean.FALSE;
+  private static final Integer DEFAULT_MAX_SNAPSHOT_UPLOAD_BUFFER_MEMORY_IN_MB = 512;
 
   @Transient
   private static Logger LOG = Logger.getLogger(StorageInfo.class);
@@ -143,7 +146,8 @@ public class StorageInfo extends AbstractPersistent {
   @Column(name = "snapshot_part_size_mb")
   private Integer snapshotPartSizeInMB;
 
-  @ConfigurableField(description = "Maximum number of snapshot parts per snapshot that can be spooled on the disk",
+  @ConfigurableField(
+      description = "Maximum number of snapshot parts per snapshot that can be spooled on the disk for download or buffered in memory for upload",
       displayName = "Maximum Queue Size", initial = "5", changeListener = PositiveIntegerChangeListener.class)
   @Column(name = "max_snapshot_parts_queue_size")
   private Integer maxSnapshotPartsQueueSize;
@@ -168,6 +172,23 @@ public class StorageInfo extends AbstractPersistent {
   @Column(name = "write_buffer_size_mb")
   private Integer writeBufferSizeInMB;
 
+  @ConfigurableField(description = "Maximum number of snapshot parts downloaded and decompressed concurrently when creating a volume from a "
+      + "snapshot, 1 to download the snapshot as a single stream", displayName = "Maximum Concurrent Snapshot Part Downloads", initial = "4",
+      changeListener = PositiveIntegerChangeListener.class)
+  @Column(name = "max_concurrent_snapshot_part_downloads")
+  private Integer maxConcurrentSnapshotPartDownloads;
+
+  @ConfigurableField(description = "Upload snapshots as manifests of content addressed blocks, only blocks not already stored are uploaded",
+      displayName = "Incremental Snapshot Uploads", initial = "false", type = ConfigurableFieldType.BOOLEAN)
+  @Column(name = "incremental_snapshot_uploads")
+  private Boolean incrementalSnapshotUploads;
+
+  @ConfigurableField(description = "Maximum memory in MB for snapshot parts buffered for upload to objectstorage gateway across all snapshot "
+      + "uploads, at least one part is always buffered", displayName = "Maximum Snapshot Upload Buffer Memory", initial = "512",
+      changeListener = PositiveIntegerChangeListener.class)
+  @Column(name = "max_snapshot_upload_buffer_memory_mb")
+  private Integer maxSnapshotUploadBufferMemoryInMB;
+
   public StorageInfo() {
     this.name = StorageProperties.NAME;
   }
@@ -280,6 +301,30 @@ public class StorageInfo extends AbstractPersistent {
     this.writeBufferSizeInMB = writeBufferSizeInMB;
   }
 
+  public Integer getMaxConcurrentSnapshotPartDownloads() {
+    return maxConcurrentSnapshotPartDownloads;
+  }
+
+  public void setMaxConcurrentSnapshotPartDownloads(Integer maxConcurrentSnapshotPartDownloads) {
+    this.maxConcurrentSnapshotPartDownloads = maxConcurrentSnapshotPartDownloads;
+  }
+
+  public Boolean getIncrementalSnapshotUploads() {
+    return incrementalSnapshotUploads;
+  }
+
+  public void setIncrementalSnapshotUploads(Boolean incrementalSnapshotUploads) {
+    this.incrementalSnapshotUploads = incrementalSnapshotUploads;
+  }
+
+  public Integer getMaxSnapshotUploadBufferMemoryInMB() {
+    return maxSnapshotUploadBufferMemoryInMB;
+  }
+
+  public void setMaxSnapshotUploadBufferMemoryInMB(Integer maxSnapshotUploadBufferMemoryInMB) {
+    this.maxSnapshotUploadBufferMemoryInMB = maxSnapshotUploadBufferMemoryInMB;
+  }
+
   @Override
   public boolean equals(Object obj) {
     if (this == obj)
@@ -346,6 +391,15 @@ public class StorageInfo extends AbstractPersistent {
     if (writeBufferSizeInMB == null) {
       writeBufferSizeInMB = DEFAULT_WRITE_BUFFER_SIZE_IN_MB;
     }
+    if (maxConcurrentSnapshotPartDownloads == null) {
+      maxConcurrentSnapshotPartDownloads = DEFAULT_MAX_CONCURRENT_SNAPSHOT_PART_DOWNLOADS;
+    }
+    if (incrementalSnapshotUploads == null) {
+      incrementalSnapshotUploads = DEFAULT_INCREMENTAL_SNAPSHOT_UPLOADS;
+    }
+    if (maxSnapshotUploadBufferMemoryInMB == null) {
+      maxSnapshotUploadBufferMemoryInMB = DEFAULT_MAX_SNAPSHOT_UPLOAD_BUFFER_MEMORY_IN_MB;
+    }
   }
 
   private static StorageInfo getDefaultInstance() {
@@ -361,6 +415,9 @@ public class StorageInfo extends AbstractPersistent {
     info.setSnapshotTransferTimeoutInHours(DEFAULT_SNAPSHOT_TRANSFER_TIMEOUT);
     info.setReadBufferSizeInMB(DEFAULT_READ_BUFFER_SIZE_IN_MB);
     info.setWriteBufferSizeInMB(DEFAULT_WRITE_BUFFER_SIZE_IN_MB);
+    info.setMaxConcurrentSnapshotPartDownloads(DEFAULT_MAX_CONCURRENT_SNAPSHOT_PART_DOWNLOADS);
+    info.setIncrementalSnapshotUploads(DEFAULT_INCREMENTAL_SNAPSHOT_UPLOADS);
+    info.setMaxSnapshotUploadBufferMemoryInMB(DEFAULT_MAX_SNAPSHOT_UPLOAD_BUFFER_MEMORY_IN_MB);
     return info;
   }
 
@@ -0,0 +1,173 @@
+/*************************************************************************
+ * Copyright 2009-2015 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.blockstorage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.eucalyptus.blockstorage.SnapshotTransferStatistics.Stage;
+import com.eucalyptus.crypto.Digest;
+import com.google.common.io.BaseEncoding;
+
+/**
+ * Reads a stream as a sequence of fixed size blocks and computes the content hash of each block on a worker pool.
+ *
+ * Blocks are read on the calling thread and returned in input order, at most maxPending blocks are read ahead of the consumer. Blocks of zeros
+ * have the {@link SnapshotBlockManifest#ZERO_BLOCK} hash.
+ */
+class BlockDigester implements Closeable {
+
+  private final InputStream inputStream;
+  private final int blockSize;
+  private final int maxPending;
+  private final ExecutorService executor;
+  private final SnapshotTransferStatistics statistics;
+  private final Deque<Future<DigestedBlock>> pending = new ArrayDeque<Future<DigestedBlock>>();
+  private boolean endOfInput = false;
+
+  BlockDigester(InputStream inputStream, int blockSize, int maxPending, ExecutorService executor, SnapshotTransferStatistics statistics) {
+    this.inputStream = inputStream;
+    this.blockSize = blockSize;
+    this.maxPending = Math.max(1, maxPending);
+    this.executor = executor;
+    this.statistics = statistics;
+  }
+
+  /**
+   * Get the next block, blocking until its hash is available.
+   *
+   * @return The block or null if the input is exhausted
+   */
+  DigestedBlock next() throws IOException, InterruptedException, ExecutionException {
+    readAhead();
+    Future<DigestedBlock> future = pending.poll();
+    return future == null ? null : future.get();
+  }
+
+  /**
+   * Cancel hashing of any blocks not yet consumed, the input stream is not closed.
+   */
+  @Override
+  public void close() {
+    Future<DigestedBlock> future;
+    while ((future = pending.poll()) != null) {
+      future.cancel(true);
+    }
+  }
+
+  /**
+   * @return The lower case hex SHA-256 of the data, or {@link SnapshotBlockManifest#ZERO_BLOCK} if the data is all zeros
+   */
+  static String hash(byte[] data, int length) {
+    if (isZero(data, length)) {
+      return SnapshotBlockManifest.ZERO_BLOCK;
+    }
+    MessageDigest digest = Digest.SHA256.get();
+    digest.update(data, 0, length);
+    return BaseEncoding.base16().lowerCase().encode(digest.digest());
+  }
+
+  private static boolean isZero(byte[] data, int length) {
+    for (int i = 0; i < length; i++) {
+      if (data[i] != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void readAhead() throws IOException {
+    while (!endOfInput && pending.size() < maxPending) {
+      byte[] block = new byte[blockSize];
+      long start = System.nanoTime();
+      int length = readFully(block);
+      statistics.record(Stage.Read, length, System.nanoTime() - start);
+      if (length < blockSize) {
+        endOfInput = true;
+      }
+      if (length > 0) {
+        pending.add(executor.submit(new DigestBlockTask(block, length)));
+      }
+    }
+  }
+
+  private int readFully(byte[] block) throws IOException {
+    int length = 0;
+    int read;
+    while (length < block.length && (read = inputStream.read(block, length, block.length - length)) >= 0) {
+      length += read;
+    }
+    return length;
+  }
+
+  private class DigestBlockTask implements Callable<DigestedBlock> {
+    private final byte[] block;
+    private final int length;
+
+    private DigestBlockTask(byte[] block, int length) {
+      this.block = block;
+      this.length = length;
+    }
+
+    @Override
+    public DigestedBlock call() throws Exception {
+      long start = System.nanoTime();
+      String hash = hash(block, length);
+      statistics.record(Stage.Hash, length, System.nanoTime() - start);
+      return new DigestedBlock(block, length, hash);
+    }
+  }
+
+  static final class DigestedBlock {
+    private final byte[] data;
+    private final int length;
+    private final String hash;
+
+    private DigestedBlock(byte[] data, int length, String hash) {
+      this.data = data;
+      this.length = length;
+      this.hash = hash;
+    }
+
+    byte[] getData() {
+      return data;
+    }
+
+    int getLength() {
+      return length;
+    }
+
+    String getHash() {
+      return hash;
+    }
+
+    boolean isZero() {
+      return SnapshotBlockManifest.ZERO_BLOCK.equals(hash);
+    }
+  }
+}
@@ -268,6 +268,7 @@ public class BlockStorageController {
     checkerService.add(new VolumeDeleterTask());
     checkerService.add(new SnapshotDeleterTask());
     checkerService.add(new SnapshotUploadCheckerTask());
+    checkerService.add(new SnapshotBlockCollectorTask());
     // TODO ask neil what this means
     StorageProperties.enableSnapshots = StorageProperties.enableStorage = true;
     checker = new BlockStorageChecker(blockManager);
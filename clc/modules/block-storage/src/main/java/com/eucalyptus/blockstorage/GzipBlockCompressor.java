@@ -0,0 +1,199 @@
+/*************************************************************************
+ * Copyright 2009-2015 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+
+package com.eucalyptus.blockstorage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+import com.eucalyptus.blockstorage.SnapshotTransferStatistics.Stage;
+
+/**
+ * Compresses a stream as a sequence of fixed size blocks, each compressed as an independent gzip member on a worker pool.
+ *
+ * A concatenation of gzip members is a valid gzip stream (RFC 1952), but {@link java.util.zip.GZIPInputStream} can stop at a member boundary
+ * when reading from the network, so the output must be read back with a {@link MultiMemberGzipInputStream}. Blocks are read on the calling thread
+ * and returned in input order, at most maxPending blocks are read ahead of the consumer.
+ */
+class GzipBlockCompressor implements Closeable {
+
+  private final InputStream inputStream;
+  private final int blockSize;
+  private final int maxPending;
+  private final ExecutorService executor;
+  private final SnapshotTransferStatistics statistics;
+  private final Deque<Future<CompressedBlock>> pending = new ArrayDeque<Future<CompressedBlock>>();
+  private boolean endOfInput = false;
+
+  GzipBlockCompressor(InputStream inputStream, int blockSize, int maxPending, ExecutorService executor, SnapshotTransferStatistics statistics) {
+    this.inputStream = inputStream;
+    this.blockSize = blockSize;
+    this.maxPending = Math.max(1, maxPending);
+    this.executor = executor;
+    this.statistics = statistics;
+  }
+
+  /**
+   * Get the next compressed block, blocking until it is available.
+   *
+   * @return The block or null if the input is exhausted
+   */
+  CompressedBlock next() throws IOException, InterruptedException, ExecutionException {
+    readAhead();
+    Future<CompressedBlock> future = pending.poll();
+    return future == null ? null : future.get();
+  }
+
+  /**
+   * Cancel compression of any blocks not yet consumed, the input stream is not closed.
+   */
+  @Override
+  public void close() {
+    Future<CompressedBlock> future;
+    while ((future = pending.poll()) != null) {
+      future.cancel(true);
+    }
+  }
+
+  private void readAhead() throws IOException {
+    while (!endOfInput && pending.size() < maxPending) {
+      byte[] block = new byte[blockSize];
+      long start = System.nanoTime();
+      int length = readFully(block);
+      statistics.record(Stage.Read, length, System.nanoTime() - start);
+      if (length < blockSize) {
+        endOfInput = true;
+      }
+      if (length > 0) {
+        pending.add(executor.submit(new CompressBlockTask(block, length)));
+      }
+    }
+  }
+
+  private int readFully(byte[] block) throws IOException {
+    int length = 0;
+    int read;
+    while (length < block.length && (read = inputStream.read(block, length, block.length - length)) >= 0) {
+      length += read;
+    }
+    return length;
+  }
+
+  private class CompressBlockTask implements Callable<CompressedBlock> {
+    private final byte[] block;
+    private final int length;
+
+    private CompressBlockTask(byte[] block, int length) {
+      this.block = block;
+      this.length = length;
+    }
+
+    @Override
+    public CompressedBlock call() throws Exception {
+      long start = System.nanoTime();
+      ExposedByteArrayOutputStream out = new ExposedByteArrayOutputStream(Math.max(64, length / 2));
+      try (GZIPOutputStream gzipStream = new GZIPOutputStream(out, 64 * 1024)) {
+        gzipStream.write(block, 0, length);
+      }
+      statistics.record(Stage.Compress, length, System.nanoTime() - start);
+      return new CompressedBlock(out.buffer(), out.size(), length);
+    }
+  }
+
+  static final class CompressedBlock {
+    private final byte[] data;
+    private final int length;
+    private final int uncompressedLength;
+
+    private CompressedBlock(byte[] data, int length, int uncompressedLength) {
+      this.data = data;
+      this.length = length;
+      this.uncompressedLength = uncompressedLength;
+    }
+
+    int getLength() {
+      return length;
+    }
+
+    int getUncompressedLength() {
+      return uncompressedLength;
+    }
+
+    void writeTo(OutputStream out) throws IOException {
+      out.write(data, 0, length);
+    }
+  }
+
+  /**
+   * Output stream that can be read back without copying the buffer. The buffer grows on demand, doubling up to the expected maximum size and
+   * only past it to fit the data written.
+   */
+  static class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+    private final int maxSize;
+
+    ExposedByteArrayOutputStream(int size) {
+      this(size, Integer.MAX_VALUE - 8);
+    }
+
+    ExposedByteArrayOutputStream(int size, int maxSize) {
+      super(size);
+      this.maxSize = maxSize;
+    }
+
+    @Override
+    public synchronized void write(int b) {
+      ensureCapacity(1);
+      super.write(b);
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) {
+      ensureCapacity(len);
+      super.write(b, off, len);
+    }
+
+    private void ensureCapacity(int len) {
+      long required = (long) count + len;
+      if (required > buf.length) {
+        buf = Arrays.copyOf(buf, (int) Math.max(required, Math.min(2L * buf.length, maxSize)));
+      }
+    }
+
+    byte[] buffer() {
+      return buf;
+    }
+
+    InputStream newInputStream() {
+      return new ByteArrayInputStream(buf, 0, count);
+    }
+  }
+}
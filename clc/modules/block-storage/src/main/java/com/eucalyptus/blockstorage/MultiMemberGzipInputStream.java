@@ -0,0 +1,44 @@
+/*************************************************************************
+ * Copyright 2009-2015 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.blockstorage;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Gzip input stream that reads every member of a multi-member gzip stream such as a snapshot compressed by {@link GzipBlockCompressor}.
+ *
+ * {@link GZIPInputStream} only looks for another member when the underlying stream reports available bytes, which a network stream may not do
+ * at a member boundary. The underlying stream is wrapped to always report available bytes, at the real end of the stream the attempt to read
+ * another member header fails and is treated as the end of the data.
+ */
+class MultiMemberGzipInputStream extends GZIPInputStream {
+
+  MultiMemberGzipInputStream(InputStream in, int size) throws IOException {
+    super(new FilterInputStream(in) {
+      @Override
+      public int available() throws IOException {
+        return Math.max(1, super.available());
+      }
+    }, size);
+  }
+}
@@ -63,24 +63,33 @@
 package com.eucalyptus.blockstorage;
 
 import java.io.BufferedInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.File;
+import java.io.ByteArrayInputStream;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -112,6 +121,11 @@ import com.amazonaws.services.s3.model.UploadPartRequest;
 import com.amazonaws.services.s3.model.UploadPartResult;
 import com.eucalyptus.auth.principal.EuareRole;
 import com.eucalyptus.auth.principal.Role;
+import com.eucalyptus.blockstorage.BlockDigester.DigestedBlock;
+import com.eucalyptus.blockstorage.GzipBlockCompressor.CompressedBlock;
+import com.eucalyptus.blockstorage.GzipBlockCompressor.ExposedByteArrayOutputStream;
+import com.eucalyptus.blockstorage.SnapshotPartBuffers.PartBuffer;
+import com.eucalyptus.blockstorage.SnapshotTransferStatistics.Stage;
 import com.eucalyptus.blockstorage.entities.SnapshotInfo;
 import com.eucalyptus.blockstorage.entities.SnapshotPart;
 import com.eucalyptus.blockstorage.entities.SnapshotPart.SnapshotPartState;
@@ -136,6 +150,7 @@ import com.eucalyptus.system.Threads;
 import com.eucalyptus.util.EucalyptusCloudException;
 import com.eucalyptus.util.Exceptions;
 import com.google.common.base.Function;
+import com.google.common.util.concurrent.Futures;
 
 /**
  * S3SnapshotTransfer manages snapshot transfers between SC and S3 API such as objectstorage gateway. An instance of the class must be obtained using
@@ -167,15 +182,24 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
   private Integer poolSize;
   private Integer readBufferSize;
   private Integer writeBufferSize;
+  private Integer partDownloads;
+  private Boolean incrementalUploads;
   private ServiceConfiguration serviceConfig;
 
   // Static parameters
   private static EuareRole role;
+  private static final SnapshotPartBuffers PART_BUFFERS = new SnapshotPartBuffers(Long.MAX_VALUE);
 
   // Constants
   private static final Integer TX_RETRIES = 20;
   private static final Integer REFRESH_TOKEN_RETRIES = 1;
   private static final String UNCOMPRESSED_SIZE_KEY = "uncompressedsize";
+  private static final String PART_LAYOUT_KEY_SUFFIX = ".parts";
+  private static final String SNAPSHOT_FORMAT_KEY = "snapshotformat";
+  private static final String BLOCK_FORMAT = "blocks";
+  private static final String BLOCK_KEY_PREFIX = "snapshot-blocks/";
+  private static final int BLOCK_SIZE = 4 * 1024 * 1024;
+  private static final int COMPRESSION_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors());
 
   public S3SnapshotTransfer() throws SnapshotTransferException {
     initializeEucaS3Client();
@@ -249,6 +273,17 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
    * {@link StorageInfo}. Bucket name should be configured before invoking this method. It can be looked up and initialized by
    * {@link #prepareForUpload()} or explicitly set using {@link #setBucketName(String)}
    * 
+   * The snapshot is read in blocks of the read buffer size that are compressed as separate gzip members on a worker pool while earlier parts are
+   * uploaded. Parts are buffered in memory rather than on disk, at most the configured parts queue size of them are waiting to be uploaded.
+   * 
+   * Snapshots with a gzip member per block are restored with a {@link MultiMemberGzipInputStream}. Storage controllers from before this format
+   * read snapshots with a plain {@link GZIPInputStream}, which can stop at a member boundary and silently truncate the restored volume, so
+   * snapshots uploaded by this version must not be restored by older storage controllers. Upgrade all storage controllers before taking new
+   * snapshots.
+   * 
+   * If incremental snapshot uploads are configured the snapshot is uploaded as a {@link SnapshotBlockManifest} instead, see
+   * {@link #uploadBlocks}.
+   * 
    * @param sourceFileName absolute path to the snapshot on the file system
    */
   @Override
@@ -256,20 +291,25 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
     validateInput(); // Validate input
     loadTransferConfig(); // Load the transfer configuration parameters from database
     SnapshotProgressCallback progressCallback = new SnapshotProgressCallback(snapshotId); // Setup the progress callback
+    SnapshotTransferStatistics statistics = new SnapshotTransferStatistics();
+
+    if (incrementalUploads) {
+      uploadBlocks(storageResource, progressCallback, statistics);
+      return;
+    }
 
     Boolean error = Boolean.FALSE;
-    ArrayBlockingQueue<SnapshotPart> partQueue = null;
+    ArrayBlockingQueue<BufferedPart> partQueue = null;
+    PartBuffer partBuffer = null;
     SnapshotPart part = null;
     SnapshotUploadInfo snapUploadInfo = null;
     Future<List<PartETag>> uploadPartsFuture = null;
     Future<String> completeUploadFuture = null;
 
-    byte[] buffer = new byte[readBufferSize];
     Long readOffset = 0L;
     Long bytesRead = 0L;
-    Long bytesWritten = 0L;
-    int len;
     int partNumber = 1;
+    SnapshotPartLayout partLayout = new SnapshotPartLayout();
 
     try {
       // Get the uncompressed file size for uploading as metadata
@@ -277,41 +317,32 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
 
       // Setup the snapshot and part entities.
       snapUploadInfo = SnapshotUploadInfo.create(snapshotId, bucketName, keyName);
-      Path zipFilePath = Files.createTempFile(keyName + '-', '-' + String.valueOf(partNumber));
-      part = SnapshotPart.createPart(snapUploadInfo, zipFilePath.toString(), partNumber, readOffset);
+      part = SnapshotPart.createPart(snapUploadInfo, null, partNumber, readOffset);
 
       InputStream inputStream = storageResource.getInputStream();
-      ByteArrayOutputStream baos = new ByteArrayOutputStream();
-      GZIPOutputStream gzipStream = new GZIPOutputStream(baos);
-      FileOutputStream outputStream = new FileOutputStream(zipFilePath.toString());
+      GzipBlockCompressor compressor =
+          new GzipBlockCompressor(inputStream, readBufferSize, 2 * COMPRESSION_THREADS, Threads.lookup(Storage.class, GzipBlockCompressor.class)
+              .limitTo(COMPRESSION_THREADS), statistics);
 
       try {
-        LOG.debug("Reading snapshot " + snapshotId + " and compressing it to disk in chunks of size " + partSize + " bytes or greater");
-        while ((len = inputStream.read(buffer)) > 0) {
-          bytesRead += len;
-          gzipStream.write(buffer, 0, len);
-
-          if ((bytesWritten + baos.size()) < partSize) {
-            baos.writeTo(outputStream);
-            bytesWritten += baos.size();
-            baos.reset();
-          } else {
-            gzipStream.close();
-            baos.writeTo(outputStream); // Order is important. Closing the gzip stream flushes stuff
-            bytesWritten += baos.size();
-            baos.reset();
-            outputStream.close();
-
+        LOG.debug("Reading snapshot " + snapshotId + " and compressing it in blocks of " + readBufferSize + " bytes on up to "
+            + COMPRESSION_THREADS + " threads into parts of size " + partSize + " bytes or greater");
+        partBuffer = newPartBuffer();
+        CompressedBlock block;
+        while ((block = compressor.next()) != null) {
+          if (partBuffer.size() >= partSize) {
+            // Only complete a part once there is more data, the last part is never empty
             if (partNumber > 1) {// Update the part status
-              part = part.updateStateCreated(bytesWritten, bytesRead, Boolean.FALSE);
+              part = part.updateStateCreated((long) partBuffer.size(), bytesRead, Boolean.FALSE);
             } else {// Initialize multipart upload only once after the first part is created
               LOG.info("Uploading snapshot " + snapshotId + " to objectstorage using multipart upload");
               progressCallback.setUploadSize(uncompressedSize);
               uploadId = initiateMulitpartUpload(uncompressedSize);
               snapUploadInfo = snapUploadInfo.updateUploadId(uploadId);
-              part = part.updateStateCreated(uploadId, bytesWritten, bytesRead, Boolean.FALSE);
-              partQueue = new ArrayBlockingQueue<SnapshotPart>(queueSize);
-              uploadPartsFuture = Threads.enqueue(serviceConfig, UploadPartTask.class, poolSize, new UploadPartTask(partQueue, progressCallback));
+              part = part.updateStateCreated(uploadId, (long) partBuffer.size(), bytesRead, Boolean.FALSE);
+              partQueue = new ArrayBlockingQueue<BufferedPart>(queueSize);
+              uploadPartsFuture =
+                  Threads.enqueue(serviceConfig, UploadPartTask.class, poolSize, new UploadPartTask(partQueue, progressCallback, statistics));
             }
 
             // Check for the future task before adding part to the queue.
@@ -322,31 +353,30 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
             }
 
             // Add part to the queue
-            partQueue.put(part);
+            partQueue.put(new BufferedPart(part, partBuffer));
+            partLayout.add(partBuffer.size(), bytesRead);
+            partBuffer = null; // Released by the upload part task
 
             // Prep the metadata for the next part
             readOffset += bytesRead;
             bytesRead = 0L;
-            bytesWritten = 0L;
 
             // Setup the part entity for next part
-            zipFilePath = Files.createTempFile(keyName + '-', '-' + String.valueOf((++partNumber)));
-            part = SnapshotPart.createPart(snapUploadInfo, zipFilePath.toString(), partNumber, readOffset);
-
-            gzipStream = new GZIPOutputStream(baos);
-            outputStream = new FileOutputStream(zipFilePath.toString());
+            part = SnapshotPart.createPart(snapUploadInfo, null, ++partNumber, readOffset);
+            partBuffer = newPartBuffer();
           }
+
+          block.writeTo(partBuffer);
+          bytesRead += block.getUncompressedLength();
         }
 
-        gzipStream.close();
-        baos.writeTo(outputStream);
-        bytesWritten += baos.size();
-        baos.reset();
-        outputStream.close();
-        inputStream.close();
+        if (partBuffer.size() == 0) {
+          // Empty snapshot, still needs to be a valid gzip stream
+          new GZIPOutputStream(partBuffer).close();
+        }
 
         // Update the part status
-        part = part.updateStateCreated(bytesWritten, bytesRead, Boolean.TRUE);
+        part = part.updateStateCreated((long) partBuffer.size(), bytesRead, Boolean.TRUE);
 
         // Update the snapshot upload info status
         snapUploadInfo = snapUploadInfo.updateStateCreatedParts(partNumber);
@@ -355,6 +385,7 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
         error = Boolean.TRUE;
         throw new SnapshotTransferException("Failed to upload " + snapshotId + " due to: ", e);
       } finally {
+        compressor.close();
         if (inputStream != null) {
           try {
             inputStream.close();
@@ -362,21 +393,6 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
 
           }
         }
-        if (gzipStream != null) {
-          try {
-            gzipStream.close();
-          } catch (Exception e) {
-
-          }
-        }
-        if (outputStream != null) {
-          try {
-            outputStream.close();
-          } catch (Exception e) {
-
-          }
-        }
-        baos.reset();
       }
 
       if (partNumber > 1) {
@@ -387,15 +403,20 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
               "Error uploading parts, aborting part upload process. Check previous log messages for the exact error");
         }
         // Add the last part to the queue
-        partQueue.put(part);
+        partQueue.put(new BufferedPart(part, partBuffer));
+        partLayout.add(partBuffer.size(), bytesRead);
+        partBuffer = null;
         // Kick off the completion task
         completeUploadFuture =
-            Threads.enqueue(serviceConfig, CompleteMpuTask.class, poolSize, new CompleteMpuTask(uploadPartsFuture, snapUploadInfo, partNumber));
+            Threads.enqueue(serviceConfig, CompleteMpuTask.class, poolSize, new CompleteMpuTask(uploadPartsFuture, partQueue, snapUploadInfo,
+                partNumber, partLayout, statistics));
       } else {
         try {
-          LOG.info("Uploading snapshot " + snapshotId + " to objectstorage as a single object. Compressed size of snapshot (" + bytesWritten
+          LOG.info("Uploading snapshot " + snapshotId + " to objectstorage as a single object. Compressed size of snapshot (" + partBuffer.size()
               + " bytes) is less than minimum part size (" + partSize + " bytes) for multipart upload");
-          PutObjectResult putResult = uploadSnapshotAsSingleObject(zipFilePath.toString(), bytesWritten, uncompressedSize, progressCallback);
+          long start = System.nanoTime();
+          PutObjectResult putResult = uploadSnapshotAsSingleObject(partBuffer, uncompressedSize, progressCallback);
+          statistics.record(Stage.Upload, partBuffer.size(), System.nanoTime() - start);
           markSnapshotAvailable();
           try {
             part = part.updateStateUploaded(putResult.getETag());
@@ -403,13 +424,13 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
           } catch (Exception e) {
             LOG.debug("Failed to update status in DB for " + snapUploadInfo);
           }
-          LOG.info("Uploaded snapshot " + snapshotId + " to objectstorage");
+          LOG.info("Uploaded snapshot " + snapshotId + " to objectstorage (" + statistics.describe() + ")");
         } catch (Exception e) {
           error = Boolean.TRUE;
           LOG.error("Failed to upload snapshot " + snapshotId + " due to: ", e);
           throw new SnapshotTransferException("Failed to upload snapshot " + snapshotId + " due to: ", e);
         } finally {
-          deleteFile(zipFilePath);
+          partBuffer.release();
         }
       }
     } catch (SnapshotTransferException e) {
@@ -428,6 +449,10 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
         if (completeUploadFuture != null && !completeUploadFuture.isDone()) {
           completeUploadFuture.cancel(true);
         }
+        if (partBuffer != null) {
+          partBuffer.release();
+        }
+        releaseParts(partQueue);
       }
     }
   }
@@ -461,11 +486,50 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
 
   /**
    * Downloads the compressed snapshot from objectstorage gateway to the filesystem
+   * 
+   * Snapshots uploaded as a block manifest are restored by downloading and decompressing up to the configured number of part downloads blocks
+   * concurrently. Snapshots uploaded in parts with a part layout are restored by downloading and decompressing up to the configured number of parts
+   * concurrently and writing them at their offsets, if the storage resource supports positional writes. Other snapshots are downloaded and
+   * decompressed as a single stream.
    */
   public void download(StorageResource storageResource) throws SnapshotTransferException {
     validateInput();
     loadTransferConfig();
 
+    long startTime = System.currentTimeMillis();
+    SnapshotBlockManifest manifest = downloadBlockManifest();
+    if (manifest != null) {
+      SnapshotTransferStatistics statistics = new SnapshotTransferStatistics();
+      downloadBlocks(storageResource, manifest, statistics);
+      LOG.info("Downloaded snapshot " + snapshotId + " to " + storageResource.getId() + " in " + (System.currentTimeMillis() - startTime)
+          + " ms using " + manifest.getBlockCount() + " blocks on up to " + partDownloads + " threads (" + statistics.describe() + ")");
+      return;
+    }
+
+    SnapshotPartLayout partLayout = partDownloads > 1 ? downloadPartLayout() : null;
+    FileChannel channel = null;
+    if (partLayout != null && partLayout.getPartCount() > 1) {
+      try {
+        channel = storageResource.getWritableChannel();
+      } catch (Exception e) {
+        LOG.debug("Unable to open " + storageResource.getId() + " for positional writes, downloading snapshot " + snapshotId + " as a single stream",
+            e);
+      }
+    }
+
+    if (channel != null) {
+      SnapshotTransferStatistics statistics = new SnapshotTransferStatistics();
+      downloadParts(partLayout, channel, statistics);
+      LOG.info("Downloaded snapshot " + snapshotId + " to " + storageResource.getId() + " in " + (System.currentTimeMillis() - startTime)
+          + " ms using " + partLayout.getPartCount() + " parts on up to " + partDownloads + " threads (" + statistics.describe() + ")");
+    } else {
+      downloadStream(storageResource);
+      LOG.info("Downloaded snapshot " + snapshotId + " to " + storageResource.getId() + " in " + (System.currentTimeMillis() - startTime)
+          + " ms using a single stream");
+    }
+  }
+
+  private void downloadStream(StorageResource storageResource) throws SnapshotTransferException {
     S3Object snapObj = download();
 
     if (snapObj != null && snapObj.getObjectContent() != null) {
@@ -474,7 +538,7 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
       GZIPInputStream gzipInputStream = null;
 
       try {
-        gzipInputStream = new GZIPInputStream(new BufferedInputStream(snapObj.getObjectContent(), buffer.length * 3), buffer.length * 2);
+        gzipInputStream = new MultiMemberGzipInputStream(new BufferedInputStream(snapObj.getObjectContent(), buffer.length * 3), buffer.length * 2);
 
         if (storageResource.isDownloadSynchronous()) { // Download and unzip snapshot to the storage device directly
           OutputStream outputStream = null;
@@ -613,6 +677,9 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
   public void delete() throws SnapshotTransferException {
     LOG.debug("Deleting snapshot from objectstorage: snapshotId=" + snapshotId + ", bucket=" + bucketName + ", key=" + keyName);
     validateInput();
+    // Blocks are released after the manifest is deleted, a failure leaves blocks stored rather than a manifest referencing deleted blocks.
+    // The manifest is not deleted if it cannot be read, otherwise its blocks would never be released.
+    SnapshotBlockManifest manifest = downloadBlockManifest();
     try {
       retryAfterRefresh(new Function<DeleteObjectRequest, String>() {
 
@@ -629,6 +696,30 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
       throw new SnapshotTransferException("Failed to delete snapshot from objectstorage: snapshotId=" + snapshotId + ", bucket=" + bucketName
           + ", key=" + keyName, e);
     }
+
+    try {
+      retryAfterRefresh(new Function<DeleteObjectRequest, String>() {
+
+        @Override
+        @Nullable
+        public String apply(@Nullable DeleteObjectRequest arg0) {
+          eucaS3Client.refreshEndpoint();
+          eucaS3Client.deleteObject(arg0);
+          return null;
+        }
+      }, new DeleteObjectRequest(bucketName, keyName + PART_LAYOUT_KEY_SUFFIX), REFRESH_TOKEN_RETRIES);
+    } catch (Exception e) {
+      LOG.debug("Failed to delete snapshot part layout from objectstorage: snapshotId=" + snapshotId + ", bucket=" + bucketName + ", key="
+          + keyName + PART_LAYOUT_KEY_SUFFIX);
+    }
+
+    if (manifest != null) {
+      try {
+        SnapshotBlockReferences.release(bucketName, manifest.getStoredBlockHashes());
+      } catch (Exception e) {
+        LOG.warn("Failed to release blocks of deleted snapshot " + snapshotId + ", they will not be deleted from objectstorage", e);
+      }
+    }
   }
 
   @Override
@@ -636,10 +727,25 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
     LOG.debug("Fetching snapshot metadata from objectstorage: snapshotId=" + snapshotId + ", bucket=" + bucketName + ", key=" + keyName);
 
     validateInput();
-    ObjectMetadata metadata = null;
+    ObjectMetadata metadata = getSnapshotMetadata();
     Map<String, String> userMetadata = null;
+
+    if (metadata != null && (userMetadata = metadata.getUserMetadata()) != null && userMetadata.containsKey(UNCOMPRESSED_SIZE_KEY)) {
+      try {
+        return Long.parseLong(userMetadata.get(UNCOMPRESSED_SIZE_KEY));
+      } catch (Exception e) {
+        throw new SnapshotTransferException("Unable to parse size from snapshot metadata: snapshotId=" + snapshotId + ", bucket=" + bucketName
+            + ", key=" + keyName + ", metadata key:value pair=" + UNCOMPRESSED_SIZE_KEY + ":" + userMetadata.get(UNCOMPRESSED_SIZE_KEY), e);
+      }
+    } else {
+      throw new SnapshotTransferException("Snapshot metadata from objectstorage does not contain uncompressed size: snapshotId=" + snapshotId
+          + ", bucket=" + bucketName + ", key=" + keyName);
+    }
+  }
+
+  private ObjectMetadata getSnapshotMetadata() throws SnapshotTransferException {
     try {
-      metadata = retryAfterRefresh(new Function<GetObjectMetadataRequest, ObjectMetadata>() {
+      return retryAfterRefresh(new Function<GetObjectMetadataRequest, ObjectMetadata>() {
 
         @Override
         @Nullable
@@ -654,18 +760,6 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
       throw new SnapshotTransferException("Failed to get snapshot metadata from objectstorage: snapshotId=" + snapshotId + ", bucket=" + bucketName
           + ", key=" + keyName, e);
     }
-
-    if (metadata != null && (userMetadata = metadata.getUserMetadata()) != null && userMetadata.containsKey(UNCOMPRESSED_SIZE_KEY)) {
-      try {
-        return Long.parseLong(userMetadata.get(UNCOMPRESSED_SIZE_KEY));
-      } catch (Exception e) {
-        throw new SnapshotTransferException("Unable to parse size from snapshot metadata: snapshotId=" + snapshotId + ", bucket=" + bucketName
-            + ", key=" + keyName + ", metadata key:value pair=" + UNCOMPRESSED_SIZE_KEY + ":" + userMetadata.get(UNCOMPRESSED_SIZE_KEY), e);
-      }
-    } else {
-      throw new SnapshotTransferException("Snapshot metadata from objectstorage does not contain uncompressed size: snapshotId=" + snapshotId
-          + ", bucket=" + bucketName + ", key=" + keyName);
-    }
   }
 
   private void initializeEucaS3Client() throws SnapshotTransferException {
@@ -696,6 +790,9 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
     this.poolSize = info.getMaxConcurrentSnapshotTransfers();
     this.readBufferSize = info.getReadBufferSizeInMB() * 1024 * 1024;
     this.writeBufferSize = info.getWriteBufferSizeInMB() * 1024 * 1024;
+    this.partDownloads = info.getMaxConcurrentSnapshotPartDownloads();
+    this.incrementalUploads = info.getIncrementalSnapshotUploads();
+    PART_BUFFERS.setBudget(info.getMaxSnapshotUploadBufferMemoryInMB() * 1024L * 1024L);
   }
 
   private void validateInput() throws SnapshotTransferException {
@@ -791,33 +888,376 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
     }
   }
 
-  private PutObjectResult uploadSnapshotAsSingleObject(final String compressedSnapFileName, Long actualSize, Long uncompressedSize,
+  S3Object downloadRange(long start, long end) throws SnapshotTransferException {
+    try {
+      return retryAfterRefresh(new Function<GetObjectRequest, S3Object>() {
+
+        @Override
+        @Nullable
+        public S3Object apply(@Nullable GetObjectRequest arg0) {
+          eucaS3Client.refreshEndpoint();
+          return eucaS3Client.getObject(arg0);
+        }
+
+      }, new GetObjectRequest(bucketName, keyName).withRange(start, end), REFRESH_TOKEN_RETRIES);
+    } catch (Exception e) {
+      throw new SnapshotTransferException("Failed to download bytes " + start + "-" + end + " of snapshot from objectstorage: snapshotId="
+          + snapshotId + ", bucket=" + bucketName + ", key=" + keyName, e);
+    }
+  }
+
+  private void uploadPartLayout(SnapshotPartLayout partLayout) {
+    final byte[] content = partLayout.toBytes();
+    ObjectMetadata objectMetadata = new ObjectMetadata();
+    objectMetadata.setContentLength(content.length);
+    try {
+      retryAfterRefresh(new Function<PutObjectRequest, PutObjectResult>() {
+
+        @Override
+        @Nullable
+        public PutObjectResult apply(@Nullable PutObjectRequest arg0) {
+          eucaS3Client.refreshEndpoint();
+          arg0.setInputStream(new ByteArrayInputStream(content));
+          return eucaS3Client.putObject(arg0);
+        }
+
+      }, new PutObjectRequest(bucketName, keyName + PART_LAYOUT_KEY_SUFFIX, null, objectMetadata), REFRESH_TOKEN_RETRIES);
+    } catch (Exception e) {
+      LOG.warn("Failed to upload part layout for snapshot " + snapshotId + ", volumes created from it will download it as a single stream", e);
+    }
+  }
+
+  private SnapshotPartLayout downloadPartLayout() {
+    S3Object layoutObj = null;
+    try {
+      layoutObj = retryAfterRefresh(new Function<GetObjectRequest, S3Object>() {
+
+        @Override
+        @Nullable
+        public S3Object apply(@Nullable GetObjectRequest arg0) {
+          eucaS3Client.refreshEndpoint();
+          return eucaS3Client.getObject(arg0);
+        }
+
+      }, new GetObjectRequest(bucketName, keyName + PART_LAYOUT_KEY_SUFFIX), REFRESH_TOKEN_RETRIES);
+      return SnapshotPartLayout.parse(layoutObj.getObjectContent());
+    } catch (Exception e) {
+      LOG.debug("No part layout available for snapshot " + snapshotId + ": " + e.getMessage());
+      return null;
+    } finally {
+      try {
+        if (layoutObj != null)
+          layoutObj.getObjectContent().close();
+      } catch (Exception e) {
+
+      }
+    }
+  }
+
+  private void downloadParts(SnapshotPartLayout partLayout, FileChannel channel, SnapshotTransferStatistics statistics)
+      throws SnapshotTransferException {
+    ExecutorService executor = Threads.lookup(Storage.class, DownloadPartTask.class).limitTo(partDownloads);
+    List<Future<Long>> futures = new ArrayList<Future<Long>>();
+    try {
+      for (int part = 0; part < partLayout.getPartCount(); part++) {
+        futures.add(executor.submit(new DownloadPartTask(partLayout, part, channel, statistics)));
+      }
+      for (Future<Long> future : futures) {
+        future.get(transferTimeout, TimeUnit.HOURS);
+      }
+    } catch (ExecutionException e) {
+      throw new SnapshotTransferException("Failed to download snapshot " + snapshotId + " to storage backend", e.getCause());
+    } catch (Exception e) {
+      throw new SnapshotTransferException("Failed to download snapshot " + snapshotId + " to storage backend", e);
+    } finally {
+      for (Future<Long> future : futures) {
+        future.cancel(true);
+      }
+      try {
+        channel.close();
+      } catch (Exception e) {
+
+      }
+    }
+  }
+
+  /**
+   * Uploads the snapshot as a {@link SnapshotBlockManifest}. The content hash of each block is computed on a worker pool, blocks already stored
+   * in the bucket are referenced and new blocks are compressed and uploaded on up to the parts queue size threads. The manifest is uploaded as
+   * the snapshot object once all of its blocks are stored.
+   */
+  private void uploadBlocks(StorageResource storageResource, SnapshotProgressCallback progressCallback, SnapshotTransferStatistics statistics)
+      throws SnapshotTransferException {
+    SnapshotUploadInfo snapUploadInfo = null;
+    SnapshotBlockManifest manifest = new SnapshotBlockManifest(BLOCK_SIZE);
+    Set<String> referenced = new HashSet<String>();
+    Set<String> uploading = new HashSet<String>();
+    Deque<Future<String>> uploads = new ArrayDeque<Future<String>>();
+    Queue<S3SnapshotTransfer> transfers = new ConcurrentLinkedQueue<S3SnapshotTransfer>();
+    ExecutorService uploadExecutor = Threads.lookup(Storage.class, UploadBlockTask.class).limitTo(queueSize);
+    InputStream inputStream = null;
+    BlockDigester digester = null;
+    boolean manifestUploaded = false;
+    int storedBlocks = 0;
+    int zeroBlocks = 0;
+
+    try {
+      snapUploadInfo = SnapshotUploadInfo.create(snapshotId, bucketName, keyName);
+      progressCallback.setUploadSize(storageResource.getSize());
+      inputStream = storageResource.getInputStream();
+      digester =
+          new BlockDigester(inputStream, BLOCK_SIZE, 2 * COMPRESSION_THREADS, Threads.lookup(Storage.class, BlockDigester.class).limitTo(
+              COMPRESSION_THREADS), statistics);
+
+      DigestedBlock block;
+      while ((block = digester.next()) != null) {
+        String hash = block.getHash();
+        manifest.add(hash, block.getLength());
+        if (block.isZero()) {
+          zeroBlocks++;
+        } else if (referenced.contains(hash) || uploading.contains(hash)) {
+          storedBlocks++;
+        } else if (SnapshotBlockReferences.reference(bucketName, hash)) {
+          referenced.add(hash);
+          storedBlocks++;
+        } else {
+          while (uploads.size() >= queueSize) {
+            referenced.add(uploads.poll().get(transferTimeout, TimeUnit.HOURS));
+          }
+          uploading.add(hash);
+          uploads.add(uploadExecutor.submit(new UploadBlockTask(transfers, hash, block.getData(), block.getLength(), statistics)));
+        }
+        progressCallback.update(block.getLength());
+      }
+      while (!uploads.isEmpty()) {
+        referenced.add(uploads.poll().get(transferTimeout, TimeUnit.HOURS));
+      }
+
+      PutObjectResult putResult = uploadBlockManifest(manifest);
+      manifestUploaded = true;
+      markSnapshotAvailable();
+      try {
+        snapUploadInfo = snapUploadInfo.updateStateUploaded(putResult.getETag());
+      } catch (Exception e) {
+        LOG.debug("Failed to update status in DB for " + snapUploadInfo);
+      }
+      LOG.info("Uploaded snapshot " + snapshotId + " to objectstorage as " + manifest.getBlockCount() + " blocks, "
+          + (manifest.getBlockCount() - storedBlocks - zeroBlocks) + " uploaded, " + storedBlocks + " already stored and " + zeroBlocks
+          + " zero filled (" + statistics.describe() + ")");
+    } catch (Exception e) {
+      LOG.error("Failed to upload snapshot " + snapshotId + " due to: ", e);
+      if (!manifestUploaded) {
+        // Wait for blocks being uploaded so that every reference taken is released
+        for (Future<String> upload : uploads) {
+          try {
+            referenced.add(upload.get(transferTimeout, TimeUnit.HOURS));
+          } catch (Exception ex) {
+
+          }
+        }
+        try {
+          SnapshotBlockReferences.release(bucketName, referenced);
+        } catch (Exception ex) {
+          LOG.warn("Failed to release blocks of snapshot " + snapshotId + ", they will not be deleted from objectstorage", ex);
+        }
+      }
+      abortUpload(snapUploadInfo);
+      throw new SnapshotTransferException("Failed to upload snapshot " + snapshotId + " due to: ", e);
+    } finally {
+      if (digester != null) {
+        digester.close();
+      }
+      if (inputStream != null) {
+        try {
+          inputStream.close();
+        } catch (Exception e) {
+
+        }
+      }
+    }
+  }
+
+  /**
+   * @return The block manifest of the snapshot or null if the snapshot does not exist or was not uploaded as a block manifest
+   * @throws SnapshotTransferException If the snapshot metadata or manifest could not be read
+   */
+  private SnapshotBlockManifest downloadBlockManifest() throws SnapshotTransferException {
+    ObjectMetadata metadata = null;
+    try {
+      metadata = getSnapshotMetadata();
+    } catch (SnapshotTransferException e) {
+      AmazonServiceException serviceException = Exceptions.findCause(e, AmazonServiceException.class);
+      if (serviceException != null && serviceException.getStatusCode() == HttpResponseStatus.NOT_FOUND.getCode()) {
+        return null;
+      }
+      throw e;
+    }
+    Map<String, String> userMetadata = metadata != null ? metadata.getUserMetadata() : null;
+    if (userMetadata == null || !BLOCK_FORMAT.equals(userMetadata.get(SNAPSHOT_FORMAT_KEY))) {
+      return null;
+    }
+
+    S3Object manifestObj = download();
+    try {
+      return SnapshotBlockManifest.parse(manifestObj.getObjectContent());
+    } catch (Exception e) {
+      throw new SnapshotTransferException("Failed to read block manifest of snapshot: snapshotId=" + snapshotId + ", bucket=" + bucketName
+          + ", key=" + keyName, e);
+    } finally {
+      try {
+        manifestObj.getObjectContent().close();
+      } catch (Exception e) {
+
+      }
+    }
+  }
+
+  private void downloadBlocks(StorageResource storageResource, SnapshotBlockManifest manifest, SnapshotTransferStatistics statistics)
+      throws SnapshotTransferException {
+    ExecutorService executor = Threads.lookup(Storage.class, DownloadBlockTask.class).limitTo(partDownloads);
+    Queue<S3SnapshotTransfer> transfers = new ConcurrentLinkedQueue<S3SnapshotTransfer>();
+    Deque<Future<byte[]>> pending = new ArrayDeque<Future<byte[]>>();
+    byte[] zeros = null;
+    OutputStream outputStream = null;
+    try {
+      outputStream = storageResource.getOutputStream();
+      int nextBlock = 0;
+      for (int block = 0; block < manifest.getBlockCount(); block++) {
+        // Keep blocks downloading ahead of the writer
+        for (; nextBlock < manifest.getBlockCount() && pending.size() < 2 * partDownloads; nextBlock++) {
+          String hash = manifest.getBlockHash(nextBlock);
+          pending.add(SnapshotBlockManifest.ZERO_BLOCK.equals(hash) ? Futures.<byte[]> immediateFuture(null) : executor
+              .submit(new DownloadBlockTask(transfers, hash, manifest.getBlockLength(nextBlock), statistics)));
+        }
+
+        byte[] data = pending.poll().get(transferTimeout, TimeUnit.HOURS);
+        if (data == null) {
+          if (zeros == null) {
+            zeros = new byte[manifest.getBlockSize()];
+          }
+          data = zeros;
+        }
+        int length = manifest.getBlockLength(block);
+        long start = System.nanoTime();
+        outputStream.write(data, 0, length);
+        statistics.record(Stage.Write, length, System.nanoTime() - start);
+      }
+      outputStream.close();
+    } catch (ExecutionException e) {
+      throw new SnapshotTransferException("Failed to download snapshot " + snapshotId + " to storage backend", e.getCause());
+    } catch (Exception e) {
+      throw new SnapshotTransferException("Failed to download snapshot " + snapshotId + " to storage backend", e);
+    } finally {
+      for (Future<byte[]> future : pending) {
+        future.cancel(true);
+      }
+      try {
+        if (outputStream != null)
+          outputStream.close();
+      } catch (Exception e) {
+
+      }
+    }
+  }
+
+  private PutObjectResult uploadBlockManifest(SnapshotBlockManifest manifest) throws SnapshotTransferException {
+    final byte[] content = manifest.toBytes();
+    ObjectMetadata objectMetadata = new ObjectMetadata();
+    Map<String, String> userMetadataMap = new HashMap<String, String>();
+    userMetadataMap.put(UNCOMPRESSED_SIZE_KEY, String.valueOf(manifest.getSize()));
+    userMetadataMap.put(SNAPSHOT_FORMAT_KEY, BLOCK_FORMAT);
+    objectMetadata.setUserMetadata(userMetadataMap);
+    objectMetadata.setContentLength(content.length);
+
+    return retryAfterRefresh(new Function<PutObjectRequest, PutObjectResult>() {
+
+      @Override
+      @Nullable
+      public PutObjectResult apply(@Nullable PutObjectRequest arg0) {
+        eucaS3Client.refreshEndpoint();
+        arg0.setInputStream(new ByteArrayInputStream(content));
+        return eucaS3Client.putObject(arg0);
+      }
+
+    }, new PutObjectRequest(bucketName, keyName, null, objectMetadata), REFRESH_TOKEN_RETRIES);
+  }
+
+  private void uploadBlock(String hash, final ExposedByteArrayOutputStream compressedBlock) throws SnapshotTransferException {
+    ObjectMetadata objectMetadata = new ObjectMetadata();
+    objectMetadata.setContentLength(compressedBlock.size());
+    retryAfterRefresh(new Function<PutObjectRequest, PutObjectResult>() {
+
+      @Override
+      @Nullable
+      public PutObjectResult apply(@Nullable PutObjectRequest arg0) {
+        eucaS3Client.refreshEndpoint();
+        arg0.setInputStream(compressedBlock.newInputStream());
+        return eucaS3Client.putObject(arg0);
+      }
+
+    }, new PutObjectRequest(bucketName, BLOCK_KEY_PREFIX + hash, null, objectMetadata), REFRESH_TOKEN_RETRIES);
+  }
+
+  private S3Object downloadBlock(String hash) throws SnapshotTransferException {
+    return retryAfterRefresh(new Function<GetObjectRequest, S3Object>() {
+
+      @Override
+      @Nullable
+      public S3Object apply(@Nullable GetObjectRequest arg0) {
+        eucaS3Client.refreshEndpoint();
+        return eucaS3Client.getObject(arg0);
+      }
+
+    }, new GetObjectRequest(bucketName, BLOCK_KEY_PREFIX + hash), REFRESH_TOKEN_RETRIES);
+  }
+
+  /**
+   * Delete a block of incremental snapshots from objectstorage
+   * 
+   * @return true if the block was deleted
+   */
+  boolean deleteBlock(String blockBucketName, String hash) {
+    try {
+      retryAfterRefresh(new Function<DeleteObjectRequest, String>() {
+
+        @Override
+        @Nullable
+        public String apply(@Nullable DeleteObjectRequest arg0) {
+          eucaS3Client.refreshEndpoint();
+          eucaS3Client.deleteObject(arg0);
+          return null;
+        }
+      }, new DeleteObjectRequest(blockBucketName, BLOCK_KEY_PREFIX + hash), REFRESH_TOKEN_RETRIES);
+      return true;
+    } catch (Exception e) {
+      LOG.debug("Failed to delete snapshot block from objectstorage: bucket=" + blockBucketName + ", key=" + BLOCK_KEY_PREFIX + hash);
+      return false;
+    }
+  }
+
+  private PutObjectResult uploadSnapshotAsSingleObject(final ExposedByteArrayOutputStream compressedSnapshot, Long uncompressedSize,
       final SnapshotProgressCallback callback) throws Exception {
-    callback.setUploadSize(actualSize);
+    callback.setUploadSize((long) compressedSnapshot.size());
     ObjectMetadata objectMetadata = new ObjectMetadata();
     Map<String, String> userMetadataMap = new HashMap<String, String>();
     userMetadataMap.put(UNCOMPRESSED_SIZE_KEY, String.valueOf(uncompressedSize)); // Send the uncompressed length as the metadata
     objectMetadata.setUserMetadata(userMetadataMap);
-    objectMetadata.setContentLength(actualSize);
+    objectMetadata.setContentLength(compressedSnapshot.size());
 
-    return retryAfterRefresh(new Function<PutObjectRequest, PutObjectResult>() {
+    PutObjectResult result = retryAfterRefresh(new Function<PutObjectRequest, PutObjectResult>() {
 
       @Override
       @Nullable
       public PutObjectResult apply(@Nullable PutObjectRequest arg0) {
         eucaS3Client.refreshEndpoint();
         // EUCA-10311 Set the input stream in put request. Doing it here to ensure that input stream is set before every attempt to put object
-        try {
-          arg0.setInputStream(new FileInputStreamWithCallback(new File(compressedSnapFileName), callback));
-        } catch (Exception e) {
-          LOG.warn("Failed to upload snapshot to objectstorage: snapshotId=" + snapshotId + ", bucket=" + bucketName + ", key=" + keyName
-              + ", reason: unable to initialize FileInputStreamWithCallback for file " + compressedSnapFileName, e);
-          Exceptions.toUndeclared(e);
-        }
+        arg0.setInputStream(compressedSnapshot.newInputStream());
         return eucaS3Client.putObject(arg0);
       }
 
     }, new PutObjectRequest(bucketName, keyName, null, objectMetadata), REFRESH_TOKEN_RETRIES);
+    callback.update(compressedSnapshot.size());
+    return result;
   }
 
   private String initiateMulitpartUpload(Long uncompressedSize) throws SnapshotInitializeMpuException {
@@ -853,7 +1293,10 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
     return initResponse.getUploadId();
   }
 
-  private PartETag uploadPart(SnapshotPart part, SnapshotProgressCallback progressCallback) throws SnapshotUploadPartException {
+  private PartETag uploadPart(BufferedPart bufferedPart, SnapshotProgressCallback progressCallback, SnapshotTransferStatistics statistics)
+      throws SnapshotUploadPartException {
+    SnapshotPart part = bufferedPart.part;
+    final ExposedByteArrayOutputStream data = bufferedPart.data;
     try {
       part = part.updateStateUploading();
     } catch (Exception e) {
@@ -862,6 +1305,7 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
 
     try {
       LOG.debug("Uploading " + part);
+      long start = System.nanoTime();
       UploadPartResult uploadPartResult =
           retryAfterRefresh(new Function<UploadPartRequest, UploadPartResult>() {
 
@@ -869,11 +1313,14 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
             @Nullable
             public UploadPartResult apply(@Nullable UploadPartRequest arg0) {
               eucaS3Client.refreshEndpoint();
+              // Set the input stream here to ensure that it is set before every attempt to upload the part
+              arg0.setInputStream(data.newInputStream());
               return eucaS3Client.uploadPart(arg0);
             }
           },
               new UploadPartRequest().withBucketName(part.getBucketName()).withKey(part.getKeyName()).withUploadId(part.getUploadId())
-                  .withPartNumber(part.getPartNumber()).withPartSize(part.getSize()).withFile(new File(part.getFileName())), REFRESH_TOKEN_RETRIES);
+                  .withPartNumber(part.getPartNumber()).withPartSize(data.size()), REFRESH_TOKEN_RETRIES);
+      statistics.record(Stage.Upload, data.size(), System.nanoTime() - start);
 
       progressCallback.update(part.getInputFileBytesRead());
 
@@ -892,8 +1339,6 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
         LOG.debug("Failed to update part status in DB. Moving on. " + part);
       }
       throw new SnapshotUploadPartException("Failed to upload part " + part, e);
-    } finally {
-      deleteFile(part.getFileName());
     }
   }
 
@@ -960,14 +1405,6 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
     }
   }
 
-  private void deleteFile(Path path) {
-    try {
-      Files.deleteIfExists(path);
-    } catch (IOException e) {
-      LOG.debug("Failed to delete file: " + path.toString());
-    }
-  }
-
   private void markSnapshotAvailable() throws TransactionException, NoSuchElementException {
     Function<String, SnapshotInfo> updateFunction = new Function<String, SnapshotInfo>() {
 
@@ -1035,18 +1472,47 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
     return output;
   }
 
+  private PartBuffer newPartBuffer() throws InterruptedException {
+    // Reserve a full part plus the block that completes it, compressed blocks can be slightly larger than the input. The buffer starts at the size
+    // of a block and grows as blocks are written, so small snapshots do not allocate a full part
+    return PART_BUFFERS.allocate(readBufferSize, (int) Math.min(Integer.MAX_VALUE - 8, partSize + 2L * readBufferSize));
+  }
+
+  private static void releaseParts(Queue<BufferedPart> partQueue) {
+    BufferedPart bufferedPart;
+    while (partQueue != null && (bufferedPart = partQueue.poll()) != null) {
+      bufferedPart.data.release();
+    }
+  }
+
+  /**
+   * A part and its compressed data
+   */
+  static class BufferedPart {
+    private final SnapshotPart part;
+    private final PartBuffer data;
+
+    BufferedPart(SnapshotPart part, PartBuffer data) {
+      this.part = part;
+      this.data = data;
+    }
+  }
+
   class UploadPartTask implements Callable<List<PartETag>> {
 
-    private ArrayBlockingQueue<SnapshotPart> partQueue;
+    private ArrayBlockingQueue<BufferedPart> partQueue;
     private SnapshotProgressCallback progressCallback;
+    private SnapshotTransferStatistics statistics;
     private List<PartETag> partETags;
 
-    public UploadPartTask(ArrayBlockingQueue<SnapshotPart> partQueue, SnapshotProgressCallback progressCallback) throws EucalyptusCloudException {
+    public UploadPartTask(ArrayBlockingQueue<BufferedPart> partQueue, SnapshotProgressCallback progressCallback,
+        SnapshotTransferStatistics statistics) throws EucalyptusCloudException {
       if (partQueue == null || progressCallback == null) {
         throw new EucalyptusCloudException("Invalid constructor parameters. Cannot proceed without part queue and or snapshot progress callback");
       }
       this.partQueue = partQueue;
       this.progressCallback = progressCallback;
+      this.statistics = statistics;
       this.partETags = new ArrayList<PartETag>();
     }
 
@@ -1054,24 +1520,28 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
     public List<PartETag> call() throws Exception {
       Boolean isLast = Boolean.FALSE;
       do {
-        SnapshotPart part = null;
+        BufferedPart bufferedPart = null;
 
         try {
-          part = partQueue.take();
+          bufferedPart = partQueue.take();
         } catch (InterruptedException ex) { // Should rarely happen
           LOG.error("Failed to upload snapshot " + snapshotId + " due to an retrieving parts from queue", ex);
           return null;
         }
 
+        SnapshotPart part = bufferedPart.part;
         isLast = part.getIsLast();
 
         if (part.getState().equals(SnapshotPartState.created) || part.getState().equals(SnapshotPartState.uploading)
             || part.getState().equals(SnapshotPartState.failed)) {
           try {
-            partETags.add(uploadPart(part, progressCallback));
+            partETags.add(uploadPart(bufferedPart, progressCallback, statistics));
           } catch (Exception e) {
             LOG.error("Failed to upload a part for " + snapshotId + ". Aborting the part upload process");
+            releaseParts(partQueue);
             return null;
+          } finally {
+            bufferedPart.data.release();
           }
         } else {
           LOG.warn("Not sure what to do with this part, just keep going: " + part);
@@ -1085,13 +1555,20 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
   class CompleteMpuTask implements Callable<String> {
 
     private Future<List<PartETag>> uploadTaskFuture;
+    private ArrayBlockingQueue<BufferedPart> partQueue;
     private SnapshotUploadInfo snapUploadInfo;
     private Integer totalParts;
+    private SnapshotPartLayout partLayout;
+    private SnapshotTransferStatistics statistics;
 
-    public CompleteMpuTask(Future<List<PartETag>> uploadTaskFuture, SnapshotUploadInfo snapUploadInfo, Integer totalParts) {
+    public CompleteMpuTask(Future<List<PartETag>> uploadTaskFuture, ArrayBlockingQueue<BufferedPart> partQueue, SnapshotUploadInfo snapUploadInfo,
+        Integer totalParts, SnapshotPartLayout partLayout, SnapshotTransferStatistics statistics) {
       this.uploadTaskFuture = uploadTaskFuture;
+      this.partQueue = partQueue;
       this.snapUploadInfo = snapUploadInfo;
       this.totalParts = totalParts;
+      this.partLayout = partLayout;
+      this.statistics = statistics;
     }
 
     @Override
@@ -1103,13 +1580,14 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
         if (partETags != null && partETags.size() == totalParts) {
           try {
             etag = finalizeMultipartUpload(partETags);
+            uploadPartLayout(partLayout);
             markSnapshotAvailable();
             try {
               snapUploadInfo = snapUploadInfo.updateStateUploaded(etag);
             } catch (Exception e) {
               LOG.debug("Failed to update status in DB for " + snapUploadInfo);
             }
-            LOG.info("Uploaded snapshot " + snapUploadInfo.getSnapshotId() + " to objectstorage");
+            LOG.info("Uploaded snapshot " + snapUploadInfo.getSnapshotId() + " to objectstorage (" + statistics.describe() + ")");
           } catch (Exception e) {
             error = Boolean.TRUE;
             LOG.error("Failed to upload " + snapshotId + " due to an error completing the upload", e);
@@ -1127,6 +1605,8 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
         LOG.error("Failed to upload " + snapshotId, ex);
       } finally {
         if (error) {
+          // Parts queued after a failed upload task gave up are never uploaded
+          releaseParts(partQueue);
           markSnapshotFailed();
           abortUpload(snapUploadInfo);
         }
@@ -1135,6 +1615,157 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
     }
   }
 
+  /**
+   * Downloads a part of the snapshot using a ranged get, decompresses it and writes it at the part's offset in the storage resource. Each task uses
+   * its own S3 client as the client is not thread safe
+   */
+  class DownloadPartTask implements Callable<Long> {
+
+    private SnapshotPartLayout partLayout;
+    private int part;
+    private FileChannel channel;
+    private SnapshotTransferStatistics statistics;
+
+    public DownloadPartTask(SnapshotPartLayout partLayout, int part, FileChannel channel, SnapshotTransferStatistics statistics) {
+      this.partLayout = partLayout;
+      this.part = part;
+      this.channel = channel;
+      this.statistics = statistics;
+    }
+
+    @Override
+    public Long call() throws Exception {
+      long compressedOffset = partLayout.getCompressedOffset(part);
+      long position = partLayout.getUncompressedOffset(part);
+      long bytesWritten = 0;
+
+      S3SnapshotTransfer partTransfer = new S3SnapshotTransfer(snapshotId, bucketName, keyName);
+      S3Object partObj = partTransfer.downloadRange(compressedOffset, compressedOffset + partLayout.getCompressedSize(part) - 1);
+      byte[] buffer = new byte[readBufferSize];
+      try (InputStream inputStream = new MultiMemberGzipInputStream(new BufferedInputStream(partObj.getObjectContent(), readBufferSize),
+          readBufferSize)) {
+        while (true) {
+          long start = System.nanoTime();
+          int len = 0;
+          int read;
+          while (len < buffer.length && (read = inputStream.read(buffer, len, buffer.length - len)) > 0) {
+            len += read;
+          }
+          statistics.record(Stage.Download, len, System.nanoTime() - start);
+          if (len == 0) {
+            break;
+          }
+
+          start = System.nanoTime();
+          ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, len);
+          while (byteBuffer.hasRemaining()) {
+            position += channel.write(byteBuffer, position);
+          }
+          statistics.record(Stage.Write, len, System.nanoTime() - start);
+          bytesWritten += len;
+        }
+      }
+
+      if (bytesWritten != partLayout.getUncompressedSize(part)) {
+        throw new SnapshotTransferException("Part " + (part + 1) + " of snapshot " + snapshotId + " decompressed to " + bytesWritten
+            + " bytes, expected " + partLayout.getUncompressedSize(part) + " bytes");
+      }
+      LOG.debug("Downloaded part " + (part + 1) + " of snapshot " + snapshotId);
+      return bytesWritten;
+    }
+  }
+
+  private S3SnapshotTransfer borrowTransfer(Queue<S3SnapshotTransfer> transfers) throws SnapshotTransferException {
+    S3SnapshotTransfer transfer = transfers.poll();
+    return transfer != null ? transfer : new S3SnapshotTransfer(snapshotId, bucketName, keyName);
+  }
+
+  /**
+   * Compresses and uploads a block of an incremental snapshot and records it with a reference from this snapshot. Tasks share a pool of S3 clients
+   * as the client is not thread safe
+   */
+  class UploadBlockTask implements Callable<String> {
+
+    private Queue<S3SnapshotTransfer> transfers;
+    private String hash;
+    private byte[] data;
+    private int length;
+    private SnapshotTransferStatistics statistics;
+
+    public UploadBlockTask(Queue<S3SnapshotTransfer> transfers, String hash, byte[] data, int length, SnapshotTransferStatistics statistics) {
+      this.transfers = transfers;
+      this.hash = hash;
+      this.data = data;
+      this.length = length;
+      this.statistics = statistics;
+    }
+
+    @Override
+    public String call() throws Exception {
+      long start = System.nanoTime();
+      ExposedByteArrayOutputStream compressedBlock = new ExposedByteArrayOutputStream(Math.max(64, length / 2));
+      try (GZIPOutputStream gzipStream = new GZIPOutputStream(compressedBlock, 64 * 1024)) {
+        gzipStream.write(data, 0, length);
+      }
+      statistics.record(Stage.Compress, length, System.nanoTime() - start);
+
+      S3SnapshotTransfer transfer = borrowTransfer(transfers);
+      try {
+        start = System.nanoTime();
+        transfer.uploadBlock(hash, compressedBlock);
+        statistics.record(Stage.Upload, compressedBlock.size(), System.nanoTime() - start);
+      } finally {
+        transfers.add(transfer);
+      }
+      SnapshotBlockReferences.uploaded(bucketName, hash, compressedBlock.size());
+      return hash;
+    }
+  }
+
+  /**
+   * Downloads and decompresses a block of an incremental snapshot, verifying its content hash. Tasks share a pool of S3 clients as the client is
+   * not thread safe
+   */
+  class DownloadBlockTask implements Callable<byte[]> {
+
+    private Queue<S3SnapshotTransfer> transfers;
+    private String hash;
+    private int length;
+    private SnapshotTransferStatistics statistics;
+
+    public DownloadBlockTask(Queue<S3SnapshotTransfer> transfers, String hash, int length, SnapshotTransferStatistics statistics) {
+      this.transfers = transfers;
+      this.hash = hash;
+      this.length = length;
+      this.statistics = statistics;
+    }
+
+    @Override
+    public byte[] call() throws Exception {
+      byte[] data = new byte[length];
+      int bytesRead = 0;
+      long start = System.nanoTime();
+      S3SnapshotTransfer transfer = borrowTransfer(transfers);
+      try {
+        S3Object blockObj = transfer.downloadBlock(hash);
+        try (InputStream inputStream = new GZIPInputStream(blockObj.getObjectContent())) {
+          int read;
+          while (bytesRead < length && (read = inputStream.read(data, bytesRead, length - bytesRead)) > 0) {
+            bytesRead += read;
+          }
+        }
+      } finally {
+        transfers.add(transfer);
+      }
+      statistics.record(Stage.Download, bytesRead, System.nanoTime() - start);
+
+      if (bytesRead != length || !hash.equals(BlockDigester.hash(data, length))) {
+        throw new SnapshotTransferException("Block " + hash + " of snapshot " + snapshotId + " does not match its content hash");
+      }
+      return data;
+    }
+  }
+
   class StorageWriterTask implements Callable<String> {
 
     private ArrayBlockingQueue<SnapshotPart> partQueue;
@@ -0,0 +1,72 @@
+/*************************************************************************
+ * Copyright 2009-2015 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.blockstorage;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import com.eucalyptus.blockstorage.entities.SnapshotBlock;
+import com.eucalyptus.blockstorage.exceptions.SnapshotTransferException;
+import com.eucalyptus.storage.common.CheckerTask;
+import com.google.common.base.Predicate;
+
+/**
+ * Checker task for deleting blocks of incremental snapshots that are no longer referenced by any snapshot. Blocks are kept for a grace period
+ * after their last reference is released so that a snapshot being uploaded can still reference them. Gets initialized in BlockStorageController and
+ * runs periodically
+ */
+public class SnapshotBlockCollectorTask extends CheckerTask {
+
+  private static final Logger LOG = Logger.getLogger(SnapshotBlockCollectorTask.class);
+
+  private static final long GRACE_PERIOD = TimeUnit.HOURS.toMillis(1);
+  private static final int MAX_BLOCKS_PER_RUN = 1000;
+
+  public SnapshotBlockCollectorTask() {
+    this.name = SnapshotBlockCollectorTask.class.getName();
+  }
+
+  @Override
+  public void run() {
+    try {
+      int deleted = SnapshotBlockReferences.collect(GRACE_PERIOD, MAX_BLOCKS_PER_RUN, new Predicate<SnapshotBlock>() {
+        private S3SnapshotTransfer snapshotTransfer;
+
+        @Override
+        public boolean apply(SnapshotBlock block) {
+          try {
+            if (snapshotTransfer == null) {
+              snapshotTransfer = new S3SnapshotTransfer();
+            }
+            return snapshotTransfer.deleteBlock(block.getBucketName(), block.getBlockHash());
+          } catch (SnapshotTransferException e) {
+            return false;
+          }
+        }
+      });
+      if (deleted > 0) {
+        LOG.info("Deleted " + deleted + " unreferenced snapshot blocks from objectstorage");
+      }
+    } catch (Exception e) {
+      LOG.debug("Error deleting unreferenced snapshot blocks " + e);
+    }
+  }
+}
@@ -0,0 +1,126 @@
+/*************************************************************************
+ * Copyright 2009-2015 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.blockstorage;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Manifest of an incremental snapshot, the content hash of each fixed size block of the volume in order.
+ *
+ * Blocks are stored once per bucket as content addressed objects and shared by all snapshots that contain them, blocks of zeros are not stored.
+ * Each manifest lists every block of its snapshot, so a volume is restored from a single manifest and snapshots can be deleted in any order. The
+ * manifest is stored as the snapshot object, a header line, a "blockSize size" line and one line per block.
+ */
+final class SnapshotBlockManifest {
+
+  static final String ZERO_BLOCK = "0";
+
+  private static final String HEADER = "snapshot-block-manifest 1";
+
+  private final int blockSize;
+  private final List<String> blockHashes = new ArrayList<String>();
+  private long size;
+
+  SnapshotBlockManifest(int blockSize) {
+    this.blockSize = blockSize;
+  }
+
+  void add(String blockHash, int length) {
+    blockHashes.add(blockHash);
+    size += length;
+  }
+
+  int getBlockSize() {
+    return blockSize;
+  }
+
+  long getSize() {
+    return size;
+  }
+
+  int getBlockCount() {
+    return blockHashes.size();
+  }
+
+  String getBlockHash(int block) {
+    return blockHashes.get(block);
+  }
+
+  int getBlockLength(int block) {
+    return (int) Math.min(blockSize, size - (long) block * blockSize);
+  }
+
+  /**
+   * @return The hashes of the stored blocks of the snapshot, each once
+   */
+  Set<String> getStoredBlockHashes() {
+    Set<String> hashes = new LinkedHashSet<String>(blockHashes);
+    hashes.remove(ZERO_BLOCK);
+    return hashes;
+  }
+
+  byte[] toBytes() {
+    StringBuilder sb = new StringBuilder(HEADER).append('\n');
+    sb.append(blockSize).append(' ').append(size).append('\n');
+    for (String blockHash : blockHashes) {
+      sb.append(blockHash).append('\n');
+    }
+    return sb.toString().getBytes(StandardCharsets.US_ASCII);
+  }
+
+  static SnapshotBlockManifest parse(InputStream in) throws IOException {
+    BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII));
+    if (!HEADER.equals(reader.readLine())) {
+      throw new IOException("Unsupported snapshot block manifest");
+    }
+    String line = reader.readLine();
+    String[] sizes = line == null ? new String[0] : line.split(" ");
+    if (sizes.length != 2) {
+      throw new IOException("Invalid snapshot block manifest sizes: " + line);
+    }
+    SnapshotBlockManifest manifest;
+    long size;
+    try {
+      manifest = new SnapshotBlockManifest(Integer.parseInt(sizes[0]));
+      size = Long.parseLong(sizes[1]);
+    } catch (NumberFormatException e) {
+      throw new IOException("Invalid snapshot block manifest sizes: " + line, e);
+    }
+    while ((line = reader.readLine()) != null) {
+      if (!line.isEmpty()) {
+        manifest.blockHashes.add(line);
+      }
+    }
+    manifest.size = size;
+    long blocks = manifest.blockSize <= 0 ? -1 : (size + manifest.blockSize - 1) / manifest.blockSize;
+    if (blocks != manifest.blockHashes.size()) {
+      throw new IOException("Snapshot block manifest has " + manifest.blockHashes.size() + " blocks, expected " + blocks);
+    }
+    return manifest;
+  }
+}
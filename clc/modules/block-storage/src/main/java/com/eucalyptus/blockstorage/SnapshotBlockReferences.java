@@ -0,0 +1,184 @@
+/*************************************************************************
+ * Copyright 2009-2015 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.blockstorage;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.hibernate.LockMode;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+
+import com.eucalyptus.blockstorage.entities.SnapshotBlock;
+import com.eucalyptus.blockstorage.entities.SnapshotBlock.SnapshotBlockState;
+import com.eucalyptus.entities.Entities;
+import com.eucalyptus.entities.TransactionResource;
+import com.eucalyptus.util.EucalyptusCloudException;
+import com.google.common.base.Predicate;
+import com.google.common.collect.Iterables;
+
+/**
+ * Reference counting for the content addressed blocks of incremental snapshots.
+ *
+ * A snapshot references each distinct block in its manifest once. A block that is not referenced is deleted by {@link #collect}, which first
+ * commits a deleting mark on the row and then deletes the block under the row lock before removing the row. A snapshot never references a block
+ * that is marked, it uploads the block again, so a failure part way through deleting can only leak a block in objectstorage, never leave a row
+ * for a block that is gone.
+ */
+public class SnapshotBlockReferences {
+
+  private static final Logger LOG = Logger.getLogger(SnapshotBlockReferences.class);
+
+  private static final int BATCH_SIZE = 100;
+
+  /**
+   * Add a reference to a block that is already stored.
+   *
+   * @return true if the block was referenced, false if it is not stored and must be uploaded
+   */
+  public static boolean reference(String bucketName, String blockHash) throws EucalyptusCloudException {
+    try (TransactionResource tran = Entities.transactionFor(SnapshotBlock.class)) {
+      SnapshotBlock block = locked(bucketName, blockHash);
+      if (block == null) {
+        return false;
+      } else if (!block.isStored()) {
+        if (block.getState() == SnapshotBlockState.deleting) {
+          // the block may already be deleted, cancel the deletion and upload it again
+          block.setState(SnapshotBlockState.uploading);
+          tran.commit();
+        }
+        return false;
+      }
+      block.setReferenceCount(block.getReferenceCount() + 1);
+      tran.commit();
+      return true;
+    } catch (Exception e) {
+      throw new EucalyptusCloudException("Failed to reference snapshot block " + blockHash + " in bucket " + bucketName, e);
+    }
+  }
+
+  /**
+   * Record a block that was uploaded, with one reference.
+   */
+  public static void uploaded(String bucketName, String blockHash, long compressedSize) throws EucalyptusCloudException {
+    try (TransactionResource tran = Entities.transactionFor(SnapshotBlock.class)) {
+      SnapshotBlock block = locked(bucketName, blockHash);
+      if (block == null) {
+        Entities.persist(new SnapshotBlock(bucketName, blockHash, compressedSize));
+      } else if (block.getState() == SnapshotBlockState.deleting) {
+        // the upload may have raced the deletion, fails below as the block cannot be referenced
+        throw new IllegalStateException("Snapshot block " + blockHash + " is being deleted");
+      } else { // uploaded again or by another snapshot at the same time
+        block.setState(SnapshotBlockState.stored);
+        block.setReferenceCount(block.getReferenceCount() + 1);
+      }
+      tran.commit();
+    } catch (Exception e) {
+      // a concurrent insert of the same block fails the unique constraint, the block is stored so reference it
+      if (!reference(bucketName, blockHash)) {
+        throw new EucalyptusCloudException("Failed to record snapshot block " + blockHash + " in bucket " + bucketName, e);
+      }
+    }
+  }
+
+  /**
+   * Remove one reference to each of the given blocks.
+   */
+  public static void release(String bucketName, Collection<String> blockHashes) throws EucalyptusCloudException {
+    for (List<String> batch : Iterables.partition(blockHashes, BATCH_SIZE)) {
+      try (TransactionResource tran = Entities.transactionFor(SnapshotBlock.class)) {
+        for (String blockHash : batch) {
+          SnapshotBlock block = locked(bucketName, blockHash);
+          if (block != null && block.getReferenceCount() > 0) {
+            block.setReferenceCount(block.getReferenceCount() - 1);
+          }
+        }
+        tran.commit();
+      } catch (Exception e) {
+        throw new EucalyptusCloudException("Failed to release snapshot blocks in bucket " + bucketName, e);
+      }
+    }
+  }
+
+  /**
+   * Delete blocks that have not been referenced for at least the grace period.
+   *
+   * @param deleter Deletes the block from objectstorage, returns false if the block could not be deleted
+   * @return The number of blocks deleted
+   */
+  public static int collect(long gracePeriodMillis, int maxBlocks, Predicate<SnapshotBlock> deleter) {
+    Date unreferencedBefore = new Date(System.currentTimeMillis() - gracePeriodMillis);
+    List<Object[]> candidates;
+    try (TransactionResource tran = Entities.transactionFor(SnapshotBlock.class)) {
+      @SuppressWarnings("unchecked")
+      List<Object[]> results =
+          Entities.createCriteria(SnapshotBlock.class).add(Restrictions.eq("referenceCount", 0))
+              .add(Restrictions.lt("lastUpdateTimestamp", unreferencedBefore))
+              .setProjection(Projections.projectionList().add(Projections.property("bucketName")).add(Projections.property("blockHash")))
+              .setMaxResults(maxBlocks).setReadOnly(true).list();
+      candidates = results;
+    }
+
+    int deleted = 0;
+    for (Object[] candidate : candidates) {
+      String bucketName = (String) candidate[0];
+      String blockHash = (String) candidate[1];
+      if (!markDeleting(bucketName, blockHash, unreferencedBefore)) {
+        continue;
+      }
+      // delete under the row lock so the mark cannot be cancelled while deleting, if this fails the row stays marked
+      try (TransactionResource tran = Entities.transactionFor(SnapshotBlock.class)) {
+        SnapshotBlock block = locked(bucketName, blockHash);
+        if (block != null && block.getState() == SnapshotBlockState.deleting && block.getReferenceCount() == 0 && deleter.apply(block)) {
+          Entities.delete(block);
+          tran.commit();
+          deleted++;
+        }
+      } catch (Exception e) {
+        LOG.debug("Failed to delete snapshot block " + blockHash + " in bucket " + bucketName + ": " + e.getMessage());
+      }
+    }
+    return deleted;
+  }
+
+  /**
+   * Commit the deleting mark for a block that is still unreferenced.
+   */
+  private static boolean markDeleting(String bucketName, String blockHash, Date unreferencedBefore) {
+    try (TransactionResource tran = Entities.transactionFor(SnapshotBlock.class)) {
+      SnapshotBlock block = locked(bucketName, blockHash);
+      if (block != null && block.getReferenceCount() == 0 && block.getLastUpdateTimestamp().before(unreferencedBefore)) {
+        block.setState(SnapshotBlockState.deleting);
+        tran.commit();
+        return true;
+      }
+    } catch (Exception e) {
+      LOG.debug("Failed to mark snapshot block " + blockHash + " in bucket " + bucketName + " for deletion: " + e.getMessage());
+    }
+    return false;
+  }
+
+  private static SnapshotBlock locked(String bucketName, String blockHash) {
+    return (SnapshotBlock) Entities.createCriteria(SnapshotBlock.class).add(Restrictions.eq("bucketName", bucketName))
+        .add(Restrictions.eq("blockHash", blockHash)).setLockMode(LockMode.UPGRADE).uniqueResult();
+  }
+}
@@ -0,0 +1,93 @@
+/*************************************************************************
+ * Copyright 2009-2015 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.blockstorage;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.eucalyptus.blockstorage.GzipBlockCompressor.ExposedByteArrayOutputStream;
+
+/**
+ * Memory budget for snapshot parts buffered for upload, shared by all uploads.
+ *
+ * Each buffer reserves the capacity of a full part when it is allocated and allocation waits while the reservations would exceed the budget, so
+ * the memory held by queued parts is bounded however many uploads run concurrently. One buffer is always allowed so that a part larger than the
+ * budget can still be uploaded. The buffer itself starts small and only grows as compressed data is written to it, so a small snapshot does not
+ * allocate a full part.
+ */
+final class SnapshotPartBuffers {
+
+  private long budget;
+  private long reserved;
+
+  SnapshotPartBuffers(long budget) {
+    this.budget = budget;
+  }
+
+  synchronized void setBudget(long budget) {
+    if (this.budget != budget) {
+      this.budget = budget;
+      notifyAll();
+    }
+  }
+
+  synchronized long getReserved() {
+    return reserved;
+  }
+
+  /**
+   * Allocate a buffer, blocking until its capacity fits in the budget.
+   *
+   * @param initialSize Initial size of the buffer in bytes
+   * @param capacity Size in bytes of a full part, reserved from the budget until the buffer is released
+   */
+  PartBuffer allocate(int initialSize, int capacity) throws InterruptedException {
+    synchronized (this) {
+      while (reserved > 0 && reserved + capacity > budget) {
+        wait();
+      }
+      reserved += capacity;
+    }
+    return new PartBuffer(Math.min(initialSize, capacity), capacity);
+  }
+
+  private synchronized void release(int capacity) {
+    reserved -= capacity;
+    notifyAll();
+  }
+
+  /**
+   * Part buffer holding a reservation until it is released. Releasing is idempotent.
+   */
+  final class PartBuffer extends ExposedByteArrayOutputStream {
+    private final int capacity;
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    private PartBuffer(int initialSize, int capacity) {
+      super(initialSize, capacity);
+      this.capacity = capacity;
+    }
+
+    void release() {
+      if (released.compareAndSet(false, true)) {
+        SnapshotPartBuffers.this.release(capacity);
+      }
+    }
+  }
+}
@@ -0,0 +1,106 @@
+/*************************************************************************
+ * Copyright 2009-2015 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.blockstorage;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compressed and uncompressed sizes of the parts of a multipart snapshot upload.
+ *
+ * Each part of an upload is a sequence of complete gzip members, so a part can be fetched with a ranged get and decompressed independently of
+ * the others given its compressed offset in the object and its uncompressed offset in the snapshot. The layout is stored alongside the snapshot
+ * object as a small text object with a header line followed by one "compressedSize uncompressedSize" line per part.
+ */
+final class SnapshotPartLayout {
+
+  private static final String HEADER = "snapshot-part-layout 1";
+
+  private final List<long[]> parts = new ArrayList<long[]>();
+
+  void add(long compressedSize, long uncompressedSize) {
+    parts.add(new long[] {compressedSize, uncompressedSize});
+  }
+
+  int getPartCount() {
+    return parts.size();
+  }
+
+  long getCompressedSize(int part) {
+    return parts.get(part)[0];
+  }
+
+  long getUncompressedSize(int part) {
+    return parts.get(part)[1];
+  }
+
+  long getCompressedOffset(int part) {
+    long offset = 0;
+    for (int i = 0; i < part; i++) {
+      offset += parts.get(i)[0];
+    }
+    return offset;
+  }
+
+  long getUncompressedOffset(int part) {
+    long offset = 0;
+    for (int i = 0; i < part; i++) {
+      offset += parts.get(i)[1];
+    }
+    return offset;
+  }
+
+  byte[] toBytes() {
+    StringBuilder sb = new StringBuilder(HEADER).append('\n');
+    for (long[] part : parts) {
+      sb.append(part[0]).append(' ').append(part[1]).append('\n');
+    }
+    return sb.toString().getBytes(StandardCharsets.US_ASCII);
+  }
+
+  static SnapshotPartLayout parse(InputStream in) throws IOException {
+    BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII));
+    if (!HEADER.equals(reader.readLine())) {
+      throw new IOException("Unsupported snapshot part layout");
+    }
+    SnapshotPartLayout layout = new SnapshotPartLayout();
+    String line;
+    while ((line = reader.readLine()) != null) {
+      if (line.isEmpty()) {
+        continue;
+      }
+      String[] sizes = line.split(" ");
+      if (sizes.length != 2) {
+        throw new IOException("Invalid snapshot part layout entry: " + line);
+      }
+      try {
+        layout.add(Long.parseLong(sizes[0]), Long.parseLong(sizes[1]));
+      } catch (NumberFormatException e) {
+        throw new IOException("Invalid snapshot part layout entry: " + line, e);
+      }
+    }
+    return layout;
+  }
+}
@@ -0,0 +1,81 @@
+/*************************************************************************
+ * Copyright 2009-2015 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+
+package com.eucalyptus.blockstorage;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per transfer counters for the stages of a snapshot transfer.
+ *
+ * Each stage records the bytes it processed and the time it was busy, so throughput (MB/s) is per thread for stages that run on more than one
+ * thread (e.g. compression).
+ */
+public class SnapshotTransferStatistics {
+
+  public enum Stage {
+    Read, Hash, Compress, Upload, Download, Write
+  }
+
+  private static final class StageCounters {
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong nanos = new AtomicLong();
+  }
+
+  private final Map<Stage, StageCounters> stageCounters = new EnumMap<Stage, StageCounters>(Stage.class);
+
+  public SnapshotTransferStatistics() {
+    for (Stage stage : Stage.values()) {
+      stageCounters.put(stage, new StageCounters());
+    }
+  }
+
+  public void record(Stage stage, long bytes, long nanos) {
+    StageCounters counters = stageCounters.get(stage);
+    counters.bytes.addAndGet(bytes);
+    counters.nanos.addAndGet(nanos);
+  }
+
+  public long getBytes(Stage stage) {
+    return stageCounters.get(stage).bytes.get();
+  }
+
+  public double getMegabytesPerSecond(Stage stage) {
+    StageCounters counters = stageCounters.get(stage);
+    long nanos = counters.nanos.get();
+    return nanos == 0 ? 0.0 : (counters.bytes.get() / (1024.0 * 1024.0)) / ((double) nanos / TimeUnit.SECONDS.toNanos(1));
+  }
+
+  public String describe() {
+    StringBuilder sb = new StringBuilder();
+    for (Stage stage : Stage.values()) {
+      if (getBytes(stage) > 0) {
+        if (sb.length() > 0) {
+          sb.append(' ');
+        }
+        sb.append(stage.name().toLowerCase()).append('=').append(String.format("%.1fMB/s", getMegabytesPerSecond(stage)));
+      }
+    }
+    return sb.toString();
+  }
+}
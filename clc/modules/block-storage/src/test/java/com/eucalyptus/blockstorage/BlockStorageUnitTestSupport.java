@@ -47,6 +47,7 @@ import com.eucalyptus.blockstorage.entities.DASInfo;
 import com.eucalyptus.blockstorage.entities.DirectStorageInfo;
 import com.eucalyptus.blockstorage.entities.ISCSIMetaInfo;
 import com.eucalyptus.blockstorage.entities.ISCSIVolumeInfo;
+import com.eucalyptus.blockstorage.entities.SnapshotBlock;
 import com.eucalyptus.blockstorage.entities.SnapshotInfo;
 import com.eucalyptus.blockstorage.entities.SnapshotPart;
 import com.eucalyptus.blockstorage.entities.SnapshotTransferConfiguration;
@@ -92,7 +93,7 @@ public class BlockStorageUnitTestSupport {
             .addAnnotatedClass(ISCSIVolumeInfo.class).addAnnotatedClass(SnapshotInfo.class).addAnnotatedClass(SnapshotPart.class)
             .addAnnotatedClass(SnapshotTransferConfiguration.class).addAnnotatedClass(SnapshotUploadInfo.class).addAnnotatedClass(StorageInfo.class)
             .addAnnotatedClass(VolumeExportRecord.class).addAnnotatedClass(VolumeInfo.class).addAnnotatedClass(VolumeToken.class)
-            .addAnnotatedClass(SANVolumeInfo.class).addAnnotatedClass(SANInfo.class);
+            .addAnnotatedClass(SANVolumeInfo.class).addAnnotatedClass(SANInfo.class).addAnnotatedClass(SnapshotBlock.class);
 
     PersistenceContexts.registerPersistenceContext("eucalyptus_storage", config);
   }
@@ -220,6 +221,15 @@ public class BlockStorageUnitTestSupport {
     }
   }
 
+  public static void flushSnapshotBlocks() {
+    try (TransactionResource tran = Entities.transactionFor(SnapshotBlock.class)) {
+      Entities.deleteAll(SnapshotBlock.class);
+      tran.commit();
+    } catch (Throwable t) {
+      throw new RuntimeException("error deleting remaining snapshot blocks - " + t.getMessage(), t);
+    }
+  }
+
   public static void flushBlockStorageEntities() {
     flushSnapshotInfos();
     flushVolumeInfos();
@@ -227,6 +237,7 @@ public class BlockStorageUnitTestSupport {
     flushISCSIMetaInfos();
     flushSANVolumeInfos();
     flushSANInfos();
+    flushSnapshotBlocks();
   }
 
   public static S3SnapshotTransfer createMockS3SnapshotTransfer() {
@@ -0,0 +1,136 @@
+/*************************************************************************
+ * Copyright 2009-2015 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.blockstorage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.eucalyptus.blockstorage.GzipBlockCompressor.CompressedBlock;
+import com.eucalyptus.blockstorage.SnapshotTransferStatistics.Stage;
+
+public class GzipBlockCompressorTest {
+
+  private static ExecutorService executor;
+
+  @BeforeClass
+  public static void setUp() {
+    executor = Executors.newFixedThreadPool(4);
+  }
+
+  @AfterClass
+  public static void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    byte[] data = new byte[1024 * 1024 + 123];
+    Random random = new Random(42);
+    random.nextBytes(data);
+    for (int i = 0; i < data.length / 2; i++) {
+      data[i] = (byte) (i % 7); // compressible half
+    }
+
+    SnapshotTransferStatistics statistics = new SnapshotTransferStatistics();
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    int blocks = 0;
+    long uncompressed = 0;
+    try (GzipBlockCompressor compressor = new GzipBlockCompressor(new ByteArrayInputStream(data), 64 * 1024, 3, executor, statistics)) {
+      CompressedBlock block;
+      while ((block = compressor.next()) != null) {
+        block.writeTo(compressed);
+        uncompressed += block.getUncompressedLength();
+        blocks++;
+      }
+      assertNull("Next after end of input", compressor.next());
+    }
+
+    assertEquals("Block count", 17, blocks);
+    assertEquals("Uncompressed length", data.length, uncompressed);
+    assertEquals("Read bytes", data.length, statistics.getBytes(Stage.Read));
+    assertEquals("Compressed bytes", data.length, statistics.getBytes(Stage.Compress));
+    assertArrayEquals("Round trip data", data, gunzip(compressed.toByteArray()));
+  }
+
+  @Test
+  public void testEmptyInput() throws Exception {
+    try (GzipBlockCompressor compressor =
+        new GzipBlockCompressor(new ByteArrayInputStream(new byte[0]), 1024, 2, executor, new SnapshotTransferStatistics())) {
+      assertNull("No blocks for empty input", compressor.next());
+    }
+  }
+
+  @Test
+  public void testReadAllMembersWithoutAvailableBytes() throws Exception {
+    byte[] data = new byte[10 * 1024];
+    new Random(7).nextBytes(data);
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (GzipBlockCompressor compressor =
+        new GzipBlockCompressor(new ByteArrayInputStream(data), 1024, 2, executor, new SnapshotTransferStatistics())) {
+      CompressedBlock block;
+      while ((block = compressor.next()) != null) {
+        block.writeTo(compressed);
+      }
+    }
+
+    // Network streams may report no available bytes at a member boundary
+    InputStream source = new FilterInputStream(new ByteArrayInputStream(compressed.toByteArray())) {
+      @Override
+      public int available() {
+        return 0;
+      }
+    };
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (InputStream in = new MultiMemberGzipInputStream(source, 512)) {
+      byte[] buffer = new byte[100];
+      int len;
+      while ((len = in.read(buffer)) > 0) {
+        out.write(buffer, 0, len);
+      }
+    }
+    assertArrayEquals("Round trip data", data, out.toByteArray());
+  }
+
+  private static byte[] gunzip(byte[] compressed) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+      byte[] buffer = new byte[8192];
+      int len;
+      while ((len = in.read(buffer)) > 0) {
+        out.write(buffer, 0, len);
+      }
+    }
+    return out.toByteArray();
+  }
+}
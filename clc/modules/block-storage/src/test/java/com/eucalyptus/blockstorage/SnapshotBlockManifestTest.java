@@ -0,0 +1,55 @@
+/*************************************************************************
+ * Copyright 2009-2015 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.blockstorage;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class SnapshotBlockManifestTest {
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    byte[] data = new byte[10];
+    data[3] = 1;
+    SnapshotBlockManifest manifest = new SnapshotBlockManifest(10);
+    manifest.add(BlockDigester.hash(data, 10), 10);
+    manifest.add(BlockDigester.hash(new byte[10], 10), 10);
+    manifest.add(BlockDigester.hash(data, 10), 10);
+    manifest.add(BlockDigester.hash(data, 4), 4);
+
+    SnapshotBlockManifest parsed = SnapshotBlockManifest.parse(new ByteArrayInputStream(manifest.toBytes()));
+    assertEquals("Size", 34L, parsed.getSize());
+    assertEquals("Block count", 4, parsed.getBlockCount());
+    assertEquals("Zero block", SnapshotBlockManifest.ZERO_BLOCK, parsed.getBlockHash(1));
+    assertEquals("Last block length", 4, parsed.getBlockLength(3));
+    assertEquals("Stored blocks", Arrays.asList(BlockDigester.hash(data, 10), BlockDigester.hash(data, 4)),
+        Arrays.asList(parsed.getStoredBlockHashes().toArray()));
+  }
+
+  @Test(expected = IOException.class)
+  public void testMissingBlocks() throws Exception {
+    SnapshotBlockManifest.parse(new ByteArrayInputStream("snapshot-block-manifest 1\n10 25\nabcd\n".getBytes("US-ASCII")));
+  }
+}
@@ -0,0 +1,132 @@
+/*************************************************************************
+ * Copyright 2009-2015 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.blockstorage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.eucalyptus.blockstorage.entities.SnapshotBlock;
+import com.eucalyptus.blockstorage.entities.SnapshotBlock.SnapshotBlockState;
+import com.eucalyptus.entities.Entities;
+import com.eucalyptus.entities.TransactionResource;
+import com.google.common.base.Predicate;
+import com.google.common.collect.Lists;
+
+public class SnapshotBlockReferencesTest {
+
+  private static final String BUCKET = "snapshots";
+
+  @BeforeClass
+  public static void setupClass() throws Exception {
+    BlockStorageUnitTestSupport.setupBlockStoragePersistenceContext();
+  }
+
+  @After
+  public void teardown() {
+    BlockStorageUnitTestSupport.flushSnapshotBlocks();
+  }
+
+  @AfterClass
+  public static void teardownClass() {
+    BlockStorageUnitTestSupport.tearDownBlockStoragePersistenceContext();
+  }
+
+  @Test
+  public void testReferenceAndCollect() throws Exception {
+    assertFalse("Reference to a block that is not stored", SnapshotBlockReferences.reference(BUCKET, "aaaa"));
+    SnapshotBlockReferences.uploaded(BUCKET, "aaaa", 100L);
+    SnapshotBlockReferences.uploaded(BUCKET, "bbbb", 100L);
+    assertTrue("Reference to a stored block", SnapshotBlockReferences.reference(BUCKET, "aaaa"));
+    assertEquals("Reference count", 2, (int) lookup("aaaa").getReferenceCount());
+
+    SnapshotBlockReferences.release(BUCKET, Lists.newArrayList("aaaa", "bbbb"));
+    assertEquals("Reference count after release", 1, (int) lookup("aaaa").getReferenceCount());
+    assertEquals("Reference count after release", 0, (int) lookup("bbbb").getReferenceCount());
+
+    Thread.sleep(10);
+    final List<String> deletedHashes = Lists.newArrayList();
+    int deleted = SnapshotBlockReferences.collect(0L, 100, new Predicate<SnapshotBlock>() {
+      @Override
+      public boolean apply(SnapshotBlock block) {
+        deletedHashes.add(block.getBlockHash());
+        return true;
+      }
+    });
+    assertEquals("Blocks deleted", 1, deleted);
+    assertEquals("Deleted blocks", Collections.singletonList("bbbb"), deletedHashes);
+    assertFalse("Reference to a deleted block", SnapshotBlockReferences.reference(BUCKET, "bbbb"));
+    assertTrue("Reference to a block still referenced", SnapshotBlockReferences.reference(BUCKET, "aaaa"));
+  }
+
+  @Test
+  public void testCollectKeepsBlocksInGracePeriod() throws Exception {
+    SnapshotBlockReferences.uploaded(BUCKET, "cccc", 100L);
+    SnapshotBlockReferences.release(BUCKET, Collections.singleton("cccc"));
+    int deleted = SnapshotBlockReferences.collect(60000L, 100, new Predicate<SnapshotBlock>() {
+      @Override
+      public boolean apply(SnapshotBlock block) {
+        return true;
+      }
+    });
+    assertEquals("Blocks deleted", 0, deleted);
+    assertTrue("Reference to a released block in its grace period", SnapshotBlockReferences.reference(BUCKET, "cccc"));
+  }
+
+  @Test
+  public void testCollectFailureAfterDelete() throws Exception {
+    SnapshotBlockReferences.uploaded(BUCKET, "dddd", 100L);
+    SnapshotBlockReferences.release(BUCKET, Collections.singleton("dddd"));
+    Thread.sleep(10);
+    final List<String> deletedHashes = Lists.newArrayList();
+    int deleted = SnapshotBlockReferences.collect(0L, 100, new Predicate<SnapshotBlock>() {
+      @Override
+      public boolean apply(SnapshotBlock block) {
+        deletedHashes.add(block.getBlockHash());
+        throw new RuntimeException("Commit failed after deleting block");
+      }
+    });
+    assertEquals("Blocks deleted", 0, deleted);
+    assertEquals("Deleted blocks", Collections.singletonList("dddd"), deletedHashes);
+    assertEquals("State after failed delete", SnapshotBlockState.deleting, lookup("dddd").getState());
+
+    // the block may be gone so it must be uploaded again, not referenced
+    assertFalse("Reference to a block being deleted", SnapshotBlockReferences.reference(BUCKET, "dddd"));
+    assertEquals("State after reference", SnapshotBlockState.uploading, lookup("dddd").getState());
+    SnapshotBlockReferences.uploaded(BUCKET, "dddd", 100L);
+    assertEquals("State after upload", SnapshotBlockState.stored, lookup("dddd").getState());
+    assertEquals("Reference count after upload", 1, (int) lookup("dddd").getReferenceCount());
+    assertTrue("Reference to an uploaded block", SnapshotBlockReferences.reference(BUCKET, "dddd"));
+  }
+
+  private static SnapshotBlock lookup(String blockHash) throws Exception {
+    try (TransactionResource tran = Entities.transactionFor(SnapshotBlock.class)) {
+      return Entities.uniqueResult(new SnapshotBlock(BUCKET, blockHash));
+    }
+  }
+}
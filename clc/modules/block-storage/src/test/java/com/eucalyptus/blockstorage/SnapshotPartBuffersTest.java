@@ -0,0 +1,106 @@
+/*************************************************************************
+ * Copyright 2009-2015 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.blockstorage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+import com.eucalyptus.blockstorage.SnapshotPartBuffers.PartBuffer;
+
+public class SnapshotPartBuffersTest {
+
+  private static final int BLOCK_SIZE = 1024 * 1024;
+  private static final int PART_CAPACITY = 100 * 1024 * 1024 + 2 * BLOCK_SIZE;
+
+  @Test
+  public void testSmallSnapshotDoesNotAllocatePart() throws Exception {
+    SnapshotPartBuffers buffers = new SnapshotPartBuffers(512L * 1024 * 1024);
+    PartBuffer buffer = buffers.allocate(BLOCK_SIZE, PART_CAPACITY);
+    buffer.write(new byte[10 * 1024], 0, 10 * 1024);
+    assertEquals(10 * 1024, buffer.size());
+    assertEquals(BLOCK_SIZE, buffer.buffer().length);
+    assertEquals(PART_CAPACITY, buffers.getReserved());
+
+    buffer.release();
+    buffer.release();
+    assertEquals(0, buffers.getReserved());
+  }
+
+  @Test
+  public void testGrowthCappedAtCapacity() throws Exception {
+    SnapshotPartBuffers buffers = new SnapshotPartBuffers(Long.MAX_VALUE);
+    PartBuffer buffer = buffers.allocate(64, 1000);
+    buffer.write(new byte[600], 0, 600);
+    assertEquals(600, buffer.buffer().length);
+    buffer.write(new byte[300], 0, 300);
+    assertEquals(1000, buffer.buffer().length);
+    buffer.write(new byte[200], 0, 200);
+    assertEquals(1100, buffer.buffer().length);
+    assertEquals(1100, buffer.size());
+  }
+
+  @Test
+  public void testAllocateWaitsForBudget() throws Exception {
+    final SnapshotPartBuffers buffers = new SnapshotPartBuffers(2L * PART_CAPACITY);
+    PartBuffer first = buffers.allocate(BLOCK_SIZE, PART_CAPACITY);
+    buffers.allocate(BLOCK_SIZE, PART_CAPACITY);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<PartBuffer> third = executor.submit(new Callable<PartBuffer>() {
+        @Override
+        public PartBuffer call() throws Exception {
+          return buffers.allocate(BLOCK_SIZE, PART_CAPACITY);
+        }
+      });
+      try {
+        third.get(200, TimeUnit.MILLISECONDS);
+        fail("Expected allocation over budget to wait");
+      } catch (TimeoutException e) {
+        // Expected
+      }
+      assertFalse(third.isDone());
+
+      first.release();
+      assertEquals(BLOCK_SIZE, third.get(5, TimeUnit.SECONDS).buffer().length);
+      assertEquals(2L * PART_CAPACITY, buffers.getReserved());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testOnePartAlwaysAllowed() throws Exception {
+    SnapshotPartBuffers buffers = new SnapshotPartBuffers(BLOCK_SIZE);
+    PartBuffer buffer = buffers.allocate(BLOCK_SIZE, PART_CAPACITY);
+    assertEquals(PART_CAPACITY, buffers.getReserved());
+    buffer.release();
+    assertEquals(0, buffers.getReserved());
+  }
+}
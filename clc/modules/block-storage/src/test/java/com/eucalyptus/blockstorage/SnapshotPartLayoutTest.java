@@ -0,0 +1,51 @@
+/*************************************************************************
+ * Copyright 2009-2015 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.blockstorage;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+public class SnapshotPartLayoutTest {
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    SnapshotPartLayout layout = new SnapshotPartLayout();
+    layout.add(100L, 1000L);
+    layout.add(200L, 1500L);
+    layout.add(50L, 300L);
+
+    SnapshotPartLayout parsed = SnapshotPartLayout.parse(new ByteArrayInputStream(layout.toBytes()));
+    assertEquals("Part count", 3, parsed.getPartCount());
+    assertEquals("Compressed size", 200L, parsed.getCompressedSize(1));
+    assertEquals("Uncompressed size", 300L, parsed.getUncompressedSize(2));
+    assertEquals("First compressed offset", 0L, parsed.getCompressedOffset(0));
+    assertEquals("Compressed offset", 300L, parsed.getCompressedOffset(2));
+    assertEquals("Uncompressed offset", 2500L, parsed.getUncompressedOffset(2));
+  }
+
+  @Test(expected = IOException.class)
+  public void testUnknownFormat() throws Exception {
+    SnapshotPartLayout.parse(new ByteArrayInputStream("100 1000\n".getBytes("US-ASCII")));
+  }
+}
@@ -213,7 +213,9 @@ public class CloudWatchBackendService {
       if (metricType == MetricType.System && !privileged) {
         throw new InvalidParameterValueException("The value AWS/ for parameter Namespace is invalid.");
       }
-      MetricDataQueue.getInstance().insertMetricData(ownerFullName.getAccountNumber(), namespace, metricData, metricType);
+      if (!MetricDataQueue.getInstance().insertMetricData(ownerFullName.getAccountNumber(), namespace, metricData, metricType)) {
+        throw new ThrottlingException("Rate exceeded");
+      }
     } catch (Exception ex) {
       handleException(ex);
     }
@@ -38,6 +38,7 @@
 package com.eucalyptus.cloudwatch.domain.alarms;
 
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 
 import javax.persistence.EntityTransaction;
@@ -48,9 +49,13 @@ import org.hibernate.Criteria;
 import com.eucalyptus.bootstrap.Bootstrap;
 import com.eucalyptus.cloudwatch.backend.CloudWatchBackendService;
 import com.eucalyptus.cloudwatch.common.CloudWatchBackend;
+import com.eucalyptus.cloudwatch.domain.metricdata.MetricManager;
+import com.eucalyptus.cloudwatch.domain.metricdata.MetricStatisticsCache;
+import com.eucalyptus.cloudwatch.domain.metricdata.MetricStatisticsCache.SeriesKey;
 import com.eucalyptus.component.Topology;
 import com.eucalyptus.entities.Entities;
 import com.eucalyptus.records.Logs;
+import com.google.common.collect.Sets;
 
 public class AlarmStateEvaluationDispatcher implements Runnable {
   private static final Logger LOG = Logger.getLogger(AlarmStateEvaluationDispatcher.class);
@@ -69,11 +74,20 @@ public class AlarmStateEvaluationDispatcher implements Runnable {
       try {
         Criteria criteria = Entities.createCriteria(AlarmEntity.class);
         List<AlarmEntity> results = (List<AlarmEntity>) criteria.list();
+        Set<SeriesKey> watchedSeries = Sets.newHashSet();
+        for (AlarmEntity alarmEntity: results) {
+          watchedSeries.add(new SeriesKey(alarmEntity.getAccountId(), alarmEntity.getNamespace(),
+              alarmEntity.getMetricName(), alarmEntity.getMetricType(), MetricManager.hash(alarmEntity.getDimensionMap())));
+        }
+        MetricStatisticsCache.watch(watchedSeries);
         for (AlarmEntity alarmEntity: results) {
           LOG.debug("Submitting job for " + alarmEntity.getAlarmName());
           executorService.submit(new AlarmStateEvaluationWorker(alarmEntity.getAccountId(), alarmEntity.getAlarmName()));
         }
         db.commit();
+        LOG.debug("Alarm metric cache series=" + MetricStatisticsCache.size() +
+            " hits=" + MetricStatisticsCache.getHits() + " misses=" + MetricStatisticsCache.getMisses() +
+            " hitRatio=" + MetricStatisticsCache.getHitRatio());
       } catch (RuntimeException ex) {
         Logs.extreme().error(ex, ex); // TODO the exception will be swallowed...
         throw ex;
@@ -26,7 +26,11 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -46,7 +50,10 @@ import com.eucalyptus.cloudwatch.domain.absolute.AbsoluteMetricHistory;
 import com.eucalyptus.cloudwatch.domain.absolute.AbsoluteMetricHelper.MetricDifferenceInfo;
 import com.eucalyptus.cloudwatch.domain.listmetrics.ListMetricManager;
 import com.eucalyptus.cloudwatch.domain.metricdata.MetricEntity.MetricType;
+import com.eucalyptus.cloudwatch.domain.metricdata.MetricDataQueueStatistics.Stage;
 import com.eucalyptus.cloudwatch.domain.metricdata.MetricEntity.Units;
+import com.eucalyptus.configurable.ConfigurableClass;
+import com.eucalyptus.configurable.ConfigurableField;
 import com.eucalyptus.entities.Entities;
 import com.eucalyptus.records.Logs;
 import com.google.common.base.Supplier;
@@ -55,13 +62,31 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
+@ConfigurableClass( root = "cloudwatch", description = "Parameters controlling cloud watch metric data ingestion")
 public class MetricDataQueue {
   private static final Logger LOG = Logger.getLogger(MetricDataQueue.class);
+
+  @ConfigurableField(initial = "100000", description = "Maximum number of queued metric data items before PutMetricData requests are throttled")
+  public static volatile int METRIC_DATA_QUEUE_CAPACITY = 100000;
+
+  @ConfigurableField(initial = "15", description = "Maximum number of seconds metric data is queued before it is persisted")
+  public static volatile int METRIC_DATA_FLUSH_INTERVAL_SECONDS = 15;
+
+  @ConfigurableField(initial = "15000", description = "Maximum number of metric data items persisted in one batch, a full batch is persisted immediately")
+  public static volatile int METRIC_DATA_BATCH_SIZE = 15000;
+
+  private static final int NUM_WORKER_BUCKETS = 4;
+
   final static LinkedBlockingQueue<MetricQueueItem> dataQueue = new LinkedBlockingQueue<MetricQueueItem>();
 
   private static final ScheduledExecutorService dataFlushTimer = Executors
       .newSingleThreadScheduledExecutor();
 
+  private static final ExecutorService dataFlushWorkers = Executors
+      .newFixedThreadPool(NUM_WORKER_BUCKETS);
+
+  private static long lastFlush = 0L;
+
   private static MetricDataQueue singleton = getInstance();
 
   public static MetricDataQueue getInstance() {
@@ -77,43 +102,135 @@ public class MetricDataQueue {
     dataQueue.offer(metricData);
   }
 
+  /**
+   * Runs every second, a flush happens when a full batch is queued or the
+   * flush interval has elapsed. Only the timer thread touches lastFlush.
+   */
   private static Runnable safeRunner = new Runnable() {
     @Override
     public void run() {
-      long before = System.currentTimeMillis();
       try {
-        List<MetricQueueItem> dataBatch = Lists.newArrayList();
-        dataQueue.drainTo(dataBatch, 15000);
-        LOG.debug("Timing:dataBatch.size()="+dataBatch.size());
-        long t1 = System.currentTimeMillis();
-        dataBatch = dealWithAbsoluteMetrics(dataBatch);
-        long t2 = System.currentTimeMillis();
-        LOG.debug("Timing:dataBatch.dealWithAbsoluteMetrics():time="+(t2-t1));
-        List<SimpleMetricEntity> simpleDataBatch = convertToSimpleDataBatch(dataBatch);
-        long t3 = System.currentTimeMillis();
-        LOG.debug("Timing:dataBatch.convertToSimpleDataBatch():time="+(t3-t2));
-        simpleDataBatch = aggregate(simpleDataBatch);
-        long t4 = System.currentTimeMillis();
-        LOG.debug("Timing:dataBatch.aggregate():time="+(t4-t3));
-        MetricManager.addMetricBatch(simpleDataBatch);
-        long t5 = System.currentTimeMillis();
-        LOG.debug("Timing:dataBatch.MetricManager.addMetricBatch():time="+(t5-t4));
-        ListMetricManager.addMetricBatch(simpleDataBatch);
-        long t6 = System.currentTimeMillis();
-        LOG.debug("Timing:ListMetricManager.addMetricBatch:time="+(t6-t5));
+        long now = System.currentTimeMillis();
+        int batchSize = Math.max(1, METRIC_DATA_BATCH_SIZE);
+        if (dataQueue.size() < batchSize &&
+            now - lastFlush < TimeUnit.SECONDS.toMillis(METRIC_DATA_FLUSH_INTERVAL_SECONDS)) {
+          return;
+        }
+        lastFlush = now;
+        do {
+          flush(batchSize);
+        } while (dataQueue.size() >= batchSize);
       } catch (Throwable ex) {
-        LOG.debug("error");
-        ex.printStackTrace();
         LOG.error(ex,ex);
-      } finally {
-        long after = System.currentTimeMillis();
-        LOG.debug("Timing:time="+(after-before));
       }
     }
   };
 
   static {
-    dataFlushTimer.scheduleAtFixedRate(safeRunner, 0, 1, TimeUnit.MINUTES);
+    dataFlushTimer.scheduleWithFixedDelay(safeRunner, 0, 1, TimeUnit.SECONDS);
+  }
+
+  private static void flush(int batchSize) {
+    long before = System.currentTimeMillis();
+    try {
+      List<MetricQueueItem> dataBatch = Lists.newArrayList();
+      dataQueue.drainTo(dataBatch, batchSize);
+      LOG.debug("Timing:dataBatch.size()="+dataBatch.size());
+      if (dataBatch.isEmpty()) return;
+      List<Future<List<SimpleMetricEntity>>> bucketResults = Lists.newArrayList();
+      for (final List<MetricQueueItem> bucket: partition(dataBatch, NUM_WORKER_BUCKETS)) {
+        if (bucket.isEmpty()) continue;
+        bucketResults.add(dataFlushWorkers.submit(new Callable<List<SimpleMetricEntity>>() {
+          @Override
+          public List<SimpleMetricEntity> call() throws Exception {
+            return processBucket(bucket);
+          }
+        }));
+      }
+      List<SimpleMetricEntity> simpleDataBatch = Lists.newArrayList();
+      for (Future<List<SimpleMetricEntity>> bucketResult: bucketResults) {
+        try {
+          simpleDataBatch.addAll(bucketResult.get());
+        } catch (ExecutionException ex) {
+          MetricDataQueueStatistics.failedBucket();
+          LOG.error(ex.getCause(), ex.getCause());
+        }
+      }
+      // List metrics are folded across dimension subsets shared by all buckets, so
+      // this stage runs once per flush to avoid concurrent inserts of the same row
+      long t1 = System.currentTimeMillis();
+      ListMetricManager.addMetricBatch(simpleDataBatch);
+      long t2 = System.currentTimeMillis();
+      MetricDataQueueStatistics.record(Stage.ListMetricPersist, simpleDataBatch.size(), t2-t1);
+      LOG.debug("Timing:ListMetricManager.addMetricBatch:time="+(t2-t1));
+      int rollups = SystemMetricRollup.flushClosedMinutes();
+      long t3 = System.currentTimeMillis();
+      MetricDataQueueStatistics.record(Stage.RollupPersist, rollups, t3-t2);
+      LOG.debug("Timing:SystemMetricRollup.flush:rows="+rollups+",time="+(t3-t2));
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    } catch (Throwable ex) {
+      LOG.error(ex,ex);
+    } finally {
+      long after = System.currentTimeMillis();
+      LOG.debug("Timing:time="+(after-before));
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Metric data pipeline statistics: " + MetricDataQueueStatistics.describe());
+      }
+    }
+  }
+
+  private static List<SimpleMetricEntity> processBucket(List<MetricQueueItem> dataBatch) {
+    int size = dataBatch.size();
+    long t1 = System.currentTimeMillis();
+    dataBatch = dealWithAbsoluteMetrics(dataBatch);
+    long t2 = System.currentTimeMillis();
+    MetricDataQueueStatistics.record(Stage.AbsoluteMetrics, size, t2-t1);
+    List<SimpleMetricEntity> simpleDataBatch = convertToSimpleDataBatch(dataBatch);
+    long t3 = System.currentTimeMillis();
+    MetricDataQueueStatistics.record(Stage.Convert, dataBatch.size(), t3-t2);
+    size = simpleDataBatch.size();
+    simpleDataBatch = aggregate(simpleDataBatch);
+    long t4 = System.currentTimeMillis();
+    MetricDataQueueStatistics.record(Stage.Aggregate, size, t4-t3);
+    MetricManager.addMetricBatch(simpleDataBatch);
+    long t5 = System.currentTimeMillis();
+    MetricDataQueueStatistics.record(Stage.MetricPersist, simpleDataBatch.size(), t5-t4);
+    LOG.debug("Timing:bucket.size()="+dataBatch.size()+",time="+(t5-t1));
+    return simpleDataBatch;
+  }
+
+  /**
+   * Items are routed by the instance or volume they describe (absolute metric
+   * history is kept per instance/volume) or else by their full dimension set,
+   * so points that aggregate together always land in the same bucket.
+   */
+  public static List<List<MetricQueueItem>> partition(List<MetricQueueItem> dataBatch, int numBuckets) {
+    List<List<MetricQueueItem>> buckets = Lists.newArrayListWithCapacity(numBuckets);
+    for (int i = 0; i < numBuckets; i++) {
+      buckets.add(Lists.<MetricQueueItem>newArrayList());
+    }
+    for (MetricQueueItem item: dataBatch) {
+      buckets.get((routingKey(item).hashCode() & Integer.MAX_VALUE) % numBuckets).add(item);
+    }
+    return buckets;
+  }
+
+  private static String routingKey(MetricQueueItem item) {
+    final MetricDatum datum = item.getMetricDatum();
+    final List<Dimension> dimensions = datum.getDimensions( ) == null ?
+        Collections.<Dimension>emptyList( ) :
+        datum.getDimensions( ).getMember( );
+    final Map<String, String> dimensionMap = makeDimensionMap(dimensions);
+    if (item.getMetricType() == MetricType.System) {
+      if (dimensionMap.containsKey("InstanceId")) {
+        return item.getNamespace() + "|InstanceId|" + dimensionMap.get("InstanceId");
+      }
+      if (dimensionMap.containsKey("VolumeId")) {
+        return item.getNamespace() + "|VolumeId|" + dimensionMap.get("VolumeId");
+      }
+    }
+    return item.getAccountId() + "|" + item.getNamespace() + "|" + dimensionMap;
   }
 
   public static List<SimpleMetricEntity> aggregate(List<SimpleMetricEntity> dataBatch) {
@@ -289,8 +406,17 @@ public class MetricDataQueue {
       .put("NetworkOutAbsolute", "NetworkOut") 
       .build();
 
-  public void insertMetricData(final String ownerAccountId, final String nameSpace,
+  /**
+   * Queue metric data for persistence.
+   *
+   * @return false, with nothing queued, if the queue is at capacity
+   */
+  public boolean insertMetricData(final String ownerAccountId, final String nameSpace,
       final List<MetricDatum> metricDatum, final MetricType metricType) {
+    if (dataQueue.size() + metricDatum.size() > METRIC_DATA_QUEUE_CAPACITY) {
+      MetricDataQueueStatistics.throttled(metricDatum.size());
+      return false;
+    }
     // Some points do not actually go in.  If a data point represents an absolute value, the first one does not go in.
     // Also, some data points are added while we go through the list (derived metrics)
     Date now = new Date();
@@ -309,6 +435,8 @@ public class MetricDataQueue {
         }
       });
     }
+    MetricDataQueueStatistics.accepted(metricDatum.size());
+    return true;
   }
 
   private static boolean adjustAbsoluteVolumeQueueLengthStatisticSet(AbsoluteMetricCache cache,
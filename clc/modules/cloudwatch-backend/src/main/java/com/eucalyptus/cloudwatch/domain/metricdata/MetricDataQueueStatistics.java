@@ -0,0 +1,152 @@
+/*************************************************************************
+ * Copyright 2009-2014 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.cloudwatch.domain.metricdata;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Running counters for the metric data ingestion pipeline.
+ *
+ * Each stage records the number of items it processed and the time it took,
+ * so throughput (items/sec) and latency (msec/batch) can be reported per stage.
+ */
+public class MetricDataQueueStatistics {
+
+  public enum Stage {
+    AbsoluteMetrics("dealWithAbsoluteMetrics"),
+    Convert("convertToSimpleDataBatch"),
+    Aggregate("aggregate"),
+    MetricPersist("MetricManager.addMetricBatch"),
+    RollupPersist("SystemMetricRollup.flush"),
+    ListMetricPersist("ListMetricManager.addMetricBatch");
+
+    private final String description;
+
+    private Stage(String description) {
+      this.description = description;
+    }
+
+    public String getDescription() {
+      return description;
+    }
+  }
+
+  public static class StageCounters {
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong items = new AtomicLong();
+    private final AtomicLong totalMillis = new AtomicLong();
+    private final AtomicLong maxMillis = new AtomicLong();
+
+    void record(int itemCount, long millis) {
+      batches.incrementAndGet();
+      items.addAndGet(itemCount);
+      totalMillis.addAndGet(millis);
+      long max;
+      while ((max = maxMillis.get()) < millis && !maxMillis.compareAndSet(max, millis));
+    }
+
+    public long getBatches() {
+      return batches.get();
+    }
+
+    public long getItems() {
+      return items.get();
+    }
+
+    public long getTotalMillis() {
+      return totalMillis.get();
+    }
+
+    public long getMaxMillis() {
+      return maxMillis.get();
+    }
+
+    public double getAverageMillis() {
+      long batchCount = batches.get();
+      return batchCount == 0 ? 0.0 : (double) totalMillis.get() / batchCount;
+    }
+
+    public double getItemsPerSecond() {
+      long millis = totalMillis.get();
+      return millis == 0 ? 0.0 : items.get() * 1000.0 / millis;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("batches=%d items=%d avg=%.1fmsec max=%dmsec throughput=%.1f/sec",
+          getBatches(), getItems(), getAverageMillis(), getMaxMillis(), getItemsPerSecond());
+    }
+  }
+
+  private static final Map<Stage, StageCounters> stageCounters = new EnumMap<Stage, StageCounters>(Stage.class);
+  static {
+    for (Stage stage: Stage.values()) {
+      stageCounters.put(stage, new StageCounters());
+    }
+  }
+  private static final AtomicLong accepted = new AtomicLong();
+  private static final AtomicLong throttled = new AtomicLong();
+  private static final AtomicLong failedBuckets = new AtomicLong();
+
+  public static void record(Stage stage, int itemCount, long millis) {
+    stageCounters.get(stage).record(itemCount, millis);
+  }
+
+  public static StageCounters get(Stage stage) {
+    return stageCounters.get(stage);
+  }
+
+  static void accepted(int itemCount) {
+    accepted.addAndGet(itemCount);
+  }
+
+  static void throttled(int itemCount) {
+    throttled.addAndGet(itemCount);
+  }
+
+  static void failedBucket() {
+    failedBuckets.incrementAndGet();
+  }
+
+  public static long getAccepted() {
+    return accepted.get();
+  }
+
+  public static long getThrottled() {
+    return throttled.get();
+  }
+
+  public static long getFailedBuckets() {
+    return failedBuckets.get();
+  }
+
+  public static String describe() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("accepted=").append(getAccepted())
+      .append(" throttled=").append(getThrottled())
+      .append(" failedBuckets=").append(getFailedBuckets());
+    for (Stage stage: Stage.values()) {
+      sb.append("\n  ").append(stage.getDescription()).append(": ").append(stageCounters.get(stage));
+    }
+    return sb.toString();
+  }
+}
@@ -53,6 +53,7 @@ import com.google.common.collect.Sets;
 
 public class MetricManager {
 	public static final Logger LOG = Logger.getLogger(MetricManager.class);
+  private static final int PERSIST_FLUSH_SIZE = 50;
   public static void addMetric(String accountId, 
       String metricName, String namespace, Map<String, String> dimensionMap,
       MetricType metricType, Units units, Date timestamp, Double sampleSize,
@@ -127,8 +128,13 @@ public class MetricManager {
     for (Class c : metricMap.keySet()) {
       EntityTransaction db = Entities.get(c);
       try {
+        int count = 0;
         for (MetricEntity me : metricMap.get(c)) {
           Entities.persist(me);
+          // flush in jdbc batch sized chunks rather than all at commit
+          if (++count % PERSIST_FLUSH_SIZE == 0) {
+            Entities.flush(me);
+          }
         }
         db.commit();
       } catch (RuntimeException ex) {
@@ -170,6 +176,7 @@ public class MetricManager {
   }
 
   public static void deleteAllMetrics() {
+    MetricStatisticsCache.clear();
     for (Class c : MetricEntityFactory.getAllClassesForEntitiesGet()) {
       EntityTransaction db = Entities.get(c);
       try {
@@ -259,8 +266,12 @@ public class MetricManager {
       throw new IllegalArgumentException("namespace must not be null");
     }
     String hash = hash(dimensions);
+    List<MetricEntity> cached = MetricStatisticsCache.lookup(accountId, namespace, metricName, metricType, hash, units, startTime, endTime);
+    if (cached != null) {
+      return aggregate(cached, startTime, period, hash, dimensions);
+    }
     Class metricEntityClass = MetricEntityFactory.getClassForEntitiesGet(metricType, hash);
-    Map<GetMetricStatisticsAggregationKey, MetricStatistics> aggregationMap = new TreeMap<GetMetricStatisticsAggregationKey, MetricStatistics>(GetMetricStatisticsAggregationKey.COMPARATOR_WITH_NULLS.INSTANCE);
+    Collection<MetricStatistics> metricStatistics;
     EntityTransaction db = Entities.get(metricEntityClass);
     try {
       Criteria criteria = Entities.createCriteria(metricEntityClass);
@@ -275,23 +286,11 @@ public class MetricManager {
       }
       criteria = criteria.addOrder( Order.asc("creationTimestamp") );
       criteria = criteria.addOrder( Order.asc("naturalId") );
-      Collection results = criteria.list();
-      for (Object o: results) {
-        MetricEntity me = (MetricEntity) o;
-        // Note: dimensions from metric entity are the actual dimensions for the point.  dimensions passed in are from the
-        // hash (used for aggregation).  The hash dimensions are what we want.
-        GetMetricStatisticsAggregationKey key = new GetMetricStatisticsAggregationKey(me, startTime, period, hash);
-        MetricStatistics item = new MetricStatistics(me, startTime, period, dimensions);
-        if (!aggregationMap.containsKey(key)) {
-          aggregationMap.put(key, item);
-        } else {
-          MetricStatistics totalSoFar = aggregationMap.get(key);
-          totalSoFar.setSampleMax(Math.max(item.getSampleMax(), totalSoFar.getSampleMax()));
-          totalSoFar.setSampleMin(Math.min(item.getSampleMin(), totalSoFar.getSampleMin()));
-          totalSoFar.setSampleSize(totalSoFar.getSampleSize() + item.getSampleSize());
-          totalSoFar.setSampleSum(totalSoFar.getSampleSum() + item.getSampleSum());
-        }
+      List<MetricEntity> results = Lists.newArrayList((List<MetricEntity>) criteria.list());
+      if (metricType == MetricType.System) {
+        results.addAll(SystemMetricRollup.pending(accountId, namespace, metricName, hash, units, startTime, endTime));
       }
+      metricStatistics = aggregate(results, startTime, period, hash, dimensions);
       db.commit();
     } catch (RuntimeException ex) {
       Logs.extreme().error(ex, ex);
@@ -300,9 +299,30 @@ public class MetricManager {
       if (db.isActive())
         db.rollback();
     }
-    return Lists.newArrayList(aggregationMap.values());
+    return metricStatistics;
   }    
 
+  private static Collection<MetricStatistics> aggregate(Collection<MetricEntity> results,
+      Date startTime, Integer period, String hash, Collection<DimensionEntity> dimensions) {
+    Map<GetMetricStatisticsAggregationKey, MetricStatistics> aggregationMap = new TreeMap<GetMetricStatisticsAggregationKey, MetricStatistics>(GetMetricStatisticsAggregationKey.COMPARATOR_WITH_NULLS.INSTANCE);
+    for (MetricEntity me: results) {
+      // Note: dimensions from metric entity are the actual dimensions for the point.  dimensions passed in are from the
+      // hash (used for aggregation).  The hash dimensions are what we want.
+      GetMetricStatisticsAggregationKey key = new GetMetricStatisticsAggregationKey(me, startTime, period, hash);
+      MetricStatistics item = new MetricStatistics(me, startTime, period, dimensions);
+      if (!aggregationMap.containsKey(key)) {
+        aggregationMap.put(key, item);
+      } else {
+        MetricStatistics totalSoFar = aggregationMap.get(key);
+        totalSoFar.setSampleMax(Math.max(item.getSampleMax(), totalSoFar.getSampleMax()));
+        totalSoFar.setSampleMin(Math.min(item.getSampleMin(), totalSoFar.getSampleMin()));
+        totalSoFar.setSampleSize(totalSoFar.getSampleSize() + item.getSampleSize());
+        totalSoFar.setSampleSum(totalSoFar.getSampleSum() + item.getSampleSum());
+      }
+    }
+    return Lists.newArrayList(aggregationMap.values());
+  }
+
   public static Date getPeriodStart(Date originalTimestamp, Date startTime, Integer period) {
     long difference = originalTimestamp.getTime() - startTime.getTime();
     long remainderInOnePeriod = difference % (1000L * period);
@@ -333,15 +353,39 @@ public class MetricManager {
     return allResults;
   }
 
+  /**
+   * Persist a batch of metric data. Custom metrics are written directly, System
+   * metrics are folded into the per-minute {@link SystemMetricRollup} and
+   * written when the minute is flushed.
+   */
   public static void addMetricBatch(List<SimpleMetricEntity> dataBatch) {
     ArrayList<MetricEntity> metricEntities = new ArrayList<MetricEntity>();
     for (SimpleMetricEntity simpleMetricEntity: dataBatch) {
       validateMetricQueueItem(simpleMetricEntity);
-      metricEntities.addAll(foldAndHash(simpleMetricEntity));
+      if (simpleMetricEntity.getMetricType() == MetricType.System) {
+        TreeSet<DimensionEntity> dimensions = new TreeSet<DimensionEntity>();
+        for (Map.Entry<String, String> entry : simpleMetricEntity.getDimensionMap().entrySet()) {
+          dimensions.add(new DimensionEntity(entry.getKey(), entry.getValue()));
+        }
+        for (Set<DimensionEntity> dimensionsPermutation : Sets.powerSet(dimensions)) {
+          String dimensionHash = hash(dimensionsPermutation);
+          SystemMetricRollup.add(simpleMetricEntity, dimensionsPermutation, dimensionHash);
+          MetricStatisticsCache.record(simpleMetricEntity, dimensionHash);
+        }
+      } else {
+        for (MetricEntity metricEntity: foldAndHash(simpleMetricEntity)) {
+          metricEntities.add(metricEntity);
+          MetricStatisticsCache.record(simpleMetricEntity, metricEntity.getDimensionHash());
+        }
+      }
     }
     addManyMetrics(makeMetricMap(metricEntities));
   }
 
+  static void persistMetrics(Collection<MetricEntity> metricEntities) {
+    addManyMetrics(makeMetricMap(metricEntities));
+  }
+
   private static void validateMetricQueueItem(SimpleMetricEntity simpleMetricEntity) {
     LOG.trace("metricName="+simpleMetricEntity.getMetricName());
     LOG.trace("namespace="+simpleMetricEntity.getNamespace());
@@ -0,0 +1,250 @@
+/*************************************************************************
+ * Copyright 2009-2014 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.cloudwatch.domain.metricdata;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.eucalyptus.cloudwatch.domain.metricdata.MetricEntity.MetricType;
+import com.eucalyptus.cloudwatch.domain.metricdata.MetricEntity.Units;
+import com.eucalyptus.configurable.ConfigurableClass;
+import com.eucalyptus.configurable.ConfigurableField;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Ring buffer cache of recent per-minute statistics for the metrics that
+ * alarms are watching.
+ *
+ * The alarm dispatcher registers the series its alarms evaluate, the
+ * ingestion path records data for registered series and alarm evaluation
+ * reads from the cache when the evaluation window is fully covered. A series
+ * only covers minutes from the one after it was registered, earlier windows
+ * (and windows older than the ring) are read from the database.
+ */
+@ConfigurableClass( root = "cloudwatch", description = "Parameters controlling cloud watch alarm evaluation")
+public class MetricStatisticsCache {
+
+  @ConfigurableField(initial = "60", description = "Minutes of recent metric statistics cached for alarm evaluation, 0 to disable the cache")
+  public static volatile int ALARM_METRIC_CACHE_MINUTES = 60;
+
+  private static final long MINUTE = 60000L;
+
+  private static final ConcurrentMap<SeriesKey, Series> watched = Maps.newConcurrentMap();
+  private static final AtomicLong hits = new AtomicLong();
+  private static final AtomicLong misses = new AtomicLong();
+  private static volatile long lastWatchUpdate = 0L;
+
+  /**
+   * Set the series to cache, series not in the given collection are dropped.
+   *
+   * If the watch list has not been updated for a while this host may have
+   * missed data (e.g. the service was enabled elsewhere) so the cache is
+   * reset.
+   */
+  public static void watch(Collection<SeriesKey> keys) {
+    long now = System.currentTimeMillis();
+    int minutes = ALARM_METRIC_CACHE_MINUTES;
+    if (minutes <= 0 || now - lastWatchUpdate > 2 * MINUTE) {
+      watched.clear();
+    }
+    lastWatchUpdate = now;
+    if (minutes <= 0) return;
+    watched.keySet().retainAll(keys);
+    long coverageStart = MetricManager.stripSeconds(new Date(now)).getTime() + MINUTE;
+    for (SeriesKey key: keys) {
+      if (!watched.containsKey(key)) {
+        watched.putIfAbsent(key, new Series(coverageStart, minutes));
+      }
+    }
+  }
+
+  public static void clear() {
+    watched.clear();
+  }
+
+  static void record(SimpleMetricEntity item, String dimensionHash) {
+    if (watched.isEmpty()) return;
+    Series series = watched.get(new SeriesKey(item.getAccountId(), item.getNamespace(),
+        item.getMetricName(), item.getMetricType(), dimensionHash));
+    if (series != null) {
+      series.add(item);
+    }
+  }
+
+  /**
+   * Cached data for the given series and window, as transient entities.
+   *
+   * @return the data or null if the cache does not cover the window
+   */
+  static List<MetricEntity> lookup(String accountId, String namespace, String metricName,
+      MetricType metricType, String dimensionHash, Units units, Date startTime, Date endTime) {
+    Series series = watched.isEmpty() ? null : watched.get(
+        new SeriesKey(accountId, namespace, metricName, metricType, dimensionHash));
+    List<MetricEntity> result = series == null ? null :
+        series.read(accountId, namespace, metricName, metricType, dimensionHash, units,
+            startTime.getTime(), endTime.getTime());
+    if (result == null) {
+      misses.incrementAndGet();
+    } else {
+      hits.incrementAndGet();
+    }
+    return result;
+  }
+
+  public static int size() {
+    return watched.size();
+  }
+
+  public static long getHits() {
+    return hits.get();
+  }
+
+  public static long getMisses() {
+    return misses.get();
+  }
+
+  public static double getHitRatio() {
+    long hitCount = hits.get();
+    long total = hitCount + misses.get();
+    return total == 0 ? 0.0 : (double) hitCount / total;
+  }
+
+  public static final class SeriesKey {
+    private final String accountId;
+    private final String namespace;
+    private final String metricName;
+    private final MetricType metricType;
+    private final String dimensionHash;
+
+    public SeriesKey(String accountId, String namespace, String metricName,
+        MetricType metricType, String dimensionHash) {
+      this.accountId = accountId;
+      this.namespace = namespace;
+      this.metricName = metricName;
+      this.metricType = metricType;
+      this.dimensionHash = dimensionHash;
+    }
+
+    @Override
+    public int hashCode() {
+      final int prime = 31;
+      int result = 1;
+      result = prime * result + ((accountId == null) ? 0 : accountId.hashCode());
+      result = prime * result + ((namespace == null) ? 0 : namespace.hashCode());
+      result = prime * result + ((metricName == null) ? 0 : metricName.hashCode());
+      result = prime * result + ((metricType == null) ? 0 : metricType.hashCode());
+      result = prime * result + ((dimensionHash == null) ? 0 : dimensionHash.hashCode());
+      return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) return true;
+      if (!(obj instanceof SeriesKey)) return false;
+      SeriesKey other = (SeriesKey) obj;
+      return equal(accountId, other.accountId) &&
+          equal(namespace, other.namespace) &&
+          equal(metricName, other.metricName) &&
+          metricType == other.metricType &&
+          equal(dimensionHash, other.dimensionHash);
+    }
+
+    private static boolean equal(String a, String b) {
+      return a == null ? b == null : a.equals(b);
+    }
+  }
+
+  private static final class Series {
+    private final long coverageStart;
+    private final int minutes;
+    private final Map<Units, Slot[]> slotsByUnits = new EnumMap<Units, Slot[]>(Units.class);
+
+    private Series(long coverageStart, int minutes) {
+      this.coverageStart = coverageStart;
+      this.minutes = minutes;
+    }
+
+    private synchronized void add(SimpleMetricEntity item) {
+      long minute = MetricManager.stripSeconds(item.getTimestamp()).getTime();
+      if (minute < coverageStart) return;
+      Slot[] slots = slotsByUnits.get(item.getUnits());
+      if (slots == null) {
+        slots = new Slot[minutes];
+        slotsByUnits.put(item.getUnits(), slots);
+      }
+      int index = (int) ((minute / MINUTE) % minutes);
+      Slot slot = slots[index];
+      if (slot == null || slot.minute < minute) {
+        slots[index] = slot = new Slot(minute);
+      } else if (slot.minute > minute) {
+        return; // older than the ring
+      }
+      slot.sampleSize += item.getSampleSize();
+      slot.sampleMax = Math.max(slot.sampleMax, item.getSampleMax());
+      slot.sampleMin = Math.min(slot.sampleMin, item.getSampleMin());
+      slot.sampleSum += item.getSampleSum();
+    }
+
+    private synchronized List<MetricEntity> read(String accountId, String namespace, String metricName,
+        MetricType metricType, String dimensionHash, Units units, long startTime, long endTime) {
+      long oldestCached = MetricManager.stripSeconds(new Date()).getTime() - (minutes - 1) * MINUTE;
+      if (startTime < coverageStart || startTime < oldestCached) return null;
+      List<MetricEntity> result = Lists.newArrayList();
+      for (Map.Entry<Units, Slot[]> entry: slotsByUnits.entrySet()) {
+        if (units != null && units != entry.getKey()) continue;
+        for (Slot slot: entry.getValue()) {
+          if (slot == null || slot.minute < startTime || slot.minute >= endTime) continue;
+          MetricEntity metric = MetricEntityFactory.getNewMetricEntity(metricType, dimensionHash);
+          metric.setAccountId(accountId);
+          metric.setNamespace(namespace);
+          metric.setMetricName(metricName);
+          metric.setMetricType(metricType);
+          metric.setDimensionHash(dimensionHash);
+          metric.setUnits(entry.getKey());
+          metric.setTimestamp(new Date(slot.minute));
+          metric.setSampleSize(slot.sampleSize);
+          metric.setSampleMax(slot.sampleMax);
+          metric.setSampleMin(slot.sampleMin);
+          metric.setSampleSum(slot.sampleSum);
+          result.add(metric);
+        }
+      }
+      return result;
+    }
+  }
+
+  private static final class Slot {
+    private final long minute;
+    private double sampleSize;
+    private double sampleMax = -Double.MAX_VALUE;
+    private double sampleMin = Double.MAX_VALUE;
+    private double sampleSum;
+
+    private Slot(long minute) {
+      this.minute = minute;
+    }
+  }
+}
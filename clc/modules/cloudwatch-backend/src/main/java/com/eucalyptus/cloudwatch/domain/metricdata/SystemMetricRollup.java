@@ -0,0 +1,294 @@
+/*************************************************************************
+ * Copyright 2009-2014 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.cloudwatch.domain.metricdata;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.log4j.Logger;
+
+import com.eucalyptus.cloudwatch.domain.DimensionEntity;
+import com.eucalyptus.cloudwatch.domain.metricdata.MetricEntity.MetricType;
+import com.eucalyptus.cloudwatch.domain.metricdata.MetricEntity.Units;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Per-minute rollup of System metric data.
+ *
+ * System metrics are queryable on every subset of their dimensions. Rather than
+ * persisting one row per subset for every data point, points are folded into
+ * in-memory sum/min/max/count accumulators keyed by the subset dimension hash
+ * and persisted once the minute is closed, so each subset costs one row per
+ * minute regardless of how many instances or volumes report into it.
+ *
+ * Accumulators that have not been persisted yet are included in query results
+ * via {@link #pending}.
+ */
+public class SystemMetricRollup {
+  private static final Logger LOG = Logger.getLogger(SystemMetricRollup.class);
+
+  private static final ConcurrentMap<RollupKey, Accumulator> accumulators = Maps.newConcurrentMap();
+
+  public static void add(SimpleMetricEntity simpleMetricEntity) {
+    if (simpleMetricEntity.getMetricType() != MetricType.System) {
+      throw new IllegalArgumentException("Only System metrics are rolled up");
+    }
+    TreeSet<DimensionEntity> dimensions = new TreeSet<DimensionEntity>();
+    for (Map.Entry<String, String> entry : simpleMetricEntity.getDimensionMap().entrySet()) {
+      dimensions.add(new DimensionEntity(entry.getKey(), entry.getValue()));
+    }
+    for (Set<DimensionEntity> dimensionsPermutation : Sets.powerSet(dimensions)) {
+      add(simpleMetricEntity, dimensionsPermutation, MetricManager.hash(dimensionsPermutation));
+    }
+  }
+
+  /**
+   * Add a data point to the accumulator for one subset of its dimensions.
+   */
+  public static void add(SimpleMetricEntity simpleMetricEntity,
+      Set<DimensionEntity> dimensionsPermutation, String dimensionHash) {
+    RollupKey key = new RollupKey(simpleMetricEntity, dimensionHash);
+    while (!accumulator(key, dimensionsPermutation).add(simpleMetricEntity)) {
+      // accumulator was closed by a concurrent flush, retry with a fresh one
+    }
+  }
+
+  /**
+   * Persist accumulators for minutes that started before the given time.
+   *
+   * Accumulators that fail to persist are restored (merged with any data
+   * that arrived since) so they are retried on the next flush.
+   *
+   * @return the number of rows persisted
+   */
+  public static int flush(Date before) {
+    return flush(before, DEFAULT_PERSISTER);
+  }
+
+  static int flush(Date before, Persister persister) {
+    // rows are persisted by entity type, so a failure restores only the rows that were not committed
+    Map<Class<?>, Map<RollupKey, Accumulator>> closedByType = Maps.newHashMap();
+    for (Map.Entry<RollupKey, Accumulator> entry : accumulators.entrySet()) {
+      RollupKey key = entry.getKey();
+      if (!key.timestamp.before(before)) continue;
+      Accumulator accumulator = entry.getValue();
+      if (accumulators.remove(key, accumulator) && accumulator.close()) {
+        Class<?> type = MetricEntityFactory.getClassForEntitiesGet(MetricType.System, key.dimensionHash);
+        Map<RollupKey, Accumulator> closed = closedByType.get(type);
+        if (closed == null) {
+          closed = Maps.newLinkedHashMap();
+          closedByType.put(type, closed);
+        }
+        closed.put(key, accumulator);
+      }
+    }
+    int persisted = 0;
+    RuntimeException failure = null;
+    for (Map<RollupKey, Accumulator> closed : closedByType.values()) {
+      List<MetricEntity> metricEntities = Lists.newArrayList();
+      for (Map.Entry<RollupKey, Accumulator> entry : closed.entrySet()) {
+        metricEntities.add(entry.getValue().toEntity(entry.getKey()));
+      }
+      try {
+        persister.persist(metricEntities);
+        persisted += metricEntities.size();
+      } catch (RuntimeException ex) {
+        LOG.error("Unable to persist " + metricEntities.size() + " system metric rollups, will retry", ex);
+        for (Map.Entry<RollupKey, Accumulator> entry : closed.entrySet()) {
+          restore(entry.getKey(), entry.getValue());
+        }
+        if (failure == null) failure = ex;
+      }
+    }
+    if (failure != null) throw failure;
+    return persisted;
+  }
+
+  /**
+   * Persist accumulators for all minutes before the current one.
+   */
+  public static int flushClosedMinutes() {
+    return flush(MetricManager.stripSeconds(new Date()));
+  }
+
+  /**
+   * Accumulated data not yet persisted for the given dimension hash, as transient entities.
+   */
+  public static List<MetricEntity> pending(String accountId, String namespace, String metricName,
+      String dimensionHash, Units units, Date startTime, Date endTime) {
+    List<MetricEntity> metricEntities = Lists.newArrayList();
+    for (Map.Entry<RollupKey, Accumulator> entry : accumulators.entrySet()) {
+      RollupKey key = entry.getKey();
+      if (key.dimensionHash.equals(dimensionHash) &&
+          key.accountId.equals(accountId) &&
+          key.metricName.equals(metricName) &&
+          key.namespace.equals(namespace) &&
+          (units == null || units == key.units) &&
+          !key.timestamp.before(startTime) &&
+          key.timestamp.before(endTime)) {
+        MetricEntity metricEntity = entry.getValue().snapshot(key);
+        if (metricEntity != null) metricEntities.add(metricEntity);
+      }
+    }
+    return metricEntities;
+  }
+
+  public static int size() {
+    return accumulators.size();
+  }
+
+  private static Accumulator accumulator(RollupKey key, Collection<DimensionEntity> dimensions) {
+    Accumulator accumulator = accumulators.get(key);
+    if (accumulator == null) {
+      Accumulator newAccumulator = new Accumulator(dimensions);
+      accumulator = accumulators.putIfAbsent(key, newAccumulator);
+      if (accumulator == null) accumulator = newAccumulator;
+    }
+    return accumulator;
+  }
+
+  private static void restore(RollupKey key, Accumulator closed) {
+    while (!accumulator(key, closed.dimensions).merge(closed)) {
+      // accumulator was closed by a concurrent flush, retry with a fresh one
+    }
+  }
+
+  interface Persister {
+    void persist(List<MetricEntity> metricEntities);
+  }
+
+  private static final Persister DEFAULT_PERSISTER = new Persister() {
+    @Override
+    public void persist(List<MetricEntity> metricEntities) {
+      MetricManager.persistMetrics(metricEntities);
+    }
+  };
+
+  private static final class RollupKey {
+    private final String accountId;
+    private final String namespace;
+    private final String metricName;
+    private final Units units;
+    private final Date timestamp;
+    private final String dimensionHash;
+
+    private RollupKey(SimpleMetricEntity simpleMetricEntity, String dimensionHash) {
+      this.accountId = simpleMetricEntity.getAccountId();
+      this.namespace = simpleMetricEntity.getNamespace();
+      this.metricName = simpleMetricEntity.getMetricName();
+      this.units = simpleMetricEntity.getUnits();
+      this.timestamp = MetricManager.stripSeconds(simpleMetricEntity.getTimestamp());
+      this.dimensionHash = dimensionHash;
+    }
+
+    @Override
+    public int hashCode() {
+      final int prime = 31;
+      int result = 1;
+      result = prime * result + accountId.hashCode();
+      result = prime * result + namespace.hashCode();
+      result = prime * result + metricName.hashCode();
+      result = prime * result + ((units == null) ? 0 : units.hashCode());
+      result = prime * result + timestamp.hashCode();
+      result = prime * result + dimensionHash.hashCode();
+      return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) return true;
+      if (!(obj instanceof RollupKey)) return false;
+      RollupKey other = (RollupKey) obj;
+      return accountId.equals(other.accountId) &&
+          namespace.equals(other.namespace) &&
+          metricName.equals(other.metricName) &&
+          units == other.units &&
+          timestamp.equals(other.timestamp) &&
+          dimensionHash.equals(other.dimensionHash);
+    }
+  }
+
+  private static final class Accumulator {
+    private final Collection<DimensionEntity> dimensions;
+    private double sampleSize;
+    private double sampleMax = -Double.MAX_VALUE;
+    private double sampleMin = Double.MAX_VALUE;
+    private double sampleSum;
+    private boolean closed;
+
+    private Accumulator(Collection<DimensionEntity> dimensions) {
+      this.dimensions = new TreeSet<DimensionEntity>(dimensions);
+    }
+
+    private synchronized boolean add(SimpleMetricEntity item) {
+      if (closed) return false;
+      sampleSize += item.getSampleSize();
+      sampleMax = Math.max(sampleMax, item.getSampleMax());
+      sampleMin = Math.min(sampleMin, item.getSampleMin());
+      sampleSum += item.getSampleSum();
+      return true;
+    }
+
+    private synchronized boolean merge(Accumulator other) {
+      if (closed) return false;
+      synchronized (other) {
+        sampleSize += other.sampleSize;
+        sampleMax = Math.max(sampleMax, other.sampleMax);
+        sampleMin = Math.min(sampleMin, other.sampleMin);
+        sampleSum += other.sampleSum;
+      }
+      return true;
+    }
+
+    private synchronized boolean close() {
+      boolean wasOpen = !closed;
+      closed = true;
+      return wasOpen;
+    }
+
+    private synchronized MetricEntity snapshot(RollupKey key) {
+      return closed ? null : toEntity(key);
+    }
+
+    private synchronized MetricEntity toEntity(RollupKey key) {
+      MetricEntity metric = MetricEntityFactory.getNewMetricEntity(MetricType.System, key.dimensionHash);
+      metric.setAccountId(key.accountId);
+      metric.setMetricName(key.metricName);
+      metric.setNamespace(key.namespace);
+      metric.setDimensions(dimensions);
+      metric.setDimensionHash(key.dimensionHash);
+      metric.setMetricType(MetricType.System);
+      metric.setUnits(key.units);
+      metric.setTimestamp(key.timestamp);
+      metric.setSampleMax(sampleMax);
+      metric.setSampleMin(sampleMin);
+      metric.setSampleSum(sampleSum);
+      metric.setSampleSize(sampleSize);
+      return metric;
+    }
+  }
+}
@@ -0,0 +1,103 @@
+/*************************************************************************
+ * Copyright 2009-2013 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.cloudwatch;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.eucalyptus.cloudwatch.common.backend.msgs.Dimension;
+import com.eucalyptus.cloudwatch.common.backend.msgs.Dimensions;
+import com.eucalyptus.cloudwatch.common.backend.msgs.MetricDatum;
+import com.eucalyptus.cloudwatch.domain.metricdata.MetricDataQueue;
+import com.eucalyptus.cloudwatch.domain.metricdata.MetricEntity.MetricType;
+import com.eucalyptus.cloudwatch.domain.metricdata.MetricQueueItem;
+
+public class TestMetricDataQueuePartition {
+
+  @Test
+  public void testSameInstanceSameBucket() {
+    List<MetricQueueItem> list = new ArrayList<MetricQueueItem>();
+    for (int i=0;i<100;i++) {
+      Dimensions dimensions = new Dimensions(new Dimension("InstanceId", "i-" + (i % 10)));
+      if (i % 2 == 0) {
+        dimensions.getMember().add(new Dimension("ImageId", "emi-" + i));
+      }
+      list.add(item("AWS/EC2", "CPUUtilization", MetricType.System, dimensions));
+    }
+    List<List<MetricQueueItem>> buckets = MetricDataQueue.partition(list, 4);
+    assertEquals(4, buckets.size());
+    int total = 0;
+    for (List<MetricQueueItem> bucket: buckets) {
+      total += bucket.size();
+      for (MetricQueueItem item: bucket) {
+        String instanceId = item.getMetricDatum().getDimensions().getMember().get(0).getValue();
+        for (List<MetricQueueItem> other: buckets) {
+          if (other == bucket) continue;
+          for (MetricQueueItem otherItem: other) {
+            assertFalse(instanceId.equals(otherItem.getMetricDatum().getDimensions().getMember().get(0).getValue()));
+          }
+        }
+      }
+    }
+    assertEquals(100, total);
+  }
+
+  @Test
+  public void testSameDimensionsSameBucket() {
+    List<MetricQueueItem> list = new ArrayList<MetricQueueItem>();
+    for (int i=0;i<20;i++) {
+      Dimensions dimensions = new Dimensions();
+      // dimension order should not matter
+      if (i % 2 == 0) {
+        dimensions.getMember().add(new Dimension("dim1", "val1"));
+        dimensions.getMember().add(new Dimension("dim2", "val2"));
+      } else {
+        dimensions.getMember().add(new Dimension("dim2", "val2"));
+        dimensions.getMember().add(new Dimension("dim1", "val1"));
+      }
+      list.add(item("namespace1", "metric" + i, MetricType.Custom, dimensions));
+    }
+    int nonEmpty = 0;
+    for (List<MetricQueueItem> bucket: MetricDataQueue.partition(list, 4)) {
+      if (!bucket.isEmpty()) {
+        nonEmpty++;
+        assertEquals(20, bucket.size());
+      }
+    }
+    assertEquals(1, nonEmpty);
+  }
+
+  private static MetricQueueItem item(String namespace, String metricName, MetricType metricType, Dimensions dimensions) {
+    MetricDatum datum = new MetricDatum();
+    datum.setMetricName(metricName);
+    datum.setDimensions(dimensions);
+    datum.setValue(1.0);
+    MetricQueueItem item = new MetricQueueItem();
+    item.setAccountId("account1");
+    item.setNamespace(namespace);
+    item.setMetricType(metricType);
+    item.setMetricDatum(datum);
+    return item;
+  }
+}
@@ -0,0 +1,82 @@
+/*************************************************************************
+ * Copyright 2009-2013 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.cloudwatch.domain.metricdata;
+
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.eucalyptus.cloudwatch.domain.metricdata.MetricEntity.MetricType;
+import com.eucalyptus.cloudwatch.domain.metricdata.MetricEntity.Units;
+import com.eucalyptus.cloudwatch.domain.metricdata.MetricStatisticsCache.SeriesKey;
+
+public class MetricStatisticsCacheTest {
+
+  private static final double TOLERANCE = 0.000000001;
+
+  @Test
+  public void testCoveredWindow() {
+    Map<String, String> dimensionMap = Collections.singletonMap("dim1", "val1");
+    String hash = MetricManager.hash(dimensionMap);
+    MetricStatisticsCache.watch(Collections.singleton(
+        new SeriesKey("account1", "namespace1", "metric1", MetricType.Custom, hash)));
+    Date thisMinute = MetricManager.stripSeconds(new Date());
+    Date nextMinute = new Date(thisMinute.getTime() + 60000L);
+    Date end = new Date(nextMinute.getTime() + 60000L);
+
+    for (int i=0;i<4;i++) {
+      SimpleMetricEntity item = new SimpleMetricEntity();
+      item.setAccountId("account1");
+      item.setNamespace("namespace1");
+      item.setMetricName("metric1");
+      item.setMetricType(MetricType.Custom);
+      item.setUnits(Units.Count);
+      item.setDimensionMap(dimensionMap);
+      item.setTimestamp(i == 0 ? thisMinute : nextMinute);
+      item.setSampleMax((double) i);
+      item.setSampleMin((double) i);
+      item.setSampleSum((double) i);
+      item.setSampleSize(1.0);
+      MetricStatisticsCache.record(item, hash);
+    }
+
+    // the minute the series was registered in is not covered
+    assertNull(MetricStatisticsCache.lookup("account1", "namespace1", "metric1", MetricType.Custom, hash, null, thisMinute, end));
+    // unwatched series are not covered
+    assertNull(MetricStatisticsCache.lookup("account1", "namespace1", "metric2", MetricType.Custom, hash, null, nextMinute, end));
+
+    List<MetricEntity> cached = MetricStatisticsCache.lookup("account1", "namespace1", "metric1", MetricType.Custom, hash, null, nextMinute, end);
+    assertNotNull(cached);
+    assertEquals(1, cached.size());
+    assertEquals(3.0, cached.get(0).getSampleSize(), TOLERANCE);
+    assertEquals(6.0, cached.get(0).getSampleSum(), TOLERANCE);
+    assertEquals(1.0, cached.get(0).getSampleMin(), TOLERANCE);
+    assertEquals(3.0, cached.get(0).getSampleMax(), TOLERANCE);
+    assertEquals(nextMinute, cached.get(0).getTimestamp());
+
+    assertTrue(MetricStatisticsCache.lookup("account1", "namespace1", "metric1", MetricType.Custom, hash, Units.Bytes, nextMinute, end).isEmpty());
+    MetricStatisticsCache.clear();
+  }
+}
@@ -0,0 +1,143 @@
+/*************************************************************************
+ * Copyright 2009-2013 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.cloudwatch.domain.metricdata;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import com.eucalyptus.cloudwatch.domain.metricdata.MetricEntity.MetricType;
+import com.eucalyptus.cloudwatch.domain.metricdata.MetricEntity.Units;
+
+public class SystemMetricRollupTest {
+
+  private static final double TOLERANCE = 0.000000001;
+
+  @Test
+  public void testSubsetRollup() {
+    final Date now = MetricManager.stripSeconds(new Date());
+    for (int i=0;i<10;i++) {
+      Map<String, String> dimensionMap = new TreeMap<String, String>();
+      dimensionMap.put("InstanceId", "i-" + i);
+      dimensionMap.put("ImageId", "emi-" + (i % 2));
+      SimpleMetricEntity item = new SimpleMetricEntity();
+      item.setAccountId("rollup-account");
+      item.setNamespace("AWS/EC2");
+      item.setMetricName("CPUUtilization");
+      item.setMetricType(MetricType.System);
+      item.setUnits(Units.Percent);
+      item.setTimestamp(now);
+      item.setDimensionMap(dimensionMap);
+      item.setSampleMax((double) i);
+      item.setSampleMin((double) i);
+      item.setSampleSum((double) i);
+      item.setSampleSize(1.0);
+      SystemMetricRollup.add(item);
+    }
+    // 10 instance subsets, 10 instance+image subsets, 2 image subsets and 1 empty subset
+    assertEquals(23, SystemMetricRollup.size());
+
+    Date end = new Date(now.getTime() + 60000L);
+    List<MetricEntity> all = SystemMetricRollup.pending("rollup-account", "AWS/EC2", "CPUUtilization",
+        MetricManager.hash(Collections.<String, String>emptyMap()), null, now, end);
+    assertEquals(1, all.size());
+    assertEquals(10.0, all.get(0).getSampleSize(), TOLERANCE);
+    assertEquals(45.0, all.get(0).getSampleSum(), TOLERANCE);
+    assertEquals(0.0, all.get(0).getSampleMin(), TOLERANCE);
+    assertEquals(9.0, all.get(0).getSampleMax(), TOLERANCE);
+
+    List<MetricEntity> image = SystemMetricRollup.pending("rollup-account", "AWS/EC2", "CPUUtilization",
+        MetricManager.hash(Collections.singletonMap("ImageId", "emi-1")), Units.Percent, now, end);
+    assertEquals(1, image.size());
+    assertEquals(5.0, image.get(0).getSampleSize(), TOLERANCE);
+    assertEquals(25.0, image.get(0).getSampleSum(), TOLERANCE);
+    assertEquals(Collections.singletonMap("ImageId", "emi-1"), image.get(0).getDimensionMap());
+  }
+
+  @Test
+  public void testFailedFlushRestored() {
+    final Date minute = new Date(MetricManager.stripSeconds(new Date()).getTime() - 120000L);
+    final Date end = new Date(minute.getTime() + 60000L);
+    final String emptyHash = MetricManager.hash(Collections.<String, String>emptyMap());
+    SystemMetricRollup.add(item("restore-account", minute, 1.0));
+    try {
+      SystemMetricRollup.flush(end, new SystemMetricRollup.Persister() {
+        @Override
+        public void persist(List<MetricEntity> metricEntities) {
+          throw new RuntimeException("persist failed");
+        }
+      });
+      fail("Expected persist failure");
+    } catch (RuntimeException e) {
+      assertEquals("persist failed", e.getMessage());
+    }
+
+    // data is still available and is merged with data that arrives later
+    List<MetricEntity> pending = SystemMetricRollup.pending("restore-account", "AWS/EC2", "CPUUtilization",
+        emptyHash, null, minute, end);
+    assertEquals(1, pending.size());
+    assertEquals(1.0, pending.get(0).getSampleSum(), TOLERANCE);
+    SystemMetricRollup.add(item("restore-account", minute, 2.0));
+
+    final List<MetricEntity> persisted = new ArrayList<MetricEntity>();
+    SystemMetricRollup.flush(end, new SystemMetricRollup.Persister() {
+      @Override
+      public void persist(List<MetricEntity> metricEntities) {
+        persisted.addAll(metricEntities);
+      }
+    });
+    MetricEntity total = null;
+    for (MetricEntity metricEntity : persisted) {
+      if ("restore-account".equals(metricEntity.getAccountId()) && emptyHash.equals(metricEntity.getDimensionHash())) {
+        total = metricEntity;
+      }
+    }
+    assertNotNull(total);
+    assertEquals(2.0, total.getSampleSize(), TOLERANCE);
+    assertEquals(3.0, total.getSampleSum(), TOLERANCE);
+    assertEquals(1.0, total.getSampleMin(), TOLERANCE);
+    assertEquals(2.0, total.getSampleMax(), TOLERANCE);
+    assertTrue(SystemMetricRollup.pending("restore-account", "AWS/EC2", "CPUUtilization",
+        emptyHash, null, minute, end).isEmpty());
+  }
+
+  private static SimpleMetricEntity item(String accountId, Date timestamp, double value) {
+    SimpleMetricEntity item = new SimpleMetricEntity();
+    item.setAccountId(accountId);
+    item.setNamespace("AWS/EC2");
+    item.setMetricName("CPUUtilization");
+    item.setMetricType(MetricType.System);
+    item.setUnits(Units.Percent);
+    item.setTimestamp(timestamp);
+    item.setDimensionMap(Collections.singletonMap("InstanceId", "i-restore"));
+    item.setSampleMax(value);
+    item.setSampleMin(value);
+    item.setSampleSum(value);
+    item.setSampleSize(1.0);
+    return item;
+  }
+}
@@ -80,6 +80,7 @@ import com.eucalyptus.util.async.AsyncRequests;
 import com.eucalyptus.compute.common.internal.vm.VmInstance;
 import com.eucalyptus.compute.common.internal.vm.VmInstance.VmState;
 import com.eucalyptus.vm.VmInstances;
+import com.google.common.base.Function;
 import com.google.common.base.Predicate;
 import edu.ucsb.eucalyptus.msgs.BaseMessage;
 
@@ -88,6 +89,15 @@ public abstract class AbstractSystemAddressManager {
   private static final String ERR_SYS_INSUFFICIENT_ADDRESS_CAPACITY                = "InsufficientAddressCapacity";
 
   public Address allocateNext( final OwnerFullName userId, final Address.Domain domain ) throws NotEnoughResourcesException {
+    return allocateNext( userId, domain, 1 ).get( 0 );
+  }
+
+  /**
+   * Allocate the given number of addresses, either all are allocated or none are.
+   */
+  public List<Address> allocateNext( final OwnerFullName userId,
+                                     final Address.Domain domain,
+                                     final int count ) throws NotEnoughResourcesException {
 	  int numSystemReserved=0;
 	  try{
 		  ConfigurableProperty p =
@@ -99,19 +109,26 @@ public abstract class AbstractSystemAddressManager {
 		  LOG.error("Can't find the 'systemreservedpublicaddresses' property");
 		  numSystemReserved=0;
 	  }
-	  if ( (Addresses.getInstance( ).listDisabledValues( ).size( ) - numSystemReserved ) < 1 ) {
+	  if ( (Addresses.getInstance( ).countDisabledValues( ) - numSystemReserved ) < count ) {
 		  throw new NotEnoughResourcesException( ERR_SYS_INSUFFICIENT_ADDRESS_CAPACITY );
 	  }	    
 
-	  Predicate<Address> predicate = RestrictedTypes.filterPrivileged( );    
-	  final Address addr = Addresses.getInstance( ).enableFirst( predicate ).allocate( userId, domain );
+	  final Predicate<Address> predicate = RestrictedTypes.filterPrivileged( );
+	  final List<Address> addresses = Addresses.getInstance( ).claimFree( count, predicate, new Function<Address,Address>( ) {
+	    @Override
+	    public Address apply( final Address address ) {
+	      return address.allocate( userId, domain );
+	    }
+	  } );
 
-	  LOG.debug( "Allocated address for public addressing: " + String.valueOf( addr ) );
-	  if ( addr == null ) {
+	  LOG.debug( "Allocated addresses for public addressing: " + addresses );
+	  if ( addresses.size( ) < count ) {
+		  releaseAll( addresses );
 		  LOG.debug( LogUtil.header( Addresses.getInstance( ).toString( ) ) );
+		  LOG.debug( Addresses.getInstance( ).getPool( ) );
 		  throw new NotEnoughResourcesException( ERR_SYS_INSUFFICIENT_ADDRESS_CAPACITY );
 	  }
-	  return addr;
+	  return addresses;
   }
   
   public abstract void assignSystemAddress( final VmInstance vm ) throws NotEnoughResourcesException;
@@ -144,6 +161,16 @@ public abstract class AbstractSystemAddressManager {
     }
   }
 
+  protected static void releaseAll( final List<Address> addresses ) {
+    for ( final Address addr : addresses ) {
+      try {
+        addr.release( );
+      } catch ( final IllegalStateException e ) {
+        LOG.error( e, e );
+      }
+    }
+  }
+
   protected void doAssignSystemAddress( final VmInstance vm ) throws NotEnoughResourcesException {
     final String instanceId = vm.getInstanceId();
     final Address addr = this.allocateSystemAddress( );
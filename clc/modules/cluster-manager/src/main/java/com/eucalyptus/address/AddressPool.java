@@ -0,0 +1,123 @@
+/*************************************************************************
+ * Copyright 2009-2015 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.address;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import com.eucalyptus.crypto.Crypto;
+import com.google.common.base.Function;
+import com.google.common.base.Predicate;
+import com.google.common.collect.Lists;
+
+/**
+ * Free list of unallocated addresses.
+ *
+ * <p>Addresses are offered when they are registered as disabled, at the head
+ * or tail of the list at random so that allocation order is not predictable.
+ * Addresses are not removed from the list when they are enabled, so the list
+ * can contain addresses that are no longer free or more than one entry for an
+ * address. Such entries are discarded when polled.</p>
+ *
+ * <p>An address is claimed by its state transition, which fails if another
+ * caller claimed the address first, so the list needs no locking.</p>
+ */
+public class AddressPool {
+
+  private final ConcurrentLinkedDeque<Address> free = new ConcurrentLinkedDeque<>( );
+  private final AtomicLong claimed = new AtomicLong( );
+  private final AtomicLong conflicts = new AtomicLong( );
+  private final AtomicLong discarded = new AtomicLong( );
+  private final AtomicLong exhausted = new AtomicLong( );
+
+  void offer( final Address address ) {
+    if ( Crypto.getSecureRandomSupplier( ).get( ).nextBoolean( ) ) {
+      free.offerFirst( address );
+    } else {
+      free.offerLast( address );
+    }
+  }
+
+  /**
+   * Claim up to count free addresses.
+   *
+   * @param count The number of addresses to claim
+   * @param isFree Predicate for addresses that are still free
+   * @param filter Predicate for addresses that may be claimed by the caller
+   * @param claim Function to claim an address, throws IllegalStateException if the address is not free
+   * @return The claimed addresses, fewer than count if there are not enough free addresses
+   */
+  List<Address> claim( final int count,
+                       final Predicate<? super Address> isFree,
+                       final Predicate<? super Address> filter,
+                       final Function<? super Address, Address> claim ) {
+    final List<Address> claimedAddresses = Lists.newArrayListWithCapacity( count );
+    final List<Address> skipped = Lists.newArrayList( );
+    try {
+      Address address;
+      while ( claimedAddresses.size( ) < count && ( address = free.pollFirst( ) ) != null ) {
+        if ( !isFree.apply( address ) ) {
+          discarded.incrementAndGet( );
+        } else if ( !filter.apply( address ) ) {
+          skipped.add( address );
+        } else {
+          try {
+            claimedAddresses.add( claim.apply( address ) );
+            claimed.incrementAndGet( );
+          } catch ( final IllegalStateException e ) {
+            // claimed elsewhere or mid transition, offered again if still free
+            conflicts.incrementAndGet( );
+            skipped.add( address );
+          }
+        }
+      }
+    } finally {
+      for ( final Address address : skipped ) {
+        free.offerLast( address );
+      }
+    }
+    if ( claimedAddresses.size( ) < count ) {
+      exhausted.incrementAndGet( );
+    }
+    return claimedAddresses;
+  }
+
+  public long getClaimed( ) {
+    return claimed.get( );
+  }
+
+  public long getConflicts( ) {
+    return conflicts.get( );
+  }
+
+  public long getDiscarded( ) {
+    return discarded.get( );
+  }
+
+  public long getExhausted( ) {
+    return exhausted.get( );
+  }
+
+  @Override
+  public String toString( ) {
+    return String.format( "AddressPool [claimed=%d, conflicts=%d, discarded=%d, exhausted=%d]",
+        getClaimed( ), getConflicts( ), getDiscarded( ), getExhausted( ) );
+  }
+}
@@ -66,16 +66,13 @@ import static com.eucalyptus.address.Address.Domain;
 import static com.eucalyptus.reporting.event.ResourceAvailabilityEvent.ResourceType;
 import static com.eucalyptus.address.Address.UNASSIGNED_INSTANCEADDR;
 
-import java.util.Collections;
 import java.util.List;
 import java.util.NoSuchElementException;
 import javax.annotation.Nullable;
 
 import com.eucalyptus.compute.common.AddressInfoType;
-import com.eucalyptus.crypto.Crypto;
 import com.eucalyptus.util.RestrictedTypes;
 import com.google.common.base.Predicates;
-import com.google.common.collect.Collections2;
 import org.apache.log4j.Logger;
 import com.eucalyptus.bootstrap.Bootstrap;
 import com.eucalyptus.bootstrap.Hosts;
@@ -123,6 +120,8 @@ public class Addresses extends AbstractNamedRegistry<Address> implements EventLi
   
   public static Logger     LOG       = Logger.getLogger( Addresses.class );
   private static Addresses singleton = Addresses.getInstance( );
+
+  private final AddressPool pool = new AddressPool( );
   
   public static Addresses getInstance( ) {
     synchronized ( Addresses.class ) {
@@ -178,24 +177,54 @@ public class Addresses extends AbstractNamedRegistry<Address> implements EventLi
   }
 
   @Override
-  public List<Address> listDisabledValues() {
-    List<Address> addrList = super.listDisabledValues();
-    Collections.shuffle( addrList, Crypto.getSecureRandomSupplier().get() );
-    return addrList;
+  public void registerDisabled( final Address address ) {
+    super.registerDisabled( address );
+    offerIfDisabled( address.getName( ) );
   }
 
   @Override
-  public Address enableFirst( Predicate<Address> filter ) throws NoSuchElementException {
-    this.canHas.writeLock( ).lock( );
-    try {
-      Address first = Collections2.filter( this.listDisabledValues(), filter ).iterator( ).next( );
-      if ( first == null ) {
-        throw new NoSuchElementException( "Disabled map is empty." );
+  public void disable( final String name ) {
+    super.disable( name );
+    offerIfDisabled( name );
+  }
+
+  /**
+   * Claim up to count free (disabled) addresses without locking the registry.
+   *
+   * <p>The claim function must move the address out of the unallocated state
+   * and throw IllegalStateException if the address is not unallocated.</p>
+   *
+   * @return The claimed addresses, fewer than count if there are not enough free addresses.
+   * @see AddressPool
+   */
+  public List<Address> claimFree( final int count,
+                                  final Predicate<? super Address> filter,
+                                  final Function<? super Address, Address> claim ) {
+    return pool.claim( count, new Predicate<Address>( ) {
+      @Override
+      public boolean apply( final Address address ) {
+        return isDisabled( address );
       }
-      this.register( first );
-      return first;
-    } finally {
-      this.canHas.writeLock( ).unlock( );
+    }, filter, claim );
+  }
+
+  public AddressPool getPool( ) {
+    return pool;
+  }
+
+  private boolean isDisabled( final Address address ) {
+    try {
+      return this.lookupDisabled( address.getName( ) ) == address;
+    } catch ( final NoSuchElementException e ) {
+      return false;
+    }
+  }
+
+  private void offerIfDisabled( final String name ) {
+    try {
+      pool.offer( this.lookupDisabled( name ) );
+    } catch ( final NoSuchElementException e ) {
+      LOG.debug( e );
     }
   }
 
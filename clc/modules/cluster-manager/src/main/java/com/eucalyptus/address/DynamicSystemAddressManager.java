@@ -66,7 +66,9 @@ import java.util.List;
 import org.apache.log4j.Logger;
 import com.eucalyptus.compute.common.internal.util.NotEnoughResourcesException;
 import com.eucalyptus.compute.common.internal.vm.VmInstance;
+import com.google.common.base.Function;
 import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 
@@ -75,28 +77,17 @@ public class DynamicSystemAddressManager extends AbstractSystemAddressManager {
   
   @Override
   protected List<Address> doAllocateSystemAddresses( int count ) throws NotEnoughResourcesException {
-    if ( Addresses.getInstance( ).listDisabledValues( ).size( ) < count ) {
+    if ( Addresses.getInstance( ).countDisabledValues( ) < count ) {
       throw new NotEnoughAddressResourcesException( );
     } else {
-      final List<Address> addressList = Lists.newArrayList( );
-      for ( final Address addr : Addresses.getInstance( ).listDisabledValues( ) ) {
-        try {
-          if ( addressList.add( addr.pendingAssignment( ) )
-               && ( --count == 0 ) ) {
-            break;
-          }
-        } catch ( final IllegalStateException e ) {
-          LOG.trace( e, e );
-        }
-      }
-      if ( count != 0 ) {
-        for ( final Address addr : addressList ) {
-          try {
-            addr.release( );
-          } catch ( final IllegalStateException e ) {
-            LOG.error( e, e );
-          }
+      final List<Address> addressList = Addresses.getInstance( ).claimFree( count, Predicates.alwaysTrue( ), new Function<Address,Address>( ) {
+        @Override
+        public Address apply( final Address addr ) {
+          return addr.pendingAssignment( );
         }
+      } );
+      if ( addressList.size( ) < count ) {
+        releaseAll( addressList );
         throw new NotEnoughAddressResourcesException( );
       }
       return addressList;
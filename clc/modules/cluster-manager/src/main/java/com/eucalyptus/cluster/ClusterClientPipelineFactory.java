@@ -68,8 +68,10 @@ import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.log4j.Logger;
+import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelFuture;
 import org.jboss.netty.channel.ChannelFutureListener;
 import org.jboss.netty.channel.ChannelHandler;
@@ -127,9 +129,20 @@ public final class ClusterClientPipelineFactory implements ChannelPipelineFactor
   public ChannelPipeline getPipeline( ) throws Exception {
     final ChannelHandler limitSockets = new SimpleChannelHandler( ) {
       private final String uuid = UUID.randomUUID( ).toString( );
+      private final AtomicBoolean permitHeld = new AtomicBoolean( false );
+      private volatile Semaphore sem;
+      private volatile InetSocketAddress remoteAddress;
+      private volatile int semAvailable;
+      private volatile int semQueued;
+      private volatile long start;
+      private volatile long waitTime;
 
+      /**
+       * A permit is held for each request rather than for each socket, a request on a reused channel acquires a permit before it is written.
+       */
       @Override
       public void writeRequested( ChannelHandlerContext ctx, MessageEvent e ) throws Exception {
+        acquire( ctx.getChannel( ) );
         try {
           final MappingHttpRequest message = ( ( MappingHttpRequest ) e.getMessage() );
           final String logMessage = message.getMessage( ) != null
@@ -153,35 +166,16 @@ public final class ClusterClientPipelineFactory implements ChannelPipelineFactor
            * Get the semaphore for this remote address
            */
           final InetSocketAddress remoteAddress = ( ( InetSocketAddress ) e.getValue( ) );
-          final Semaphore sem = counters.getUnchecked( remoteAddress.getAddress() );
-          final int semAvailable = sem.availablePermits();
-          final int semQueued = sem.getQueueLength();
-          /**
-           * Aquire permits from the semaphore for this remote address
-           */
-          final long start = System.nanoTime( );
-          sem.acquire( );
-          final long waitTime = System.nanoTime();
+          sem = counters.getUnchecked( remoteAddress.getAddress() );
+          this.remoteAddress = remoteAddress;
+          acquire( e.getChannel( ) );
           e.getChannel( ).getCloseFuture( ).addListener( new ChannelFutureListener() {
             @Override
             public void operationComplete( ChannelFuture future ) throws Exception {
-              try {
-                final long end = System.nanoTime();
-                LOG.trace( Joiner.on( " " ).join( uuid, remoteAddress,
-                                                  String.format( "%d/%d+%d-queue", semAvailable, CLUSTER_CLIENT_PERMITS.get(), semQueued ),
-                                                  String.format( "%d+%d=%d-msec",
-                                                                 TimeUnit.NANOSECONDS.toMillis( waitTime - start ),
-                                                                 TimeUnit.NANOSECONDS.toMillis( end - waitTime ),
-                                                                 TimeUnit.NANOSECONDS.toMillis( end - start ) )
-                ) );
-              } catch ( Exception e1 ) {
-                LOG.trace( e1 );
-              } finally {
-                /**
-                 * Ensure we release the permits for the semaphore for this remote address
-                 */
-                sem.release();
-              }
+              /**
+               * Ensure we release the permits for the semaphore for this remote address
+               */
+              release( );
             }
           } );
         } catch ( Exception e1 ) {
@@ -189,6 +183,53 @@ public final class ClusterClientPipelineFactory implements ChannelPipelineFactor
         }
         super.connectRequested( ctx, e );
       }
+
+      /**
+       * The response is read and the channel may be pooled, idle channels do not hold a permit.
+       */
+      @Override
+      public void messageReceived( final ChannelHandlerContext ctx, final MessageEvent e ) throws Exception {
+        release( );
+        super.messageReceived( ctx, e );
+      }
+
+      private void acquire( final Channel channel ) throws InterruptedException {
+        final Semaphore sem = this.sem;
+        if ( sem != null && !permitHeld.get( ) ) {
+          semAvailable = sem.availablePermits();
+          semQueued = sem.getQueueLength();
+          /**
+           * Aquire permits from the semaphore for this remote address
+           */
+          start = System.nanoTime( );
+          sem.acquire( );
+          waitTime = System.nanoTime();
+          permitHeld.set( true );
+          if ( !channel.isOpen( ) ) {
+            // closed while waiting, the close listener may already have run
+            release( );
+          }
+        }
+      }
+
+      private void release( ) {
+        if ( permitHeld.compareAndSet( true, false ) ) {
+          try {
+            final long end = System.nanoTime();
+            LOG.trace( Joiner.on( " " ).join( uuid, remoteAddress,
+                                              String.format( "%d/%d+%d-queue", semAvailable, CLUSTER_CLIENT_PERMITS.get(), semQueued ),
+                                              String.format( "%d+%d=%d-msec",
+                                                             TimeUnit.NANOSECONDS.toMillis( waitTime - start ),
+                                                             TimeUnit.NANOSECONDS.toMillis( end - waitTime ),
+                                                             TimeUnit.NANOSECONDS.toMillis( end - start ) )
+            ) );
+          } catch ( Exception e1 ) {
+            LOG.trace( e1 );
+          } finally {
+            sem.release();
+          }
+        }
+      }
       
     };
     final ChannelPipeline pipeline = Channels.pipeline( );
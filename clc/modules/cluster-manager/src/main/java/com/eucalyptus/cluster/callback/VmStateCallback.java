@@ -65,9 +65,15 @@ package com.eucalyptus.cluster.callback;
 import static com.eucalyptus.compute.common.internal.vm.VmInstances.TerminatedInstanceException;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.annotation.Nullable;
 import javax.persistence.EntityTransaction;
 import org.apache.log4j.Logger;
@@ -75,12 +81,14 @@ import org.hibernate.criterion.Restrictions;
 import com.eucalyptus.bootstrap.Databases;
 import com.eucalyptus.compute.common.CloudMetadatas;
 import com.eucalyptus.cluster.Cluster;
+import com.eucalyptus.component.id.ClusterController;
 import com.eucalyptus.compute.common.network.InstanceResourceReportType;
 import com.eucalyptus.compute.common.network.Networking;
 import com.eucalyptus.compute.common.network.UpdateInstanceResourcesType;
 import com.eucalyptus.entities.Entities;
 import com.eucalyptus.entities.TransactionException;
 import com.eucalyptus.records.Logs;
+import com.eucalyptus.system.Threads;
 import com.eucalyptus.util.TypeMapper;
 import com.eucalyptus.util.TypeMappers;
 import com.eucalyptus.util.async.FailedRequestException;
@@ -95,12 +103,16 @@ import com.eucalyptus.compute.common.internal.vm.VmRuntimeState;
 import com.eucalyptus.compute.common.internal.vmtypes.VmType;
 import com.eucalyptus.vmtypes.VmTypes;
 import com.google.common.base.Function;
+import com.google.common.base.Objects;
 import com.google.common.base.Optional;
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
 import com.google.common.collect.Collections2;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import edu.ucsb.eucalyptus.cloud.VmDescribeResponseType;
 import edu.ucsb.eucalyptus.cloud.VmDescribeType;
@@ -159,45 +171,198 @@ public class VmStateCallback extends StateUpdateMessageCallback<Cluster, VmDescr
     if ( Databases.isVolatile( ) ) {
       return;
     } else {
+      final long start = System.currentTimeMillis( );
       reply.setOriginCluster( this.getSubject( ).getConfiguration( ).getName( ) );
       final Set<String> reportedInstances = Sets.newHashSet( );
+      Map<String,String> vmTypeNames = null;
       for ( VmInfo vmInfo : reply.getVms( ) ) {
         reportedInstances.add( vmInfo.getInstanceId( ) );
         vmInfo.setPlacement( this.getSubject( ).getConfiguration( ).getName( ) );
         VmTypeInfo typeInfo = vmInfo.getInstanceType( );
         if ( typeInfo.getName( ) == null || "".equals( typeInfo.getName( ) ) ) {
-          for ( VmType t : VmTypes.list( ) ) {
-            if ( t.getCpu( ).equals( typeInfo.getCores( ) ) && t.getDisk( ).equals( typeInfo.getDisk( ) ) && t.getMemory( ).equals( typeInfo.getMemory( ) ) ) {
-              typeInfo.setName( t.getName( ) );
-            }
+          if ( vmTypeNames == null ) {
+            vmTypeNames = vmTypeNamesBySize( );
+          }
+          final String typeName = vmTypeNames.get( vmTypeSizeKey( typeInfo.getCores( ), typeInfo.getDisk( ), typeInfo.getMemory( ) ) );
+          if ( typeName != null ) {
+            typeInfo.setName( typeName );
           }
         }
       }
       
       final Set<String> unreportedInstances = Sets.newHashSet( Sets.difference( this.initialInstances.get( ), reportedInstances ) );
       final Set<String> unknownInstances = Sets.newHashSet( Sets.difference( reportedInstances, this.initialInstances.get( ) ) );
+      final List<VmInfo> knownVms = Lists.newArrayList( );
+      final ReconcileCounts counts = new ReconcileCounts( );
       for ( final VmInfo runVm : reply.getVms( ) ) {
         if ( Databases.isVolatile( ) ) {
           return;
         } else if ( this.initialInstances.get( ).contains( runVm.getInstanceId( ) ) ) {
-          VmStateCallback.handleReportedState( runVm );
+          knownVms.add( runVm );
         } else if ( unknownInstances.contains( runVm.getInstanceId( ) ) ) {
           VmStateCallback.handleUnknown( runVm );
+          counts.unknown.incrementAndGet( );
         }
       }
-      for ( final String vmId : unreportedInstances ) {
-        if ( Databases.isVolatile( ) ) {
+      VmStateCallback.handleReportedStates( this.getSubject( ).getPartition( ), knownVms, counts );
+      if ( !unreportedInstances.isEmpty( ) && !Databases.isVolatile( ) ) {
+        final Map<String,VmInstance> unreportedVms = loadInstances( unreportedInstances );
+        for ( final String vmId : unreportedInstances ) {
+          if ( Databases.isVolatile( ) ) {
+            return;
+          } else {
+            VmStateCallback.handleUnreported( vmId, unreportedVms.get( vmId ) );
+            counts.unreported.incrementAndGet( );
+          }
+        }
+      }
+      if ( LOG.isDebugEnabled( ) ) {
+        LOG.debug( "Reconciled instance states for " + this.getSubject( ).getPartition( ) + " in " +
+            ( System.currentTimeMillis( ) - start ) + "ms: reported=" + reply.getVms( ).size( ) + " " + counts );
+      }
+    }
+  }
+
+  private static String vmTypeSizeKey( final Integer cores, final Integer disk, final Integer memory ) {
+    return cores + "/" + disk + "/" + memory;
+  }
+
+  private static Map<String,String> vmTypeNamesBySize( ) {
+    final Map<String,String> vmTypeNames = Maps.newHashMap( );
+    for ( VmType t : VmTypes.list( ) ) {
+      vmTypeNames.put( vmTypeSizeKey( t.getCpu( ), t.getDisk( ), t.getMemory( ) ), t.getName( ) );
+    }
+    return vmTypeNames;
+  }
+
+  /**
+   * Load instances in any state by identifier, instances are detached on return.
+   */
+  private static Map<String,VmInstance> loadInstances( final Collection<String> instanceIds ) {
+    final Map<String,VmInstance> instances = Maps.newHashMap( );
+    for ( final List<String> instanceIdBatch : Iterables.partition( instanceIds, batchSize( ) ) ) {
+      final EntityTransaction db = Entities.get( VmInstance.class );
+      try {
+        instances.putAll( queryInstances( instanceIdBatch ) );
+        db.commit( );
+      } catch ( Exception ex ) {
+        LOG.error( ex );
+        Logs.extreme( ).error( ex, ex );
+      } finally {
+        if ( db.isActive() ) db.rollback();
+      }
+    }
+    return instances;
+  }
+
+  /**
+   * Query instances by identifier, caller must have a VmInstance transaction.
+   */
+  private static Map<String,VmInstance> queryInstances( final Collection<String> instanceIds ) {
+    final Map<String,VmInstance> instances = Maps.newHashMap( );
+    for ( final VmInstance vm : Entities.query(
+        VmInstance.named( null, null ),
+        false,
+        Restrictions.in( "displayName", instanceIds ),
+        Collections.<String,String>emptyMap( ) ) ) {
+      instances.put( vm.getDisplayName( ), vm );
+    }
+    return instances;
+  }
+
+  private static int batchSize( ) {
+    return Math.max( 1, Objects.firstNonNull( VmInstances.VM_STATE_UPDATE_BATCH_SIZE, 1 ) );
+  }
+
+  /**
+   * Update state for reported instances in batches, with each batch in a
+   * single transaction. Batches for a partition are processed in parallel
+   * up to the configured number of threads.
+   */
+  private static void handleReportedStates( final String partition,
+                                            final List<VmInfo> reportedVms,
+                                            final ReconcileCounts counts ) {
+    final List<List<VmInfo>> batches = Lists.partition( reportedVms, batchSize( ) );
+    final int threads = Math.min( batches.size( ), Objects.firstNonNull( VmInstances.VM_STATE_UPDATE_THREADS, 1 ) );
+    if ( threads <= 1 ) {
+      for ( final List<VmInfo> batch : batches ) {
+        if ( Databases.isVolatile( ) ) return;
+        handleReportedStateBatch( batch, counts );
+      }
+    } else {
+      final ExecutorService executor =
+          Threads.lookup( ClusterController.class, VmStateCallback.class, partition ).limitTo( threads );
+      final List<Future<?>> futures = Lists.newArrayList( );
+      for ( final List<VmInfo> batch : batches ) {
+        futures.add( executor.submit( new Runnable( ) {
+          @Override
+          public void run( ) {
+            if ( !Databases.isVolatile( ) ) {
+              handleReportedStateBatch( batch, counts );
+            }
+          }
+        } ) );
+      }
+      for ( final Future<?> future : futures ) {
+        try {
+          future.get( );
+        } catch ( InterruptedException ex ) {
+          Thread.currentThread( ).interrupt( );
           return;
-        } else {
-          VmStateCallback.handleUnreported( vmId );
+        } catch ( ExecutionException ex ) {
+          LOG.error( ex.getCause( ) );
+          Logs.extreme( ).error( ex, ex );
         }
       }
     }
   }
-  
-  private static void handleUnreported( final String vmId ) {
+
+  private static void handleReportedStateBatch( final List<VmInfo> batch, final ReconcileCounts counts ) {
+    final Map<VmInstance,VmInfo> deferred = Maps.newLinkedHashMap( );
+    int updated = 0;
+    final EntityTransaction db = Entities.get( VmInstance.class );
     try {
-      final VmInstance vm = VmInstances.lookupAny( vmId );
+      final Map<String,VmInstance> instances = queryInstances(
+          Lists.transform( batch, VmInfoToInstanceId.INSTANCE ) );
+      for ( final VmInfo runVm : batch ) {
+        final VmInstance vm = instances.get( runVm.getInstanceId( ) );
+        if ( vm == null ) continue;
+        switch ( applyReportedState( vm, runVm ) ) {
+          case Updated:
+            updated++;
+            break;
+          case Deferred:
+            deferred.put( vm, runVm );
+            break;
+          default:
+            counts.unchanged.incrementAndGet( );
+        }
+      }
+      Entities.commit( db );
+      counts.batches.incrementAndGet( );
+      counts.updated.addAndGet( updated );
+    } catch ( Exception ex ) {
+      // retry individually so a failure for one instance does not block updates for others
+      LOG.warn( "Error updating state for " + batch.size( ) + " instances, updating individually: " + ex );
+      Logs.extreme( ).error( ex, ex );
+      if ( db.isActive() ) db.rollback();
+      counts.retried.addAndGet( batch.size( ) );
+      for ( final VmInfo runVm : batch ) {
+        handleReportedState( runVm );
+      }
+      return;
+    } finally {
+      if ( db.isActive() ) db.rollback();
+    }
+    for ( final Map.Entry<VmInstance,VmInfo> entry : deferred.entrySet( ) ) {
+      handleDeferredState( entry.getKey( ), entry.getValue( ) );
+      counts.deferred.incrementAndGet( );
+    }
+  }
+
+  private static void handleUnreported( final String vmId, final VmInstance loadedVm ) {
+    try {
+      final VmInstance vm = loadedVm != null ? loadedVm : VmInstances.lookupAny( vmId );
       if ( VmState.PENDING.apply( vm ) && vm.lastUpdateMillis( ) < ( VmInstances.VM_INITIAL_REPORT_TIMEOUT * 1000 ) ) {
         //do nothing during first VM_INITIAL_REPORT_TIMEOUT millis of instance life
         return;
@@ -227,40 +392,19 @@ public class VmStateCallback extends StateUpdateMessageCallback<Cluster, VmDescr
   }
   
   private static void handleReportedState( final VmInfo runVm ) {
-    final VmState runVmState = VmState.Mapper.get( runVm.getStateName( ) );
     try {
       final EntityTransaction db = Entities.get( VmInstance.class );
       try {
         VmInstance vm = VmInstances.lookupAny( runVm.getInstanceId() );
-        if ( VmStateSet.DONE.apply( vm ) ) {
-          db.rollback( );
-          if ( VmInstance.Reason.EXPIRED.apply( vm ) ) {
-            VmStateCallback.handleUnknown( runVm );
-          } else {
-            LOG.trace( "Ignore state update to terminated instance: " + runVm.getInstanceId( ) );
-          }
-          return;
-        }
-
-        if ( VmInstances.Timeout.EXPIRED.apply( vm ) ) {
-          if ( vm.isBlockStorage( ) ) {
-            VmInstances.stopped( vm );
-          } else {
-            VmInstances.shutDown( vm );
-          }
-        } else if ( VmState.SHUTTING_DOWN.equals( runVmState ) ) {
-          db.rollback();
-          VmStateCallback.handleReportedTeardown( vm, runVm );
-          return;
-        } else if ( VmStateSet.RUN.apply( vm ) ) {
-          VmInstances.doUpdate( vm ).apply( runVm );
-        } else if ( !VmStateSet.RUN.apply( vm ) && VmStateSet.RUN.contains( runVmState )
-                    && vm.lastUpdateMillis( ) > ( VmInstances.VOLATILE_STATE_TIMEOUT_SEC * 1000l ) ) {
-          VmInstances.doUpdate( vm ).apply( runVm );
-        } else {
-          return;
+        switch ( applyReportedState( vm, runVm ) ) {
+          case Updated:
+            Entities.commit( db );
+            break;
+          case Deferred:
+            db.rollback( );
+            handleDeferredState( vm, runVm );
+            break;
         }
-        Entities.commit( db );
       } catch ( Exception ex ) {
         LOG.error( ex );
         Logs.extreme( ).error( ex, ex );
@@ -278,6 +422,58 @@ public class VmStateCallback extends StateUpdateMessageCallback<Cluster, VmDescr
     }
   }
 
+  private enum ReportedStateResult { Updated, Unchanged, Deferred }
+
+  /**
+   * Apply the reported state to the given instance, caller must have a
+   * VmInstance transaction.
+   *
+   * @return Deferred if the instance requires handling outside of the transaction
+   */
+  private static ReportedStateResult applyReportedState( final VmInstance vm,
+                                                         final VmInfo runVm ) throws TransactionException {
+    final VmState runVmState = VmState.Mapper.get( runVm.getStateName( ) );
+    if ( VmStateSet.DONE.apply( vm ) ) {
+      if ( VmInstance.Reason.EXPIRED.apply( vm ) ) {
+        return ReportedStateResult.Deferred;
+      } else {
+        LOG.trace( "Ignore state update to terminated instance: " + runVm.getInstanceId( ) );
+        return ReportedStateResult.Unchanged;
+      }
+    }
+
+    if ( VmInstances.Timeout.EXPIRED.apply( vm ) ) {
+      if ( vm.isBlockStorage( ) ) {
+        VmInstances.stopped( vm );
+      } else {
+        VmInstances.shutDown( vm );
+      }
+    } else if ( VmState.SHUTTING_DOWN.equals( runVmState ) ) {
+      return ReportedStateResult.Deferred;
+    } else if ( VmStateSet.RUN.apply( vm ) ) {
+      VmInstances.doUpdate( vm ).apply( runVm );
+    } else if ( !VmStateSet.RUN.apply( vm ) && VmStateSet.RUN.contains( runVmState )
+                && vm.lastUpdateMillis( ) > ( VmInstances.VOLATILE_STATE_TIMEOUT_SEC * 1000l ) ) {
+      VmInstances.doUpdate( vm ).apply( runVm );
+    } else {
+      return ReportedStateResult.Unchanged;
+    }
+    return ReportedStateResult.Updated;
+  }
+
+  private static void handleDeferredState( final VmInstance vm, final VmInfo runVm ) {
+    try {
+      if ( VmStateSet.DONE.apply( vm ) ) {
+        VmStateCallback.handleUnknown( runVm );
+      } else {
+        VmStateCallback.handleReportedTeardown( vm, runVm );
+      }
+    } catch ( Exception ex ) {
+      LOG.error( ex );
+      Logs.extreme( ).error( ex, ex );
+    }
+  }
+
   private static void handleUnknown( final VmInfo runVm ) {
     for ( final Optional<VmInstances.RestoreHandler> restoreHandler :
         VmInstances.RestoreHandler.parseList( VmInstances.UNKNOWN_INSTANCE_HANDLERS ) ) {
@@ -402,6 +598,31 @@ public class VmStateCallback extends StateUpdateMessageCallback<Cluster, VmDescr
     this.initialInstances.get( );
   }
 
+  private enum VmInfoToInstanceId implements Function<VmInfo,String> {
+    INSTANCE;
+
+    @Override
+    public String apply( final VmInfo vmInfo ) {
+      return vmInfo.getInstanceId( );
+    }
+  }
+
+  private static final class ReconcileCounts {
+    private final AtomicInteger batches = new AtomicInteger( );
+    private final AtomicInteger updated = new AtomicInteger( );
+    private final AtomicInteger unchanged = new AtomicInteger( );
+    private final AtomicInteger deferred = new AtomicInteger( );
+    private final AtomicInteger retried = new AtomicInteger( );
+    private final AtomicInteger unknown = new AtomicInteger( );
+    private final AtomicInteger unreported = new AtomicInteger( );
+
+    @Override
+    public String toString( ) {
+      return "batches=" + batches + " updated=" + updated + " unchanged=" + unchanged + " deferred=" + deferred +
+          " retried=" + retried + " unknown=" + unknown + " unreported=" + unreported;
+    }
+  }
+
   @TypeMapper
   public enum VmDescribeResponseTypeToInstanceResourceReport implements Function<VmDescribeResponseType,InstanceResourceReportType> {
     INSTANCE;
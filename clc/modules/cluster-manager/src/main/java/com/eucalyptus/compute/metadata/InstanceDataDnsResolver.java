@@ -66,6 +66,7 @@ package com.eucalyptus.compute.metadata;
 
 import static com.eucalyptus.util.dns.DnsResolvers.DnsRequest;
 import java.net.InetAddress;
+import java.util.Collections;
 import org.xbill.DNS.Name;
 import org.xbill.DNS.Record;
 import com.eucalyptus.bootstrap.Bootstrap;
@@ -73,7 +74,7 @@ import com.eucalyptus.component.id.Eucalyptus;
 import com.eucalyptus.configurable.ConfigurableClass;
 import com.eucalyptus.configurable.ConfigurableField;
 import com.eucalyptus.util.Subnets;
-import com.eucalyptus.util.dns.DnsResolvers.DnsResolver;
+import com.eucalyptus.util.dns.DnsResolvers.CacheableDnsResolver;
 import com.eucalyptus.util.dns.DnsResolvers.DnsResponse;
 import com.eucalyptus.util.dns.DnsResolvers.RequestType;
 import com.eucalyptus.util.dns.DomainNameRecords;
@@ -82,7 +83,7 @@ import com.eucalyptus.vm.dns.InstanceDomainNames;
 
 @ConfigurableClass( root = "dns.instancedata",
                     description = "Options controlling DNS name resolution for the instance metadata service." )
-public class InstanceDataDnsResolver implements DnsResolver {
+public class InstanceDataDnsResolver implements CacheableDnsResolver {
   @ConfigurableField( description = "Enable the instance-data resolver.  Note: dns.enable must also be 'true'" )
   public static Boolean            enabled                = Boolean.TRUE;
   private static final Name        INSTANCE_DATA          = Name.fromConstantString( "instance-data." );
@@ -135,6 +136,11 @@ public class InstanceDataDnsResolver implements DnsResolver {
     return null;
   }
   
+  @Override
+  public Iterable<Class<?>> getCacheDependencies( ) {
+    return Collections.emptyList( );
+  }
+
   @Override
   public String toString( ) {
     return this.getClass( ).getSimpleName( );
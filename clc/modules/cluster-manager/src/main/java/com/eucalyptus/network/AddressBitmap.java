@@ -0,0 +1,71 @@
+/*************************************************************************
+ * Copyright 2009-2015 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.network;
+
+import java.util.BitSet;
+import java.util.Map;
+import com.google.common.collect.Maps;
+
+/**
+ * Bitmap of allocated addresses.
+ *
+ * <p>Addresses are kept in pages of 65536 (a /16) so that memory use follows
+ * the ranges in use rather than the address space.</p>
+ */
+final class AddressBitmap {
+
+  private static final int PAGE_BITS = 16;
+  private static final int PAGE_MASK = ( 1 << PAGE_BITS ) - 1;
+
+  private final Map<Integer,BitSet> pages = Maps.newHashMap( );
+  private int cardinality;
+
+  synchronized boolean get( final int address ) {
+    final BitSet page = pages.get( address >>> PAGE_BITS );
+    return page != null && page.get( address & PAGE_MASK );
+  }
+
+  synchronized void set( final int address ) {
+    BitSet page = pages.get( address >>> PAGE_BITS );
+    if ( page == null ) {
+      page = new BitSet( PAGE_MASK + 1 );
+      pages.put( address >>> PAGE_BITS, page );
+    }
+    if ( !page.get( address & PAGE_MASK ) ) {
+      page.set( address & PAGE_MASK );
+      cardinality++;
+    }
+  }
+
+  synchronized void clear( final int address ) {
+    final BitSet page = pages.get( address >>> PAGE_BITS );
+    if ( page != null && page.get( address & PAGE_MASK ) ) {
+      page.clear( address & PAGE_MASK );
+      cardinality--;
+      if ( page.isEmpty( ) ) {
+        pages.remove( address >>> PAGE_BITS );
+      }
+    }
+  }
+
+  synchronized int cardinality( ) {
+    return cardinality;
+  }
+}
@@ -24,6 +24,8 @@ import com.google.common.base.Function
 import com.google.common.base.Optional
 import groovy.transform.CompileStatic
 import org.apache.log4j.Logger
+import org.hibernate.criterion.Projections
+import org.hibernate.criterion.Restrictions
 import org.hibernate.exception.ConstraintViolationException
 
 import javax.persistence.EntityTransaction
@@ -56,6 +58,17 @@ class DatabasePrivateAddressPersistence implements PrivateAddressPersistence {
     address.teardown( )
   }
 
+  @Override
+  Iterable<String> list( final String scope ) {
+    transaction( PrivateAddress ) { EntityTransaction db ->
+      Entities.createCriteria( PrivateAddress )
+          .add( scope == null ? Restrictions.isNull( 'scope' ) : Restrictions.eq( 'scope', scope ) )
+          .setProjection( Projections.property( 'displayName' ) )
+          .setReadOnly( true )
+          .list( ) as List<String>
+    }
+  }
+
   @Override
   def <V> Optional<V> withFirstMatch( final PrivateAddress address,
                                       final String ownerId,
@@ -69,14 +69,17 @@ class EdgeNetworkingService extends NetworkingServiceSupport {
   protected PrepareNetworkResourcesResponseType prepareWithRollback( final PrepareNetworkResourcesType request,
                                                                      final List<NetworkResource> resources ) {
     boolean vpc = request.vpc != null
+    final List<PrivateIPResource> privateIPResources = Lists.newArrayList( )
     request.resources.each { NetworkResource networkResource ->
       switch( networkResource ) {
         case PublicIPResource:
           resources.addAll( preparePublicIp( request, (PublicIPResource) networkResource ) )
           break
         case PrivateIPResource:
-          if ( !vpc ) {
+          if ( !vpc && networkResource.value ) {
             resources.addAll( preparePrivateIp( request, (PrivateIPResource) networkResource ) )
+          } else if ( !vpc ) {
+            privateIPResources.add( (PrivateIPResource) networkResource )
           }
           break
         case VpcNetworkInterfaceResource:
@@ -84,6 +87,7 @@ class EdgeNetworkingService extends NetworkingServiceSupport {
           break
       }
     }
+    resources.addAll( preparePrivateIps( request, privateIPResources ) )
 
     PrepareNetworkResourcesResponseType.cast( request.reply( new PrepareNetworkResourcesResponseType(
         prepareNetworkResourcesResultType: new PrepareNetworkResourcesResultType(
@@ -160,6 +164,32 @@ class EdgeNetworkingService extends NetworkingServiceSupport {
         [ ]
   }
 
+  /**
+   * Prepare private addresses for resources without a requested address,
+   * allocated together so that a launch of many instances makes one pass over
+   * the candidate addresses.
+   */
+  private Collection<NetworkResource> preparePrivateIps( final PrepareNetworkResourcesType request,
+                                                         final List<PrivateIPResource> privateIPResources ) {
+    final List<NetworkResource> resources = Lists.newArrayList( )
+    if ( privateIPResources.size( ) == 1 ) {
+      resources.addAll( preparePrivateIp( request, privateIPResources.get( 0 ) ) )
+    } else if ( !privateIPResources.isEmpty( ) ) {
+      final List<String> addresses = PrivateAddresses.allocate(
+          null,
+          null,
+          NetworkConfigurations.getPrivateAddresses( request.availabilityZone ),
+          privateIPResources.size( ) )
+      privateIPResources.eachWithIndex { PrivateIPResource privateIPResource, int index ->
+        resources.add( new PrivateIPResource(
+            mac: mac( privateIPResource.ownerId  ),
+            value: addresses.get( index ),
+            ownerId: privateIPResource.ownerId ) )
+      }
+    }
+    resources
+  }
+
   private Collection<NetworkResource> preparePrivateIp( final PrepareNetworkResourcesType request,
                                                         final PrivateIPResource privateIPResource ) {
     PrivateIPResource resource = null
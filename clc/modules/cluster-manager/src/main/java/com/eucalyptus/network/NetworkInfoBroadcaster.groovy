@@ -67,6 +67,7 @@ import com.eucalyptus.compute.common.internal.vpc.RouteTable
 import com.eucalyptus.compute.common.internal.vpc.RouteTableAssociation
 import com.eucalyptus.compute.common.internal.vpc.Vpc
 import com.eucalyptus.compute.common.internal.vpc.Subnet as VpcSubnet
+import com.eucalyptus.crypto.Digest
 import com.eucalyptus.entities.EntityCache
 import com.eucalyptus.event.ClockTick
 import com.eucalyptus.event.Listeners
@@ -78,6 +79,7 @@ import com.eucalyptus.network.config.EdgeSubnet
 import com.eucalyptus.network.config.ManagedSubnet
 import com.eucalyptus.system.BaseDirectory
 import com.eucalyptus.system.Threads
+import com.eucalyptus.util.Callback
 import com.eucalyptus.util.Strings as EucaStrings
 import com.eucalyptus.util.TypeMapper
 import com.eucalyptus.util.TypeMappers
@@ -135,16 +137,21 @@ class NetworkInfoBroadcaster {
 
   private static final AtomicLong lastBroadcastTime = new AtomicLong( 0L );
   private static final ConcurrentMap<String,Long> activeBroadcastMap = Maps.<String,Long>newConcurrentMap( ) as ConcurrentMap<String, Long>
-  private static final EntityCache<VmInstance,VmInstanceNetworkView> instanceCache = new EntityCache<>( VmInstance.named(null), TypeMappers.lookup( VmInstance, VmInstanceNetworkView )  );
-  private static final EntityCache<NetworkGroup,NetworkGroupNetworkView> securityGroupCache = new EntityCache<>( NetworkGroup.withNaturalId( null ), TypeMappers.lookup( NetworkGroup, NetworkGroupNetworkView )  );
-
-  private static final EntityCache<Vpc,VpcNetworkView> vpcCache = new EntityCache<>( Vpc.exampleWithOwner( null ), TypeMappers.lookup( Vpc, VpcNetworkView )  );
-  private static final EntityCache<VpcSubnet,SubnetNetworkView> subnetCache = new EntityCache<>( VpcSubnet.exampleWithOwner( null ), TypeMappers.lookup( VpcSubnet, SubnetNetworkView )  );
-  private static final EntityCache<DhcpOptionSet,DhcpOptionSetNetworkView> dhcpOptionsCache = new EntityCache<>( DhcpOptionSet.exampleWithOwner( null ), TypeMappers.lookup( DhcpOptionSet, DhcpOptionSetNetworkView )  );
-  private static final EntityCache<NetworkAcl,NetworkAclNetworkView> networkAclCache = new EntityCache<>( NetworkAcl.exampleWithOwner( null ), TypeMappers.lookup( NetworkAcl, NetworkAclNetworkView )  );
-  private static final EntityCache<RouteTable,RouteTableNetworkView> routeTableCache = new EntityCache<>( RouteTable.exampleWithOwner( null ), TypeMappers.lookup( RouteTable, RouteTableNetworkView )  );
-  private static final EntityCache<InternetGateway,InternetGatewayNetworkView> internetGatewayCache = new EntityCache<>( InternetGateway.exampleWithOwner( null ), TypeMappers.lookup( InternetGateway, InternetGatewayNetworkView )  );
-  private static final EntityCache<VpcNetworkInterface,NetworkInterfaceNetworkView> networkInterfaceCache = new EntityCache<>( VpcNetworkInterface.exampleWithOwner( null ), TypeMappers.lookup( VpcNetworkInterface, NetworkInterfaceNetworkView )  );
+  private static final ConcurrentMap<String,NetworkInfoVersion> clusterVersionMap = Maps.<String,NetworkInfoVersion>newConcurrentMap( ) as ConcurrentMap<String, NetworkInfoVersion>
+  private static final Supplier<JAXBContext> networkInfoContext = Suppliers.memoize( { JAXBContext.newInstance( "com.eucalyptus.cluster" ) } as Supplier<JAXBContext> )
+  private static final Object versionLock = new Object( )
+  private static volatile NetworkInfoVersion currentVersion = new NetworkInfoVersion( 0L, '', 0L, false )
+  private static final NetworkInfoBroadcastStatistics statistics = new NetworkInfoBroadcastStatistics( )
+  private static final EntityCache<VmInstance,VmInstanceNetworkView> instanceCache = EntityCache.changeNotifying( VmInstance.named(null), TypeMappers.lookup( VmInstance, VmInstanceNetworkView ), 1, TimeUnit.MINUTES );
+  private static final EntityCache<NetworkGroup,NetworkGroupNetworkView> securityGroupCache = EntityCache.changeNotifying( NetworkGroup.withNaturalId( null ), TypeMappers.lookup( NetworkGroup, NetworkGroupNetworkView ), 1, TimeUnit.MINUTES );
+
+  private static final EntityCache<Vpc,VpcNetworkView> vpcCache = EntityCache.changeNotifying( Vpc.exampleWithOwner( null ), TypeMappers.lookup( Vpc, VpcNetworkView ), 1, TimeUnit.MINUTES );
+  private static final EntityCache<VpcSubnet,SubnetNetworkView> subnetCache = EntityCache.changeNotifying( VpcSubnet.exampleWithOwner( null ), TypeMappers.lookup( VpcSubnet, SubnetNetworkView ), 1, TimeUnit.MINUTES );
+  private static final EntityCache<DhcpOptionSet,DhcpOptionSetNetworkView> dhcpOptionsCache = EntityCache.changeNotifying( DhcpOptionSet.exampleWithOwner( null ), TypeMappers.lookup( DhcpOptionSet, DhcpOptionSetNetworkView ), 1, TimeUnit.MINUTES );
+  private static final EntityCache<NetworkAcl,NetworkAclNetworkView> networkAclCache = EntityCache.changeNotifying( NetworkAcl.exampleWithOwner( null ), TypeMappers.lookup( NetworkAcl, NetworkAclNetworkView ), 1, TimeUnit.MINUTES );
+  private static final EntityCache<RouteTable,RouteTableNetworkView> routeTableCache = EntityCache.changeNotifying( RouteTable.exampleWithOwner( null ), TypeMappers.lookup( RouteTable, RouteTableNetworkView ), 1, TimeUnit.MINUTES );
+  private static final EntityCache<InternetGateway,InternetGatewayNetworkView> internetGatewayCache = EntityCache.changeNotifying( InternetGateway.exampleWithOwner( null ), TypeMappers.lookup( InternetGateway, InternetGatewayNetworkView ), 1, TimeUnit.MINUTES );
+  private static final EntityCache<VpcNetworkInterface,NetworkInterfaceNetworkView> networkInterfaceCache = EntityCache.changeNotifying( VpcNetworkInterface.exampleWithOwner( null ), TypeMappers.lookup( VpcNetworkInterface, NetworkInterfaceNetworkView ), 1, TimeUnit.MINUTES );
 
   interface NetworkInfoSource {
     Iterable<VmInstanceNetworkView> getInstances( );
@@ -203,6 +210,7 @@ class NetworkInfoBroadcaster {
 
   @SuppressWarnings("UnnecessaryQualifiedReference")
   static void broadcastNetworkInfo( ){
+    final long start = System.currentTimeMillis( )
     // populate with info directly from configuration
     final Optional<NetworkConfiguration> networkConfiguration = NetworkConfigurations.networkConfiguration
     final List<Cluster> clusters = Clusters.getInstance( ).listValues( )
@@ -214,31 +222,48 @@ class NetworkInfoBroadcaster {
         { Topology.lookup(Eucalyptus).inetAddress.hostAddress } as Supplier<String>,
         NetworkConfigurations.&loadSystemNameservers as Function<List<String>,List<String>> )
 
-    final JAXBContext jc = JAXBContext.newInstance( "com.eucalyptus.cluster" )
+    final long built = System.currentTimeMillis( )
     final StringWriter writer = new StringWriter( 8192 )
-    jc.createMarshaller().marshal( info, writer )
+    networkInfoContext.get( ).createMarshaller( ).marshal( info, writer )
 
     final String networkInfo = writer.toString( )
     if ( logger.isTraceEnabled( ) ) {
       logger.trace( "Broadcasting network information:\n${networkInfo}" )
     }
-
-    final File newView = BaseDirectory.RUN.getChildFile( "global_network_info.xml.temp" )
-    if ( newView.exists( ) && !newView.delete( ) ) logger.warn( "Error deleting stale network view ${newView.getAbsolutePath()}" )
-    GFiles.write( networkInfo, newView, Charsets.UTF_8 )
-    JFiles.move( newView.toPath( ), BaseDirectory.RUN.getChildFile( "global_network_info.xml" ).toPath( ), StandardCopyOption.REPLACE_EXISTING )
+    final long marshalled = System.currentTimeMillis( )
+
+    final NetworkInfoVersion version = updateVersion( networkInfo )
+    if ( version.changed ) {
+      final File newView = BaseDirectory.RUN.getChildFile( "global_network_info.xml.temp" )
+      if ( newView.exists( ) && !newView.delete( ) ) logger.warn( "Error deleting stale network view ${newView.getAbsolutePath()}" )
+      GFiles.write( networkInfo, newView, Charsets.UTF_8 )
+      JFiles.move( newView.toPath( ), BaseDirectory.RUN.getChildFile( "global_network_info.xml" ).toPath( ), StandardCopyOption.REPLACE_EXISTING )
+    }
 
     final BroadcastNetworkInfoCallback callback = new BroadcastNetworkInfoCallback( networkInfo )
+    int sent = 0
+    int skipped = 0
     clusters.each { Cluster cluster ->
+      if ( !isBroadcastRequired( cluster.partition, version ) ) {
+        logger.trace( "Skipping broadcast of unchanged network information version ${version.version} for partition ${cluster.partition}" )
+        skipped++
+        return
+      }
       final Long broadcastTime = System.currentTimeMillis( )
       if ( null == activeBroadcastMap.putIfAbsent( cluster.partition, broadcastTime ) ) {
         try {
-          AsyncRequests.newRequest( callback.newInstance( ) ).then( new UnconditionalCallback<BroadcastNetworkInfoResponseType>() {
+          AsyncRequests.newRequest( callback.newInstance( ) ).then( new Callback.Success<BroadcastNetworkInfoResponseType>() {
+            @Override
+            void fire( final BroadcastNetworkInfoResponseType response ) {
+              clusterVersionMap.put( cluster.partition, new NetworkInfoVersion( version.version, version.digest, broadcastTime, false ) )
+            }
+          } ).then( new UnconditionalCallback<BroadcastNetworkInfoResponseType>() {
             @Override
             void fire() {
               activeBroadcastMap.remove( cluster.partition, broadcastTime )
             }
           } ).dispatch( cluster.configuration )
+          sent++
         } catch ( e ) {
           activeBroadcastMap.remove( cluster.partition, broadcastTime )
           logger.error( "Error broadcasting network information to cluster ${cluster.partition} (${cluster.name})" as String, e )
@@ -248,6 +273,92 @@ class NetworkInfoBroadcaster {
       }
       void
     }
+    final long dispatched = System.currentTimeMillis( )
+    statistics.record( version.changed, networkInfo.length( ), built - start, marshalled - built, dispatched - marshalled, sent, skipped )
+    if ( logger.isDebugEnabled( ) ) {
+      logger.debug( "Network information version ${version.version} (${version.changed?'changed':'unchanged'}, ${networkInfo.length()} chars) " +
+          "built in ${built - start}ms, marshalled in ${marshalled - built}ms, dispatched to ${sent} clusters in ${dispatched - marshalled}ms, " +
+          "skipped ${skipped} up to date clusters; ${statistics}" )
+    }
+  }
+
+  /**
+   * The version is bumped whenever the content of the network information
+   * changes, so unchanged information need only be resent periodically.
+   */
+  private static NetworkInfoVersion updateVersion( final String networkInfo ) {
+    final String digest = Digest.SHA256.digestHex( networkInfo.getBytes( Charsets.UTF_8 ) )
+    synchronized ( versionLock ) {
+      final NetworkInfoVersion previous = currentVersion
+      if ( previous.digest != digest ) {
+        currentVersion = new NetworkInfoVersion( previous.version + 1, digest, System.currentTimeMillis( ), true )
+      } else {
+        currentVersion = new NetworkInfoVersion( previous.version, digest, previous.timestamp, false )
+      }
+      currentVersion
+    }
+  }
+
+  @PackageScope
+  static boolean isBroadcastRequired( final String partition, final NetworkInfoVersion version ) {
+    final NetworkInfoVersion clusterVersion = clusterVersionMap.get( partition )
+    final Integer maxUnchangedInterval = NetworkGroups.MAX_UNCHANGED_BROADCAST_INTERVAL
+    clusterVersion == null ||
+        clusterVersion.version != version.version ||
+        clusterVersion.digest != version.digest ||
+        maxUnchangedInterval == null ||
+        maxUnchangedInterval <= 0 ||
+        clusterVersion.timestamp + TimeUnit.SECONDS.toMillis( maxUnchangedInterval ) < System.currentTimeMillis( )
+  }
+
+  static NetworkInfoBroadcastStatistics getStatistics( ) {
+    statistics
+  }
+
+  @Immutable
+  static class NetworkInfoVersion {
+    long version
+    String digest
+    long timestamp
+    boolean changed
+  }
+
+  static class NetworkInfoBroadcastStatistics {
+    private final AtomicLong broadcasts = new AtomicLong( )
+    private final AtomicLong unchangedBroadcasts = new AtomicLong( )
+    private final AtomicLong buildMillis = new AtomicLong( )
+    private final AtomicLong marshalMillis = new AtomicLong( )
+    private final AtomicLong sendMillis = new AtomicLong( )
+    private final AtomicLong sentCount = new AtomicLong( )
+    private final AtomicLong skippedCount = new AtomicLong( )
+    private final AtomicLong sentChars = new AtomicLong( )
+
+    void record( boolean changed, int chars, long build, long marshal, long send, int sent, int skipped ) {
+      broadcasts.incrementAndGet( )
+      if ( !changed ) unchangedBroadcasts.incrementAndGet( )
+      buildMillis.addAndGet( build )
+      marshalMillis.addAndGet( marshal )
+      sendMillis.addAndGet( send )
+      sentCount.addAndGet( sent )
+      skippedCount.addAndGet( skipped )
+      sentChars.addAndGet( chars * (long) sent )
+    }
+
+    long getBroadcasts( ) { broadcasts.get( ) }
+    long getUnchangedBroadcasts( ) { unchangedBroadcasts.get( ) }
+    long getBuildMillis( ) { buildMillis.get( ) }
+    long getMarshalMillis( ) { marshalMillis.get( ) }
+    long getSendMillis( ) { sendMillis.get( ) }
+    long getSentCount( ) { sentCount.get( ) }
+    long getSkippedCount( ) { skippedCount.get( ) }
+    long getSentChars( ) { sentChars.get( ) }
+
+    @Override
+    String toString( ) {
+      "broadcasts=${broadcasts.get()} unchanged=${unchangedBroadcasts.get()} " +
+          "buildMillis=${buildMillis.get()} marshalMillis=${marshalMillis.get()} sendMillis=${sendMillis.get()} " +
+          "sent=${sentCount.get()} skipped=${skippedCount.get()} sentChars=${sentChars.get()}"
+    }
   }
 
   @PackageScope
@@ -32,6 +32,11 @@ interface PrivateAddressAllocator {
 
   String allocate( String scope, String tag, Iterable<Integer> addresses ) throws NotEnoughResourcesException
 
+  /**
+   * Allocate count addresses, either all addresses are allocated or none are.
+   */
+  List<String> allocate( String scope, String tag, Iterable<Integer> addresses, int count ) throws NotEnoughResourcesException
+
   void associate( String address, VmInstance instance ) throws ResourceAllocationException
 
   String release( String scope, String address, String ownerId )
@@ -24,21 +24,31 @@ import com.eucalyptus.compute.common.internal.util.ResourceAllocationException
 import com.eucalyptus.util.RestrictedTypes
 import com.eucalyptus.compute.common.internal.vm.VmInstance
 import com.google.common.collect.Iterables
+import com.google.common.collect.Lists
+import com.google.common.collect.Maps
 import groovy.transform.CompileStatic
 import org.apache.log4j.Logger
 
+import java.util.concurrent.ConcurrentMap
 import java.util.concurrent.TimeUnit
 
 import static com.eucalyptus.compute.common.internal.util.Reference.State.*
 
 /**
+ * Support for private address allocators.
  *
+ * <p>Allocated addresses are tracked in a bitmap for each scope, loaded from
+ * the persisted addresses on first use, so candidate addresses that are in
+ * use are skipped without a persistence call.</p>
  */
 @CompileStatic
 abstract class PrivateAddressAllocatorSupport implements PrivateAddressAllocator {
 
+  private static final String GLOBAL_SCOPE = ''
+
   private final Logger logger
   private final PrivateAddressPersistence persistence
+  private final ConcurrentMap<String,AddressBitmap> bitmaps = Maps.newConcurrentMap( )
 
   protected PrivateAddressAllocatorSupport( final Logger logger,
                                             final PrivateAddressPersistence persistence ) {
@@ -48,10 +58,27 @@ abstract class PrivateAddressAllocatorSupport implements PrivateAddressAllocator
 
   @Override
   String allocate( String scope, String tag, Iterable<Integer> addresses ) throws NotEnoughResourcesException {
-    allocate( addresses, { Integer address ->
-      getDistinctPersistence( ).tryCreate( scope, tag, PrivateAddresses.fromInteger( address.intValue( ) ) )
-          .transform( RestrictedTypes.toDisplayName( ) ).orNull( )
-    } as Closure<String>) ?: typedThrow(String){ new NotEnoughResourcesException( 'Insufficient addresses' ) }
+    allocate( scope, tag, addresses, 1 ).get( 0 )
+  }
+
+  @Override
+  List<String> allocate( String scope, String tag, Iterable<Integer> addresses, int count ) throws NotEnoughResourcesException {
+    final List<String> allocated = Lists.newArrayListWithCapacity( count )
+    try {
+      while ( allocated.size( ) < count ) {
+        String address = allocate( addresses, allocator( scope, tag, bitmap( scope ) ) )
+        if ( !address ) { // addresses may have been released without the bitmap being updated
+          address = allocate( addresses, allocator( scope, tag, rebuildBitmap( scope ) ) )
+        }
+        allocated.add( address ?: typedThrow(String){ new NotEnoughResourcesException( 'Insufficient addresses' ) } )
+      }
+    } catch ( NotEnoughResourcesException e ) {
+      for ( String address : allocated ) {
+        release( scope, address, null )
+      }
+      throw e
+    }
+    allocated
   }
 
   @Override
@@ -63,15 +90,21 @@ abstract class PrivateAddressAllocatorSupport implements PrivateAddressAllocator
 
   @Override
   String release( String scope, String address, String ownerId ) {
-    getDistinctPersistence( ).withFirstMatch( PrivateAddress.named( scope, address ), ownerId ) { PrivateAddress privateAddress ->
+    boolean tornDown = false
+    final String tag = getDistinctPersistence( ).withFirstMatch( PrivateAddress.named( scope, address ), ownerId ) { PrivateAddress privateAddress ->
       if ( EXTANT.apply( privateAddress ) || !privateAddress.assignedPartition ) {
         getPersistence( ).teardown( privateAddress )
+        tornDown = true
       } else {
         privateAddress.set( null )
         privateAddress.releasing( )
       }
       privateAddress.tag
     }.orNull( )
+    if ( tornDown ) {
+      released( scope, address )
+    }
+    tag
   }
 
   @Override
@@ -85,10 +118,12 @@ abstract class PrivateAddressAllocatorSupport implements PrivateAddressAllocator
 
   @Override
   void releasing( Iterable<String> activeAddresses, String partition ) {
+    final List<PrivateAddress> tornDown = Lists.newArrayList( )
     getPersistence( ).withMatching( PrivateAddress.inState( RELEASING, partition ) ) { PrivateAddress privateAddress ->
       if ( !Iterables.contains( activeAddresses, privateAddress.name ) && privateAddress.getScope( ) == null ) {
         logger.debug( "Releasing private IP address ${privateAddress.name}" )
         getPersistence( ).teardown( privateAddress )
+        tornDown.add( privateAddress )
       }
     }
 
@@ -97,12 +132,59 @@ abstract class PrivateAddressAllocatorSupport implements PrivateAddressAllocator
            isTimedOut( privateAddress.lastUpdateMillis( ), NetworkGroups.NETWORK_INDEX_PENDING_TIMEOUT ) ) {
         logger.warn( "Timed out pending private IP address ${privateAddress.name}" )
         getPersistence( ).teardown( privateAddress )
+        tornDown.add( privateAddress )
       }
     }
+
+    for ( PrivateAddress privateAddress : tornDown ) {
+      released( privateAddress.scope, privateAddress.name )
+    }
   }
 
+  /**
+   * Allocate an address using the given allocator.
+   *
+   * @param addresses The candidate addresses
+   * @param allocator Closure that returns the allocated address or null if the candidate is not available
+   * @return The allocated address or null
+   */
   protected abstract String allocate( Iterable<Integer> addresses, Closure<String> allocator )
 
+  /**
+   * Allocator for candidate addresses that skips addresses marked in the
+   * bitmap, so only addresses believed to be free are persisted.
+   */
+  private Closure<String> allocator( final String scope, final String tag, final AddressBitmap bitmap ) {
+    { Integer address ->
+      if ( bitmap.get( address.intValue( ) ) ) {
+        null
+      } else {
+        final String allocated = getDistinctPersistence( ).tryCreate( scope, tag, PrivateAddresses.fromInteger( address.intValue( ) ) )
+            .transform( RestrictedTypes.toDisplayName( ) ).orNull( )
+        bitmap.set( address.intValue( ) ) // allocated here or elsewhere
+        allocated
+      }
+    } as Closure<String>
+  }
+
+  private AddressBitmap bitmap( final String scope ) {
+    bitmaps.get( scope ?: GLOBAL_SCOPE ) ?: rebuildBitmap( scope )
+  }
+
+  private AddressBitmap rebuildBitmap( final String scope ) {
+    final AddressBitmap bitmap = new AddressBitmap( )
+    for ( String address : getPersistence( ).list( scope ) ) {
+      bitmap.set( PrivateAddresses.asInteger( address ) )
+    }
+    bitmaps.put( scope ?: GLOBAL_SCOPE, bitmap )
+    logger.debug( "Loaded ${bitmap.cardinality( )} allocated private addresses for scope ${scope ?: 'global'}" )
+    bitmap
+  }
+
+  private void released( final String scope, final String address ) {
+    bitmaps.get( scope ?: GLOBAL_SCOPE )?.clear( PrivateAddresses.asInteger( address ) )
+  }
+
   protected PrivateAddressPersistence getPersistence( ){
     persistence
   }
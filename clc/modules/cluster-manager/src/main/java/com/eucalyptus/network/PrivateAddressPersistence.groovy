@@ -32,6 +32,11 @@ interface PrivateAddressPersistence {
 
   void teardown( PrivateAddress address )
 
+  /**
+   * List the addresses allocated in the given scope.
+   */
+  Iterable<String> list( String scope )
+
   def <V> Optional<V> withFirstMatch( PrivateAddress address, String ownerId, Closure<V> closure )
 
   void withMatching( PrivateAddress address, Closure<?> closure )
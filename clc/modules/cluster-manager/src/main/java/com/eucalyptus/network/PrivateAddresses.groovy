@@ -63,6 +63,15 @@ class PrivateAddresses {
     allocator.allocate( scope, tag, addresses )
   }
 
+  /**
+   * Allocate private addresses, either all addresses are allocated or none are.
+   *
+   * <p>There must not be an active transaction for private addresses.</p>
+   */
+  static List<String> allocate( String scope, String tag, Iterable<Integer> addresses, int count ) throws NotEnoughResourcesException {
+    allocator.allocate( scope, tag, addresses, count )
+  }
+
   static void associate( String address, VmInstance instance ) throws ResourceAllocationException {
     allocator.associate( address, instance )
   }
@@ -574,6 +574,14 @@ public class VmInstances extends com.eucalyptus.compute.common.internal.vm.VmIns
                       initial = "16" )
   public static Integer   MAX_STATE_THREADS             = 16;
 
+  @ConfigurableField( description = "Maximum number of reported instance states to update in a single transaction.",
+                      initial = "50" )
+  public static Integer   VM_STATE_UPDATE_BATCH_SIZE    = 50;
+
+  @ConfigurableField( description = "Maximum number of threads used per cluster to update reported instance states.",
+                      initial = "4" )
+  public static Integer   VM_STATE_UPDATE_THREADS       = 4;
+
   @ConfigurableField( description = "Amount of time (in minutes) before a EBS volume backing the instance is created",
                       initial = "30" )
   public static Integer   EBS_VOLUME_CREATION_TIMEOUT   = 30;
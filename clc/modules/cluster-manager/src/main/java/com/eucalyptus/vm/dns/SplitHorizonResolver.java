@@ -69,6 +69,7 @@ import java.util.NoSuchElementException;
 import org.apache.log4j.Logger;
 import org.xbill.DNS.Name;
 import org.xbill.DNS.Record;
+import com.eucalyptus.address.Address;
 import com.eucalyptus.address.Addresses;
 import com.eucalyptus.bootstrap.Bootstrap;
 import com.eucalyptus.cluster.ClusterConfiguration;
@@ -81,6 +82,7 @@ import com.eucalyptus.util.Classes;
 import com.eucalyptus.util.Subnets;
 import com.eucalyptus.util.Subnets.SystemSubnetPredicate;
 import com.eucalyptus.util.dns.DnsResolvers;
+import com.eucalyptus.util.dns.DnsResolvers.CacheableDnsResolver;
 import com.eucalyptus.util.dns.DnsResolvers.DnsResolver;
 import com.eucalyptus.util.dns.DnsResolvers.DnsResponse;
 import com.eucalyptus.util.dns.DnsResolvers.RequestType;
@@ -89,11 +91,12 @@ import com.eucalyptus.compute.common.internal.vm.VmInstance;
 import com.eucalyptus.vm.VmInstances;
 import com.google.common.base.Objects;
 import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableList;
 import com.google.common.net.InetAddresses;
 
 @ConfigurableClass( root = "dns.split_horizon",
                     description = "Options controlling Split-Horizon DNS resolution." )
-public abstract class SplitHorizonResolver implements DnsResolver {
+public abstract class SplitHorizonResolver implements CacheableDnsResolver {
   private static final Logger LOG     = Logger.getLogger( SplitHorizonResolver.class );
   @ConfigurableField( description = "Enable the split-horizon DNS resolution for internal instance public DNS name queries.  "
                                     + "Note: dns.enable must also be 'true'" )
@@ -296,6 +299,14 @@ public abstract class SplitHorizonResolver implements DnsResolver {
     return false;
   }
   
+  /**
+   * Responses depend on instance and public address state.
+   */
+  @Override
+  public Iterable<Class<?>> getCacheDependencies( ) {
+    return ImmutableList.<Class<?>>of( VmInstance.class, Address.class );
+  }
+
   @Override
   public String toString( ) {
     return this.getClass( ).getSimpleName( );
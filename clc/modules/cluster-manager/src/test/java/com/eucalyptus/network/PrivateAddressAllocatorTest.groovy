@@ -42,6 +42,9 @@ class PrivateAddressAllocatorTest {
     verifyEarlyRelease( persistence.reset( ), allocator )
     verifyLazyAllocation( persistence.reset( ), allocator )
     verifyFullRange( persistence.reset( ), allocator )
+    verifyBatchAllocation( persistence.reset( ), allocator )
+    verifyBatchAllocationFailure( persistence.reset( ), allocator )
+    verifyReleasedElsewhere( persistence.reset( ), allocator )
   }
 
   @Test
@@ -53,6 +56,9 @@ class PrivateAddressAllocatorTest {
     verifyEarlyRelease( persistence.reset( ), allocator )
     verifyLazyAllocation( persistence.reset( ), allocator )
     verifyFullRange( persistence.reset( ), allocator )
+    verifyBatchAllocation( persistence.reset( ), allocator )
+    verifyBatchAllocationFailure( persistence.reset( ), allocator )
+    verifyReleasedElsewhere( persistence.reset( ), allocator )
   }
 
   private void verifyBasicAllocation( TestPrivateAddressPersistence persistence,
@@ -103,6 +109,33 @@ class PrivateAddressAllocatorTest {
     assertTrue( 'one address allocated', persistence.addresses.size( ) == 100 );
   }
 
+  private void verifyBatchAllocation( TestPrivateAddressPersistence persistence,
+                                     PrivateAddressAllocator allocator ) {
+    List<String> addresses = allocator.allocate( null, null, ranges( '10.0.0.0-10.0.0.10' ), 5 )
+    assertEquals( 'addresses allocated', 5, persistence.addresses.size( ) )
+    assertEquals( 'distinct addresses', 5, new HashSet<String>( addresses ).size( ) )
+    addresses.each{ String address -> allocator.release( null, address, null ) }
+    assertTrue( 'no addresses allocated', persistence.addresses.isEmpty( ) )
+  }
+
+  private void verifyBatchAllocationFailure( TestPrivateAddressPersistence persistence,
+                                            PrivateAddressAllocator allocator ) {
+    allocator.allocate( null, null, ranges( '10.0.0.0-10.0.0.3' ) )
+    try {
+      allocator.allocate( null, null, ranges( '10.0.0.0-10.0.0.3' ), 4 )
+      fail( 'Allocation should have failed due to insufficient addresses' )
+    } catch ( NotEnoughResourcesException ) {
+      assertEquals( 'one address allocated', 1, persistence.addresses.size( ) );
+    }
+  }
+
+  private void verifyReleasedElsewhere( TestPrivateAddressPersistence persistence,
+                                        PrivateAddressAllocator allocator ) {
+    String address = allocator.allocate( null, null, ranges( '10.0.0.0' ) )
+    persistence.addresses.remove( address ) // not released via the allocator
+    assertEquals( 'address reallocated', address, allocator.allocate( null, null, ranges( '10.0.0.0' ) ) )
+  }
+
   private VmInstance instance( ) {
     new VmInstance( null, 'i-12345678' ) {
       @Override String getPartition( ) {  'PARTI00' }
@@ -129,6 +162,11 @@ class PrivateAddressAllocatorTest {
       addresses.remove( address.name )
     }
 
+    @Override
+    Iterable<String> list( final String scope ) {
+      addresses.values( ).findAll{ PrivateAddress pa -> pa.scope == scope }.collect{ PrivateAddress pa -> (String) pa.name }
+    }
+
     @Override
     def <V> Optional<V> withFirstMatch( final PrivateAddress address,
                                         final String ownerId,
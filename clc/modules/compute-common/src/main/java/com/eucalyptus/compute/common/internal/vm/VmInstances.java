@@ -61,6 +61,7 @@
  ************************************************************************/
 package com.eucalyptus.compute.common.internal.vm;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -70,7 +71,11 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.persistence.EntityTransaction;
 import org.apache.log4j.Logger;
+import org.hibernate.Criteria;
 import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Example;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
 import com.eucalyptus.compute.common.CloudMetadata;
 import com.eucalyptus.entities.Entities;
@@ -184,10 +189,79 @@ public class VmInstances {
     ) );
   }
 
+  /**
+   * List identifiers for instances in any state that match the given parameters.
+   *
+   * <p>Only the identifier column is read. Identifiers are returned in order
+   * starting after the given identifier, so a batch can be continued from the
+   * last identifier of the previous batch. There are no more identifiers if
+   * fewer than batchSize are returned.</p>
+   *
+   * <P>The caller must have an active transaction for the entity.</P>
+   *
+   * @param ownerFullName The owning user or account
+   * @param criterion Restrictions for the query
+   * @param aliases Any aliases necessary for the given criterion
+   * @param afterInstanceId The identifier to list after, null to start at the first
+   * @param batchSize The maximum number of identifiers to list
+   * @return The identifiers
+   */
+  @SuppressWarnings( "unchecked" )
+  public static List<String> listIdentifiers( @Nullable final OwnerFullName ownerFullName,
+                                              final Criterion criterion,
+                                              final Map<String,String> aliases,
+                                              @Nullable final String afterInstanceId,
+                                              final int batchSize ) {
+    final Criteria criteria = Entities.createCriteria( VmInstance.class )
+        .setReadOnly( true )
+        .add( Example.create( VmInstance.named( ownerFullName, null ) ) )
+        .add( criterion )
+        .setProjection( Projections.distinct( Projections.property( "displayName" ) ) )
+        .addOrder( Order.asc( "displayName" ) )
+        .setMaxResults( batchSize )
+        .setFetchSize( batchSize );
+    if ( afterInstanceId != null ) {
+      criteria.add( Restrictions.gt( "displayName", afterInstanceId ) );
+    }
+    for ( final Map.Entry<String,String> aliasEntry : aliases.entrySet() ) {
+      criteria.createAlias( aliasEntry.getKey(), aliasEntry.getValue() ); // inner join by default
+    }
+    return (List<String>) criteria.list( );
+  }
+
+  /**
+   * List the instances with the given identifiers that match the given owner/predicate.
+   *
+   * <P>The caller must have an active transaction for the entity.</P>
+   *
+   * @param ownerFullName The owning user or account
+   * @param instanceIds The instance identifiers
+   * @param predicate The predicate to match
+   * @return The matching instances in identifier order
+   */
+  @SuppressWarnings( "unchecked" )
+  public static List<VmInstance> listByIdentifiers( @Nullable final OwnerFullName ownerFullName,
+                                                    final Collection<String> instanceIds,
+                                                    @Nullable final Predicate<? super VmInstance> predicate ) {
+    if ( instanceIds.isEmpty( ) ) {
+      return Lists.newArrayList( );
+    }
+    final List<VmInstance> instances = (List<VmInstance>) Entities.createCriteria( VmInstance.class )
+        .setReadOnly( true )
+        .setResultTransformer( Criteria.DISTINCT_ROOT_ENTITY )
+        .add( Restrictions.in( "displayName", instanceIds ) )
+        .addOrder( Order.asc( "displayName" ) )
+        .list( );
+    return Lists.newArrayList( Iterables.filter( instances, Predicates.and(
+        RestrictedTypes.filterByOwner( ownerFullName ),
+        checkPredicate( predicate )
+    ) ) );
+  }
+
   /**
    * List instances in any state that match the given parameters.
    */
-  public static List<VmInstance> listByClientToken( @Nullable final OwnerFullName ownerFullName,
+  public static List<VmInstance> listByClientToken(@Nullable final OwnerFullName ownerFullName,
                                                     @Nullable final String clientToken,
                                                     @Nullable Predicate<? super VmInstance> predicate ) {
     return list( new Supplier<List<VmInstance>>() {
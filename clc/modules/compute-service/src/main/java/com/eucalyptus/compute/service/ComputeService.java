@@ -123,10 +123,8 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Multimap;
 import com.google.common.collect.Ordering;
 import com.google.common.collect.Sets;
-import com.google.common.collect.TreeMultimap;
 
 import edu.ucsb.eucalyptus.msgs.BaseMessage;
 import edu.ucsb.eucalyptus.msgs.BaseMessages;
@@ -140,6 +138,8 @@ import edu.ucsb.eucalyptus.msgs.BaseMessages;
 public class ComputeService implements Callable {
   private static Logger LOG = Logger.getLogger( ComputeService.class );
 
+  private static final int DESCRIBE_INSTANCES_BATCH_SIZE = 500;
+
   private final DhcpOptionSets dhcpOptionSets;
   private final InternetGateways internetGateways;
   private final NetworkAcls networkAcls;
@@ -359,9 +359,18 @@ public class ComputeService implements Callable {
     final DescribeInstancesResponseType reply = msg.getReply( );
     Context ctx = Contexts.lookup( );
     boolean showAll = msg.getInstancesSet( ).remove( "verbose" ) || !msg.getInstancesSet( ).isEmpty( );
-    final Multimap<String, RunningInstancesItemType> instanceMap = TreeMultimap.create();
-    final Map<String, ReservationInfoType> reservations = Maps.newHashMap();
+    final Map<String, ReservationInfoType> reservations = Maps.newLinkedHashMap( );
     final Collection<String> identifiers = normalizeInstanceIdentifiers( msg.getInstancesSet() );
+    final Integer maxResults = msg.getMaxResults( );
+    if ( maxResults != null && !identifiers.isEmpty( ) ) {
+      throw new ComputeServiceClientException( "InvalidParameterCombination",
+          "The parameter instancesSet cannot be used with the parameter maxResults" );
+    }
+    if ( maxResults != null && ( maxResults < 5 || maxResults > 1000 ) ) {
+      throw new ComputeServiceClientException( "InvalidParameterValue",
+          "Value ( "+maxResults+" ) for parameter maxResults is invalid. Expecting a value between 5 and 1000." );
+    }
+    final String nextToken = normalizeNextToken( msg.getNextToken( ) );
     final Filter filter = Filters.generateFor( msg.getFilterSet(), VmInstance.class )
         .withOptionalInternalFilter( "instance-id", identifiers )
         .generate();
@@ -374,34 +383,62 @@ public class ComputeService implements Callable {
     final OwnerFullName ownerFullName = ( ctx.isAdministrator( ) && showAll )
         ? null
         : ctx.getUserFullName( ).asAccountFullName( );
+    final TagSupport tagSupport = TagSupport.forResourceClass( VmInstance.class );
+    final AccountFullName accountFullName = AccountFullName.getInstance( ctx.getAccountNumber( ) );
+    final long start = System.currentTimeMillis( );
+    int remaining = maxResults == null ? Integer.MAX_VALUE : maxResults;
+    int count = 0;
     try ( final TransactionResource db = Entities.readOnlyDistinctTransactionFor( VmInstance.class ) ) {
-      final List<VmInstance> instances =
-          VmInstances.list( ownerFullName, criterion, filter.getAliases(), requestedAndAccessible );
-      final Map<String,List<Tag>> tagsMap = TagSupport.forResourceClass( VmInstance.class )
-          .getResourceTagMap( AccountFullName.getInstance( ctx.getAccountNumber() ),
-              Iterables.transform( instances, CloudMetadatas.toDisplayName() ) );
-
-      for ( final VmInstance vm : instances ) {
-        if ( instanceMap.put( vm.getReservationId( ), VmInstance.transform( vm ) ) && !reservations.containsKey( vm.getReservationId( ) ) ) {
-          reservations.put( vm.getReservationId( ), TypeMappers.transform( vm, ReservationInfoType.class ) );
-        }
-      }
-      List<ReservationInfoType> replyReservations = reply.getReservationSet( );
-      for ( ReservationInfoType r : reservations.values( ) ) {
-        Collection<RunningInstancesItemType> instanceSet = instanceMap.get( r.getReservationId( ) );
-        if ( !instanceSet.isEmpty( ) ) {
-          for ( final RunningInstancesItemType instancesItemType : instanceSet ) {
-            Tags.addFromTags( instancesItemType.getTagSet(), ResourceTag.class, tagsMap.get( instancesItemType.getInstanceId() ) );
+      // Instances are read in identifier order a batch at a time, identifiers
+      // first and then the entities for the batch, so only one batch of
+      // entities is in the session at a time.
+      String afterInstanceId = nextToken;
+      String lastInstanceId = null;
+      batches:
+      while ( true ) {
+        // one more than remaining to find out if there is a next page
+        final int batchSize = remaining < DESCRIBE_INSTANCES_BATCH_SIZE ? remaining + 1 : DESCRIBE_INSTANCES_BATCH_SIZE;
+        final List<String> instanceIds = VmInstances.listIdentifiers(
+            ownerFullName, criterion, filter.getAliases( ), afterInstanceId, batchSize );
+        if ( instanceIds.isEmpty( ) ) break;
+        afterInstanceId = instanceIds.get( instanceIds.size( ) - 1 );
+        final List<VmInstance> instances = VmInstances.listByIdentifiers( ownerFullName, instanceIds, requestedAndAccessible );
+        final Map<String,List<Tag>> tagsMap = instances.isEmpty( ) ?
+            Collections.<String,List<Tag>>emptyMap( ) :
+            tagSupport.getResourceTagMap( accountFullName, Iterables.transform( instances, CloudMetadatas.toDisplayName() ) );
+        for ( final VmInstance vm : instances ) {
+          if ( remaining == 0 ) {
+            // there is at least one more matching instance
+            reply.setNextToken( lastInstanceId );
+            break batches;
+          }
+          final RunningInstancesItemType instancesItemType = VmInstance.transform( vm );
+          Tags.addFromTags( instancesItemType.getTagSet(), ResourceTag.class, tagsMap.get( instancesItemType.getInstanceId() ) );
+          ReservationInfoType reservation = reservations.get( vm.getReservationId( ) );
+          if ( reservation == null ) {
+            reservation = TypeMappers.transform( vm, ReservationInfoType.class );
+            reservations.put( vm.getReservationId( ), reservation );
           }
-          r.getInstancesSet( ).addAll( instanceSet );
-          replyReservations.add( r );
+          reservation.getInstancesSet( ).add( instancesItemType );
+          lastInstanceId = vm.getDisplayName( );
+          remaining--;
+          count++;
         }
+        for ( final VmInstance vm : instances ) {
+          Entities.evict( vm );
+        }
+        if ( instanceIds.size( ) < batchSize ) break;
       }
+      reply.getReservationSet( ).addAll( reservations.values( ) );
     } catch ( final Exception e ) {
       LOG.error( e );
       LOG.debug( e, e );
       throw new EucalyptusCloudException( e.getMessage( ) );
     }
+    if ( LOG.isDebugEnabled( ) ) {
+      LOG.debug( "Described " + count + " instances in " + reservations.size( ) + " reservations" +
+          ( maxResults == null ? "" : " (page size " + maxResults + ")" ) + " in " + ( System.currentTimeMillis( ) - start ) + "ms" );
+    }
     return reply;
   }
 
@@ -1109,6 +1146,16 @@ public class ComputeService implements Callable {
     }
   }
 
+  private static String normalizeNextToken( final String nextToken ) throws EucalyptusCloudException {
+    try {
+      return Strings.isNullOrEmpty( nextToken ) ?
+          null :
+          ResourceIdentifiers.parse( VmInstance.ID_PREFIX, nextToken ).getIdentifier( );
+    } catch ( final InvalidResourceIdentifier e ) {
+      throw new ComputeServiceClientException( "InvalidParameterValue", "Invalid value for nextToken: \""+nextToken+"\"" );
+    }
+  }
+
   private static List<String> normalizeInstanceIdentifiers( final List<String> identifiers ) throws EucalyptusCloudException {
     try {
       return ResourceIdentifiers.normalize( VmInstance.ID_PREFIX, identifiers );
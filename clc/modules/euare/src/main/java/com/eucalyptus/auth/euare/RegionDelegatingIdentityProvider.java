@@ -21,6 +21,7 @@ package com.eucalyptus.auth.euare;
 
 import java.util.List;
 import javax.annotation.Nonnull;
+import com.eucalyptus.auth.AccessKeyPrincipalCache;
 import com.eucalyptus.auth.AuthException;
 import com.eucalyptus.auth.DatabaseIdentityProvider;
 import com.eucalyptus.auth.api.IdentityProvider;
@@ -80,6 +81,20 @@ public class RegionDelegatingIdentityProvider implements IdentityProvider {
 
   @Override
   public UserPrincipal lookupPrincipalByAccessKeyId( final String keyId, final String nonce ) throws AuthException {
+    if ( nonce == null ) { // principals with nonce derived credentials are not cached
+      final UserPrincipal cached = AccessKeyPrincipalCache.get( keyId );
+      if ( cached != null ) {
+        return cached;
+      }
+      final long generation = AccessKeyPrincipalCache.generation( );
+      final UserPrincipal principal = lookupPrincipalByAccessKeyIdUncached( keyId, null );
+      AccessKeyPrincipalCache.put( keyId, principal, generation );
+      return principal;
+    }
+    return lookupPrincipalByAccessKeyIdUncached( keyId, nonce );
+  }
+
+  private UserPrincipal lookupPrincipalByAccessKeyIdUncached( final String keyId, final String nonce ) throws AuthException {
     return regionDispatchByIdentifier( keyId, new NonNullFunction<IdentityProvider, UserPrincipal>() {
       @Nonnull
       @Override
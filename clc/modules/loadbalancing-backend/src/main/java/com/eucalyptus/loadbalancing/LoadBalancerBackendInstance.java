@@ -60,6 +60,7 @@ import com.eucalyptus.loadbalancing.activities.EucalyptusActivityTasks;
 import com.eucalyptus.loadbalancing.backend.InternalFailure400Exception;
 import com.eucalyptus.loadbalancing.backend.InvalidEndPointException;
 import com.eucalyptus.loadbalancing.backend.LoadBalancingException;
+import com.eucalyptus.loadbalancing.backend.ServoDescriptionCache;
 import com.eucalyptus.loadbalancing.common.LoadBalancingBackend;
 import com.eucalyptus.util.Exceptions;
 import com.eucalyptus.util.FullName;
@@ -430,6 +431,7 @@ public class LoadBalancerBackendInstance extends UserMetadata<LoadBalancerBacken
 			}
 			
 			final List<LoadBalancerBackendInstance> beToDelete = Lists.newArrayList();
+			final Map<String, LoadBalancer> changedLbs = new HashMap<String, LoadBalancer>();
 			try ( final TransactionResource db = Entities.transactionFor( LoadBalancerBackendInstance.class ) ) {
 				for(final LoadBalancerBackendInstance be : stateOutdated){
 				  if(instancesToDelete.contains(be.getInstanceId())){
@@ -439,6 +441,8 @@ public class LoadBalancerBackendInstance extends UserMetadata<LoadBalancerBacken
 				  if(stateMap.containsKey(be.getInstanceId())){ // OutOfService || Error
 						final STATE trueState = stateMap.get(be.getInstanceId());
 						final LoadBalancerBackendInstance update = Entities.uniqueResult(be);
+						if(!trueState.equals(update.getBackendState()))
+							changedLbs.put(be.loadbalancer.getNaturalId(), be.loadbalancer);
 						update.setBackendState(trueState);
 						Entities.persist(update);
 					}else if (instanceMap.containsKey(be.getInstanceId())){
@@ -455,12 +459,17 @@ public class LoadBalancerBackendInstance extends UserMetadata<LoadBalancerBacken
 			  for(final LoadBalancerBackendInstance be : beToDelete) {
 			   final LoadBalancerBackendInstance entity = Entities.uniqueResult(be);
 			   Entities.delete(entity);
+			   changedLbs.put(be.loadbalancer.getNaturalId(), be.loadbalancer);
 			   LOG.info("Instance "+be.getInstanceId()+" is terminated and removed from ELB");
 			  }
 			  db.commit();
 			}catch(final Exception ex) {
 			  ;
 			}
+			
+			for(final LoadBalancer lb : changedLbs.values()){
+				ServoDescriptionCache.changed(lb);
+			}
 		}
 	}
 	
@@ -160,6 +160,7 @@ import com.eucalyptus.loadbalancing.common.msgs.DeregisterInstancesFromLoadBalan
 import com.eucalyptus.loadbalancing.common.msgs.DescribeInstanceHealthResult;
 import com.eucalyptus.loadbalancing.common.msgs.DescribeLoadBalancerPoliciesResult;
 import com.eucalyptus.loadbalancing.common.msgs.DescribeLoadBalancerPolicyTypesResult;
+import com.eucalyptus.loadbalancing.common.msgs.DescribeLoadBalancersByServoResult;
 import com.eucalyptus.loadbalancing.common.msgs.DescribeLoadBalancersResult;
 import com.eucalyptus.loadbalancing.common.msgs.DisableAvailabilityZonesForLoadBalancerResult;
 import com.eucalyptus.loadbalancing.common.msgs.EnableAvailabilityZonesForLoadBalancerResult;
@@ -262,14 +263,29 @@ public class LoadBalancingBackendService {
   ) throws EucalyptusCloudException {
     final DescribeLoadBalancersByServoResponseType reply = request.getReply( );
     final String instanceId = request.getInstanceId( );
+    final ServoDescriptionCache.CachedDescription cached = instanceId == null ? null : ServoDescriptionCache.get( instanceId );
+    if ( cached != null ) {
+      if ( !cached.isSender( request.getSourceIp( ) ) ) {
+        throw new InternalFailureException("Failed to verify request sender");
+      }
+      return describeLoadBalancersByServoReply( request, reply, cached );
+    }
+
     // lookup servo instance Id to see which LB zone it is assigned to
     LoadBalancerZoneCoreView zoneView;
     LoadBalancerZone zone;
+    final LoadBalancerServoInstance instance;
+    final LoadBalancerCoreView loadBalancerView;
+    final long generation;
     try{
       isValidServoRequest(instanceId, request.getSourceIp());
-      final LoadBalancerServoInstance instance = LoadBalancers.lookupServoInstance(instanceId);
+      instance = LoadBalancers.lookupServoInstance(instanceId);
       zoneView = instance.getAvailabilityZone();
       zone = LoadBalancerZoneEntityTransform.INSTANCE.apply(zoneView);
+      loadBalancerView = zone.getLoadbalancer( );
+      generation = ServoDescriptionCache.generation( loadBalancerView.getOwnerAccountNumber( ), loadBalancerView.getDisplayName( ) );
+      // reload the zone now the generation is known so no change is missed
+      zone = LoadBalancerZoneEntityTransform.INSTANCE.apply(zoneView);
     }catch(final Exception ex){
       throw new InternalFailureException("Failed to verify request sender");
     }
@@ -489,9 +505,27 @@ public class LoadBalancingBackendService {
     } catch( final Exception ex ) {
     }
 
-    final LoadBalancerServoDescriptions lbDescs = new LoadBalancerServoDescriptions( );
-    lbDescs.getMember().addAll( descs.asSet( ) );
-    reply.getDescribeLoadBalancersResult( ).setLoadBalancerDescriptions( lbDescs );
+    return describeLoadBalancersByServoReply( request, reply,
+        ServoDescriptionCache.put( instanceId, instance.getAddress( ), instance.getPrivateIp( ),
+            loadBalancerView.getOwnerAccountNumber( ), loadBalancerView.getDisplayName( ), descs, generation ) );
+  }
+
+  private DescribeLoadBalancersByServoResponseType describeLoadBalancersByServoReply(
+      final DescribeLoadBalancersByServoType request,
+      final DescribeLoadBalancersByServoResponseType reply,
+      final ServoDescriptionCache.CachedDescription cached
+  ) {
+    final DescribeLoadBalancersByServoResult result = reply.getDescribeLoadBalancersResult( );
+    result.setDescriptionVersion( cached.getVersion( ) );
+    if ( cached.isVersion( request.getDescriptionVersion( ) ) ) {
+      // servo already has this description
+      ServoDescriptionCache.notModified( );
+      result.setNotModified( true );
+    } else {
+      final LoadBalancerServoDescriptions lbDescs = new LoadBalancerServoDescriptions( );
+      lbDescs.getMember().addAll( cached.getDescription( ).asSet( ) );
+      result.setLoadBalancerDescriptions( lbDescs );
+    }
     reply.set_return(true);
 
     return reply;
@@ -557,7 +591,9 @@ public class LoadBalancingBackendService {
 					  final LoadBalancerBackendInstance update = Entities.uniqueResult(
 							  LoadBalancerBackendInstance.named(lb, found.getInstanceId()));
 				
-					  update.setState(Enum.valueOf(LoadBalancerBackendInstance.STATE.class, state));
+					  final LoadBalancerBackendInstance.STATE newState = Enum.valueOf(LoadBalancerBackendInstance.STATE.class, state);
+					  final boolean stateChanged = !newState.equals(update.getState());
+					  update.setState(newState);
 					  if(state.equals(LoadBalancerBackendInstance.STATE.OutOfService.name())){
 						  update.setReasonCode("Instance");
 						  update.setDescription("Instance has failed at least the UnhealthyThreshold number of health checks consecutively.");
@@ -568,6 +604,9 @@ public class LoadBalancingBackendService {
 					  update.updateInstanceStateTimestamp();
 					  Entities.persist(update);
 					  db.commit();
+					  // health check timestamps are not part of the servo description
+					  if(stateChanged)
+						  ServoDescriptionCache.changed(lb);
 				  }catch(final NoSuchElementException ex){
 					  LOG.error("unable to find the loadbancer backend instance", ex);
 				  }catch(final Exception ex){
@@ -871,6 +910,8 @@ public class LoadBalancingBackendService {
       }
     }
     
+    ServoDescriptionCache.changed( lb );
+
     final CreateLoadBalancerResult result = new CreateLoadBalancerResult( );
     result.setDnsName( dns.getDnsName( ) );
     reply.setCreateLoadBalancerResult( result );
@@ -1197,6 +1238,7 @@ public class LoadBalancingBackendService {
           }
           
           LoadBalancers.deleteLoadbalancer( UserFullName.getInstance(lb.getOwnerUserId()), lbToDelete );
+          ServoDescriptionCache.changed( lb );
         }
       }
     }catch (EventFailedException e){
@@ -1276,6 +1318,7 @@ public class LoadBalancingBackendService {
 		  final String reason = e.getCause()!=null && e.getCause().getMessage()!=null ? e.getMessage() : "internal error";
     	  throw new InternalFailure400Exception(String.format("Failed to create listener: %s", reason), e );
 	  }
+	  ServoDescriptionCache.changed( lb );
 	  reply.set_return(true);
 	  return reply;
   }
@@ -1364,6 +1407,7 @@ public class LoadBalancingBackendService {
     	final String reason = ex.getCause()!=null && ex.getCause().getMessage()!=null ? ex.getCause().getMessage() : "internal error";
         throw new InternalFailure400Exception(String.format("Failed to delete listener: %s",reason), ex );
     }
+    ServoDescriptionCache.changed( lb );
     reply.set_return(true);
 
     return reply;
@@ -1440,6 +1484,7 @@ public class LoadBalancingBackendService {
     }catch(Exception ex){
       throw handleException( ex );
     }
+    ServoDescriptionCache.changed( lb );
 
     final Instances returnInstances = new Instances();
     Iterables.addAll( returnInstances.getMember( ), Iterables.transform( backends, Instance.instance( ) ) );
@@ -1551,6 +1596,7 @@ public class LoadBalancingBackendService {
 		  final String reason = ex.getCause()!=null && ex.getCause().getMessage()!=null ? ex.getCause().getMessage() : "internal error";
     	  throw new InternalFailure400Exception(String.format("Failed to deregister instances: %s", reason), ex );
 	  }
+	  ServoDescriptionCache.changed( lb );
 	  DeregisterInstancesFromLoadBalancerResult result = new DeregisterInstancesFromLoadBalancerResult();
 	  Instances returnInstances = new Instances();
 	  returnInstances.setMember(
@@ -1614,6 +1660,7 @@ public class LoadBalancingBackendService {
         final String reason = e.getCause()!=null && e.getCause().getMessage()!=null ? e.getCause().getMessage() : "internal error";
         throw new InternalFailure400Exception(String.format("Failed to enable zones: %s", reason),e );
       }
+      ServoDescriptionCache.changed( lb );
     }
 
     allZones.addAll( requestedZones );
@@ -1656,6 +1703,7 @@ public class LoadBalancingBackendService {
 	    	final String reason = e.getCause()!=null && e.getCause().getMessage()!=null ? e.getCause().getMessage() : "internal error";
 	    	throw new InternalFailure400Exception(String.format("Failed to disable zones: %s", reason), e );
 	    }  
+	    ServoDescriptionCache.changed( lb );
 	  }
 	  
 	  List<String> availableZones = Lists.newArrayList();
@@ -1738,6 +1786,7 @@ public class LoadBalancingBackendService {
       LOG.error("failed to persist health check config", ex);
       throw new InternalFailure400Exception("Failed to persist the health check config", ex);
     }
+    ServoDescriptionCache.changed( lb );
     ConfigureHealthCheckResult result = new ConfigureHealthCheckResult();
     result.setHealthCheck(hc);
     reply.setConfigureHealthCheckResult(result);
@@ -1864,6 +1913,7 @@ public class LoadBalancingBackendService {
       LOG.error("Failed to set loadbalancer listener SSL certificate", ex);
       throw new InternalFailure400Exception("Failed to set loadbalancer listener SSL certificate", ex);
     }
+    ServoDescriptionCache.changed( lb );
     reply.setSetLoadBalancerListenerSSLCertificateResult(new SetLoadBalancerListenerSSLCertificateResult());
     reply.set_return(true);
     return reply;
@@ -1984,6 +2034,7 @@ public class LoadBalancingBackendService {
       LOG.error("Failed to add the policy", ex);
       throw new InternalFailure400Exception("Failed to add the policy", ex);
     }
+    ServoDescriptionCache.changed( lb );
     reply.set_return(true);
     return reply;
   }
@@ -2020,6 +2071,7 @@ public class LoadBalancingBackendService {
       LOG.error("Failed to delete policy", ex);
       throw new InternalFailure400Exception("Failed to delete policy", ex);
     }
+    ServoDescriptionCache.changed( lb );
     reply.set_return(true);
     return reply;
   }
@@ -2064,6 +2116,7 @@ public class LoadBalancingBackendService {
       LOG.error("Failed to create policy", ex);
       throw new InternalFailure400Exception("Failed to create policy", ex);
     }
+    ServoDescriptionCache.changed( lb );
     reply.set_return(true);
     return reply;
   }
@@ -2108,6 +2161,7 @@ public class LoadBalancingBackendService {
       LOG.error("Failed to create policy", ex);
       throw new InternalFailure400Exception("Failed to create policy", ex);
     }
+    ServoDescriptionCache.changed( lb );
     reply.set_return(true);
     return reply;
   }
@@ -2183,6 +2237,7 @@ public class LoadBalancingBackendService {
       LOG.error("Failed to set policies to listener", ex);
       throw new InternalFailure400Exception("Failed to set policies to listener", ex);
     }
+    ServoDescriptionCache.changed( lb );
     
     return reply;
   }
@@ -2266,7 +2321,8 @@ public class LoadBalancingBackendService {
     }catch(final Exception ex){
       LOG.error("Failed to set policies to backend server description", ex);
       throw new InternalFailure400Exception("Failed to set policies to backend server description", ex);
-    }    
+    }
+    ServoDescriptionCache.changed( lb );
     return reply;
   }
 
@@ -2329,6 +2385,7 @@ public class LoadBalancingBackendService {
       final String reason = Optional.fromNullable( e.getCause( ) ).transform( Exceptions.message( ) ).or( "internal error" );
       throw new InternalFailure400Exception(String.format("Failed to apply security groups to loadbalancer: %s", reason), e);
     }
+    ServoDescriptionCache.changed( event.getLoadBalancerAccountNumber( ), event.getLoadBalancer( ) );
 
     return reply;
   }
@@ -2392,6 +2449,7 @@ public class LoadBalancingBackendService {
       final String reason = e.getCause()!=null && e.getCause().getMessage()!=null ? e.getCause().getMessage() : "internal error";
       throw new InternalFailure400Exception(String.format("Failed to enable zones: %s", reason),e );
     }
+    ServoDescriptionCache.changed( lb.getOwnerAccountNumber( ), lb.getDisplayName( ) );
 
     final Subnets replySubnets = new Subnets( );
     replySubnets.getMember().addAll( zoneToSubnetIdMap.values( ) );
@@ -2443,6 +2501,7 @@ public class LoadBalancingBackendService {
         final String reason = e.getCause()!=null && e.getCause().getMessage()!=null ? e.getCause().getMessage() : "internal error";
         throw new InternalFailure400Exception(String.format("Failed to disable zones: %s", reason), e );
       }
+      ServoDescriptionCache.changed( lb.getOwnerAccountNumber( ), lb.getDisplayName( ) );
     }
 
     List<String> availableZones = Lists.newArrayList();
@@ -2667,6 +2726,7 @@ public class LoadBalancingBackendService {
 
     final LoadBalancerAttributes attributes =
         Entities.asTransaction( LoadBalancer.class, modifyAttributes ).apply( request.getLoadBalancerName( ) );
+    ServoDescriptionCache.changed( accountNumber, request.getLoadBalancerName( ) );
 
     reply.getModifyLoadBalancerAttributesResult().setLoadBalancerAttributes( attributes );
 
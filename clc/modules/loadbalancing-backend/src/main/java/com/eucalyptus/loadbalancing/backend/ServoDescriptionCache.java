@@ -0,0 +1,270 @@
+/*************************************************************************
+ * Copyright 2009-2015 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.loadbalancing.backend;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.apache.log4j.Logger;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.SerializationConfig;
+import com.eucalyptus.configurable.ConfigurableClass;
+import com.eucalyptus.configurable.ConfigurableField;
+import com.eucalyptus.crypto.Digest;
+import com.eucalyptus.loadbalancing.LoadBalancer;
+import com.eucalyptus.loadbalancing.common.msgs.LoadBalancerServoDescription;
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Maps;
+
+/**
+ * Cache of load balancer descriptions by servo instance.
+ *
+ * Entries expire after {@link #SERVO_DESCRIPTION_CACHE_SECS} and are stale
+ * once the generation of their load balancer changes. The generation is
+ * changed on this host after a load balancer is modified (listeners,
+ * policies, zones, backend registration, attributes, etc) and when the state
+ * of one of its backend instances changes. Health check timestamp updates do
+ * not change the generation. Backend addresses, changes made on other hosts
+ * and changes by requests that fail part way through are only seen once
+ * entries expire.
+ *
+ * Each entry has a version that is a digest of the description content, so
+ * a servo that sends the version of its current description is told that
+ * it is not modified even if the description was rebuilt.
+ */
+@ConfigurableClass( root = "services.loadbalancing", description = "Parameters controlling loadbalancing" )
+public class ServoDescriptionCache {
+
+  private static final Logger LOG = Logger.getLogger( ServoDescriptionCache.class );
+
+  @ConfigurableField( displayName = "loadbalancer_servo_description_cache_secs",
+      initial = "60",
+      description = "Seconds load balancer descriptions are cached for servo polling, 0 to disable the cache" )
+  public static volatile int SERVO_DESCRIPTION_CACHE_SECS = 60;
+
+  private static final ConcurrentMap<String,AtomicLong> generations = Maps.newConcurrentMap( );
+
+  private static final ObjectMapper mapper = new ObjectMapper( );
+  static {
+    mapper.getSerializationConfig( ).set( SerializationConfig.Feature.FAIL_ON_EMPTY_BEANS, false );
+  }
+
+  private static final Cache<String,CachedDescription> descriptionCache = CacheBuilder.newBuilder( )
+      .maximumSize( 10_000 )
+      .build( );
+
+  private static final AtomicLong hits = new AtomicLong( );
+  private static final AtomicLong misses = new AtomicLong( );
+  private static final AtomicLong notModified = new AtomicLong( );
+
+  /**
+   * Get the current generation for the load balancer.
+   *
+   * @param accountNumber The load balancer owner account number
+   * @param loadBalancerName The load balancer name
+   */
+  public static long generation( @Nonnull final String accountNumber,
+                                 @Nonnull final String loadBalancerName ) {
+    return generation( key( accountNumber, loadBalancerName ) );
+  }
+
+  /**
+   * Change the generation for the load balancer.
+   *
+   * This must be called after any change to the load balancer is committed.
+   */
+  public static void changed( @Nonnull final LoadBalancer loadBalancer ) {
+    changed( loadBalancer.getOwnerAccountNumber( ), loadBalancer.getDisplayName( ) );
+  }
+
+  /**
+   * Change the generation for the load balancer.
+   *
+   * This must be called after any change to the load balancer is committed.
+   *
+   * @param accountNumber The load balancer owner account number
+   * @param loadBalancerName The load balancer name
+   */
+  public static void changed( @Nonnull final String accountNumber,
+                              @Nonnull final String loadBalancerName ) {
+    final String key = key( accountNumber, loadBalancerName );
+    AtomicLong generation = generations.get( key );
+    if ( generation == null ) {
+      final AtomicLong newGeneration = new AtomicLong( );
+      generation = generations.putIfAbsent( key, newGeneration );
+      if ( generation == null ) generation = newGeneration;
+    }
+    generation.incrementAndGet( );
+  }
+
+  /**
+   * Get the cached description for the servo instance.
+   *
+   * @param instanceId The servo instance identifier
+   * @return The description or null if not cached or no longer current
+   */
+  @Nullable
+  public static CachedDescription get( @Nonnull final String instanceId ) {
+    final long ttl = ttlMillis( );
+    final CachedDescription cached = ttl <= 0 ? null : descriptionCache.getIfPresent( instanceId );
+    if ( cached != null &&
+        cached.generation == generation( cached.loadBalancerKey ) &&
+        ( System.currentTimeMillis( ) - cached.timestamp ) <= ttl ) {
+      hits.incrementAndGet( );
+      return cached;
+    }
+    if ( cached != null ) {
+      descriptionCache.asMap( ).remove( instanceId, cached );
+    }
+    misses.incrementAndGet( );
+    return null;
+  }
+
+  /**
+   * Cache the description for the servo instance.
+   *
+   * The description must not be modified once cached.
+   *
+   * @param instanceId The servo instance identifier
+   * @param address The servo public address
+   * @param privateIp The servo private address
+   * @param accountNumber The owner account number of the servo instance load balancer
+   * @param loadBalancerName The name of the servo instance load balancer
+   * @param description The description, absent if the servo has nothing to serve
+   * @param generation The load balancer generation obtained before the description was built
+   * @return The cached description
+   */
+  @Nonnull
+  public static CachedDescription put( @Nonnull  final String instanceId,
+                                       @Nullable final String address,
+                                       @Nullable final String privateIp,
+                                       @Nonnull  final String accountNumber,
+                                       @Nonnull  final String loadBalancerName,
+                                       @Nonnull  final Optional<LoadBalancerServoDescription> description,
+                                                 final long generation ) {
+    final String loadBalancerKey = key( accountNumber, loadBalancerName );
+    final CachedDescription cached =
+        new CachedDescription( address, privateIp, loadBalancerKey, description, version( description ), generation );
+    if ( ttlMillis( ) > 0 && generation == generation( loadBalancerKey ) ) {
+      descriptionCache.put( instanceId, cached );
+    }
+    return cached;
+  }
+
+  static void notModified( ) {
+    notModified.incrementAndGet( );
+  }
+
+  public static void clear( ) {
+    descriptionCache.invalidateAll( );
+  }
+
+  public static long size( ) {
+    return descriptionCache.size( );
+  }
+
+  public static long getHits( ) {
+    return hits.get( );
+  }
+
+  public static long getMisses( ) {
+    return misses.get( );
+  }
+
+  public static long getNotModified( ) {
+    return notModified.get( );
+  }
+
+  private static String key( final String accountNumber, final String loadBalancerName ) {
+    return accountNumber + ":" + loadBalancerName;
+  }
+
+  private static long generation( final String loadBalancerKey ) {
+    final AtomicLong generation = generations.get( loadBalancerKey );
+    return generation == null ? 0 : generation.get( );
+  }
+
+  private static long ttlMillis( ) {
+    return TimeUnit.SECONDS.toMillis( SERVO_DESCRIPTION_CACHE_SECS );
+  }
+
+  /**
+   * Digest of the description content, null if the version cannot be computed.
+   */
+  @Nullable
+  private static String version( final Optional<LoadBalancerServoDescription> description ) {
+    try {
+      return Digest.SHA1.digestHex( mapper.writeValueAsBytes( description.orNull( ) ) );
+    } catch ( final Exception e ) {
+      LOG.debug( "Unable to compute servo description version", e );
+      return null;
+    }
+  }
+
+  public static final class CachedDescription {
+    private final String address;
+    private final String privateIp;
+    private final String loadBalancerKey;
+    private final Optional<LoadBalancerServoDescription> description;
+    private final String version;
+    private final long generation;
+    private final long timestamp = System.currentTimeMillis( );
+
+    private CachedDescription( final String address,
+                               final String privateIp,
+                               final String loadBalancerKey,
+                               final Optional<LoadBalancerServoDescription> description,
+                               final String version,
+                               final long generation ) {
+      this.address = address;
+      this.privateIp = privateIp;
+      this.loadBalancerKey = loadBalancerKey;
+      this.description = description;
+      this.version = version;
+      this.generation = generation;
+    }
+
+    /**
+     * Is the given address one of the servo instance addresses.
+     */
+    public boolean isSender( final String remoteHost ) {
+      return remoteHost != null && ( remoteHost.equals( address ) || remoteHost.equals( privateIp ) );
+    }
+
+    /**
+     * Is the given version the version of this description.
+     */
+    public boolean isVersion( final String version ) {
+      return this.version != null && this.version.equals( version );
+    }
+
+    public Optional<LoadBalancerServoDescription> getDescription( ) {
+      return description;
+    }
+
+    public String getVersion( ) {
+      return version;
+    }
+  }
+}
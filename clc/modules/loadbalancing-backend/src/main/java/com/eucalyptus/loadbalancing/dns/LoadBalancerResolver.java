@@ -40,6 +40,7 @@ import com.eucalyptus.entities.TransactionResource;
 import com.eucalyptus.loadbalancing.LoadBalancer;
 import com.eucalyptus.loadbalancing.LoadBalancerDnsRecord;
 import com.eucalyptus.loadbalancing.LoadBalancers;
+import com.eucalyptus.loadbalancing.activities.LoadBalancerAutoScalingGroup;
 import com.eucalyptus.loadbalancing.activities.LoadBalancerServoInstance;
 import com.eucalyptus.loadbalancing.activities.LoadBalancerServoInstance.LoadBalancerServoInstanceCoreView;
 import com.eucalyptus.util.Pair;
@@ -49,6 +50,7 @@ import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Collections2;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
@@ -61,7 +63,7 @@ import com.google.common.net.InetAddresses;
     root = "services.loadbalancing",
     description = "Parameters controlling loadbalancing"
 )
-public class LoadBalancerResolver implements DnsResolvers.DnsResolver {
+public class LoadBalancerResolver implements DnsResolvers.CacheableDnsResolver {
 
   private static final Logger logger = Logger.getLogger( LoadBalancerResolver.class );
 
@@ -81,6 +83,14 @@ public class LoadBalancerResolver implements DnsResolvers.DnsResolver {
     return false;
   }
 
+  @Override
+  public Iterable<Class<?>> getCacheDependencies( ) {
+    return ImmutableList.<Class<?>>of(
+        LoadBalancer.class,
+        LoadBalancerAutoScalingGroup.class,
+        LoadBalancerServoInstance.class );
+  }
+
   @Override
   public DnsResponse lookupRecords( final DnsRequest request ) {
     final Record query = request.getQuery( );
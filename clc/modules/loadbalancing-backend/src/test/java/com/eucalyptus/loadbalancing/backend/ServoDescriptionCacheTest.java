@@ -0,0 +1,88 @@
+/*************************************************************************
+ * Copyright 2009-2015 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.loadbalancing.backend;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.eucalyptus.loadbalancing.common.msgs.LoadBalancerServoDescription;
+import com.google.common.base.Optional;
+
+public class ServoDescriptionCacheTest {
+
+  private static final String ACCOUNT = "000000000001";
+
+  @Before
+  public void setUp( ) {
+    ServoDescriptionCache.clear( );
+  }
+
+  @Test
+  public void testBackendStateChangeOnlyInvalidatesItsLoadBalancer( ) {
+    put( "i-00000001", "lb-a" );
+    put( "i-00000002", "lb-b" );
+    assertNotNull( ServoDescriptionCache.get( "i-00000001" ) );
+    assertNotNull( ServoDescriptionCache.get( "i-00000002" ) );
+
+    // backend state report for lb-a
+    ServoDescriptionCache.changed( ACCOUNT, "lb-a" );
+
+    assertNull( ServoDescriptionCache.get( "i-00000001" ) );
+    assertNotNull( ServoDescriptionCache.get( "i-00000002" ) );
+  }
+
+  @Test
+  public void testSameNameInOtherAccountNotInvalidated( ) {
+    put( "i-00000003", "lb-c" );
+    ServoDescriptionCache.changed( "000000000002", "lb-c" );
+    assertNotNull( ServoDescriptionCache.get( "i-00000003" ) );
+  }
+
+  @Test
+  public void testChangeWhileBuildingNotCached( ) {
+    final long generation = ServoDescriptionCache.generation( ACCOUNT, "lb-d" );
+    ServoDescriptionCache.changed( ACCOUNT, "lb-d" );
+    final ServoDescriptionCache.CachedDescription description = ServoDescriptionCache.put(
+        "i-00000004", "10.0.0.4", null, ACCOUNT, "lb-d", Optional.<LoadBalancerServoDescription>absent( ), generation );
+    assertNotNull( description );
+    assertNull( ServoDescriptionCache.get( "i-00000004" ) );
+  }
+
+  @Test
+  public void testSender( ) {
+    final ServoDescriptionCache.CachedDescription description = put( "i-00000005", "lb-e" );
+    assertTrue( description.isSender( "10.0.0.1" ) );
+  }
+
+  private static ServoDescriptionCache.CachedDescription put( final String instanceId, final String loadBalancerName ) {
+    return ServoDescriptionCache.put(
+        instanceId,
+        "10.0.0.1",
+        "192.168.0.1",
+        ACCOUNT,
+        loadBalancerName,
+        Optional.<LoadBalancerServoDescription>absent( ),
+        ServoDescriptionCache.generation( ACCOUNT, loadBalancerName ) );
+  }
+}
@@ -40,6 +40,7 @@ class LoadBalancingServoBackendMessage extends LoadBalancingMessage implements L
 
 class DescribeLoadBalancersByServoType extends LoadBalancingServoBackendMessage {
   String instanceId;
+  String descriptionVersion;
   DescribeLoadBalancersByServoType() {  }
 }
 
@@ -44,6 +44,7 @@ class LoadBalancingServoMessage extends LoadBalancingMessage {
 
 class DescribeLoadBalancersByServoType extends LoadBalancingServoMessage {
 	String instanceId;
+	String descriptionVersion;
 	DescribeLoadBalancersByServoType() {  }
 }
 
@@ -56,6 +57,8 @@ class DescribeLoadBalancersByServoResponseType extends LoadBalancingServoMessage
 class DescribeLoadBalancersByServoResult extends EucalyptusData {
 	LoadBalancerServoDescriptions loadBalancerDescriptions
 	String nextMarker;
+	String descriptionVersion
+	Boolean notModified
 }
 
 class LoadBalancerServoDescriptions extends EucalyptusData {
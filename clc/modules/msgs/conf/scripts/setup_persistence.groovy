@@ -83,6 +83,14 @@ default_hiber_config = [
       'hibernate.default_batch_fetch_size': '50',
 ]
 
+// contexts that write high volume rows in bulk
+context_hiber_config = [
+    'eucalyptus_cloudwatch_backend': [
+        'hibernate.jdbc.batch_size': '50',
+        'hibernate.order_inserts': 'true',
+    ],
+]
+
 PersistenceContexts.list( ).each { String context_name ->
   
   // Set system properties
@@ -113,6 +121,10 @@ PersistenceContexts.list( ).each { String context_name ->
         'hibernate.cache.use_structured_entries': 'true',
       ] )
 
+  if ( context_hiber_config.containsKey( context_name ) ) {
+    hibernate_config.putAll( (Map<?,?>)context_hiber_config[ context_name ] )
+  }
+
   String schemaName = PersistenceContexts.toSchemaName( ).apply( context_name )
   if ( schemaName ) {
     hibernate_config.put( 'hibernate.default_schema', schemaName )
@@ -0,0 +1,284 @@
+/*************************************************************************
+ * Copyright 2009-2014 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.auth.login;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.apache.log4j.Logger;
+import org.hibernate.exception.ConstraintViolationException;
+import com.eucalyptus.crypto.Digest;
+import com.eucalyptus.empyrean.Empyrean;
+import com.eucalyptus.entities.Entities;
+import com.eucalyptus.entities.TransactionResource;
+import com.eucalyptus.system.Threads;
+import com.eucalyptus.util.Exceptions;
+import com.eucalyptus.ws.StackConfiguration;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.primitives.Longs;
+
+/**
+ * Replay detection for request signatures.
+ *
+ * Signatures are stored as 64 bit digests in time buckets, each bucket
+ * covering a fraction of the retention period. Buckets are replaced when
+ * their time slot comes around again so expiry requires no scavenging and a
+ * signature is retained for at least the retention period.
+ *
+ * When shared replay detection is enabled signatures that are new to this
+ * host are also recorded in the database so replays are detected across
+ * hosts. Database failures are logged and do not fail requests.
+ */
+public class ReplayDetectionCache {
+  private static final Logger LOG = Logger.getLogger( ReplayDetectionCache.class );
+
+  private static final int BUCKETS = 15;
+  private static final int ESTIMATED_ENTRY_BYTES = 64;
+
+  private final long retentionMillis;
+  private final long bucketMillis;
+  private final AtomicReferenceArray<Bucket> buckets = new AtomicReferenceArray<>( BUCKETS + 2 );
+  private final AtomicBoolean purging = new AtomicBoolean( false );
+  private final AtomicLong inserts = new AtomicLong( );
+  private final AtomicLong replays = new AtomicLong( );
+  private final AtomicLong insertNanos = new AtomicLong( );
+  private final AtomicLong maxInsertNanos = new AtomicLong( );
+  private final AtomicLong sharedFailures = new AtomicLong( );
+
+  public ReplayDetectionCache( final long retentionMillis ) {
+    this.retentionMillis = retentionMillis;
+    this.bucketMillis = Math.max( 1L, ( retentionMillis + BUCKETS - 1 ) / BUCKETS );
+  }
+
+  public long getRetentionMillis( ) {
+    return retentionMillis;
+  }
+
+  /**
+   * Add a signature.
+   *
+   * @param signature The request signature
+   * @return false if the signature is a replay
+   */
+  public boolean add( final String signature ) {
+    final long skewMillis = TimeUnit.SECONDS.toMillis( StackConfiguration.REPLAY_SKEW_WINDOW_SEC );
+    if ( skewMillis >= retentionMillis ) { // replay detection is disabled
+      return true;
+    }
+    final long start = System.nanoTime( );
+    try {
+      final long digest = digest( signature );
+      final long now = TimeUnit.NANOSECONDS.toMillis( start );
+      final long epoch = now / bucketMillis;
+      final Long firstSeen = putIfAbsent( epoch, digest, now );
+      final boolean accepted;
+      if ( firstSeen == null ) {
+        accepted = !Boolean.TRUE.equals( StackConfiguration.REPLAY_DETECTION_SHARED ) || addShared( digest, skewMillis );
+      } else {
+        // Allow the same signature within the REPLAY_SKEW_WINDOW_SEC interval
+        LOG.debug( "Use of the same signature is detected: " + signature );
+        accepted = skewMillis > 0 && ( now - firstSeen ) <= skewMillis;
+      }
+      if ( !accepted ) replays.incrementAndGet( );
+      return accepted;
+    } finally {
+      final long nanos = System.nanoTime( ) - start;
+      inserts.incrementAndGet( );
+      insertNanos.addAndGet( nanos );
+      long max;
+      while ( ( max = maxInsertNanos.get( ) ) < nanos && !maxInsertNanos.compareAndSet( max, nanos ) );
+    }
+  }
+
+  /**
+   * @return null if added, else the first seen time for the digest
+   */
+  private Long putIfAbsent( final long epoch, final long digest, final long now ) {
+    final Long key = digest;
+    Long firstSeen = lookup( epoch - 1 - BUCKETS, epoch, key );
+    if ( firstSeen == null ) {
+      firstSeen = bucket( epoch ).signatures.putIfAbsent( key, now );
+      if ( firstSeen == null ) {
+        // Concurrent adds in adjacent buckets at a bucket boundary are both
+        // rejected rather than both accepted.
+        firstSeen = lookupOther( epoch - 1, epoch + 1, epoch, key );
+      }
+    }
+    return firstSeen;
+  }
+
+  private Long lookup( final long fromEpoch, final long toEpoch, final Long key ) {
+    for ( long epoch = toEpoch; epoch >= fromEpoch; epoch-- ) {
+      final Bucket bucket = buckets.get( index( epoch ) );
+      if ( bucket != null && bucket.epoch == epoch ) {
+        final Long firstSeen = bucket.signatures.get( key );
+        if ( firstSeen != null ) return firstSeen;
+      }
+    }
+    return null;
+  }
+
+  private Long lookupOther( final long fromEpoch, final long toEpoch, final long excludeEpoch, final Long key ) {
+    for ( long epoch = fromEpoch; epoch <= toEpoch; epoch++ ) {
+      if ( epoch == excludeEpoch ) continue;
+      final Long firstSeen = lookup( epoch, epoch, key );
+      if ( firstSeen != null ) return firstSeen;
+    }
+    return null;
+  }
+
+  private Bucket bucket( final long epoch ) {
+    final int index = index( epoch );
+    while ( true ) {
+      final Bucket bucket = buckets.get( index );
+      if ( bucket != null && bucket.epoch >= epoch ) {
+        return bucket;
+      }
+      final Bucket newBucket = new Bucket( epoch );
+      if ( buckets.compareAndSet( index, bucket, newBucket ) ) {
+        if ( Boolean.TRUE.equals( StackConfiguration.REPLAY_DETECTION_SHARED ) ) purgeShared( );
+        return newBucket;
+      }
+    }
+  }
+
+  private int index( final long epoch ) {
+    // epochs are derived from System.nanoTime so may be negative
+    final int length = buckets.length( );
+    return (int) ( ( epoch % length + length ) % length );
+  }
+
+  private boolean addShared( final long digest, final long skewMillis ) {
+    final long now = System.currentTimeMillis( );
+    try {
+      try ( final TransactionResource tx = Entities.transactionFor( ReplaySignature.class ) ) {
+        Entities.persist( new ReplaySignature( digest, now ) );
+        tx.commit( );
+        return true;
+      }
+    } catch ( final Exception e ) {
+      if ( !Exceptions.isCausedBy( e, ConstraintViolationException.class ) ) {
+        sharedFailures.incrementAndGet( );
+        LOG.warn( "Error recording shared replay signature: " + e.getMessage( ) );
+        return true;
+      }
+    }
+    try ( final TransactionResource tx = Entities.transactionFor( ReplaySignature.class ) ) {
+      final ReplaySignature existing = Entities.uniqueResult( ReplaySignature.exampleWithDigest( digest ) );
+      final long age = now - existing.getFirstSeen( );
+      if ( age > retentionMillis ) { // expired but not yet purged
+        existing.setFirstSeen( now );
+        tx.commit( );
+        return true;
+      }
+      return skewMillis > 0 && age <= skewMillis;
+    } catch ( final Exception e ) {
+      sharedFailures.incrementAndGet( );
+      LOG.warn( "Error checking shared replay signature: " + e.getMessage( ) );
+      return true;
+    }
+  }
+
+  private void purgeShared( ) {
+    if ( purging.compareAndSet( false, true ) ) try {
+      Threads.enqueue( Empyrean.class, ReplayDetectionCache.class, new Callable<Integer>( ) {
+        @Override
+        public Integer call( ) {
+          try ( final TransactionResource tx = Entities.transactionFor( ReplaySignature.class ) ) {
+            final int purged = Entities.deleteAllMatching(
+                ReplaySignature.class,
+                "where firstSeen < :expiry",
+                Collections.singletonMap( "expiry", System.currentTimeMillis( ) - retentionMillis ) );
+            tx.commit( );
+            return purged;
+          } catch ( final Exception e ) {
+            LOG.warn( "Error purging shared replay signatures: " + e.getMessage( ) );
+            return 0;
+          } finally {
+            purging.set( false );
+          }
+        }
+      } );
+    } catch ( final RuntimeException e ) {
+      purging.set( false );
+      LOG.warn( "Error scheduling purge of shared replay signatures: " + e.getMessage( ) );
+    }
+  }
+
+  private static long digest( final String signature ) {
+    return Longs.fromByteArray( Digest.SHA256.digestBinary( signature.getBytes( StandardCharsets.UTF_8 ) ) );
+  }
+
+  public long size( ) {
+    long size = 0;
+    final long epoch = TimeUnit.NANOSECONDS.toMillis( System.nanoTime( ) ) / bucketMillis;
+    for ( int i = 0; i < buckets.length( ); i++ ) {
+      final Bucket bucket = buckets.get( i );
+      if ( bucket != null && bucket.epoch >= epoch - 1 - BUCKETS ) {
+        size += bucket.signatures.size( );
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Estimated memory use of the stored signatures.
+   */
+  public long getEstimatedBytes( ) {
+    return size( ) * ESTIMATED_ENTRY_BYTES;
+  }
+
+  public double getAverageInsertMicros( ) {
+    final long count = inserts.get( );
+    return count == 0 ? 0.0 : TimeUnit.NANOSECONDS.toMicros( insertNanos.get( ) ) / (double) count;
+  }
+
+  public ImmutableMap<String,Long> getStatistics( ) {
+    return ImmutableMap.<String,Long>builder( )
+        .put( "size", size( ) )
+        .put( "estimatedBytes", getEstimatedBytes( ) )
+        .put( "inserts", inserts.get( ) )
+        .put( "replays", replays.get( ) )
+        .put( "maxInsertMicros", TimeUnit.NANOSECONDS.toMicros( maxInsertNanos.get( ) ) )
+        .put( "sharedFailures", sharedFailures.get( ) )
+        .build( );
+  }
+
+  public void clear( ) {
+    for ( int i = 0; i < buckets.length( ); i++ ) {
+      buckets.set( i, null );
+    }
+  }
+
+  private static final class Bucket {
+    private final long epoch;
+    private final ConcurrentMap<Long,Long> signatures = new ConcurrentHashMap<>( );
+
+    private Bucket( final long epoch ) {
+      this.epoch = epoch;
+    }
+  }
+}
@@ -0,0 +1,74 @@
+/*************************************************************************
+ * Copyright 2009-2014 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.auth.login;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Table;
+import org.hibernate.annotations.Index;
+import com.eucalyptus.entities.AbstractPersistent;
+
+/**
+ * Request signature digest shared between hosts for replay detection.
+ *
+ * @see ReplayDetectionCache
+ */
+@Entity
+@PersistenceContext( name = "eucalyptus_config" )
+@Table( name = "config_replay_signature" )
+public class ReplaySignature extends AbstractPersistent {
+  private static final long serialVersionUID = 1L;
+
+  @Column( name = "config_replay_signature_digest", nullable = false, unique = true )
+  private Long digest;
+
+  @Index( name = "config_replay_signature_first_seen_idx" )
+  @Column( name = "config_replay_signature_first_seen", nullable = false )
+  private Long firstSeen;
+
+  protected ReplaySignature( ) {
+  }
+
+  ReplaySignature( final Long digest, final Long firstSeen ) {
+    this.digest = digest;
+    this.firstSeen = firstSeen;
+  }
+
+  static ReplaySignature exampleWithDigest( final long digest ) {
+    return new ReplaySignature( digest, null );
+  }
+
+  public Long getDigest( ) {
+    return digest;
+  }
+
+  public void setDigest( final Long digest ) {
+    this.digest = digest;
+  }
+
+  public Long getFirstSeen( ) {
+    return firstSeen;
+  }
+
+  public void setFirstSeen( final Long firstSeen ) {
+    this.firstSeen = firstSeen;
+  }
+}
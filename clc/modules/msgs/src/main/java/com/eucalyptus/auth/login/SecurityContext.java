@@ -77,7 +77,6 @@ import javax.security.auth.login.AppConfigurationEntry.LoginModuleControlFlag;
 import javax.security.auth.spi.LoginModule;
 import org.apache.log4j.Logger;
 import com.eucalyptus.bootstrap.ServiceJarDiscovery;
-import com.eucalyptus.util.TimedEvictionSet;
 import com.google.common.collect.Lists;
 import com.eucalyptus.ws.StackConfiguration;
 
@@ -89,7 +88,7 @@ public class SecurityContext extends Configuration {
   // For AWS query interface, default expiration time is 15 mins
   // we cache for 15 mins 20 secs to allow for some clock drift
   // (in case creation Timestamp is up to 20 secs in the future)
-  private static TimedEvictionSet<String> replayQueue = new TimedEvictionSet<String>(TimeUnit.MILLISECONDS.convert(900 + StackConfiguration.CLOCK_SKEW_SEC, TimeUnit.SECONDS));
+  private static ReplayDetectionCache replayQueue = new ReplayDetectionCache(TimeUnit.MILLISECONDS.convert(900 + StackConfiguration.CLOCK_SKEW_SEC, TimeUnit.SECONDS));
   private List<String> loginModules = Lists.newArrayList( );
   private SecurityContext( ) {}
   
@@ -100,6 +99,13 @@ public class SecurityContext extends Configuration {
     }
   }
   
+  /**
+   * Replay detection statistics (size, estimated memory, insert latency)
+   */
+  public static Map<String,Long> getReplayDetectionStatistics( ) {
+    return replayQueue.getStatistics( );
+  }
+  
   public static LoginContext getLoginContext( WrappedCredentials credentials ) throws LoginException {
     return new LoginContext( "eucalyptus" , new Subject( ), credentials, singleton );
   }
@@ -113,10 +119,10 @@ public class SecurityContext extends Configuration {
    * @return
    */
   public static boolean validateTimestampPeriod(Date expires) {
-	 Long nanoLimit = replayQueue.getEvictionNanos();
+	 long millisLimit = replayQueue.getRetentionMillis();
 	 
 	 Date currentDate = new Date();
-	 if((currentDate.getTime() + (nanoLimit / 1000000)) < expires.getTime())
+	 if((currentDate.getTime() + millisLimit) < expires.getTime())
 		 return false;
 	 
 	  return true;
@@ -62,7 +62,10 @@
 
 package com.eucalyptus.context;
 
+import java.util.Queue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -100,6 +103,7 @@ import com.eucalyptus.configurable.PropertyChangeListener;
 import com.eucalyptus.empyrean.Empyrean;
 import com.eucalyptus.system.Threads;
 import com.eucalyptus.util.Exceptions;
+import com.google.common.collect.Maps;
 
 import edu.ucsb.eucalyptus.msgs.BaseMessage;
 
@@ -129,10 +133,12 @@ public class ServiceContext {
   
   private static final VMMessageDispatcherFactory  dispatcherFactory = new VMMessageDispatcherFactory( );
   private static final AtomicReference<MuleClient> client            = new AtomicReference<MuleClient>( null );
+  private static final AtomicReference<DispatcherCache> dispatchers  = new AtomicReference<DispatcherCache>( null );
   private static final BootstrapException          failEx            = new BootstrapException(
                                                                                                     "Attempt to use esb client before the service bus has been started." );
   
   public static void dispatch( String dest, Object msg ) throws Exception {
+    final long start = System.nanoTime( );
     dest = ServiceContextManager.mapServiceToEndpoint( dest );
     MuleContext muleCtx;
     try {
@@ -142,10 +148,9 @@ public class ServiceContext {
       throw new ServiceDispatchException( "Failed to dispatch message to " + dest + " caused by failure to obtain service context reference: "
                                           + ex.getMessage( ), ex );
     }
-    OutboundEndpoint endpoint;
+    EndpointDispatchers endpointDispatchers;
     try {
-      endpoint = muleCtx.getEndpointFactory( ).getOutboundEndpoint( dest );
-      perhapsConfigureConnector( endpoint.getConnector( ) );
+      endpointDispatchers = dispatchers( muleCtx ).lookup( dest );
     } catch ( MuleException ex ) {
       LOG.error( ex, ex );
       throw new ServiceDispatchException( "Failed to dispatch message to " + dest + " caused by failure to obtain service endpoint reference: "
@@ -159,14 +164,15 @@ public class ServiceContext {
     }else
       ctx = null;
     
+    final OutboundEndpoint endpoint = endpointDispatchers.getEndpoint( );
     MessageDispatcher dispatcher = null;
+    boolean dispatched = false;
     try {
-      dispatcher = dispatcherFactory.create( endpoint );
-      dispatcher.initialise( );
-      dispatcher.start( );
+      dispatcher = endpointDispatchers.borrow( );
       MuleMessage muleMsg = dispatcher.createMuleMessage( msg );
       MuleEvent muleEvent = new DefaultMuleEvent( muleMsg, endpoint.getExchangePattern(), (FlowConstruct) null, muleSession );
       dispatcher.process( muleEvent );
+      dispatched = true;
     } catch ( DispatchException ex ) {
       LOG.error( ex, ex );
       throw new ServiceDispatchException( "Error while dispatching message (" + msg + ") to " + dest + " caused by: " + ex.getMessage( ), ex );
@@ -175,7 +181,8 @@ public class ServiceContext {
       throw new ServiceDispatchException( "Failed to dispatch message to " + dest + " caused by failure to obtain service dispatcher reference: "
                                           + ex.getMessage( ), ex );
     } finally {
-      if ( dispatcher != null ) dispatcher.dispose( );
+      if ( dispatcher != null ) endpointDispatchers.release( dispatcher, dispatched );
+      ServiceDispatchStatistics.record( dest, System.nanoTime( ) - start );
     }
     final long clearContextTime = System.currentTimeMillis( ) + TimeUnit.SECONDS.toMillis( CONTEXT_TIMEOUT );
     Threads.enqueue( Empyrean.class, ServiceContext.class, new Callable<Boolean>( ) {
@@ -200,6 +207,7 @@ public class ServiceContext {
   }
   
   public static <T> T send( String dest, Object msg ) throws Exception {
+    final long start = System.nanoTime( );
     dest = ServiceContextManager.mapEndpointToService( dest );
     MuleEvent context = RequestContext.getEvent( );
     Context ctx = null;
@@ -224,9 +232,26 @@ public class ServiceContext {
         Contexts.clear( ctx );
       }
       RequestContext.setEvent( context );
+      ServiceDispatchStatistics.record( dest, System.nanoTime( ) - start );
     }
   }
   
+  /**
+   * Get the dispatcher cache for the given context, the cache for any
+   * previous context is disposed.
+   */
+  private static DispatcherCache dispatchers( final MuleContext muleCtx ) {
+    DispatcherCache cache;
+    while ( ( cache = dispatchers.get( ) ) == null || cache.muleContext != muleCtx ) {
+      final DispatcherCache newCache = new DispatcherCache( muleCtx );
+      if ( dispatchers.compareAndSet( cache, newCache ) ) {
+        if ( cache != null ) cache.dispose( );
+        return newCache;
+      }
+    }
+    return cache;
+  }
+  
   private static void perhapsConfigureConnector( final Connector connector ) throws MuleException {
     if ( !connector.isStarted( ) ) try {
       connector.start( );
@@ -248,4 +273,84 @@ public class ServiceContext {
       }
     }
   }
+  
+  /**
+   * Outbound endpoints and started dispatchers for a service context.
+   */
+  private static final class DispatcherCache {
+    private final MuleContext                                muleContext;
+    private final ConcurrentMap<String, EndpointDispatchers> endpoints = Maps.newConcurrentMap( );
+    private volatile boolean                                 disposed;
+    
+    private DispatcherCache( final MuleContext muleContext ) {
+      this.muleContext = muleContext;
+    }
+    
+    private EndpointDispatchers lookup( final String dest ) throws MuleException {
+      EndpointDispatchers endpointDispatchers = this.endpoints.get( dest );
+      if ( endpointDispatchers == null ) {
+        final EndpointDispatchers newEndpointDispatchers =
+            new EndpointDispatchers( this.muleContext.getEndpointFactory( ).getOutboundEndpoint( dest ) );
+        endpointDispatchers = this.endpoints.putIfAbsent( dest, newEndpointDispatchers );
+        if ( endpointDispatchers == null ) endpointDispatchers = newEndpointDispatchers;
+        if ( this.disposed ) endpointDispatchers.dispose( );
+      }
+      perhapsConfigureConnector( endpointDispatchers.getEndpoint( ).getConnector( ) );
+      return endpointDispatchers;
+    }
+    
+    private void dispose( ) {
+      this.disposed = true;
+      for ( final EndpointDispatchers endpointDispatchers : this.endpoints.values( ) ) {
+        endpointDispatchers.dispose( );
+      }
+    }
+  }
+  
+  /**
+   * Started dispatchers for an endpoint, a dispatcher is used by one thread at
+   * a time and is returned for reuse if the dispatch succeeded.
+   */
+  private static final class EndpointDispatchers {
+    private final OutboundEndpoint         endpoint;
+    private final Queue<MessageDispatcher> idle = new ConcurrentLinkedQueue<MessageDispatcher>( );
+    private volatile boolean               disposed;
+    
+    private EndpointDispatchers( final OutboundEndpoint endpoint ) {
+      this.endpoint = endpoint;
+    }
+    
+    private OutboundEndpoint getEndpoint( ) {
+      return this.endpoint;
+    }
+    
+    private MessageDispatcher borrow( ) throws MuleException {
+      MessageDispatcher dispatcher = this.idle.poll( );
+      if ( dispatcher == null ) {
+        dispatcher = dispatcherFactory.create( this.endpoint );
+        dispatcher.initialise( );
+        dispatcher.start( );
+      }
+      return dispatcher;
+    }
+    
+    private void release( final MessageDispatcher dispatcher, final boolean reusable ) {
+      if ( reusable && !this.disposed && this.idle.size( ) < WORKERS_PER_STAGE ) {
+        this.idle.offer( dispatcher );
+        if ( this.disposed && this.idle.remove( dispatcher ) ) {
+          dispatcher.dispose( );
+        }
+      } else {
+        dispatcher.dispose( );
+      }
+    }
+    
+    private void dispose( ) {
+      this.disposed = true;
+      MessageDispatcher dispatcher;
+      while ( ( dispatcher = this.idle.poll( ) ) != null ) {
+        dispatcher.dispose( );
+      }
+    }
+  }
 }
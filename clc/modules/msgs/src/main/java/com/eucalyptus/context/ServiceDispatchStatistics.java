@@ -0,0 +1,138 @@
+/*************************************************************************
+ * Copyright 2009-2014 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.context;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+/**
+ * Per destination latency histograms for service bus invocations.
+ *
+ * Latencies are recorded in power of two microsecond buckets, so
+ * percentiles are approximate (reported as the upper bound of the bucket).
+ * For dispatch the latency is the time taken to hand the message to the
+ * destination queue, for send it is the full request/response time.
+ */
+public class ServiceDispatchStatistics {
+
+  private static final ConcurrentMap<String,Histogram> histograms = Maps.newConcurrentMap( );
+
+  static void record( final String destination, final long nanos ) {
+    Histogram histogram = histograms.get( destination );
+    if ( histogram == null ) {
+      final Histogram newHistogram = new Histogram( );
+      histogram = histograms.putIfAbsent( destination, newHistogram );
+      if ( histogram == null ) histogram = newHistogram;
+    }
+    histogram.record( nanos );
+  }
+
+  public static Map<String,Histogram> get( ) {
+    return ImmutableMap.copyOf( histograms );
+  }
+
+  public static Histogram get( final String destination ) {
+    return histograms.get( destination );
+  }
+
+  public static void reset( ) {
+    histograms.clear( );
+  }
+
+  public static String describe( ) {
+    final StringBuilder sb = new StringBuilder( );
+    for ( final Map.Entry<String,Histogram> entry : histograms.entrySet( ) ) {
+      if ( sb.length( ) > 0 ) sb.append( '\n' );
+      sb.append( entry.getKey( ) ).append( ": " ).append( entry.getValue( ) );
+    }
+    return sb.toString( );
+  }
+
+  public static class Histogram {
+    private static final int BUCKETS = 32;
+
+    private final AtomicLongArray buckets = new AtomicLongArray( BUCKETS );
+    private final AtomicLong count = new AtomicLong( );
+    private final AtomicLong totalMicros = new AtomicLong( );
+    private final AtomicLong maxMicros = new AtomicLong( );
+
+    void record( final long nanos ) {
+      final long micros = Math.max( 0L, TimeUnit.NANOSECONDS.toMicros( nanos ) );
+      buckets.incrementAndGet( Math.min( BUCKETS - 1, 64 - Long.numberOfLeadingZeros( micros ) ) );
+      count.incrementAndGet( );
+      totalMicros.addAndGet( micros );
+      long max;
+      while ( ( max = maxMicros.get( ) ) < micros && !maxMicros.compareAndSet( max, micros ) );
+    }
+
+    public long getCount( ) {
+      return count.get( );
+    }
+
+    public long getMaxMicros( ) {
+      return maxMicros.get( );
+    }
+
+    public double getAverageMicros( ) {
+      final long invocations = count.get( );
+      return invocations == 0 ? 0.0 : (double) totalMicros.get( ) / invocations;
+    }
+
+    /**
+     * @param percentile The percentile, e.g. 0.99
+     * @return The upper bound (microseconds) of the bucket containing the percentile
+     */
+    public long getPercentileMicros( final double percentile ) {
+      final long invocations = count.get( );
+      if ( invocations == 0 ) return 0L;
+      final long threshold = (long) Math.ceil( invocations * percentile );
+      long seen = 0;
+      for ( int i = 0; i < BUCKETS; i++ ) {
+        seen += buckets.get( i );
+        if ( seen >= threshold ) {
+          return i == 0 ? 0L : Math.min( ( 1L << i ) - 1, getMaxMicros( ) );
+        }
+      }
+      return getMaxMicros( );
+    }
+
+    /**
+     * @return Invocation counts by bucket, bucket i holds latencies below 2^i microseconds
+     */
+    public long[] getBuckets( ) {
+      final long[] counts = new long[ BUCKETS ];
+      for ( int i = 0; i < BUCKETS; i++ ) {
+        counts[ i ] = buckets.get( i );
+      }
+      return counts;
+    }
+
+    @Override
+    public String toString( ) {
+      return String.format( "count=%d avg=%.1fusec p50=%dusec p99=%dusec max=%dusec",
+          getCount( ), getAverageMicros( ), getPercentileMicros( 0.5 ), getPercentileMicros( 0.99 ), getMaxMicros( ) );
+    }
+  }
+}
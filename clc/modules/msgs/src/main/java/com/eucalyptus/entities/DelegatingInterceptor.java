@@ -64,14 +64,18 @@ package com.eucalyptus.entities;
 
 import java.io.Serializable;
 import java.util.Iterator;
+import java.util.Set;
 import org.hibernate.CallbackException;
 import org.hibernate.EntityMode;
 import org.hibernate.Interceptor;
 import org.hibernate.Transaction;
+import org.hibernate.collection.spi.PersistentCollection;
 import org.hibernate.type.Type;
+import com.google.common.collect.Sets;
 
 public class DelegatingInterceptor implements Interceptor {
   private final Interceptor interceptor;
+  private final Set<Class<?>> changedTypes = Sets.newHashSet( );
   
   public DelegatingInterceptor( ) {
     this.interceptor = Interceptors.get( );
@@ -87,26 +91,32 @@ public class DelegatingInterceptor implements Interceptor {
   }
   
   public boolean onFlushDirty( Object entity, Serializable id, Object[] currentState, Object[] previousState, String[] propertyNames, Type[] types ) throws CallbackException {
+    changed( entity );
     return this.interceptor.onFlushDirty( entity, id, currentState, previousState, propertyNames, types );
   }
   
   public boolean onSave( Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types ) throws CallbackException {
+    changed( entity );
     return this.interceptor.onSave( entity, id, state, propertyNames, types );
   }
   
   public void onDelete( Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types ) throws CallbackException {
+    changed( entity );
     this.interceptor.onDelete( entity, id, state, propertyNames, types );
   }
   
   public void onCollectionRecreate( Object collection, Serializable key ) throws CallbackException {
+    collectionChanged( collection );
     this.interceptor.onCollectionRecreate( collection, key );
   }
   
   public void onCollectionRemove( Object collection, Serializable key ) throws CallbackException {
+    collectionChanged( collection );
     this.interceptor.onCollectionRemove( collection, key );
   }
   
   public void onCollectionUpdate( Object collection, Serializable key ) throws CallbackException {
+    collectionChanged( collection );
     this.interceptor.onCollectionUpdate( collection, key );
   }
   
@@ -147,11 +157,30 @@ public class DelegatingInterceptor implements Interceptor {
   }
   
   public void afterTransactionCompletion( Transaction tx ) {
+    try {
+      if ( tx.wasCommitted( ) ) {
+        EntityChanges.committed( changedTypes );
+      }
+    } finally {
+      changedTypes.clear( );
+    }
     this.interceptor.afterTransactionCompletion( tx );
   }
   
   public String onPrepareStatement( String sql ) {
     return this.interceptor.onPrepareStatement( sql );
   }
+
+  private void changed( final Object entity ) {
+    if ( entity != null ) {
+      changedTypes.add( entity.getClass( ) );
+    }
+  }
+
+  private void collectionChanged( final Object collection ) {
+    if ( collection instanceof PersistentCollection ) {
+      changed( ( (PersistentCollection) collection ).getOwner( ) );
+    }
+  }
   
 }
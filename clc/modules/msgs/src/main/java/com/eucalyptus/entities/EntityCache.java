@@ -19,22 +19,38 @@
  ************************************************************************/
 package com.eucalyptus.entities;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import org.hibernate.criterion.Example;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
 import com.eucalyptus.util.Pair;
 import com.google.common.base.Function;
 import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Ordering;
+import com.google.common.collect.Sets;
 
 /**
+ * Cache of immutable views of entities matching an example.
  *
+ * <p>By default the identifiers and versions of matching entities are loaded
+ * on every {@link #get()} and new or updated entities are then loaded.</p>
+ *
+ * <p>A change notifying cache (see {@link #changeNotifying}) only checks the
+ * database when an entity of the cached type was committed since the last
+ * refresh, or when the resync interval has passed (to pick up changes not
+ * visible to the interceptor, such as bulk updates).</p>
+ *
+ * <p>The {@link #getGeneration() generation} changes whenever the cached
+ * values change so callers can skip work when there is nothing new.</p>
  */
 public class EntityCache<E extends AbstractPersistent, TE extends Comparable<TE>> implements Supplier<Iterable<TE>> {
 
@@ -42,6 +58,12 @@ public class EntityCache<E extends AbstractPersistent, TE extends Comparable<TE>
   private final E example;
   private final Function<? super E,TE> transformFunction;
   private final ConcurrentMap<Pair<String,Integer>,TE> cache = Maps.newConcurrentMap( );
+  private final AtomicLong changeCounter;
+  private final long resyncIntervalMillis;
+  private final AtomicLong generation = new AtomicLong( );
+  private volatile List<TE> sortedValues = Collections.emptyList( );
+  private long lastChangeCount = -1;
+  private long lastRefresh = 0;
 
   /**
    * Create an entity cache for the given example.
@@ -51,8 +73,39 @@ public class EntityCache<E extends AbstractPersistent, TE extends Comparable<TE>
    */
   public EntityCache( final E example,
                       final Function<? super E,TE> transformFunction ) {
+    this( example, transformFunction, null, 0 );
+  }
+
+  private EntityCache( final E example,
+                       final Function<? super E,TE> transformFunction,
+                       final AtomicLong changeCounter,
+                       final long resyncIntervalMillis ) {
     this.example = example;
     this.transformFunction = transformFunction;
+    this.changeCounter = changeCounter;
+    this.resyncIntervalMillis = resyncIntervalMillis;
+  }
+
+  /**
+   * Create an entity cache for the given example that is refreshed on change.
+   *
+   * @param example The example object
+   * @param transformFunction Function to transform to immutable cache format
+   * @param resyncInterval The maximum interval between refreshes
+   * @param resyncIntervalUnit The unit for the resync interval
+   * @see EntityChanges
+   */
+  public static <E extends AbstractPersistent, TE extends Comparable<TE>> EntityCache<E,TE> changeNotifying(
+      final E example,
+      final Function<? super E,TE> transformFunction,
+      final long resyncInterval,
+      final TimeUnit resyncIntervalUnit
+  ) {
+    return new EntityCache<>(
+        example,
+        transformFunction,
+        EntityChanges.counter( example.getClass( ) ),
+        resyncIntervalUnit.toMillis( resyncInterval ) );
   }
 
   @SuppressWarnings( "unchecked" )
@@ -69,10 +122,13 @@ public class EntityCache<E extends AbstractPersistent, TE extends Comparable<TE>
     }
   }
 
+  /**
+   * @return true if the cached values changed
+   */
   @SuppressWarnings( { "unchecked", "ConstantConditions" } )
-  private void refresh( ) {
+  private boolean refresh( ) {
     final List<Pair<String,Integer>> currentKeys = loadVersionMap( );
-    cache.keySet( ).retainAll( currentKeys );
+    boolean changed = cache.keySet( ).retainAll( Sets.newHashSet( currentKeys ) );
     currentKeys.removeAll( cache.keySet( ) );
     for ( List<Pair<String,Integer>> keyBatch : Iterables.partition( currentKeys, batchSize ) ) {
       try ( final TransactionResource db = Entities.transactionFor( example ) ) {
@@ -85,15 +141,48 @@ public class EntityCache<E extends AbstractPersistent, TE extends Comparable<TE>
             .list( );
         for ( final E entity : entities ) {
           cache.put( Pair.pair( getId( entity ), entity.getVersion( ) ), transformFunction.apply( entity ) );
+          changed = true;
         }
       }
     }
+    return changed;
+  }
+
+  private boolean isRefreshRequired( final long changeCount, final long now ) {
+    return changeCounter == null ||
+        changeCount != lastChangeCount ||
+        resyncIntervalMillis <= 0 ||
+        now - lastRefresh >= resyncIntervalMillis;
   }
 
   @Override
   public Iterable<TE> get( ) {
-    refresh( );
-    return Ordering.natural( ).sortedCopy( cache.values( ) );
+    synchronized ( cache ) {
+      final long now = System.currentTimeMillis( );
+      // read the counter before loading so changes committed during the refresh are not missed
+      final long changeCount = changeCounter == null ? 0 : changeCounter.get( );
+      if ( isRefreshRequired( changeCount, now ) ) {
+        if ( refresh( ) ) {
+          sortedValues = ImmutableList.copyOf( Ordering.natural( ).sortedCopy( cache.values( ) ) );
+          generation.incrementAndGet( );
+        }
+        lastChangeCount = changeCount;
+        lastRefresh = now;
+      }
+      return sortedValues;
+    }
+  }
+
+  /**
+   * Get the generation for the cached values.
+   *
+   * <p>The generation changes when the values returned from {@link #get()}
+   * change.</p>
+   *
+   * @return The current generation
+   */
+  public long getGeneration( ) {
+    return generation.get( );
   }
 
   private String getId( final E entity ) {
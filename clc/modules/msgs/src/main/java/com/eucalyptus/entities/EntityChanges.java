@@ -0,0 +1,69 @@
+/*************************************************************************
+ * Copyright 2009-2014 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.entities;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import com.google.common.collect.Maps;
+
+/**
+ * Change counters for persistent entity types.
+ *
+ * Counters are registered by type and are incremented after any transaction
+ * that inserted, updated or deleted an entity of the type (or a subtype) is
+ * committed. Changes are tracked by the session interceptor so bulk (HQL or
+ * SQL) updates and changes made by other hosts are not visible here.
+ *
+ * @see DelegatingInterceptor
+ */
+public class EntityChanges {
+
+  private static final ConcurrentMap<Class<?>,AtomicLong> counters = Maps.newConcurrentMap( );
+
+  /**
+   * Get the change counter for the given type, registering it if necessary.
+   *
+   * @param type The entity type
+   * @return The counter, the value of which changes when an entity of the type is changed.
+   */
+  public static AtomicLong counter( final Class<?> type ) {
+    AtomicLong counter = counters.get( type );
+    if ( counter == null ) {
+      final AtomicLong newCounter = new AtomicLong( );
+      counter = counters.putIfAbsent( type, newCounter );
+      if ( counter == null ) counter = newCounter;
+    }
+    return counter;
+  }
+
+  static void committed( final Set<Class<?>> changedTypes ) {
+    if ( changedTypes.isEmpty( ) || counters.isEmpty( ) ) return;
+    for ( final Map.Entry<Class<?>,AtomicLong> entry : counters.entrySet( ) ) {
+      for ( final Class<?> changedType : changedTypes ) {
+        if ( entry.getKey( ).isAssignableFrom( changedType ) ) {
+          entry.getValue( ).incrementAndGet( );
+          break;
+        }
+      }
+    }
+  }
+}
@@ -133,6 +133,14 @@ public abstract class AbstractNamedRegistry<TYPE extends HasFullName> {
     }
   }
   
+  /**
+   * Count disabled values without copying them, the count is not exact if
+   * values are concurrently enabled or disabled.
+   */
+  public int countDisabledValues( ) {
+    return this.disabledMap.size( );
+  }
+  
   public List<TYPE> listValues( ) {
     this.canHas.readLock( ).lock( );
     try {
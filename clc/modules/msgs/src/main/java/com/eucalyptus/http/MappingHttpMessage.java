@@ -62,6 +62,7 @@
 
 package com.eucalyptus.http;
 
+import java.nio.charset.StandardCharsets;
 import org.apache.axiom.om.OMElement;
 import org.apache.axiom.soap.SOAPEnvelope;
 import org.apache.log4j.Logger;
@@ -77,6 +78,7 @@ public abstract class MappingHttpMessage extends DefaultHttpMessage implements H
   private static Logger LOG = Logger.getLogger( MappingHttpMessage.class );
   private String       correlationId;
   private String       messageString;
+  private boolean      messageStringFromContent;
   private SOAPEnvelope soapEnvelope;
   private OMElement    omMessage;
   protected Object       message;
@@ -116,6 +118,9 @@ public abstract class MappingHttpMessage extends DefaultHttpMessage implements H
   }
 
   public String getMessageString( ) {
+    if ( messageString == null && messageStringFromContent && getContent( ) != null ) {
+      messageString = getContent( ).toString( StandardCharsets.UTF_8 );
+    }
     return messageString;
   }
 
@@ -123,6 +128,14 @@ public abstract class MappingHttpMessage extends DefaultHttpMessage implements H
     this.messageString = messageString;
   }
 
+  /**
+   * Use the (UTF-8) content as the message string, decoded only if requested.
+   */
+  public void setMessageStringFromContent( ) {
+    this.messageString = null;
+    this.messageStringFromContent = true;
+  }
+
   public User getUser( ) {
     return user;
   }
@@ -0,0 +1,352 @@
+/*************************************************************************
+ * Copyright 2009-2014 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.util.async;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.util.Deque;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.log4j.Logger;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.channel.ChannelHandler;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelPipelineFactory;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.ExceptionEvent;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelDownstreamHandler;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpResponse;
+import org.jboss.netty.handler.codec.http.HttpVersion;
+import com.eucalyptus.util.Exceptions;
+import com.eucalyptus.ws.StackConfiguration;
+import com.google.common.collect.Maps;
+
+/**
+ * Idle keep-alive connections for internal service requests.
+ *
+ * Once a response has been read the channel is returned to the pool if the
+ * response permits the connection to be kept open. Channels are pooled per
+ * endpoint and client pipeline so a channel is only reused with the pipeline
+ * it was created with. Each channel carries one request at a time, when there
+ * is no idle channel for an endpoint the caller opens a new connection.
+ *
+ * Idle channels are not reused once they have been idle for longer than
+ * {@link StackConfiguration#CLIENT_CONNECTION_POOL_IDLE_TIMEOUT_MILLIS}, this
+ * should be below the keep-alive timeout of the services being called.
+ *
+ * The remote end can still close an idle channel just as it is reused. A
+ * request on a reused channel that could not be written can be retried once
+ * on a new connection, see {@link #monitor(Channel)}. Once the request is
+ * written the service may have acted on it, so it is not retried.
+ */
+class AsyncRequestChannelPool {
+  private static final Logger LOG = Logger.getLogger( AsyncRequestChannelPool.class );
+
+  static final String REQUEST_HANDLER = "request-handler";
+  static final String REQUEST_MONITOR = "request-monitor";
+
+  private static final ConcurrentMap<PoolKey,Deque<IdleChannel>> idleChannels = Maps.newConcurrentMap( );
+  private static final AtomicInteger open = new AtomicInteger( );
+  private static final AtomicLong connects = new AtomicLong( );
+  private static final AtomicLong connectMillis = new AtomicLong( );
+  private static final AtomicLong reuses = new AtomicLong( );
+  private static final AtomicLong expired = new AtomicLong( );
+  private static final AtomicLong retries = new AtomicLong( );
+
+  static PoolKey key( final SocketAddress address, final ChannelPipelineFactory factory ) {
+    return new PoolKey( address, factory.getClass( ) );
+  }
+
+  /**
+   * Take an idle channel for the endpoint, installing the given request handler.
+   *
+   * @return The channel or null if there is no idle channel that can be reused.
+   */
+  static Channel acquire( final PoolKey key, final ChannelHandler handler ) {
+    if ( maxIdle( ) <= 0 ) return null;
+    final Deque<IdleChannel> idle = idleChannels.get( key );
+    if ( idle == null ) return null;
+    final long idleTimeout = idleTimeoutMillis( );
+    final long now = System.currentTimeMillis( );
+    IdleChannel idleChannel;
+    // most recently used first, surplus channels are left to expire
+    while ( ( idleChannel = idle.pollLast( ) ) != null ) {
+      final Channel channel = idleChannel.channel;
+      if ( channel.isConnected( ) && ( now - idleChannel.since ) < idleTimeout ) {
+        try {
+          channel.getPipeline( ).replace( REQUEST_HANDLER, REQUEST_HANDLER, handler );
+          reuses.incrementAndGet( );
+          return channel;
+        } catch ( final NoSuchElementException e ) {
+          LOG.debug( "Discarding pooled channel without request handler: " + channel );
+        }
+      } else {
+        expired.incrementAndGet( );
+      }
+      channel.close( );
+    }
+    return null;
+  }
+
+  /**
+   * Monitor a reused channel for the completion of the request write.
+   *
+   * @return The monitor, which is removed from the pipeline once a write succeeds.
+   */
+  static RequestMonitor monitor( final Channel channel ) {
+    final RequestMonitor monitor = new RequestMonitor( );
+    final ChannelPipeline pipeline = channel.getPipeline( );
+    if ( pipeline.get( REQUEST_MONITOR ) != null ) {
+      pipeline.replace( REQUEST_MONITOR, REQUEST_MONITOR, monitor );
+    } else {
+      pipeline.addFirst( REQUEST_MONITOR, monitor );
+    }
+    return monitor;
+  }
+
+  /**
+   * Can a request that failed on a reused channel be retried on a new connection.
+   *
+   * Only connection failures before the request was written are retried, the
+   * channel was then most likely closed by the remote end while idle. Requests
+   * are not idempotent in general so a request that was written is never
+   * retried, even if no response was read.
+   *
+   * @param monitor The monitor for the reused channel, null if the channel was not reused
+   * @param failure The request failure
+   * @return True if the request should be retried
+   */
+  static boolean isRetryable( final RequestMonitor monitor, final Throwable failure ) {
+    final boolean retryable = monitor != null &&
+        !monitor.isRequestWritten( ) &&
+        ( failure instanceof ConnectionException || Exceptions.isCausedBy( failure, IOException.class ) );
+    if ( retryable ) {
+      retries.incrementAndGet( );
+    }
+    return retryable;
+  }
+
+  /**
+   * Track a newly connected channel.
+   */
+  static void connected( final Channel channel, final long millis ) {
+    connects.incrementAndGet( );
+    connectMillis.addAndGet( millis );
+    open.incrementAndGet( );
+    channel.getCloseFuture( ).addListener( new ChannelFutureListener( ) {
+      @Override
+      public void operationComplete( final ChannelFuture future ) {
+        open.decrementAndGet( );
+      }
+    } );
+  }
+
+  /**
+   * Return a channel to the pool once the response has been read.
+   *
+   * @return True if the channel was pooled, false if the caller should close it.
+   */
+  static boolean release( final PoolKey key, final Channel channel, final HttpResponse response ) {
+    final int maxIdle = maxIdle( );
+    if ( maxIdle <= 0 || !channel.isConnected( ) || !isKeepAlive( response ) ) return false;
+    Deque<IdleChannel> idle = idleChannels.get( key );
+    if ( idle == null ) {
+      final Deque<IdleChannel> newIdle = new ConcurrentLinkedDeque<>( );
+      idle = idleChannels.putIfAbsent( key, newIdle );
+      if ( idle == null ) idle = newIdle;
+    }
+    if ( idle.size( ) >= maxIdle ) return false;
+    final IdleChannel idleChannel = new IdleChannel( channel );
+    try {
+      channel.getPipeline( ).replace( REQUEST_HANDLER, REQUEST_HANDLER, new IdleChannelHandler( idle, idleChannel ) );
+    } catch ( final NoSuchElementException e ) {
+      return false;
+    }
+    idle.offerLast( idleChannel );
+    return true;
+  }
+
+  static boolean isKeepAlive( final HttpResponse response ) {
+    final String connection = response.getHeader( HttpHeaders.Names.CONNECTION );
+    if ( HttpHeaders.Values.CLOSE.equalsIgnoreCase( connection ) ) {
+      return false;
+    } else if ( response.getProtocolVersion( ).equals( HttpVersion.HTTP_1_1 ) ) {
+      return true;
+    } else {
+      return HttpHeaders.Values.KEEP_ALIVE.equalsIgnoreCase( connection );
+    }
+  }
+
+  public static int getOpen( ) {
+    return open.get( );
+  }
+
+  public static int getIdle( ) {
+    int idle = 0;
+    for ( final Deque<IdleChannel> channels : idleChannels.values( ) ) {
+      idle += channels.size( );
+    }
+    return idle;
+  }
+
+  public static long getConnects( ) {
+    return connects.get( );
+  }
+
+  public static long getReuses( ) {
+    return reuses.get( );
+  }
+
+  public static long getExpired( ) {
+    return expired.get( );
+  }
+
+  public static long getRetries( ) {
+    return retries.get( );
+  }
+
+  public static double getAverageConnectMillis( ) {
+    final long connectCount = connects.get( );
+    return connectCount == 0 ? 0.0 : (double) connectMillis.get( ) / connectCount;
+  }
+
+  public static String describe( ) {
+    final int idle = getIdle( );
+    return String.format( "open=%d active=%d idle=%d connects=%d reuses=%d expired=%d retries=%d avgConnect=%.1fmsec",
+        getOpen( ), Math.max( 0, getOpen( ) - idle ), idle, getConnects( ), getReuses( ), getExpired( ), getRetries( ),
+        getAverageConnectMillis( ) );
+  }
+
+  private static int maxIdle( ) {
+    final Integer maxIdle = StackConfiguration.CLIENT_CONNECTION_POOL_MAX_IDLE;
+    return maxIdle == null ? 0 : maxIdle;
+  }
+
+  private static long idleTimeoutMillis( ) {
+    final Long idleTimeout = StackConfiguration.CLIENT_CONNECTION_POOL_IDLE_TIMEOUT_MILLIS;
+    return idleTimeout == null ? 0L : idleTimeout;
+  }
+
+  static final class PoolKey {
+    private final SocketAddress address;
+    private final Class<?> pipelineFactoryType;
+
+    private PoolKey( final SocketAddress address, final Class<?> pipelineFactoryType ) {
+      this.address = address;
+      this.pipelineFactoryType = pipelineFactoryType;
+    }
+
+    @Override
+    public boolean equals( final Object o ) {
+      if ( this == o ) return true;
+      if ( !( o instanceof PoolKey ) ) return false;
+      final PoolKey that = (PoolKey) o;
+      return address.equals( that.address ) && pipelineFactoryType.equals( that.pipelineFactoryType );
+    }
+
+    @Override
+    public int hashCode( ) {
+      return 31 * address.hashCode( ) + pipelineFactoryType.hashCode( );
+    }
+
+    @Override
+    public String toString( ) {
+      return address + "/" + pipelineFactoryType.getSimpleName( );
+    }
+  }
+
+  private static final class IdleChannel {
+    private final Channel channel;
+    private final long since = System.currentTimeMillis( );
+
+    private IdleChannel( final Channel channel ) {
+      this.channel = channel;
+    }
+  }
+
+  /**
+   * Records whether a request write succeeded on a reused channel.
+   */
+  static final class RequestMonitor extends SimpleChannelDownstreamHandler {
+    private volatile boolean requestWritten;
+
+    boolean isRequestWritten( ) {
+      return requestWritten;
+    }
+
+    @Override
+    public void writeRequested( final ChannelHandlerContext ctx, final MessageEvent e ) throws Exception {
+      e.getFuture( ).addListener( new ChannelFutureListener( ) {
+        @Override
+        public void operationComplete( final ChannelFuture future ) {
+          if ( future.isSuccess( ) ) {
+            requestWritten = true;
+            if ( ctx.getPipeline( ).get( REQUEST_MONITOR ) == RequestMonitor.this ) {
+              ctx.getPipeline( ).remove( RequestMonitor.this );
+            }
+          }
+        }
+      } );
+      ctx.sendDownstream( e );
+    }
+  }
+
+  /**
+   * Request handler placeholder for idle channels, removes the channel from
+   * the pool when it is closed by the remote end and closes the channel on
+   * any unexpected input.
+   */
+  private static final class IdleChannelHandler extends SimpleChannelUpstreamHandler {
+    private final Deque<IdleChannel> idle;
+    private final IdleChannel idleChannel;
+
+    private IdleChannelHandler( final Deque<IdleChannel> idle, final IdleChannel idleChannel ) {
+      this.idle = idle;
+      this.idleChannel = idleChannel;
+    }
+
+    @Override
+    public void channelClosed( final ChannelHandlerContext ctx, final ChannelStateEvent e ) {
+      idle.remove( idleChannel );
+    }
+
+    @Override
+    public void messageReceived( final ChannelHandlerContext ctx, final MessageEvent e ) {
+      LOG.debug( "Closing pooled channel on unexpected message: " + e.getChannel( ) );
+      idle.remove( idleChannel );
+      e.getChannel( ).close( );
+    }
+
+    @Override
+    public void exceptionCaught( final ChannelHandlerContext ctx, final ExceptionEvent e ) {
+      idle.remove( idleChannel );
+      e.getChannel( ).close( );
+    }
+  }
+}
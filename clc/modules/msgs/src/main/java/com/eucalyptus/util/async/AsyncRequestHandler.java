@@ -97,9 +97,14 @@ public class AsyncRequestHandler<Q extends BaseMessage, R extends BaseMessage> i
   private final AsyncRequest<Q, R> parent;
 
   private ClientBootstrap              clientBootstrap;
-  private ChannelFuture                connectFuture;
+  private volatile ChannelFuture       connectFuture;
+  private AsyncRequestChannelPool.PoolKey poolKey;
+  private ServiceConfiguration         config;
+  private volatile AsyncRequestChannelPool.RequestMonitor requestMonitor;
   
   private final AtomicBoolean          writeComplete = new AtomicBoolean( false );
+  private final AtomicBoolean          released      = new AtomicBoolean( false );
+  private final AtomicBoolean          retried       = new AtomicBoolean( false );
   private final CheckedListenableFuture<R>   response;
   private transient AtomicReference<Q> request       = new AtomicReference<Q>( null );
   
@@ -120,14 +125,27 @@ public class AsyncRequestHandler<Q extends BaseMessage, R extends BaseMessage> i
       LOG.warn( "Duplicate write attempt for request: " + this.request.get( ).getClass( ).getSimpleName( ) );
       return false;
     } else {
-      final SocketAddress serviceSocketAddress = config.getSocketAddress( );
-      final ChannelPipelineFactory factory = config.getComponentId( ).getClientPipeline( );
-      try {
+      this.config = config;
+      return this.connect( config, request, true );
+    }
+  }
+
+  private boolean connect( final ServiceConfiguration config, final Q request, final boolean reuse ) {
+    final SocketAddress serviceSocketAddress = config.getSocketAddress( );
+    final ChannelPipelineFactory factory = config.getComponentId( ).getClientPipeline( );
+    try {
+      this.poolKey = AsyncRequestChannelPool.key( serviceSocketAddress, factory );
+      final Channel pooledChannel = reuse ? AsyncRequestChannelPool.acquire( this.poolKey, this ) : null;
+      final long connectStart = System.currentTimeMillis( );
+      if ( pooledChannel != null ) {
+        this.requestMonitor = AsyncRequestChannelPool.monitor( pooledChannel );
+        this.connectFuture = Channels.succeededFuture( pooledChannel );
+      } else {
         this.clientBootstrap = WebServices.clientBootstrap( new ChannelPipelineFactory( ) {
           @Override
           public ChannelPipeline getPipeline( ) throws Exception {
             final ChannelPipeline pipeline = factory.getPipeline( );
-            pipeline.addLast( "request-handler", AsyncRequestHandler.this );
+            pipeline.addLast( AsyncRequestChannelPool.REQUEST_HANDLER, AsyncRequestHandler.this );
             return pipeline;
           }
         } );
@@ -135,64 +153,67 @@ public class AsyncRequestHandler<Q extends BaseMessage, R extends BaseMessage> i
         Logs.extreme( ).debug( EventRecord.here( request.getClass( ), EventClass.SYSTEM_REQUEST, EventType.CHANNEL_OPENING, request.getClass( ).getSimpleName( ),
                           request.getCorrelationId( ), serviceSocketAddress.toString( ) ) );
         this.connectFuture = this.clientBootstrap.connect( serviceSocketAddress );
-        final HttpRequest httpRequest = new MappingHttpRequest( HttpVersion.HTTP_1_1, HttpMethod.POST, config, this.request.get( ) );
-        
-        this.connectFuture.addListener( new ChannelFutureListener( ) {
-          @Override
-          public void operationComplete( final ChannelFuture future ) throws Exception {
-            try {
-              if ( future.isSuccess( ) ) {
-                Logs.extreme( ).debug( "Connected as: " + future.getChannel( ).getLocalAddress( ) );
-                
-                final InetAddress localAddr = ( ( InetSocketAddress ) future.getChannel( ).getLocalAddress( ) ).getAddress( );
-                if ( !factory.getClass( ).getSimpleName( ).startsWith( "GatherLog" ) ) {
-                  Topology.populateServices( config, AsyncRequestHandler.this.request.get( ) );
-                }
-
-                Logs.extreme( ).debug(
-                  EventRecord.here(
-                    request.getClass( ),
-                    EventClass.SYSTEM_REQUEST,
-                    EventType.CHANNEL_OPEN,
-                    request.getClass( ).getSimpleName( ),
-                    request.getCorrelationId( ),
-                    serviceSocketAddress.toString( ),
-                    "" + future.getChannel( ).getLocalAddress( ),
-                    "" + future.getChannel( ).getRemoteAddress( ) ) );
-                Logs.extreme( ).debug( httpRequest );
-                
-                future.getChannel( ).write( httpRequest ).addListener( new ChannelFutureListener( ) {
-                  @Override
-                  public void operationComplete( final ChannelFuture future ) throws Exception {
-                    AsyncRequestHandler.this.writeComplete.set( true );
-                    
-                    Logs.extreme( ).debug(
-                      EventRecord.here(
-                        request.getClass( ),
-                        EventClass.SYSTEM_REQUEST,
-                        EventType.CHANNEL_WRITE,
-                        request.getClass( ).getSimpleName( ),
-                        request.getCorrelationId( ),
-                        serviceSocketAddress.toString( ),
-                        "" + future.getChannel( ).getLocalAddress( ),
-                        "" + future.getChannel( ).getRemoteAddress( ) ) );
-                  }
-                } );
-              } else {
-                AsyncRequestHandler.this.teardown( future.getCause( ) );
+      }
+      final HttpRequest httpRequest = new MappingHttpRequest( HttpVersion.HTTP_1_1, HttpMethod.POST, config, this.request.get( ) );
+      
+      this.connectFuture.addListener( new ChannelFutureListener( ) {
+        @Override
+        public void operationComplete( final ChannelFuture future ) throws Exception {
+          try {
+            if ( future.isSuccess( ) ) {
+              if ( pooledChannel == null ) {
+                AsyncRequestChannelPool.connected( future.getChannel( ), System.currentTimeMillis( ) - connectStart );
+              }
+              Logs.extreme( ).debug( "Connected as: " + future.getChannel( ).getLocalAddress( ) );
+              
+              final InetAddress localAddr = ( ( InetSocketAddress ) future.getChannel( ).getLocalAddress( ) ).getAddress( );
+              if ( !factory.getClass( ).getSimpleName( ).startsWith( "GatherLog" ) ) {
+                Topology.populateServices( config, AsyncRequestHandler.this.request.get( ) );
               }
-            } catch ( final Exception ex ) {
-              LOG.error( ex, ex );
-              AsyncRequestHandler.this.teardown( ex );
+
+              Logs.extreme( ).debug(
+                EventRecord.here(
+                  request.getClass( ),
+                  EventClass.SYSTEM_REQUEST,
+                  EventType.CHANNEL_OPEN,
+                  request.getClass( ).getSimpleName( ),
+                  request.getCorrelationId( ),
+                  serviceSocketAddress.toString( ),
+                  "" + future.getChannel( ).getLocalAddress( ),
+                  "" + future.getChannel( ).getRemoteAddress( ) ) );
+              Logs.extreme( ).debug( httpRequest );
+              
+              future.getChannel( ).write( httpRequest ).addListener( new ChannelFutureListener( ) {
+                @Override
+                public void operationComplete( final ChannelFuture future ) throws Exception {
+                  AsyncRequestHandler.this.writeComplete.set( true );
+                  
+                  Logs.extreme( ).debug(
+                    EventRecord.here(
+                      request.getClass( ),
+                      EventClass.SYSTEM_REQUEST,
+                      EventType.CHANNEL_WRITE,
+                      request.getClass( ).getSimpleName( ),
+                      request.getCorrelationId( ),
+                      serviceSocketAddress.toString( ),
+                      "" + future.getChannel( ).getLocalAddress( ),
+                      "" + future.getChannel( ).getRemoteAddress( ) ) );
+                }
+              } );
+            } else {
+              AsyncRequestHandler.this.teardown( future.getCause( ) );
             }
+          } catch ( final Exception ex ) {
+            LOG.error( ex, ex );
+            AsyncRequestHandler.this.teardown( ex );
           }
-        } );
-        return true;
-      } catch ( final Exception t ) {
-        LOG.error( t, t );
-        this.teardown( t );
-        return false;
-      }
+        }
+      } );
+      return true;
+    } catch ( final Exception t ) {
+      LOG.error( t, t );
+      this.teardown( t );
+      return false;
     }
   }
   
@@ -200,6 +221,9 @@ public class AsyncRequestHandler<Q extends BaseMessage, R extends BaseMessage> i
     if ( t == null ) {
       t = new NullPointerException( "teardown() called with null argument." );
     }
+    if ( this.retryOnNewConnection( t ) ) {
+      return;
+    }
     this.logRequestFailure( t );
     this.response.setException( t );
     if ( this.connectFuture != null ) {
@@ -207,8 +231,33 @@ public class AsyncRequestHandler<Q extends BaseMessage, R extends BaseMessage> i
     }
   }
 
+  /**
+   * Retry once on a new connection if a reused channel failed before the
+   * request was written, e.g. the channel was closed by the remote end as
+   * it was reused.
+   */
+  private boolean retryOnNewConnection( final Throwable t ) {
+    final AsyncRequestChannelPool.RequestMonitor monitor = this.requestMonitor;
+    if ( monitor == null || this.response.isDone( ) || !this.retried.compareAndSet( false, true ) ) {
+      return false;
+    } else if ( !AsyncRequestChannelPool.isRetryable( monitor, t ) ) {
+      return false;
+    }
+    LOG.debug( "Retrying request on new connection after failure on reused channel: " + t.getMessage( ) );
+    this.requestMonitor = null;
+    final Channel staleChannel = this.connectFuture.getChannel( );
+    this.writeComplete.set( false );
+    this.released.set( false );
+    this.connect( this.config, this.request.get( ), false );
+    // close once replaced so events for the stale channel are ignored
+    staleChannel.close( );
+    return true;
+  }
+
   private void maybeCloseChannel( ) {
-    if ( this.connectFuture.isDone( ) && this.connectFuture.isSuccess( ) ) {
+    if ( this.released.get( ) ) {
+      // channel returned to the pool and may be in use by another request
+    } else if ( this.connectFuture.isDone( ) && this.connectFuture.isSuccess( ) ) {
       final Channel channel = this.connectFuture.getChannel( );
       if ( ( channel != null ) && channel.isOpen( ) ) {
         channel.close( ).addListener( new ChannelFutureListener( ) {
@@ -253,7 +302,10 @@ public class AsyncRequestHandler<Q extends BaseMessage, R extends BaseMessage> i
   
   @Override
   public void handleUpstream( final ChannelHandlerContext ctx, final ChannelEvent e ) throws Exception {
-    if ( e instanceof MessageEvent ) {
+    final ChannelFuture currentConnect = this.connectFuture;
+    if ( currentConnect != null && currentConnect.getChannel( ) != e.getChannel( ) ) {
+      // event for a stale channel that was replaced by a retry
+    } else if ( e instanceof MessageEvent ) {
       this.messageReceived( ctx, ( MessageEvent ) e );
     } else if ( e instanceof ChannelStateEvent ) {
       final ChannelStateEvent evt = ( ChannelStateEvent ) e;
@@ -283,10 +335,11 @@ public class AsyncRequestHandler<Q extends BaseMessage, R extends BaseMessage> i
           final R msg = ( R ) response.getMessage( );
           if ( !msg.get_return( true ) ) {
             this.teardown( new FailedRequestException( "Cluster response includes _return=false", msg ) );
+            e.getFuture( ).addListener( ChannelFutureListener.CLOSE );
           } else {
+            this.releaseChannel( e.getChannel( ), response );
             this.response.set( msg );
           }
-          e.getFuture( ).addListener( ChannelFutureListener.CLOSE );
         } catch ( final Exception e1 ) {
           LOG.error( e1, e1 );
           this.teardown( e1 );
@@ -308,6 +361,18 @@ public class AsyncRequestHandler<Q extends BaseMessage, R extends BaseMessage> i
     }
   }
   
+  /**
+   * Return the channel to the pool for reuse, or close it if the connection
+   * cannot be kept alive.
+   */
+  private void releaseChannel( final Channel channel, final MappingHttpResponse httpResponse ) {
+    if ( AsyncRequestChannelPool.release( this.poolKey, channel, httpResponse ) ) {
+      this.released.set( true );
+    } else {
+      channel.close( );
+    }
+  }
+
   private void checkFinished( final ChannelHandlerContext ctx, final ChannelStateEvent evt ) {
     if ( ( this.connectFuture != null ) && !this.connectFuture.isSuccess( )
          && ( this.connectFuture.getCause( ) instanceof IOException ) ) {
@@ -99,6 +99,12 @@ public class DnsResolvers extends ServiceJarDiscovery {
                                     + "Also, each resolver may need to be separately enabled."
                                     + "See 'euca-describe-properties dns'." )
   public static Boolean enabled = Boolean.TRUE;
+  @ConfigurableField( description = "Maximum time in seconds to cache responses from cacheable resolvers, 0 to disable caching.",
+                      initial = "5" )
+  public static Integer answer_cache_ttl_seconds = 5;
+  @ConfigurableField( description = "Time in seconds to cache NXDOMAIN responses from cacheable resolvers, 0 to disable negative caching.",
+                      initial = "5" )
+  public static Integer negative_cache_ttl_seconds = 5;
   private static final ClassToInstanceMap<DnsResolver> resolvers = MutableClassToInstanceMap.create( );
   
   public enum RequestType implements Predicate<Record> {
@@ -421,6 +427,19 @@ public class DnsResolvers extends ServiceJarDiscovery {
     
     String toString( );
   }
+
+  /**
+   * A resolver for which the response depends only on the query (and not,
+   * for example, on the source address of the request) so can be cached.
+   *
+   * @see DnsResponseCache
+   */
+  public interface CacheableDnsResolver extends DnsResolver {
+    /**
+     * Entity types for which any change invalidates cached responses.
+     */
+    Iterable<Class<?>> getCacheDependencies( );
+  }
   
   /**
    * Returns the list of resolvers which accept the name from the given source address.
@@ -449,7 +468,7 @@ public class DnsResolvers extends ServiceJarDiscovery {
     LOG.debug( "DnsResolver: " + RequestType.typeOf( type ) + " " + name );
     for ( final DnsResolver r : DnsResolvers.resolversFor( request ) ) {
       try {
-        final DnsResponse reply = r.lookupRecords( request );
+        final DnsResponse reply = DnsResponseCache.lookupRecords( r, request );
         if ( reply == null ) {
           LOG.debug( "DnsResolver: returned null " + name + " using " + r );
           continue;
@@ -0,0 +1,203 @@
+/*************************************************************************
+ * Copyright 2009-2014 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.util.dns;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Record;
+import com.eucalyptus.entities.EntityChanges;
+import com.eucalyptus.util.dns.DnsResolvers.CacheableDnsResolver;
+import com.eucalyptus.util.dns.DnsResolvers.DnsRequest;
+import com.eucalyptus.util.dns.DnsResolvers.DnsResolver;
+import com.eucalyptus.util.dns.DnsResolvers.DnsResponse;
+import com.eucalyptus.util.dns.DnsResolvers.ResponseSection;
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Maps;
+
+/**
+ * Cache for responses from cacheable resolvers.
+ *
+ * Responses are cached for the lesser of the configured time and the
+ * minimum TTL of the response records, NXDOMAIN responses are cached for the
+ * configured negative cache time. All cached responses for a resolver are
+ * discarded when an entity the resolver depends on changes.
+ *
+ * @see DnsResolvers.CacheableDnsResolver
+ */
+public class DnsResponseCache {
+
+  private static final int MAXIMUM_SIZE = 10000;
+
+  private static final Cache<CacheKey,CachedResponse> cache = CacheBuilder.newBuilder( )
+      .maximumSize( MAXIMUM_SIZE )
+      .expireAfterWrite( 1, TimeUnit.HOURS )
+      .build( );
+  private static final ConcurrentMap<Class<?>,ResolverStatistics> statistics = Maps.newConcurrentMap( );
+
+  /**
+   * Lookup records using the given resolver, using a cached response if available.
+   */
+  static DnsResponse lookupRecords( final DnsResolver resolver, final DnsRequest request ) {
+    final int answerTtl = Objects.firstNonNull( DnsResolvers.answer_cache_ttl_seconds, 0 );
+    if ( answerTtl <= 0 || !( resolver instanceof CacheableDnsResolver ) ) {
+      return resolver.lookupRecords( request );
+    }
+    final ResolverStatistics resolverStatistics = statistics( resolver.getClass( ) );
+    final long generation = generation( (CacheableDnsResolver) resolver );
+    final Record query = request.getQuery( );
+    final CacheKey key = new CacheKey( resolver.getClass( ), query.getName( ), query.getType( ), query.getDClass( ) );
+    final long now = System.currentTimeMillis( );
+    final CachedResponse cached = cache.getIfPresent( key );
+    if ( cached != null ) {
+      if ( cached.expiry > now && cached.generation == generation ) {
+        ( cached.response.isNxdomain( ) ? resolverStatistics.negativeHits : resolverStatistics.hits ).incrementAndGet( );
+        return cached.response;
+      }
+      cache.invalidate( key );
+    }
+    resolverStatistics.misses.incrementAndGet( );
+    final DnsResponse response = resolver.lookupRecords( request );
+    if ( response != null ) {
+      final long ttlSeconds = response.isNxdomain( ) ?
+          Objects.firstNonNull( DnsResolvers.negative_cache_ttl_seconds, 0 ) :
+          Math.min( answerTtl, minimumTtl( response ) );
+      if ( ttlSeconds > 0 ) {
+        cache.put( key, new CachedResponse( response, generation, now + TimeUnit.SECONDS.toMillis( ttlSeconds ) ) );
+      }
+    }
+    return response;
+  }
+
+  public static void clear( ) {
+    cache.invalidateAll( );
+  }
+
+  public static long size( ) {
+    return cache.size( );
+  }
+
+  /**
+   * Statistics by resolver type.
+   */
+  public static Map<Class<?>,ResolverStatistics> getStatistics( ) {
+    return Maps.newHashMap( statistics );
+  }
+
+  private static long minimumTtl( final DnsResponse response ) {
+    long ttl = Long.MAX_VALUE;
+    for ( final ResponseSection section : ResponseSection.values( ) ) {
+      final Record[] records = response.section( section );
+      if ( records != null ) {
+        for ( final Record record : records ) {
+          ttl = Math.min( ttl, record.getTTL( ) );
+        }
+      }
+    }
+    return ttl;
+  }
+
+  private static long generation( final CacheableDnsResolver resolver ) {
+    long generation = 0;
+    for ( final Class<?> dependency : resolver.getCacheDependencies( ) ) {
+      generation += EntityChanges.counter( dependency ).get( );
+    }
+    return generation;
+  }
+
+  private static ResolverStatistics statistics( final Class<?> resolverType ) {
+    ResolverStatistics resolverStatistics = statistics.get( resolverType );
+    if ( resolverStatistics == null ) {
+      final ResolverStatistics newStatistics = new ResolverStatistics( );
+      resolverStatistics = statistics.putIfAbsent( resolverType, newStatistics );
+      if ( resolverStatistics == null ) resolverStatistics = newStatistics;
+    }
+    return resolverStatistics;
+  }
+
+  public static final class ResolverStatistics {
+    private final AtomicLong hits = new AtomicLong( );
+    private final AtomicLong negativeHits = new AtomicLong( );
+    private final AtomicLong misses = new AtomicLong( );
+
+    public long getHits( ) {
+      return hits.get( );
+    }
+
+    public long getNegativeHits( ) {
+      return negativeHits.get( );
+    }
+
+    public long getMisses( ) {
+      return misses.get( );
+    }
+
+    @Override
+    public String toString( ) {
+      return "hits=" + hits + " negativeHits=" + negativeHits + " misses=" + misses;
+    }
+  }
+
+  private static final class CacheKey {
+    private final Class<?> resolverType;
+    private final Name name;
+    private final int type;
+    private final int dclass;
+
+    private CacheKey( final Class<?> resolverType, final Name name, final int type, final int dclass ) {
+      this.resolverType = resolverType;
+      this.name = name;
+      this.type = type;
+      this.dclass = dclass;
+    }
+
+    @Override
+    public boolean equals( final Object o ) {
+      if ( this == o ) return true;
+      if ( o == null || getClass( ) != o.getClass( ) ) return false;
+      final CacheKey that = (CacheKey) o;
+      return type == that.type &&
+          dclass == that.dclass &&
+          resolverType.equals( that.resolverType ) &&
+          name.equals( that.name );
+    }
+
+    @Override
+    public int hashCode( ) {
+      return Objects.hashCode( resolverType, name, type, dclass );
+    }
+  }
+
+  private static final class CachedResponse {
+    private final DnsResponse response;
+    private final long generation;
+    private final long expiry;
+
+    private CachedResponse( final DnsResponse response, final long generation, final long expiry ) {
+      this.response = response;
+      this.generation = generation;
+      this.expiry = expiry;
+    }
+  }
+}
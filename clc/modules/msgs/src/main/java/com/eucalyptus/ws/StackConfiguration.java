@@ -94,6 +94,8 @@ public class StackConfiguration extends AbstractPersistent {
   @ConfigurableField( changeListener = TimeChangeListener.class,
                       description = "Time interval duration (in seconds) during which duplicate signatures will be accepted to accomodate collisions for legitimate requests inherent in Query/REST signing protocol." )
   public static Integer       REPLAY_SKEW_WINDOW_SEC            = 3;
+  @ConfigurableField( description = "Detect replayed request signatures across hosts using the database, in addition to per host detection." )
+  public static Boolean       REPLAY_DETECTION_SHARED           = Boolean.FALSE;
   @ConfigurableField( description = "A max clock skew value (in seconds) between client and server accepted when validating timestamps in Query/REST protocol.",
                       changeListener = TimeChangeListener.class )
   public static Integer       CLOCK_SKEW_SEC                    = 20;
@@ -194,6 +196,12 @@ public class StackConfiguration extends AbstractPersistent {
   @ConfigurableField( description = "Client socket select timeout (ms)." )
   public static Long          CLIENT_POOL_TIMEOUT_MILLIS        = 500L;
   
+  @ConfigurableField( description = "Maximum idle keep-alive connections kept per internal service endpoint, 0 to disable connection reuse." )
+  public static Integer       CLIENT_CONNECTION_POOL_MAX_IDLE   = 2;
+  
+  @ConfigurableField( description = "Time after which an idle keep-alive connection to an internal service is not reused (ms)." )
+  public static Long          CLIENT_CONNECTION_POOL_IDLE_TIMEOUT_MILLIS = 4000L;
+  
   @ConfigurableField( description = "Maximum HTTP chunk size (bytes)." )
   public static Integer       HTTP_MAX_CHUNK_BYTES              = 10 * 10 * 1024;
   
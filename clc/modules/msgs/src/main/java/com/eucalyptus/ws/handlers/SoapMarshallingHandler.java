@@ -62,7 +62,6 @@
 
 package com.eucalyptus.ws.handlers;
 
-import java.io.ByteArrayOutputStream;
 import javax.annotation.Nonnull;
 import org.apache.axiom.soap.SOAP11Constants;
 import org.apache.axiom.soap.SOAP12Constants;
@@ -71,6 +70,8 @@ import org.apache.axiom.soap.SOAPFactory;
 import org.apache.axiom.soap.impl.builder.StAXSOAPModelBuilder;
 import org.apache.log4j.Logger;
 import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBufferInputStream;
+import org.jboss.netty.buffer.ChannelBufferOutputStream;
 import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.ChannelEvent;
 import org.jboss.netty.channel.ChannelHandler;
@@ -89,29 +90,33 @@ import com.google.common.collect.ImmutableMap;
 @ChannelHandler.Sharable
 public class SoapMarshallingHandler extends MessageStackHandler implements ExceptionMarshallerHandler {
   private static Logger LOG = Logger.getLogger( SoapMarshallingHandler.class );
+  private static final int INITIAL_BUFFER_SIZE = 4096;
 
   @Override
   public void incomingMessage( final MessageEvent event ) throws Exception {
     if ( event.getMessage( ) instanceof MappingHttpMessage ) {
       MappingHttpMessage httpMessage = ( MappingHttpMessage ) event.getMessage( );
-      String content = httpMessage.getContent( ).toString( "UTF-8" );
-      httpMessage.setMessageString( content );
+      ChannelBuffer content = httpMessage.getContent( );
+      httpMessage.setMessageStringFromContent( );
       HoldMe.canHas.lock( );
       SOAPEnvelope env = null;
       try {
+        // parse from (duplicates of) the buffer, the content is only decoded to a string if it is logged
         StAXSOAPModelBuilder soapBuilder = null;
         try {
           SOAPFactory factory = HoldMe.getOMSOAP11Factory( );
-          soapBuilder = new StAXSOAPModelBuilder( HoldMe.getXMLStreamReader( content ), factory , SOAP11Constants.SOAP_ENVELOPE_NAMESPACE_URI );
+          soapBuilder = new StAXSOAPModelBuilder( HoldMe.getXMLStreamReader( new ChannelBufferInputStream( content.duplicate( ) ) ),
+              factory , SOAP11Constants.SOAP_ENVELOPE_NAMESPACE_URI );
         } catch ( Exception e ) {
           SOAPFactory factory = HoldMe.getOMSOAP12Factory( );
-          soapBuilder = new StAXSOAPModelBuilder( HoldMe.getXMLStreamReader( content ), factory , SOAP12Constants.SOAP_ENVELOPE_NAMESPACE_URI );
+          soapBuilder = new StAXSOAPModelBuilder( HoldMe.getXMLStreamReader( new ChannelBufferInputStream( content.duplicate( ) ) ),
+              factory , SOAP12Constants.SOAP_ENVELOPE_NAMESPACE_URI );
         }
         env = ( SOAPEnvelope ) soapBuilder.getDocumentElement( );
       } catch( Exception ex ) {
-        LOG.error( "Failed to marshall response: " + content );
+        LOG.error( "Failed to marshall response: " + httpMessage.getMessageString( ) );
         LOG.error( ex, ex );
-        throw new WebServicesException( "Failed to marshall response: " + content, ex );
+        throw new WebServicesException( "Failed to marshall response: " + httpMessage.getMessageString( ), ex );
       } finally {
         HoldMe.canHas.unlock( );
       }
@@ -123,14 +128,13 @@ public class SoapMarshallingHandler extends MessageStackHandler implements Excep
   public void outgoingMessage( final ChannelHandlerContext ctx, final MessageEvent event ) throws Exception {
     if ( event.getMessage( ) instanceof MappingHttpMessage ) {
       MappingHttpMessage httpMessage = ( MappingHttpMessage ) event.getMessage( );
-      ByteArrayOutputStream byteOut = new ByteArrayOutputStream( );
+      ChannelBuffer buffer = ChannelBuffers.dynamicBuffer( INITIAL_BUFFER_SIZE );
       HoldMe.canHas.lock( );
       try {
-        httpMessage.getSoapEnvelope( ).serialize( byteOut );//HACK: does this need fixing for xml brokeness?
+        httpMessage.getSoapEnvelope( ).serialize( new ChannelBufferOutputStream( buffer ) );//HACK: does this need fixing for xml brokeness?
       } finally {
         HoldMe.canHas.unlock( );
       }
-      ChannelBuffer buffer = ChannelBuffers.wrappedBuffer( byteOut.toByteArray( ) );
       httpMessage.addHeader( HttpHeaders.Names.CONTENT_LENGTH, String.valueOf( buffer.readableBytes( ) ) );
       httpMessage.addHeader( HttpHeaders.Names.CONTENT_TYPE, "text/xml; charset=UTF-8" );
       httpMessage.setContent( buffer );
@@ -150,17 +154,17 @@ public class SoapMarshallingHandler extends MessageStackHandler implements Excep
             Exceptions.string( t ) :
             t.getMessage() );
 
-    final ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
+    final ChannelBuffer buffer = ChannelBuffers.dynamicBuffer( INITIAL_BUFFER_SIZE );
     HoldMe.canHas.lock();
     try {
-      soapEnvelope.serialize( byteOut );
+      soapEnvelope.serialize( new ChannelBufferOutputStream( buffer ) );
     } finally {
       HoldMe.canHas.unlock();
     }
 
     return new ExceptionResponse(
         HttpResponseStatus.INTERNAL_SERVER_ERROR,
-        ChannelBuffers.wrappedBuffer( byteOut.toByteArray( ) ),
+        buffer,
         ImmutableMap.of( HttpHeaders.Names.CONTENT_TYPE, "text/xml; charset=UTF-8" )
     );
   }
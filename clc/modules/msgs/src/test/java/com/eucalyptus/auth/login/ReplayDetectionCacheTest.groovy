@@ -0,0 +1,83 @@
+/*************************************************************************
+ * Copyright 2009-2014 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.auth.login
+
+import static org.junit.Assert.*
+import com.eucalyptus.ws.StackConfiguration
+import org.junit.After
+import org.junit.Test
+
+class ReplayDetectionCacheTest {
+
+  private final Integer skewWindow = StackConfiguration.REPLAY_SKEW_WINDOW_SEC
+
+  @After
+  void resetSkewWindow( ) {
+    StackConfiguration.REPLAY_SKEW_WINDOW_SEC = skewWindow
+  }
+
+  @Test
+  void testReplayDetected( ) {
+    StackConfiguration.REPLAY_SKEW_WINDOW_SEC = 0
+    ReplayDetectionCache cache = new ReplayDetectionCache( 900000 )
+    assertTrue( "First use", cache.add( "signature1" ) )
+    assertTrue( "Other signature", cache.add( "signature2" ) )
+    assertFalse( "Replay", cache.add( "signature1" ) )
+    assertEquals( "Size", 2, cache.size( ) )
+    assertEquals( "Replays", 1L, cache.getStatistics( ).get( "replays" ) )
+  }
+
+  @Test
+  void testSkewWindow( ) {
+    StackConfiguration.REPLAY_SKEW_WINDOW_SEC = 60
+    ReplayDetectionCache cache = new ReplayDetectionCache( 900000 )
+    assertTrue( "First use", cache.add( "signature1" ) )
+    assertTrue( "Use within skew window", cache.add( "signature1" ) )
+  }
+
+  @Test
+  void testDisabled( ) {
+    StackConfiguration.REPLAY_SKEW_WINDOW_SEC = 900
+    ReplayDetectionCache cache = new ReplayDetectionCache( 900000 )
+    assertTrue( "First use", cache.add( "signature1" ) )
+    assertTrue( "Replay accepted", cache.add( "signature1" ) )
+    assertEquals( "Size", 0, cache.size( ) )
+  }
+
+  @Test
+  void testNegativeEpochIndex( ) {
+    ReplayDetectionCache cache = new ReplayDetectionCache( 900000 )
+    ( -40L..40L ).each { long epoch ->
+      int index = cache.index( epoch )
+      assertTrue( "Index ${index} for epoch ${epoch}", index >= 0 && index < 17 )
+      assertEquals( "Next epoch index", ( index + 1 ) % 17, cache.index( epoch + 1 ) )
+    }
+  }
+
+  @Test
+  void testExpiry( ) {
+    StackConfiguration.REPLAY_SKEW_WINDOW_SEC = 0
+    ReplayDetectionCache cache = new ReplayDetectionCache( 45 )
+    assertTrue( "First use", cache.add( "signature1" ) )
+    assertFalse( "Replay", cache.add( "signature1" ) )
+    Thread.sleep( 100 )
+    assertTrue( "Use after expiry", cache.add( "signature1" ) )
+  }
+}
@@ -0,0 +1,119 @@
+/*************************************************************************
+ * Copyright 2009-2015 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.util.async
+
+import static org.junit.Assert.*
+import java.util.concurrent.TimeUnit
+import org.jboss.netty.bootstrap.ClientBootstrap
+import org.jboss.netty.bootstrap.ServerBootstrap
+import org.jboss.netty.buffer.ChannelBuffers
+import org.jboss.netty.channel.Channel
+import org.jboss.netty.channel.ChannelFuture
+import org.jboss.netty.channel.ChannelHandlerContext
+import org.jboss.netty.channel.ChannelPipelineFactory
+import org.jboss.netty.channel.ChannelStateEvent
+import org.jboss.netty.channel.Channels
+import org.jboss.netty.channel.MessageEvent
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler
+import org.jboss.netty.channel.local.DefaultLocalClientChannelFactory
+import org.jboss.netty.channel.local.DefaultLocalServerChannelFactory
+import org.jboss.netty.channel.local.LocalAddress
+import org.junit.After
+import org.junit.Test
+
+/**
+ * Tests for retry of requests on reused channels closed by the remote end.
+ */
+class AsyncRequestChannelPoolTest {
+
+  private final List<Channel> channels = [ ]
+
+  @After
+  void closeChannels( ) {
+    channels*.close( )*.awaitUninterruptibly( )
+  }
+
+  @Test
+  void testStaleChannelRetryable( ) {
+    Channel channel = connect( 'stale', true )
+    assertTrue( 'Channel closed', channel.closeFuture.await( 5, TimeUnit.SECONDS ) )
+    AsyncRequestChannelPool.RequestMonitor monitor = AsyncRequestChannelPool.monitor( channel )
+
+    assertFalse( 'Write succeeded', write( channel ).success )
+
+    assertFalse( 'Request written', monitor.isRequestWritten( ) )
+    assertTrue( 'Retryable on close', AsyncRequestChannelPool.isRetryable( monitor,
+        new ConnectionException( 'Channel was closed before the response was received.', null ) ) )
+    assertTrue( 'Retryable on reset', AsyncRequestChannelPool.isRetryable( monitor,
+        new IOException( 'Connection reset by peer' ) ) )
+    assertFalse( 'Retryable for other failure', AsyncRequestChannelPool.isRetryable( monitor,
+        new FailedRequestException( 'Cluster response includes _return=false', null ) ) )
+    assertFalse( 'Retryable without reuse', AsyncRequestChannelPool.isRetryable( null,
+        new ConnectionException( 'Channel was closed before the response was received.', null ) ) )
+  }
+
+  @Test
+  void testWrittenRequestNotRetryable( ) {
+    Channel channel = connect( 'written', false )
+    AsyncRequestChannelPool.RequestMonitor monitor = AsyncRequestChannelPool.monitor( channel )
+
+    assertTrue( 'Write succeeded', write( channel ).success )
+    assertTrue( 'Channel closed', channel.closeFuture.await( 5, TimeUnit.SECONDS ) )
+
+    assertTrue( 'Request written', monitor.isRequestWritten( ) )
+    assertNull( 'Monitor removed', channel.pipeline.get( AsyncRequestChannelPool.REQUEST_MONITOR ) )
+    assertFalse( 'Retryable without response', AsyncRequestChannelPool.isRetryable( monitor,
+        new ConnectionException( 'Channel was closed before the response was received.', null ) ) )
+  }
+
+  private static ChannelFuture write( Channel channel ) {
+    channel.write( ChannelBuffers.wrappedBuffer( 'POST / HTTP/1.1\r\n\r\n'.bytes ) ).awaitUninterruptibly( )
+  }
+
+  /**
+   * Connect to a server that closes the connection either as soon as it is
+   * connected or on receipt of a request, without responding.
+   */
+  private Channel connect( String name, boolean closeOnConnect ) {
+    LocalAddress address = new LocalAddress( "async-request-channel-pool-${name}" )
+    ServerBootstrap server = new ServerBootstrap( new DefaultLocalServerChannelFactory( ) )
+    server.pipelineFactory = { Channels.pipeline( new SimpleChannelUpstreamHandler( ) {
+      @Override
+      void channelConnected( ChannelHandlerContext ctx, ChannelStateEvent e ) {
+        if ( closeOnConnect ) {
+          e.channel.close( )
+        }
+      }
+
+      @Override
+      void messageReceived( ChannelHandlerContext ctx, MessageEvent e ) {
+        e.channel.close( )
+      }
+    } ) } as ChannelPipelineFactory
+    channels << server.bind( address )
+
+    ClientBootstrap client = new ClientBootstrap( new DefaultLocalClientChannelFactory( ) )
+    client.pipelineFactory = { Channels.pipeline( ) } as ChannelPipelineFactory
+    Channel channel = client.connect( address ).awaitUninterruptibly( ).channel
+    assertTrue( 'Connected', closeOnConnect || channel.connected )
+    channels << channel
+    channel
+  }
+}
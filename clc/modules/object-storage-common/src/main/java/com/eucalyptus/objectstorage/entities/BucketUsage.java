@@ -0,0 +1,87 @@
+/*************************************************************************
+ * Copyright 2009-2014 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+
+package com.eucalyptus.objectstorage.entities;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Table;
+
+import com.eucalyptus.entities.AbstractPersistent;
+
+/**
+ * Usage counters for a bucket, maintained as objects and parts change state so that quota checks do not need to aggregate over all objects.
+ *
+ * Counts match the definitions used by the object and part metadata managers: the object count is the number of extant objects and the size is
+ * the total size of creating and extant objects and parts. Rows are updated under a row lock and are deliberately not cached.
+ */
+@Entity
+@PersistenceContext(name = "eucalyptus_osg")
+@Table(name = "bucket_usage")
+public class BucketUsage extends AbstractPersistent {
+  private static final long serialVersionUID = 1L;
+
+  @Column(name = "bucket_uuid", unique = true, nullable = false)
+  private String bucketUuid;
+
+  @Column(name = "object_count", nullable = false)
+  private Long objectCount;
+
+  @Column(name = "total_size", nullable = false)
+  private Long totalSize;
+
+  public BucketUsage() {}
+
+  public BucketUsage(String bucketUuid) {
+    this.bucketUuid = bucketUuid;
+    this.objectCount = 0L;
+    this.totalSize = 0L;
+  }
+
+  public String getBucketUuid() {
+    return bucketUuid;
+  }
+
+  public void setBucketUuid(String bucketUuid) {
+    this.bucketUuid = bucketUuid;
+  }
+
+  public Long getObjectCount() {
+    return objectCount;
+  }
+
+  public void setObjectCount(Long objectCount) {
+    this.objectCount = objectCount;
+  }
+
+  public Long getTotalSize() {
+    return totalSize;
+  }
+
+  public void setTotalSize(Long totalSize) {
+    this.totalSize = totalSize;
+  }
+
+  @Override
+  public String toString() {
+    return "BucketUsage [bucketUuid=" + bucketUuid + ", objectCount=" + objectCount + ", totalSize=" + totalSize + "]";
+  }
+}
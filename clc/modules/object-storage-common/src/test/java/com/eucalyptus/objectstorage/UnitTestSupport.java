@@ -47,6 +47,7 @@ import com.eucalyptus.entities.Entities;
 import com.eucalyptus.entities.PersistenceContexts;
 import com.eucalyptus.objectstorage.entities.Bucket;
 import com.eucalyptus.objectstorage.entities.BucketTags;
+import com.eucalyptus.objectstorage.entities.BucketUsage;
 import com.eucalyptus.objectstorage.entities.LifecycleRule;
 import com.eucalyptus.objectstorage.entities.ObjectEntity;
 import com.eucalyptus.objectstorage.entities.ObjectStorageGlobalConfiguration;
@@ -79,7 +80,7 @@ public class UnitTestSupport {
         (new Ejb3Configuration()).configure(props).addAnnotatedClass(Bucket.class).addAnnotatedClass(ObjectEntity.class)
             .addAnnotatedClass(PartEntity.class).addAnnotatedClass(TorrentInfo.class).addAnnotatedClass(BucketTags.class)
             .addAnnotatedClass(LifecycleRule.class).addAnnotatedClass(ScheduledJob.class).addAnnotatedClass(ObjectStorageGlobalConfiguration.class)
-            .addAnnotatedClass(S3AccessControlledEntity.class).addAnnotatedClass(S3ProviderConfiguration.class);
+            .addAnnotatedClass(S3AccessControlledEntity.class).addAnnotatedClass(BucketUsage.class).addAnnotatedClass(S3ProviderConfiguration.class);
 
     PersistenceContexts.registerPersistenceContext("eucalyptus_osg", config);
   }
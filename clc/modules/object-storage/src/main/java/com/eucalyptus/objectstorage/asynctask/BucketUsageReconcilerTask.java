@@ -0,0 +1,97 @@
+/*************************************************************************
+ * Copyright 2009-2015 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+
+package com.eucalyptus.objectstorage.asynctask;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import com.eucalyptus.objectstorage.BucketMetadataManagers;
+import com.eucalyptus.objectstorage.BucketState;
+import com.eucalyptus.objectstorage.entities.Bucket;
+import com.eucalyptus.objectstorage.metadata.BucketUsageCounters;
+
+/**
+ * Recomputes bucket usage from object and part metadata to correct any drift in the incrementally maintained counters and removes usage records
+ * for buckets that no longer exist. Buckets are visited in random order with a self-imposed timeout of 5 minutes so large deployments are covered
+ * over several runs.
+ */
+public class BucketUsageReconcilerTask implements Runnable {
+  private static final Logger LOG = Logger.getLogger(BucketUsageReconcilerTask.class);
+
+  private long startTime;
+  private static final long MAX_TASK_DURATION = 5 * 60 * 1000; // 5 minutes
+  private volatile boolean interrupted = false;
+
+  public BucketUsageReconcilerTask() {}
+
+  @Override
+  public void run() {
+    startTime = System.currentTimeMillis();
+    try {
+      final List<Bucket> buckets = BucketMetadataManagers.getInstance().lookupBucketsByState(null);
+      if (buckets == null) {
+        return;
+      }
+      int removed = BucketUsageCounters.removeOrphans(buckets);
+      if (removed > 0) {
+        LOG.debug("Removed " + removed + " usage records for deleted buckets");
+      }
+
+      long corrected = BucketUsageCounters.getCorrected();
+      int reconciled = 0;
+      Collections.shuffle(buckets);
+      for (Bucket bucket : buckets) {
+        if (isTimedOut() || interrupted) {
+          break;
+        }
+        if (!BucketState.extant.equals(bucket.getState())) {
+          continue;
+        }
+        try {
+          BucketUsageCounters.reconcile(bucket);
+          reconciled++;
+        } catch (final Exception e) {
+          LOG.warn("Error reconciling usage for bucket uuid " + bucket.getBucketUuid() + ". Will retry later", e);
+        }
+      }
+      LOG.trace("Reconciled usage for " + reconciled + " of " + buckets.size() + " buckets, corrected "
+          + (BucketUsageCounters.getCorrected() - corrected));
+    } catch (final Throwable f) {
+      LOG.error("Error during bucket usage reconciliation. Will retry later", f);
+    } finally {
+      LOG.trace("Bucket usage reconciliation took " + Long.toString(System.currentTimeMillis() - startTime) + "ms to complete");
+    }
+  }
+
+  public void interrupt() {
+    this.interrupted = true;
+  }
+
+  public void resume() {
+    this.interrupted = false;
+  }
+
+  private boolean isTimedOut() {
+    return System.currentTimeMillis() - startTime >= MAX_TASK_DURATION;
+  }
+}
@@ -90,6 +90,7 @@ import org.quartz.impl.matchers.GroupMatcher;
 import com.eucalyptus.entities.Entities;
 import com.eucalyptus.entities.TransactionResource;
 import com.eucalyptus.objectstorage.entities.ScheduledJob;
+import com.eucalyptus.objectstorage.jobs.BucketUsageReconcilerJob;
 import com.eucalyptus.objectstorage.jobs.LifecycleReaperJob;
 import com.eucalyptus.objectstorage.jobs.MainBucketReaperJob;
 import com.eucalyptus.objectstorage.jobs.MainObjectReaperJob;
@@ -108,6 +109,8 @@ public class ObjectStorageSchedulerManager {
   static final String OBJECT_REAPER_DEFAULT_SCHEDULE = "interval: 60";
   static final String BUCKET_REAPER_CLASSNAME = MainBucketReaperJob.class.getName();
   static final String BUCKET_REAPER_DEFAULT_SCHEDULE = "interval: 60";
+  static final String USAGE_RECONCILER_CLASSNAME = BucketUsageReconcilerJob.class.getName();
+  static final String USAGE_RECONCILER_DEFAULT_SCHEDULE = "interval: 3600";
 
   private static Scheduler scheduler = null;
   private static final Lock lock = new ReentrantLock(true);
@@ -247,6 +250,10 @@ public class ObjectStorageSchedulerManager {
     return checkForJobByName(jobName, BUCKET_REAPER_CLASSNAME);
   }
 
+  private static boolean checkForUsageReconcilerJob(String jobName) {
+    return checkForJobByName(jobName, USAGE_RECONCILER_CLASSNAME);
+  }
+
   private static boolean checkForJobByName(String checking, String checkAgainst) {
     if (checking != null && checking.equals(checkAgainst)) {
       return true;
@@ -259,6 +266,7 @@ public class ObjectStorageSchedulerManager {
     boolean foundLifecycleCleanup = false;
     boolean foundDeletedObjectReaper = false;
     boolean foundDeletedBucketReaper = false;
+    boolean foundUsageReconciler = false;
 
     List<ScheduledJob> jobs = null;
     try (TransactionResource tran = Entities.transactionFor(ScheduledJob.class)) {
@@ -287,6 +295,10 @@ public class ObjectStorageSchedulerManager {
         if (!foundDeletedBucketReaper) {
           foundDeletedBucketReaper = checkForDeletedBucketReaperJob(job.getJobClassName());
         }
+
+        if (!foundUsageReconciler) {
+          foundUsageReconciler = checkForUsageReconcilerJob(job.getJobClassName());
+        }
       }
     } else {
       LOG.debug("jobs were either not found in the database, or an exception occurred while querying " + "for scheduled jobs");
@@ -309,6 +321,12 @@ public class ObjectStorageSchedulerManager {
       scheduleJobInQuartz(LIFECYCLE_CLEANUP_CLASSNAME, LIFECYCLE_CLEANUP_DEFAULT_SCHEDULE, jobIdx);
       jobIdx++;
     }
+    if (!foundUsageReconciler) {
+      saveJobToDb(USAGE_RECONCILER_CLASSNAME, USAGE_RECONCILER_DEFAULT_SCHEDULE,
+          "recomputes bucket usage counters used for quota enforcement from object metadata");
+      scheduleJobInQuartz(USAGE_RECONCILER_CLASSNAME, USAGE_RECONCILER_DEFAULT_SCHEDULE, jobIdx);
+      jobIdx++;
+    }
   }
 
   private static void saveJobToDb(String jobClassName, String schedule, String description) {
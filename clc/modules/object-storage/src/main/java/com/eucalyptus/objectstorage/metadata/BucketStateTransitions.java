@@ -52,7 +52,9 @@ public class BucketStateTransitions {
       } else {
         if (initializedBucket.getState() == null || BucketState.creating.equals(initializedBucket.getState())) {
           initializedBucket.setState(BucketState.creating);
-          return Entities.persist(initializedBucket);
+          Bucket persistedBucket = Entities.persist(initializedBucket);
+          BucketUsageCounters.created(persistedBucket);
+          return persistedBucket;
         } else {
           throw new IllegalResourceStateException(initializedBucket.getBucketName(), null, BucketState.creating.toString(), initializedBucket
               .getState().toString());
@@ -0,0 +1,244 @@
+/*************************************************************************
+ * Copyright 2009-2015 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+
+package com.eucalyptus.objectstorage.metadata;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.log4j.Logger;
+import org.hibernate.LockMode;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+
+import com.eucalyptus.entities.Entities;
+import com.eucalyptus.entities.TransactionResource;
+import com.eucalyptus.objectstorage.MpuPartMetadataManagers;
+import com.eucalyptus.objectstorage.ObjectMetadataManagers;
+import com.eucalyptus.objectstorage.ObjectState;
+import com.eucalyptus.objectstorage.entities.Bucket;
+import com.eucalyptus.objectstorage.entities.BucketUsage;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Incrementally maintained bucket usage for quota enforcement.
+ *
+ * The object and part state transitions apply the change in usage for the transitioned entity within the transaction that changes the entity, so
+ * the usage record for a bucket is locked only until that transaction commits. Account and user totals are the sum over the usage records for
+ * their buckets rather than separate records, which would serialize all writes for an account.
+ *
+ * Paths that remove records without a state transition (e.g. bulk removal when a bucket is deleted) are not tracked, the reconciler recomputes
+ * usage from the object and part records periodically to correct any drift. Buckets without a usage record (e.g. created before upgrade) are
+ * reconciled on first use.
+ */
+public class BucketUsageCounters {
+  private static final Logger LOG = Logger.getLogger(BucketUsageCounters.class);
+
+  private static final int LOOKUP_BATCH_SIZE = 500;
+
+  private static final AtomicLong reconciled = new AtomicLong();
+  private static final AtomicLong corrected = new AtomicLong();
+
+  static long objects(@Nullable ObjectState state) {
+    return ObjectState.extant.equals(state) ? 1 : 0;
+  }
+
+  static long bytes(@Nullable ObjectState state, @Nullable Long size) {
+    return size != null && (ObjectState.creating.equals(state) || ObjectState.extant.equals(state)) ? size : 0;
+  }
+
+  /**
+   * Apply the usage change for an object transitioning between states, use a null state for an object that is created or removed. Must be called
+   * within the transaction that changes the object.
+   */
+  static void objectChanged(@Nullable Bucket bucket, @Nullable ObjectState fromState, @Nullable Long fromSize, @Nullable ObjectState toState,
+      @Nullable Long toSize) {
+    adjust(bucket, objects(toState) - objects(fromState), bytes(toState, toSize) - bytes(fromState, fromSize));
+  }
+
+  /**
+   * Apply the usage change for a part transitioning between states, use a null state for a part that is created or removed. Must be called within
+   * the transaction that changes the part.
+   */
+  static void partChanged(@Nullable Bucket bucket, @Nullable ObjectState fromState, @Nullable Long fromSize, @Nullable ObjectState toState,
+      @Nullable Long toSize) {
+    adjust(bucket, 0, bytes(toState, toSize) - bytes(fromState, fromSize));
+  }
+
+  static void adjust(@Nullable Bucket bucket, long objects, long bytes) {
+    if (bucket == null || (objects == 0 && bytes == 0)) {
+      return;
+    }
+    BucketUsage usage = locked(bucket.getBucketUuid());
+    if (usage == null) {
+      LOG.debug("No usage record for bucket uuid " + bucket.getBucketUuid() + ", usage will be reconciled");
+      return;
+    }
+    usage.setObjectCount(usage.getObjectCount() + objects);
+    usage.setTotalSize(usage.getTotalSize() + bytes);
+  }
+
+  /**
+   * Create the usage record for a new bucket. Must be called within the transaction that creates the bucket.
+   */
+  static void created(@Nonnull Bucket bucket) {
+    Entities.persist(new BucketUsage(bucket.getBucketUuid()));
+  }
+
+  /**
+   * Remove the usage record for a bucket. Must be called within the transaction that removes the bucket.
+   */
+  static void deleted(@Nonnull Bucket bucket) {
+    Entities.deleteAllMatching(BucketUsage.class, "where bucketUuid = :bucketUuid", Collections.singletonMap("bucketUuid", bucket.getBucketUuid()));
+  }
+
+  /**
+   * Get the usage for the bucket, reconciling if there is no usage record.
+   */
+  public static BucketUsage lookup(@Nonnull Bucket bucket) throws Exception {
+    BucketUsage usage = find(Collections.singleton(bucket.getBucketUuid())).get(bucket.getBucketUuid());
+    return usage != null ? usage : reconcileMissing(bucket);
+  }
+
+  /**
+   * Total size in bytes for the given buckets, reconciling any without a usage record.
+   */
+  public static long totalSize(@Nonnull Collection<Bucket> buckets) throws Exception {
+    long size = 0;
+    for (List<Bucket> batch : Lists.partition(Lists.newArrayList(buckets), LOOKUP_BATCH_SIZE)) {
+      List<String> bucketUuids = Lists.newArrayListWithCapacity(batch.size());
+      for (Bucket bucket : batch) {
+        bucketUuids.add(bucket.getBucketUuid());
+      }
+      Map<String, BucketUsage> usages = find(bucketUuids);
+      for (Bucket bucket : batch) {
+        BucketUsage usage = usages.get(bucket.getBucketUuid());
+        size += (usage != null ? usage : reconcileMissing(bucket)).getTotalSize();
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Total size in bytes over all usage records.
+   */
+  public static long totalSize() throws Exception {
+    try (TransactionResource trans = Entities.transactionFor(BucketUsage.class)) {
+      Number size = (Number) Entities.createCriteria(BucketUsage.class).setProjection(Projections.sum("totalSize")).setReadOnly(true).uniqueResult();
+      return size == null ? 0 : size.longValue();
+    }
+  }
+
+  /**
+   * Recompute the usage for the bucket from the object and part records.
+   *
+   * The usage record is locked before the records are counted so concurrent transitions either committed before the count or apply their change
+   * after the recomputed usage is committed.
+   */
+  public static BucketUsage reconcile(@Nonnull Bucket bucket) throws Exception {
+    try (TransactionResource trans = Entities.transactionFor(BucketUsage.class)) {
+      BucketUsage usage = locked(bucket.getBucketUuid());
+      long objects = ObjectMetadataManagers.getInstance().countValid(bucket);
+      long size = ObjectMetadataManagers.getInstance().getTotalSize(bucket) + MpuPartMetadataManagers.getInstance().getTotalSize(bucket);
+      if (usage == null) {
+        usage = Entities.persist(new BucketUsage(bucket.getBucketUuid()));
+      } else if (usage.getObjectCount() != objects || usage.getTotalSize() != size) {
+        LOG.debug("Correcting usage for bucket uuid " + bucket.getBucketUuid() + " from " + usage.getObjectCount() + " objects/"
+            + usage.getTotalSize() + " bytes to " + objects + " objects/" + size + " bytes");
+        corrected.incrementAndGet();
+      }
+      usage.setObjectCount(objects);
+      usage.setTotalSize(size);
+      trans.commit();
+      reconciled.incrementAndGet();
+      return usage;
+    }
+  }
+
+  /**
+   * Remove usage records for buckets that no longer exist.
+   *
+   * @return The number of records removed
+   */
+  public static int removeOrphans(@Nonnull Collection<Bucket> buckets) throws Exception {
+    Map<String, Bucket> bucketsByUuid = Maps.newHashMap();
+    for (Bucket bucket : buckets) {
+      bucketsByUuid.put(bucket.getBucketUuid(), bucket);
+    }
+    int removed = 0;
+    try (TransactionResource trans = Entities.transactionFor(BucketUsage.class)) {
+      @SuppressWarnings("unchecked")
+      List<String> bucketUuids = Entities.createCriteria(BucketUsage.class).setProjection(Projections.property("bucketUuid")).setReadOnly(true).list();
+      for (String bucketUuid : bucketUuids) {
+        if (!bucketsByUuid.containsKey(bucketUuid)) {
+          removed += Entities.deleteAllMatching(BucketUsage.class, "where bucketUuid = :bucketUuid", Collections.singletonMap("bucketUuid", bucketUuid));
+        }
+      }
+      trans.commit();
+    }
+    return removed;
+  }
+
+  public static long getReconciled() {
+    return reconciled.get();
+  }
+
+  public static long getCorrected() {
+    return corrected.get();
+  }
+
+  private static BucketUsage reconcileMissing(Bucket bucket) throws Exception {
+    try {
+      return reconcile(bucket);
+    } catch (Exception e) {
+      // the record may have been created concurrently
+      BucketUsage usage = find(Collections.singleton(bucket.getBucketUuid())).get(bucket.getBucketUuid());
+      if (usage == null) {
+        throw e;
+      }
+      return usage;
+    }
+  }
+
+  private static Map<String, BucketUsage> find(Collection<String> bucketUuids) throws Exception {
+    Map<String, BucketUsage> usages = Maps.newHashMap();
+    try (TransactionResource trans = Entities.transactionFor(BucketUsage.class)) {
+      @SuppressWarnings("unchecked")
+      List<BucketUsage> results =
+          Entities.createCriteria(BucketUsage.class).add(Restrictions.in("bucketUuid", bucketUuids)).setReadOnly(true).list();
+      for (BucketUsage usage : results) {
+        usages.put(usage.getBucketUuid(), usage);
+      }
+    }
+    return usages;
+  }
+
+  private static BucketUsage locked(String bucketUuid) {
+    return (BucketUsage) Entities.createCriteria(BucketUsage.class).add(Restrictions.eq("bucketUuid", bucketUuid)).setLockMode(LockMode.UPGRADE)
+        .uniqueResult();
+  }
+}
@@ -176,6 +176,7 @@ public class DbBucketMetadataManagerImpl implements BucketMetadataManager {
       Bucket bucketToDelete = Entities.uniqueResult(bucket);
       if (BucketState.deleting.equals(bucketToDelete.getState())) {
         // Remove the record.
+        BucketUsageCounters.deleted(bucketToDelete);
         Entities.delete(bucketToDelete);
       } else {
         throw new IllegalResourceStateException("Bucket not in deleting state, no valid transition to deleted", null,
@@ -23,7 +23,6 @@ package com.eucalyptus.objectstorage.metadata;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
-import java.util.HashSet;
 import java.util.List;
 import java.util.NoSuchElementException;
 
@@ -45,7 +44,6 @@ import com.eucalyptus.auth.principal.UserPrincipal;
 import com.eucalyptus.entities.Entities;
 import com.eucalyptus.entities.TransactionException;
 import com.eucalyptus.entities.TransactionResource;
-import com.eucalyptus.entities.Transactions;
 import com.eucalyptus.objectstorage.ObjectMetadataManagers;
 import com.eucalyptus.objectstorage.ObjectState;
 import com.eucalyptus.objectstorage.PaginatedResult;
@@ -69,6 +67,7 @@ import com.google.common.base.Strings;
  */
 public class DbObjectMetadataManagerImpl implements ObjectMetadataManager {
   private static final Logger LOG = Logger.getLogger(DbObjectMetadataManagerImpl.class);
+  private static final int SEEK_BATCH_SIZE = 8;
 
   public void start() throws Exception {
     LOG.trace("Starting DbObjectMetadataManager");
@@ -366,7 +365,12 @@ public class DbObjectMetadataManagerImpl implements ObjectMetadataManager {
     try {
       // Delete markers can be just removed not state transitioned.
       if (objectToDelete.getIsDeleteMarker()) {
-        Transactions.delete(objectToDelete);
+        try (TransactionResource trans = Entities.transactionFor(ObjectEntity.class)) {
+          ObjectEntity deleteMarker = Entities.uniqueResult(new ObjectEntity().withUuid(objectToDelete.getObjectUuid()));
+          BucketUsageCounters.objectChanged(deleteMarker.getBucket(), deleteMarker.getState(), deleteMarker.getSize(), null, null);
+          Entities.delete(deleteMarker);
+          trans.commit();
+        }
         return;
       }
 
@@ -429,139 +433,53 @@ public class DbObjectMetadataManagerImpl implements ObjectMetadataManager {
   }
 
   @Override
-  public PaginatedResult<ObjectEntity> listUploads(Bucket bucket, int maxUploads, String prefix, String delimiter, String keyMarker,
-      String uploadIdMarker) throws Exception {
+  public PaginatedResult<ObjectEntity> listUploads(final Bucket bucket, int maxUploads, final String prefix, final String delimiter,
+      final String keyMarker, final String uploadIdMarker) throws Exception {
 
     try (TransactionResource trans = Entities.transactionFor(ObjectEntity.class)) {
-      PaginatedResult<ObjectEntity> result = new PaginatedResult<ObjectEntity>();
-      HashSet<String> commonPrefixes = new HashSet<String>();
-
       // Include zero since 'istruncated' is still valid
       if (maxUploads >= 0) {
-        final int queryStrideSize = maxUploads + 1;
-        ObjectEntity searchObj = new ObjectEntity();
+        final ObjectEntity searchObj = new ObjectEntity();
         searchObj.withBucket(bucket); // This doesn't actually filter, but do it anyway
         searchObj.withState(ObjectState.mpu_pending);
 
-        Criteria objCriteria = Entities.createCriteria(ObjectEntity.class);
-        objCriteria.setReadOnly(true);
-        objCriteria.setFetchSize(queryStrideSize);
-        objCriteria.add(Example.create(searchObj));
-        objCriteria.addOrder(Order.asc("objectKey"));
-        objCriteria.addOrder(Order.asc("uploadId"));
-        objCriteria.setMaxResults(queryStrideSize);
-
-        if (!Strings.isNullOrEmpty(keyMarker)) {
-          if (!Strings.isNullOrEmpty(uploadIdMarker)) {
-            // The result set should be exclusive of the pair that matches the key-marker upload-id-marker
-            objCriteria.add(Restrictions.or(Restrictions.and(Restrictions.eq("objectKey", keyMarker), Restrictions.gt("uploadId", uploadIdMarker)),
-                Restrictions.gt("objectKey", keyMarker)));
-          } else {
-            objCriteria.add(Restrictions.gt("objectKey", keyMarker));
-            uploadIdMarker = "";
-          }
-        } else {
-          keyMarker = "";
-          uploadIdMarker = "";
-        }
-
-        if (!Strings.isNullOrEmpty(prefix)) {
-          objCriteria.add(Restrictions.like("objectKey", prefix, MatchMode.START));
-        } else {
-          prefix = "";
-        }
-
-        // Be sure to add the bucket restriction last
-        objCriteria = getSearchByBucket(objCriteria, bucket);
-
-        // Ensure not null.
-        if (Strings.isNullOrEmpty(delimiter)) {
-          delimiter = "";
-        }
-
-        List<ObjectEntity> objectInfos = null;
-        int resultKeyCount = 0;
-        String[] parts = null;
-        String prefixString = null;
-        boolean useDelimiter = !Strings.isNullOrEmpty(delimiter);
-        int pages = 0;
-
-        // Iterate over result sets of size maxkeys + 1 since
-        // commonPrefixes collapse the list, we may examine many more
-        // records than maxkeys + 1
-        do {
-          parts = null;
-          prefixString = null;
-
-          // Skip ahead the next page of 'queryStrideSize' results.
-          objCriteria.setFirstResult(pages++ * queryStrideSize);
-
-          objectInfos = (List<ObjectEntity>) objCriteria.list();
-          if (objectInfos == null) {
-            // nothing to do.
-            break;
-          }
-
-          for (ObjectEntity objectRecord : objectInfos) {
-            if (useDelimiter) {
-              // Check if it will get aggregated as a commonprefix
-              // Split the substring with at least 2 matches as we need a result containing trailing strings. For instance
-              // if "x" is delimiter and key string is also "x", then this key should be included in common prefixes.
-              // "x".split("x") gives 0 strings which causes the subsequent logic to skip the key where as
-              // "x".split("x", 2) gives 2 empty strings which is what the logic expects
-              parts = objectRecord.getObjectKey().substring(prefix.length()).split(delimiter, 2);
-              if (parts.length > 1) {
-                prefixString = prefix + parts[0] + delimiter;
-                if (!prefixString.equals(keyMarker) && !commonPrefixes.contains(prefixString)) {
-                  if (resultKeyCount == maxUploads) {
-                    // This is a new record, so we know
-                    // we're truncating if this is true
-                    result.setIsTruncated(true);
-                    resultKeyCount++;
-                    break;
-                  } else {
-                    // Add it to the common prefix set
-                    commonPrefixes.add(prefixString);
-                    result.setLastEntry(prefixString);
-                    // count the unique commonprefix as a
-                    // single return entry
-                    resultKeyCount++;
-                  }
-                } else {
-                  // Already have this prefix, so skip
-                }
-                continue;
+        return listByKey(new ListingCriteria() {
+          @Override
+          public Criteria criteria(@Nullable ObjectEntity after, @Nullable String seekKey) {
+            Criteria objCriteria = Entities.createCriteria(ObjectEntity.class);
+            objCriteria.add(Example.create(searchObj));
+            objCriteria.addOrder(Order.asc("objectKey"));
+            objCriteria.addOrder(Order.asc("uploadId"));
+
+            if (!Strings.isNullOrEmpty(keyMarker)) {
+              if (!Strings.isNullOrEmpty(uploadIdMarker)) {
+                // The result set should be exclusive of the pair that matches the key-marker upload-id-marker
+                objCriteria.add(Restrictions.or(Restrictions.and(Restrictions.eq("objectKey", keyMarker), Restrictions.gt("uploadId", uploadIdMarker)),
+                    Restrictions.gt("objectKey", keyMarker)));
+              } else {
+                objCriteria.add(Restrictions.gt("objectKey", keyMarker));
               }
             }
 
-            if (resultKeyCount == maxUploads) {
-              // This is a new (non-commonprefix) record, so
-              // we know we're truncating
-              result.setIsTruncated(true);
-              resultKeyCount++;
-              break;
+            if (after != null) {
+              objCriteria.add(Restrictions.or(
+                  Restrictions.and(Restrictions.eq("objectKey", after.getObjectKey()), Restrictions.gt("uploadId", after.getUploadId())),
+                  Restrictions.gt("objectKey", after.getObjectKey())));
+            } else if (seekKey != null) {
+              objCriteria.add(Restrictions.ge("objectKey", seekKey));
             }
 
-            result.getEntityList().add(objectRecord);
-            result.setLastEntry(objectRecord);
-            resultKeyCount++;
-          }
+            if (!Strings.isNullOrEmpty(prefix)) {
+              objCriteria.add(Restrictions.like("objectKey", prefix, MatchMode.START));
+            }
 
-          if (resultKeyCount <= maxUploads && objectInfos.size() <= maxUploads) {
-            break;
+            // Be sure to add the bucket restriction last
+            return getSearchByBucket(objCriteria, bucket);
           }
-        } while (resultKeyCount <= maxUploads);
-
-        // Sort the prefixes from the hashtable and add to the reply
-        if (commonPrefixes != null) {
-          result.getCommonPrefixes().addAll(commonPrefixes);
-          Collections.sort(result.getCommonPrefixes());
-        }
+        }, maxUploads, Strings.nullToEmpty(prefix), Strings.nullToEmpty(delimiter), Strings.nullToEmpty(keyMarker));
       } else {
         throw new IllegalArgumentException("max uploads must be positive integer");
       }
-
-      return result;
     } catch (Exception e) {
       LOG.error("Error generating paginated multipart upload list for bucket " + bucket.getBucketName(), e);
       throw e;
@@ -639,18 +557,14 @@ public class DbObjectMetadataManagerImpl implements ObjectMetadataManager {
   }
 
   @Override
-  public PaginatedResult<ObjectEntity> listVersionsPaginated(final Bucket bucket, int maxEntries, String prefix, String delimiter,
-      String fromKeyMarker, String fromVersionId, boolean latestOnly) throws Exception {
+  public PaginatedResult<ObjectEntity> listVersionsPaginated(final Bucket bucket, int maxEntries, final String prefix, final String delimiter,
+      final String fromKeyMarker, final String fromVersionId, boolean latestOnly) throws Exception {
 
     EntityTransaction db = Entities.get(ObjectEntity.class);
     try {
-      PaginatedResult<ObjectEntity> result = new PaginatedResult<ObjectEntity>();
-      HashSet<String> commonPrefixes = new HashSet<String>();
-
       // Include zero since 'istruncated' is still valid
       if (maxEntries >= 0) {
-        final int queryStrideSize = maxEntries + 1;
-        ObjectEntity searchObj = new ObjectEntity().withBucket(bucket).withState(ObjectState.extant);
+        final ObjectEntity searchObj = new ObjectEntity().withBucket(bucket).withState(ObjectState.extant);
 
         // Return latest version, so exclude delete markers as well.
         // This makes listVersion act like listObjects
@@ -659,138 +573,70 @@ public class DbObjectMetadataManagerImpl implements ObjectMetadataManager {
           searchObj.setIsDeleteMarker(false);
         }
 
-        Criteria objCriteria = Entities.createCriteria(ObjectEntity.class);
-        objCriteria.setReadOnly(true);
-        objCriteria.setFetchSize(queryStrideSize);
-        objCriteria.add(Example.create(searchObj));
-        objCriteria.addOrder(Order.asc("objectKey"));
-        objCriteria.addOrder(Order.desc("objectModifiedTimestamp"));
-        objCriteria.setMaxResults(queryStrideSize);
-
-        if (!Strings.isNullOrEmpty(fromKeyMarker)) {
-          if (!Strings.isNullOrEmpty(fromVersionId)) {
-            // Look for the key that matches the key-marker and version-id-marker
-            ObjectEntity searchObject = new ObjectEntity(bucket, fromKeyMarker, fromVersionId);
-            ObjectEntity matchingObject = null;
-            try {
-              matchingObject = Entities.uniqueResult(searchObject);
-              if (matchingObject == null || matchingObject.getObjectModifiedTimestamp() == null) {
-                throw new NoSuchKeyException(bucket.getBucketName() + "/" + fromKeyMarker + "?versionId=" + fromVersionId);
-              }
-            } catch (Exception e) {
-              LOG.warn("No matching object found for key-marker=" + fromKeyMarker + " and version-id-marker=" + fromVersionId);
+        final Date fromVersionTimestamp;
+        if (!Strings.isNullOrEmpty(fromKeyMarker) && !Strings.isNullOrEmpty(fromVersionId)) {
+          // Look for the key that matches the key-marker and version-id-marker
+          ObjectEntity searchObject = new ObjectEntity(bucket, fromKeyMarker, fromVersionId);
+          ObjectEntity matchingObject = null;
+          try {
+            matchingObject = Entities.uniqueResult(searchObject);
+            if (matchingObject == null || matchingObject.getObjectModifiedTimestamp() == null) {
               throw new NoSuchKeyException(bucket.getBucketName() + "/" + fromKeyMarker + "?versionId=" + fromVersionId);
             }
-
-            // The result set should be exclusive of the key with the key-marker version-id-marker pair. Look for keys that chronologically
-            // follow the version-id-marker for the given key-marker and also the keys that follow the key-marker.
-            objCriteria.add(Restrictions.or(
-                Restrictions.and(Restrictions.eq("objectKey", fromKeyMarker),
-                    Restrictions.lt("objectModifiedTimestamp", matchingObject.getObjectModifiedTimestamp())),
-                Restrictions.gt("objectKey", fromKeyMarker)));
-          } else { // No version-id-marker, just set the criteria the key-marker
-            objCriteria.add(Restrictions.gt("objectKey", fromKeyMarker));
+          } catch (Exception e) {
+            LOG.warn("No matching object found for key-marker=" + fromKeyMarker + " and version-id-marker=" + fromVersionId);
+            throw new NoSuchKeyException(bucket.getBucketName() + "/" + fromKeyMarker + "?versionId=" + fromVersionId);
           }
+          fromVersionTimestamp = matchingObject.getObjectModifiedTimestamp();
         } else {
-          // No criteria to be set
-        }
-
-        if (!Strings.isNullOrEmpty(prefix)) {
-          objCriteria.add(Restrictions.like("objectKey", prefix, MatchMode.START));
-        } else {
-          prefix = "";
+          fromVersionTimestamp = null;
         }
 
-        objCriteria = getSearchByBucket(objCriteria, bucket);
-
-        // Ensure not null.
-        if (Strings.isNullOrEmpty(delimiter)) {
-          delimiter = "";
-        }
-
-        List<ObjectEntity> objectInfos = null;
-        int resultKeyCount = 0;
-        String[] parts = null;
-        String prefixString = null;
-        boolean useDelimiter = !Strings.isNullOrEmpty(delimiter);
-        int pages = 0;
-
-        // Iterate over result sets of size maxkeys + 1 since
-        // commonPrefixes collapse the list, we may examine many more
-        // records than maxkeys + 1
-        do {
-          parts = null;
-          prefixString = null;
-
-          // Skip ahead the next page of 'queryStrideSize' results.
-          objCriteria.setFirstResult(pages++ * queryStrideSize);
-
-          objectInfos = (List<ObjectEntity>) objCriteria.list();
-          if (objectInfos == null) {
-            // nothing to do.
-            break;
-          }
-
-          for (ObjectEntity objectRecord : objectInfos) {
-            if (useDelimiter) {
-              // Check if it will get aggregated as a commonprefix
-              // Split the substring with at least 2 matches as we need a result containing trailing strings. For instance
-              // if "x" is delimiter and key string is also "x", then this key should be included in common prefixes.
-              // "x".split("x") gives 0 strings which causes the subsequent logic to skip the key where as
-              // "x".split("x", 2) gives 2 empty strings which is what the logic expects
-              parts = objectRecord.getObjectKey().substring(prefix.length()).split(delimiter, 2);
-              if (parts.length > 1) {
-                prefixString = prefix + parts[0] + delimiter;
-                if (!prefixString.equals(fromKeyMarker) && !commonPrefixes.contains(prefixString)) {
-                  if (resultKeyCount == maxEntries) {
-                    // This is a new record, so we know
-                    // we're truncating if this is true
-                    result.setIsTruncated(true);
-                    resultKeyCount++;
-                    break;
-                  } else {
-                    // Add it to the common prefix set
-                    commonPrefixes.add(prefixString);
-                    result.setLastEntry(prefixString);
-                    // count the unique commonprefix as a
-                    // single return entry
-                    resultKeyCount++;
-                  }
-                } else {
-                  // Already have this prefix, so skip
-                }
-                continue;
+        return listByKey(new ListingCriteria() {
+          @Override
+          public Criteria criteria(@Nullable ObjectEntity after, @Nullable String seekKey) {
+            Criteria objCriteria = Entities.createCriteria(ObjectEntity.class);
+            objCriteria.add(Example.create(searchObj));
+            objCriteria.addOrder(Order.asc("objectKey"));
+            objCriteria.addOrder(Order.desc("objectModifiedTimestamp"));
+            objCriteria.addOrder(Order.asc("versionId"));
+
+            if (!Strings.isNullOrEmpty(fromKeyMarker)) {
+              if (fromVersionTimestamp != null) {
+                // The result set should be exclusive of the key with the key-marker version-id-marker pair. Look for keys that chronologically
+                // follow the version-id-marker for the given key-marker and also the keys that follow the key-marker.
+                objCriteria.add(Restrictions.or(
+                    Restrictions.and(Restrictions.eq("objectKey", fromKeyMarker),
+                        Restrictions.lt("objectModifiedTimestamp", fromVersionTimestamp)),
+                    Restrictions.gt("objectKey", fromKeyMarker)));
+              } else { // No version-id-marker, just set the criteria the key-marker
+                objCriteria.add(Restrictions.gt("objectKey", fromKeyMarker));
               }
             }
 
-            if (resultKeyCount == maxEntries) {
-              // This is a new (non-commonprefix) record, so
-              // we know we're truncating
-              result.setIsTruncated(true);
-              resultKeyCount++;
-              break;
+            if (after != null) {
+              // Continue from the last entry read, in listing order
+              objCriteria.add(Restrictions.disjunction()
+                  .add(Restrictions.and(Restrictions.eq("objectKey", after.getObjectKey()),
+                      Restrictions.lt("objectModifiedTimestamp", after.getObjectModifiedTimestamp())))
+                  .add(Restrictions.and(Restrictions.eq("objectKey", after.getObjectKey()),
+                      Restrictions.and(Restrictions.eq("objectModifiedTimestamp", after.getObjectModifiedTimestamp()),
+                          Restrictions.gt("versionId", after.getVersionId()))))
+                  .add(Restrictions.gt("objectKey", after.getObjectKey())));
+            } else if (seekKey != null) {
+              objCriteria.add(Restrictions.ge("objectKey", seekKey));
             }
 
-            result.getEntityList().add(objectRecord);
-            result.setLastEntry(objectRecord);
-            resultKeyCount++;
-          }
+            if (!Strings.isNullOrEmpty(prefix)) {
+              objCriteria.add(Restrictions.like("objectKey", prefix, MatchMode.START));
+            }
 
-          if (resultKeyCount <= maxEntries && objectInfos.size() <= maxEntries) {
-            break;
+            return getSearchByBucket(objCriteria, bucket);
           }
-        } while (resultKeyCount <= maxEntries);
-
-        // Sort the prefixes from the hashtable and add to the reply
-        if (commonPrefixes != null) {
-          result.getCommonPrefixes().addAll(commonPrefixes);
-          Collections.sort(result.getCommonPrefixes());
-        }
+        }, maxEntries, Strings.nullToEmpty(prefix), Strings.nullToEmpty(delimiter), Strings.nullToEmpty(fromKeyMarker));
       } else {
         throw new IllegalArgumentException("MaxKeys must be positive integer");
       }
-
-      return result;
     } catch (Exception e) {
       LOG.error("Error generating paginated object list of bucket " + bucket.getBucketName(), e);
       throw e;
@@ -799,6 +645,129 @@ public class DbObjectMetadataManagerImpl implements ObjectMetadataManager {
     }
   }
 
+  /**
+   * Criteria for a batch of listing results.
+   */
+  private interface ListingCriteria {
+    /**
+     * @param after The last entry read, null for the first batch or following a seek
+     * @param seekKey The (inclusive) key to seek to when there is no last entry, may be null
+     * @return The criteria, ordered by key
+     */
+    Criteria criteria(@Nullable ObjectEntity after, @Nullable String seekKey);
+  }
+
+  /**
+   * Key ordered listing with common prefix roll up.
+   *
+   * Entries are read in batches of at most one more than the entries still needed for the page, using a key range seek rather than
+   * an offset, so each batch is an index range scan. Keys within a batch that roll up into a common prefix already listed are
+   * skipped. When a batch ends inside a common prefix the listing seeks past all keys with that prefix, and the batch following a
+   * seek is small (doubling again for each batch that does not end in a seek), so the rows read for a prefix with many keys are
+   * bounded by the small batch rather than by the page size. A marker that is a common prefix (the NextMarker from a previous page)
+   * seeks past the prefix for the first batch.
+   */
+  private static PaginatedResult<ObjectEntity> listByKey(final ListingCriteria listingCriteria, final int maxEntries, final String prefix,
+      final String delimiter, final String marker) {
+    final PaginatedResult<ObjectEntity> result = new PaginatedResult<ObjectEntity>();
+    final boolean useDelimiter = !delimiter.isEmpty();
+    final int batchSize = maxEntries + 1;
+    int nextBatchSize = batchSize;
+    int resultKeyCount = 0;
+    ObjectEntity after = null;
+    String seekKey = useDelimiter && isCommonPrefix(marker, prefix, delimiter) ? commonPrefixEnd(marker) : null;
+    String currentPrefix = null;
+
+    listing: while (true) {
+      final int batchLimit = Math.min(nextBatchSize, maxEntries - resultKeyCount + 1);
+      nextBatchSize = Math.min(batchSize, 2 * nextBatchSize);
+      final Criteria objCriteria = listingCriteria.criteria(after, seekKey);
+      objCriteria.setReadOnly(true);
+      objCriteria.setFetchSize(batchLimit);
+      objCriteria.setMaxResults(batchLimit);
+
+      @SuppressWarnings("unchecked")
+      final List<ObjectEntity> objectInfos = (List<ObjectEntity>) objCriteria.list();
+      after = null;
+      seekKey = null;
+      for (int i = 0; i < objectInfos.size(); i++) {
+        final ObjectEntity objectRecord = objectInfos.get(i);
+        after = objectRecord;
+        if (useDelimiter) {
+          final String objectKey = objectRecord.getObjectKey();
+          final int delimiterIndex = objectKey.indexOf(delimiter, prefix.length());
+          if (delimiterIndex >= 0) {
+            final String prefixString = objectKey.substring(0, delimiterIndex + delimiter.length());
+            if (!prefixString.equals(currentPrefix)) {
+              currentPrefix = prefixString;
+              if (!prefixString.equals(marker)) {
+                if (resultKeyCount == maxEntries) {
+                  // This is a new record, so we know we're truncating
+                  result.setIsTruncated(true);
+                  break listing;
+                }
+                // count the unique commonprefix as a single return entry
+                result.getCommonPrefixes().add(prefixString);
+                result.setLastEntry(prefixString);
+                resultKeyCount++;
+              }
+            }
+            // Seek past the prefix if the batch ends inside it, the next batch could otherwise be all keys with the prefix
+            if (i + 1 == objectInfos.size() && objectInfos.size() == batchLimit) {
+              final String prefixEnd = commonPrefixEnd(prefixString);
+              if (prefixEnd != null) {
+                after = null;
+                seekKey = prefixEnd;
+                nextBatchSize = SEEK_BATCH_SIZE;
+                continue listing;
+              }
+            }
+            continue;
+          }
+        }
+
+        if (resultKeyCount == maxEntries) {
+          // This is a new (non-commonprefix) record, so we know we're truncating
+          result.setIsTruncated(true);
+          break;
+        }
+
+        result.getEntityList().add(objectRecord);
+        result.setLastEntry(objectRecord);
+        resultKeyCount++;
+      }
+
+      if (objectInfos.size() < batchLimit || result.getIsTruncated()) {
+        break;
+      }
+    }
+
+    Collections.sort(result.getCommonPrefixes());
+    return result;
+  }
+
+  /**
+   * Is the key a common prefix for the given prefix and delimiter
+   */
+  static boolean isCommonPrefix(final String key, final String prefix, final String delimiter) {
+    return key.startsWith(prefix) && key.length() > prefix.length() &&
+        key.indexOf(delimiter, prefix.length()) == key.length() - delimiter.length();
+  }
+
+  /**
+   * The least key that sorts after all keys starting with the given common prefix.
+   *
+   * @return The key or null if there is no such key that can be used for a seek
+   */
+  @Nullable
+  static String commonPrefixEnd(final String commonPrefix) {
+    final char last = commonPrefix.charAt(commonPrefix.length() - 1);
+    if (last == Character.MAX_VALUE || Character.isSurrogate(last)) {
+      return null;
+    }
+    return commonPrefix.substring(0, commonPrefix.length() - 1) + (char) (last + 1);
+  }
+
   @Override
   public long countValid(Bucket bucket) throws Exception {
     try (TransactionResource trans = Entities.transactionFor(ObjectEntity.class)) {
@@ -62,16 +62,10 @@
 
 package com.eucalyptus.objectstorage.policy;
 
-import java.util.List;
-
 import com.eucalyptus.auth.Accounts;
 import com.eucalyptus.auth.AuthException;
-import com.eucalyptus.entities.Entities;
-import com.eucalyptus.entities.TransactionResource;
 import com.eucalyptus.objectstorage.BucketMetadataManagers;
-import com.eucalyptus.objectstorage.MpuPartMetadataManagers;
-import com.eucalyptus.objectstorage.ObjectMetadataManagers;
-import com.eucalyptus.objectstorage.entities.Bucket;
+import com.eucalyptus.objectstorage.metadata.BucketUsageCounters;
 
 public class ObjectStorageQuotaUtil {
 
@@ -93,18 +87,15 @@ public class ObjectStorageQuotaUtil {
 
   public static long countBucketObjects(String bucketName) throws AuthException {
     try {
-      return ObjectMetadataManagers.getInstance().countValid(BucketMetadataManagers.getInstance().lookupBucket(bucketName));
+      return BucketUsageCounters.lookup(BucketMetadataManagers.getInstance().lookupBucket(bucketName)).getObjectCount();
     } catch (Exception e) {
       throw new AuthException("Failed to search object", e);
     }
   }
 
   public static long getBucketSize(String bucketName) throws AuthException {
-    try (TransactionResource db = Entities.transactionFor(Bucket.class)) {
-      Bucket bucket = BucketMetadataManagers.getInstance().lookupBucket(bucketName);
-      long objectSize = ObjectMetadataManagers.getInstance().getTotalSize(bucket);
-      long mpuPartsSize = MpuPartMetadataManagers.getInstance().getTotalSize(bucket);
-      return objectSize + mpuPartsSize;
+    try {
+      return BucketUsageCounters.lookup(BucketMetadataManagers.getInstance().lookupBucket(bucketName)).getTotalSize();
     } catch (Exception e) {
       throw new AuthException("Failed to get bucket total size", e);
     }
@@ -112,28 +103,16 @@ public class ObjectStorageQuotaUtil {
 
   public static long getTotalObjectsSizeByAccount(String accountId) throws AuthException {
     String canonicalId = Accounts.lookupAccountById(accountId).getCanonicalId();
-    try (TransactionResource db = Entities.transactionFor(Bucket.class)) {
-      List<Bucket> bucketList = BucketMetadataManagers.getInstance().lookupBucketsByOwner(canonicalId);
-      long size = 0;
-      for (Bucket b : bucketList) {
-        size += ObjectMetadataManagers.getInstance().getTotalSize(b);
-        size += MpuPartMetadataManagers.getInstance().getTotalSize(b);
-      }
-      return size;
+    try {
+      return BucketUsageCounters.totalSize(BucketMetadataManagers.getInstance().lookupBucketsByOwner(canonicalId));
     } catch (Exception e) {
       throw new AuthException("Failed to search bucket", e);
     }
   }
 
   public static long getTotalObjectsSizeByUser(String userId) throws AuthException {
-    try (TransactionResource db = Entities.transactionFor(Bucket.class)) {
-      List<Bucket> bucketList = BucketMetadataManagers.getInstance().lookupBucketsByUser(userId);
-      long size = 0;
-      for (Bucket b : bucketList) {
-        size += ObjectMetadataManagers.getInstance().getTotalSize(b);
-        size += MpuPartMetadataManagers.getInstance().getTotalSize(b);
-      }
-      return size;
+    try {
+      return BucketUsageCounters.totalSize(BucketMetadataManagers.getInstance().lookupBucketsByUser(userId));
     } catch (Exception e) {
       throw new AuthException("Failed to search bucket", e);
     }
@@ -145,7 +124,6 @@ public class ObjectStorageQuotaUtil {
    * @return The size or -1 if the size could not be determined.
    */
   public static long getTotalObjectSize() throws Exception {
-    // return BucketMetadataManagers.getInstance().totalSizeOfAllBuckets();
-    return ObjectMetadataManagers.getInstance().getTotalSize(null) + MpuPartMetadataManagers.getInstance().getTotalSize(null);
+    return BucketUsageCounters.totalSize();
   }
 }
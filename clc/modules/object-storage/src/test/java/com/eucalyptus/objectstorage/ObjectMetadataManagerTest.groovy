@@ -39,6 +39,8 @@ import org.junit.BeforeClass;
 import com.eucalyptus.objectstorage.entities.Bucket;
 import org.apache.log4j.Logger
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import org.junit.Test;
@@ -125,6 +127,62 @@ public class ObjectMetadataManagerTest {
     }
   }
 
+  @Test
+  public void testDelimiterObjectListing() {
+    Bucket bucket = TestUtils.createTestBucket(mgr, "testbucket")
+    assert(bucket != null)
+
+    UserPrincipal usr = Accounts.lookupPrincipalByUserId(UnitTestSupport.getUsersByAccountName(UnitTestSupport.getTestAccounts().first()).first(), null)
+
+    def objs = TestUtils.createNObjects(objMgr, 5, bucket, "dir1/", 100, usr)
+    objs += TestUtils.createNObjects(objMgr, 3, bucket, "dir2/", 100, usr)
+    objs += TestUtils.createNObjects(objMgr, 20, bucket, "dir3/", 100, usr)
+    objs += TestUtils.createNObjects(objMgr, 2, bucket, "file", 100, usr)
+
+    try {
+      PaginatedResult<ObjectEntity> r = objMgr.listPaginated(bucket, 100, null, "/", null)
+      assertEquals("common prefixes", ["dir1/", "dir2/", "dir3/"], r.getCommonPrefixes())
+      assertEquals("keys", ["file0", "file1"], r.getEntityList().collect{ ObjectEntity e -> e.getObjectKey() })
+      assertFalse("truncated", r.getIsTruncated())
+
+      r = objMgr.listPaginated(bucket, 1, null, "/", null)
+      assertEquals("first page prefixes", ["dir1/"], r.getCommonPrefixes())
+      assertTrue("first page truncated", r.getIsTruncated())
+      assertEquals("first page last entry", "dir1/", r.getLastEntry())
+
+      r = objMgr.listPaginated(bucket, 1, null, "/", (String) r.getLastEntry())
+      assertEquals("second page prefixes", ["dir2/"], r.getCommonPrefixes())
+      assertTrue("second page truncated", r.getIsTruncated())
+
+      r = objMgr.listPaginated(bucket, 100, "dir1/", "/", "dir1/1")
+      assertEquals("prefix keys", ["dir1/2", "dir1/3", "dir1/4"], r.getEntityList().collect{ ObjectEntity e -> e.getObjectKey() })
+      assertTrue("prefix common prefixes", r.getCommonPrefixes().isEmpty())
+
+      // Pages of two, with prefixes that fill and overrun a batch
+      def entries = [ ]
+      String marker = null
+      while (true) {
+        r = objMgr.listPaginated(bucket, 2, null, "/", marker)
+        entries += r.getCommonPrefixes()
+        entries += r.getEntityList().collect{ ObjectEntity e -> e.getObjectKey() }
+        if (!r.getIsTruncated()) break
+        marker = r.getLastEntry() instanceof ObjectEntity ? ((ObjectEntity) r.getLastEntry()).getObjectKey() : (String) r.getLastEntry()
+      }
+      assertEquals("paged entries", ["dir1/", "dir2/", "dir3/", "file0", "file1"], entries)
+    } catch(Exception e) {
+      LOG.error("Transaction error", e);
+      fail("Failed getting listing");
+    } finally {
+      for(ObjectEntity obj : objs) {
+        try {
+          objMgr.delete(obj);
+        } catch(Exception e) {
+          LOG.error("Error deleteing entity: " + obj.toString(), e);
+        }
+      }
+    }
+  }
+
   @Test
   public void testVersioningBucketObjectListing() {
     LOG.info("Testing object listing");
@@ -23,14 +23,18 @@ package com.eucalyptus.objectstorage.policy
 import com.eucalyptus.auth.Accounts
 import com.eucalyptus.auth.principal.Account
 import com.eucalyptus.auth.principal.UserPrincipal
+import com.eucalyptus.entities.Entities
 import com.eucalyptus.objectstorage.BucketMetadataManagers
 import com.eucalyptus.objectstorage.BucketState
 import com.eucalyptus.objectstorage.ObjectMetadataManagers
 import com.eucalyptus.objectstorage.ObjectState
 import com.eucalyptus.objectstorage.UnitTestSupport
 import com.eucalyptus.objectstorage.entities.Bucket
+import com.eucalyptus.objectstorage.entities.BucketUsage
 import com.eucalyptus.objectstorage.entities.ObjectEntity
+import com.eucalyptus.objectstorage.metadata.BucketUsageCounters
 import com.google.common.collect.Lists
+import org.hibernate.criterion.Restrictions
 import groovy.transform.CompileStatic
 import org.junit.After
 import org.junit.AfterClass
@@ -155,4 +159,24 @@ public class ObjectStorageQuotaUtilTest {
   public void testGetTotalObjectSize() throws Exception {
     assert(ObjectStorageQuotaUtil.getTotalObjectSize() == bucketCount * objectCount * size)
   }
+
+  @Test
+  public void testReconcileBucketUsage() throws Exception {
+    Bucket bucket = buckets.first()
+    def db = Entities.get(BucketUsage.class)
+    try {
+      BucketUsage usage = (BucketUsage) Entities.createCriteria(BucketUsage.class)
+          .add(Restrictions.eq('bucketUuid', bucket.getBucketUuid())).uniqueResult()
+      usage.setObjectCount(0L)
+      usage.setTotalSize(0L)
+      db.commit()
+    } finally {
+      if (db.isActive()) db.rollback()
+    }
+    assert(ObjectStorageQuotaUtil.getBucketSize(bucket.getBucketName()) == 0)
+
+    BucketUsageCounters.reconcile(bucket)
+    assert(ObjectStorageQuotaUtil.countBucketObjects(bucket.getBucketName()) == objectCount)
+    assert(ObjectStorageQuotaUtil.getBucketSize(bucket.getBucketName()) == objectCount * size)
+  }
 }
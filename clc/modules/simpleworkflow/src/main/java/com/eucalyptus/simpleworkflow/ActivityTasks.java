@@ -20,6 +20,8 @@
 package com.eucalyptus.simpleworkflow;
 
 import java.util.List;
+import java.util.Map;
+import org.hibernate.criterion.Criterion;
 import com.eucalyptus.entities.AbstractPersistentSupport;
 import com.eucalyptus.simpleworkflow.common.SimpleWorkflowMetadata;
 import com.eucalyptus.util.OwnerFullName;
@@ -35,6 +37,12 @@ public interface ActivityTasks {
                              Predicate<? super ActivityTask> filter,
                              Function<? super ActivityTask,T> transform ) throws SwfMetadataException;
 
+  <T> List<T> listByExample( ActivityTask example,
+                             Predicate<? super ActivityTask> filter,
+                             Criterion criterion,
+                             Map<String,String> aliases,
+                             Function<? super ActivityTask,T> transform ) throws SwfMetadataException;
+
   <T> List<T> listTimedOut( Function<? super ActivityTask,T> transform ) throws SwfMetadataException;
 
   <T> T updateByExample( ActivityTask example,
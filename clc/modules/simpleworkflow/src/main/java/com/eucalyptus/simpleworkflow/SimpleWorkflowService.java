@@ -22,7 +22,6 @@ package com.eucalyptus.simpleworkflow;
 import static com.eucalyptus.simpleworkflow.Domain.Status.Registered;
 import static com.eucalyptus.simpleworkflow.WorkflowExecution.DecisionStatus.*;
 import static com.eucalyptus.simpleworkflow.WorkflowExecution.WorkflowHistorySizeLimitException;
-import static com.eucalyptus.simpleworkflow.WorkflowExecutions.WorkflowHistoryEventStringFunctions.EVENT_TYPE;
 import static com.eucalyptus.simpleworkflow.common.model.ScheduleActivityTaskFailedCause.*;
 import java.lang.System;
 import java.sql.SQLException;
@@ -33,6 +32,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 import org.apache.log4j.Logger;
@@ -47,7 +47,6 @@ import com.eucalyptus.component.annotation.ComponentNamed;
 import com.eucalyptus.context.Context;
 import com.eucalyptus.context.Contexts;
 import com.eucalyptus.entities.AbstractPersistent;
-import com.eucalyptus.entities.AbstractPersistentSupport;
 import com.eucalyptus.entities.Entities;
 import com.eucalyptus.entities.PersistenceExceptions;
 import com.eucalyptus.simpleworkflow.common.SimpleWorkflowMetadatas;
@@ -487,17 +486,12 @@ public class SimpleWorkflowService {
             public WorkflowExecutionDetail apply( final WorkflowExecution workflowExecution ) {
               final WorkflowExecutionDetail detail =
                   TypeMappers.transform( workflowExecution, WorkflowExecutionDetail.class );
-              final Iterable<WorkflowHistoryEvent> events = workflowExecution.getWorkflowHistory();
-              final int openActivities =
-                  CollectionUtils.reduce( events, 0, CollectionUtils.count(
-                      CollectionUtils.propertyPredicate( "ActivityTaskScheduled", EVENT_TYPE ) ) ) -
-                  CollectionUtils.reduce( events, 0, CollectionUtils.count(
-                      CollectionUtils.propertyPredicate( WorkflowExecutions.ACTIVITY_CLOSE_EVENT_TYPES, EVENT_TYPE ) ) );
-              final int openTimers =
-                  CollectionUtils.reduce( events, 0, CollectionUtils.count(
-                      CollectionUtils.propertyPredicate( "TimerStarted", EVENT_TYPE ) ) ) -
-                      CollectionUtils.reduce( events, 0, CollectionUtils.count(
-                          CollectionUtils.propertyPredicate( WorkflowExecutions.TIMER_CLOSE_EVENT_TYPES, EVENT_TYPE ) ) );
+              final int openActivities = (int) (
+                  WorkflowHistory.count( workflowExecution, Collections.singleton( "ActivityTaskScheduled" ) ) -
+                  WorkflowHistory.count( workflowExecution, WorkflowExecutions.ACTIVITY_CLOSE_EVENT_TYPES ) );
+              final int openTimers = (int) (
+                  WorkflowHistory.count( workflowExecution, Collections.singleton( "TimerStarted" ) ) -
+                  WorkflowHistory.count( workflowExecution, WorkflowExecutions.TIMER_CLOSE_EVENT_TYPES ) );
               detail.withOpenCounts( new WorkflowExecutionOpenCounts( )
                 .withOpenActivityTasks( openActivities )
                 .withOpenChildWorkflowExecutions( 0 )
@@ -854,27 +848,51 @@ public class SimpleWorkflowService {
           @Override
           public com.eucalyptus.simpleworkflow.common.model.ActivityTask call( ) throws Exception {
             com.eucalyptus.simpleworkflow.common.model.ActivityTask activityTask = null;
-            final List<ActivityTask> pending = activityTasks.listByExample(
-                ActivityTask.examplePending( accountFullName, domain, taskList ),
-                accessible,
-                Functions.<ActivityTask>identity( ) );
-            Collections.sort( pending, Ordering.natural( ).onResultOf( AbstractPersistentSupport.creation( ) ) );
-            for ( final ActivityTask pendingTask : pending ) {
-              if ( activityTask != null ) break;
+            final TaskListQueues.TaskListQueue queue =
+                TaskListQueues.queue( accountFullName, domain, "activity", taskList );
+            queue.refresh( new TaskListQueues.TaskLoader( ) {
+              @Override
+              public List<TaskListQueues.QueuedTask> load( @Nullable final Date since ) throws Exception {
+                return activityTasks.listByExample(
+                    ActivityTask.examplePending( accountFullName, domain, taskList ),
+                    Predicates.alwaysTrue( ),
+                    since == null ? Restrictions.conjunction( ) : Restrictions.ge( "creationTimestamp", since ),
+                    Collections.<String,String>emptyMap( ),
+                    new Function<ActivityTask,TaskListQueues.QueuedTask>( ) {
+                      @Override
+                      public TaskListQueues.QueuedTask apply( final ActivityTask activityTask ) {
+                        return new TaskListQueues.QueuedTask(
+                            activityTask.getDomainUuid( ),
+                            activityTask.getWorkflowRunId( ),
+                            activityTask.getScheduledEventId( ),
+                            activityTask.getDisplayName( ),
+                            activityTask.getCreationTimestamp( ) );
+                      }
+                    } );
+              }
+            } );
+            final List<TaskListQueues.QueuedTask> skipped = Lists.newArrayList( );
+            TaskListQueues.QueuedTask pendingTask;
+            while ( activityTask == null && ( pendingTask = queue.poll( ) ) != null ) {
+              final AtomicBoolean denied = new AtomicBoolean( false );
               boolean retry = true;
               while ( retry ) try ( final WorkflowLock lock = WorkflowLock.lock(
                   accountFullName,
                   pendingTask.getDomainUuid( ),
-                  pendingTask.getWorkflowRunId() ) ) {
+                  pendingTask.getRunId( ) ) ) {
                 retry = false;
                 activityTask = activityTasks.updateByExample(
-                    pendingTask,
+                    ActivityTask.exampleWithUniqueName( accountFullName, pendingTask.getRunId( ), pendingTask.getScheduledEventId( ) ),
                     accountFullName,
-                    pendingTask.getDisplayName(),
+                    pendingTask.getName( ),
                     new Function<ActivityTask,com.eucalyptus.simpleworkflow.common.model.ActivityTask>(){
                       @Nullable
                       @Override
                       public com.eucalyptus.simpleworkflow.common.model.ActivityTask apply( final ActivityTask activityTask ) {
+                        if ( !accessible.apply( activityTask ) ) {
+                          denied.set( true );
+                          return null;
+                        }
                         if ( activityTask.getState( ) == ActivityTask.State.Pending ) {
                           final WorkflowExecution workflowExecution = activityTask.getWorkflowExecution( );
                           final Long startedId = workflowExecution.addHistoryEvent(
@@ -925,7 +943,13 @@ public class SimpleWorkflowService {
                   logger.error( "Error taking activity task for domain " + domain + ", list " + taskList, e );
                 }
               }
+              if ( activityTask != null ) {
+                queue.taken( pendingTask );
+              } else if ( denied.get( ) ) {
+                skipped.add( pendingTask );
+              }
             }
+            queue.requeue( skipped );
             return activityTask;
           }
         };
@@ -1201,42 +1225,68 @@ public class SimpleWorkflowService {
     final Predicate<? super WorkflowExecution> accessible =
         SimpleWorkflowMetadatas.filteringFor( WorkflowExecution.class ).byPrivileges( ).buildPredicate( );
 
+    if ( request.getNextPageToken( ) != null ) {
+      return request.reply( decisionTaskPage( accountFullName, accessible, request ) );
+    }
+
     final String domain = request.getDomain( );
     final String taskList = request.getTaskList( ).getName( );
+    final int pageSize = Objects.firstNonNull( request.getMaximumPageSize( ), WorkflowHistory.MAXIMUM_PAGE_SIZE );
+    final boolean reverseOrder = Objects.firstNonNull( request.isReverseOrder( ), Boolean.FALSE );
     final Callable<DecisionTask> taskCallable = new Callable<DecisionTask>() {
       @Override
       public DecisionTask call() throws Exception {
-        final List<WorkflowExecution> pending = workflowExecutions.listByExample(
-            WorkflowExecution.exampleWithPendingDecision( accountFullName, domain, taskList ),
-            accessible,
-            Functions.<WorkflowExecution>identity( ) );
-        Collections.sort( pending, Ordering.natural( ).onResultOf( AbstractPersistentSupport.creation( ) ) );
+        final TaskListQueues.TaskListQueue queue =
+            TaskListQueues.queue( accountFullName, domain, "decision", taskList );
+        queue.refresh( new TaskListQueues.TaskLoader( ) {
+          @Override
+          public List<TaskListQueues.QueuedTask> load( @Nullable final Date since ) throws Exception {
+            return workflowExecutions.listByExample(
+                WorkflowExecution.exampleWithPendingDecision( accountFullName, domain, taskList ),
+                Predicates.alwaysTrue( ),
+                since == null ? Restrictions.conjunction( ) : Restrictions.ge( "decisionTimestamp", since ),
+                Collections.<String,String>emptyMap( ),
+                new Function<WorkflowExecution,TaskListQueues.QueuedTask>( ) {
+                  @Override
+                  public TaskListQueues.QueuedTask apply( final WorkflowExecution workflowExecution ) {
+                    return new TaskListQueues.QueuedTask(
+                        workflowExecution.getDomainUuid( ),
+                        workflowExecution.getDisplayName( ),
+                        null,
+                        workflowExecution.getDisplayName( ),
+                        workflowExecution.getDecisionTimestamp( ) );
+                  }
+                } );
+          }
+        } );
         DecisionTask decisionTask = null;
-        for ( final WorkflowExecution execution : pending ) {
-          if ( decisionTask != null ) break;
+        final List<TaskListQueues.QueuedTask> skipped = Lists.newArrayList( );
+        TaskListQueues.QueuedTask execution;
+        while ( decisionTask == null && ( execution = queue.poll( ) ) != null ) {
+          final AtomicBoolean denied = new AtomicBoolean( false );
           boolean retry = true;
           while ( retry ) try ( final WorkflowLock lock = WorkflowLock.lock(
               accountFullName,
               execution.getDomainUuid( ),
-              execution.getDisplayName( ) ) ) {
+              execution.getRunId( ) ) ) {
             retry = false;
             decisionTask = workflowExecutions.updateByExample(
-                WorkflowExecution.exampleWithUniqueName( accountFullName, execution.getDomainName( ), execution.getDisplayName( ) ),
+                WorkflowExecution.exampleWithUniqueName( accountFullName, domain, execution.getRunId( ) ),
                 accountFullName,
-                execution.getDisplayName(),
+                execution.getRunId( ),
                 new Function<WorkflowExecution,DecisionTask>( ) {
                   @Nullable
                   @Override
                   public DecisionTask apply( final WorkflowExecution workflowExecution ) {
+                    if ( !accessible.apply( workflowExecution ) ) {
+                      denied.set( true );
+                      return null;
+                    }
                     if ( workflowExecution.getDecisionStatus( ) == Pending ) {
-                      final List<WorkflowHistoryEvent> events = workflowExecution.getWorkflowHistory();
-                      final List<WorkflowHistoryEvent> reverseEvents = Lists.reverse( events );
-                      final WorkflowHistoryEvent scheduled = Iterables.find(
-                          reverseEvents,
-                          CollectionUtils.propertyPredicate( "DecisionTaskScheduled", EVENT_TYPE ) );
-                      final Optional<WorkflowHistoryEvent> previousStarted = Iterables.tryFind(
-                          reverseEvents,
-                          CollectionUtils.propertyPredicate( "DecisionTaskStarted", EVENT_TYPE ) );
+                      final WorkflowHistoryEvent scheduled =
+                          WorkflowHistory.latest( workflowExecution, "DecisionTaskScheduled" ).get( );
+                      final Optional<WorkflowHistoryEvent> previousStarted =
+                          WorkflowHistory.latest( workflowExecution, "DecisionTaskStarted" );
                       workflowExecution.setDecisionStatus( Active );
                       workflowExecution.setDecisionTimestamp( new Date( ) );
                       final WorkflowHistoryEvent started = WorkflowHistoryEvent.create(
@@ -1245,6 +1295,16 @@ public class SimpleWorkflowService {
                               .withIdentity( request.getIdentity() )
                               .withScheduledEventId( scheduled.getEventId() ) );
                       workflowExecution.addHistoryEvent( started );
+                      final String taskToken = taskTokenManager.encryptTaskToken( new TaskToken(
+                          accountFullName.getAccountNumber( ),
+                          workflowExecution.getDomain( ).getNaturalId( ),
+                          workflowExecution.getDisplayName( ),
+                          scheduled.getEventId( ),
+                          started.getEventId( ),
+                          System.currentTimeMillis( ),
+                          System.currentTimeMillis( ) ) );  //TODO:STEVE: token expiry date
+                      final WorkflowHistory.Page page =
+                          WorkflowHistory.page( workflowExecution, null, started.getEventId( ), pageSize, reverseOrder );
                       return new DecisionTask( )
                           .withWorkflowExecution( new com.eucalyptus.simpleworkflow.common.model.WorkflowExecution( )
                               .withWorkflowId( workflowExecution.getWorkflowId( ) )
@@ -1252,20 +1312,14 @@ public class SimpleWorkflowService {
                           .withWorkflowType( new com.eucalyptus.simpleworkflow.common.model.WorkflowType()
                               .withName( workflowExecution.getWorkflowType( ).getDisplayName( ) )
                               .withVersion( workflowExecution.getWorkflowType( ).getWorkflowVersion( ) ) )
-                          .withTaskToken( taskTokenManager.encryptTaskToken( new TaskToken(
-                              accountFullName.getAccountNumber( ),
-                              workflowExecution.getDomain( ).getNaturalId( ),
-                              workflowExecution.getDisplayName( ),
-                              scheduled.getEventId( ),
-                              started.getEventId( ),
-                              System.currentTimeMillis( ),
-                              System.currentTimeMillis( ) ) ) )  //TODO:STEVE: token expiry date
+                          .withTaskToken( taskToken )
                           .withStartedEventId( started.getEventId() )
                           .withPreviousStartedEventId( previousStarted.transform( WorkflowExecutions.WorkflowHistoryEventLongFunctions.EVENT_ID ).or( 0L ) )
                           .withEvents( Collections2.transform(
-                              Objects.firstNonNull( request.isReverseOrder( ), Boolean.FALSE ) ? reverseEvents : events,
+                              page.getEvents( ),
                               TypeMappers.lookup( WorkflowHistoryEvent.class, HistoryEvent.class )
-                          ) );
+                          ) )
+                          .withNextPageToken( decisionTaskPageToken( page.getNextEventOrder( ), taskToken ) );
                     }
                     return null;
                   }
@@ -1276,16 +1330,22 @@ public class SimpleWorkflowService {
               Entities.evictCache( Class.forName( stale.getEntityName( ) ) );
             } catch ( ClassNotFoundException ce ) { /* eviction failure */ }
             if ( PersistenceExceptions.isStaleUpdate( e ) ) {
-              logger.info( "Decision task for workflow " + execution.getDisplayName() + " already taken." );
+              logger.info( "Decision task for workflow " + execution.getName( ) + " already taken." );
             } else if (  PersistenceExceptions.isLockError( e ) ) {
-              logger.info( "Decision task for workflow " + execution.getDisplayName() + " locking error, will retry." );
+              logger.info( "Decision task for workflow " + execution.getName( ) + " locking error, will retry." );
               Thread.sleep( 10 );
               retry = true;
             } else {
-              logger.error( "Error taking decision task for workflow " + execution.getDisplayName( ), e );
+              logger.error( "Error taking decision task for workflow " + execution.getName( ), e );
             }
           }
+          if ( decisionTask != null ) {
+            queue.taken( execution );
+          } else if ( denied.get( ) ) {
+            skipped.add( execution );
+          }
         }
+        queue.requeue( skipped );
         return decisionTask;
       }
     };
@@ -1331,17 +1391,13 @@ public class SimpleWorkflowService {
                 notificationTypeListPairs.clear( );
 
                 // verify token is valid
-                final List<WorkflowHistoryEvent> events = workflowExecution.getWorkflowHistory();
-                final List<WorkflowHistoryEvent> reverseEvents = Lists.reverse( events );
-                final WorkflowHistoryEvent started = Iterables.find(
-                    reverseEvents,
-                    CollectionUtils.propertyPredicate( "DecisionTaskStarted", EVENT_TYPE ) );
+                final WorkflowHistoryEvent started =
+                    WorkflowHistory.latest( workflowExecution, "DecisionTaskStarted" ).get( );
                 if ( !started.getEventId( ).equals( token.getStartedEventId( ) ) ) {
                   throw upClient( "ValidationError", "Bad token" );
                 }
-                final WorkflowHistoryEvent scheduled = Iterables.find(
-                    reverseEvents,
-                    CollectionUtils.propertyPredicate( "DecisionTaskScheduled", EVENT_TYPE ) );
+                final WorkflowHistoryEvent scheduled =
+                    WorkflowHistory.latest( workflowExecution, "DecisionTaskScheduled" ).get( );
                 if ( scheduled.getEventId( ) < started.getEventId() ) {
                   workflowExecution.setDecisionStatus( Idle );
                   workflowExecution.setDecisionTimestamp( new Date( ) );
@@ -1971,6 +2027,9 @@ public class SimpleWorkflowService {
     final Predicate<? super WorkflowExecution> accessible =
         SimpleWorkflowMetadatas.filteringFor( WorkflowExecution.class ).byPrivileges( ).buildPredicate( );
 
+    final Long eventOrder = parseHistoryPageToken( request.getNextPageToken( ) );
+    final int pageSize = Objects.firstNonNull( request.getMaximumPageSize( ), WorkflowHistory.MAXIMUM_PAGE_SIZE );
+    final boolean reverseOrder = Objects.firstNonNull( request.isReverseOrder( ), Boolean.FALSE );
     final History history;
     try {
       history = workflowExecutions.lookupByExample(
@@ -1981,13 +2040,16 @@ public class SimpleWorkflowService {
           new Function<WorkflowExecution, History>() {
             @Override
             public History apply( final WorkflowExecution workflowExecution ) {
-              final List<WorkflowHistoryEvent> events = workflowExecution.getWorkflowHistory();
-              final List<WorkflowHistoryEvent> reverseEvents = Lists.reverse( events );
+              final WorkflowHistory.Page page =
+                  WorkflowHistory.page( workflowExecution, eventOrder, null, pageSize, reverseOrder );
               return new History( )
                   .withEvents( Collections2.transform(
-                      Objects.firstNonNull( request.isReverseOrder( ), Boolean.FALSE ) ? reverseEvents : events,
+                      page.getEvents( ),
                       TypeMappers.lookup( WorkflowHistoryEvent.class, HistoryEvent.class )
-                  ) );
+                  ) )
+                  .withNextPageToken( page.getNextEventOrder( ) == null ?
+                      null :
+                      String.valueOf( page.getNextEventOrder( ) ) );
             }
           }
       );
@@ -2002,6 +2064,76 @@ public class SimpleWorkflowService {
     return request.reply( history );
   }
 
+  /**
+   * Subsequent pages of history for a decision task.
+   */
+  private DecisionTask decisionTaskPage( final AccountFullName accountFullName,
+                                         final Predicate<? super WorkflowExecution> accessible,
+                                         final PollForDecisionTaskRequest request ) throws SimpleWorkflowException {
+    final int separator = request.getNextPageToken( ).indexOf( ':' );
+    if ( separator < 0 ) {
+      throw new SimpleWorkflowClientException( "ValidationError", "Invalid next page token" );
+    }
+    final Long eventOrder = parseHistoryPageToken( request.getNextPageToken( ).substring( 0, separator ) );
+    final String taskToken = request.getNextPageToken( ).substring( separator + 1 );
+    final int pageSize = Objects.firstNonNull( request.getMaximumPageSize( ), WorkflowHistory.MAXIMUM_PAGE_SIZE );
+    final boolean reverseOrder = Objects.firstNonNull( request.isReverseOrder( ), Boolean.FALSE );
+    try {
+      final TaskToken token =
+          taskTokenManager.decryptTaskToken( accountFullName.getAccountNumber( ), taskToken );
+      final Domain domain = domains.lookupByExample(
+          Domain.exampleWithUuid( accountFullName, token.getDomainUuid( ) ),
+          accountFullName,
+          token.getDomainUuid( ),
+          Predicates.alwaysTrue( ),
+          Functions.<Domain>identity( ) );
+      return workflowExecutions.lookupByExample(
+          WorkflowExecution.exampleWithUniqueName( accountFullName, domain.getDisplayName( ), token.getRunId( ) ),
+          accountFullName,
+          token.getRunId( ),
+          accessible,
+          new Function<WorkflowExecution,DecisionTask>( ) {
+            @Override
+            public DecisionTask apply( final WorkflowExecution workflowExecution ) {
+              final WorkflowHistory.Page page = WorkflowHistory.page(
+                  workflowExecution, eventOrder, token.getStartedEventId( ), pageSize, reverseOrder );
+              return new DecisionTask( )
+                  .withWorkflowExecution( new com.eucalyptus.simpleworkflow.common.model.WorkflowExecution( )
+                      .withWorkflowId( workflowExecution.getWorkflowId( ) )
+                      .withRunId( workflowExecution.getDisplayName( ) ) )
+                  .withWorkflowType( new com.eucalyptus.simpleworkflow.common.model.WorkflowType( )
+                      .withName( workflowExecution.getWorkflowType( ).getDisplayName( ) )
+                      .withVersion( workflowExecution.getWorkflowType( ).getWorkflowVersion( ) ) )
+                  .withTaskToken( taskToken )
+                  .withStartedEventId( token.getStartedEventId( ) )
+                  .withEvents( Collections2.transform(
+                      page.getEvents( ),
+                      TypeMappers.lookup( WorkflowHistoryEvent.class, HistoryEvent.class )
+                  ) )
+                  .withNextPageToken( decisionTaskPageToken( page.getNextEventOrder( ), taskToken ) );
+            }
+          } );
+    } catch ( SwfMetadataNotFoundException e ) {
+      throw new SimpleWorkflowClientException(
+          "UnknownResourceFault",
+          "Unknown execution for page token" );
+    } catch ( Exception e ) {
+      throw handleException( e );
+    }
+  }
+
+  private static String decisionTaskPageToken( final Long eventOrder, final String taskToken ) {
+    return eventOrder == null ? null : eventOrder + ":" + taskToken;
+  }
+
+  private static Long parseHistoryPageToken( final String pageToken ) throws SimpleWorkflowException {
+    try {
+      return pageToken == null ? null : Long.valueOf( pageToken );
+    } catch ( NumberFormatException e ) {
+      throw new SimpleWorkflowClientException( "ValidationError", "Invalid next page token" );
+    }
+  }
+
   private <T extends AbstractPersistent & RestrictedType> T allocate(
       final Supplier<T> allocator,
       final Class<T> type,
@@ -2183,6 +2315,7 @@ public class SimpleWorkflowService {
                                       final String domain,
                                       final String type,
                                       final String taskList ) {
+    TaskListQueues.scheduled( accountFullName, domain, type, taskList );
     NotifyClient.notifyTaskList( accountFullName, domain, type, taskList );
   }
 
@@ -0,0 +1,316 @@
+/*************************************************************************
+ * Copyright 2009-2014 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.simpleworkflow;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.Nullable;
+import com.eucalyptus.auth.principal.AccountFullName;
+import com.eucalyptus.simpleworkflow.NotifyClient.NotifyTaskList;
+import com.google.common.base.Function;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Ordering;
+
+/**
+ * In-memory dispatch queues for pending activity and decision tasks.
+ *
+ * There is a queue for each task list (account, domain, type and name)
+ * holding pending tasks in the order they were scheduled. The database
+ * remains authoritative, a queue is loaded when the task list is first polled
+ * on this host (e.g. after failover), when tasks are scheduled for the list,
+ * when a notified poller finds the queue empty and periodically to pick up
+ * anything missed.
+ *
+ * Each queued task is removed by exactly one poller which then takes the task
+ * using the usual workflow lock and state checks, so an entry for a task that
+ * was taken by another host is skipped.
+ */
+public class TaskListQueues {
+
+  private static final long FULL_LOAD_INTERVAL = TimeUnit.MINUTES.toMillis( 1 );
+  private static final long INCREMENTAL_LOAD_OVERLAP = TimeUnit.SECONDS.toMillis( 10 );
+
+  private static final LoadingCache<NotifyTaskList,TaskListQueue> queues = CacheBuilder.newBuilder( )
+      .expireAfterAccess( 1, TimeUnit.HOURS )
+      .build( CacheLoader.from( new Function<NotifyTaskList,TaskListQueue>( ) {
+        @Override
+        public TaskListQueue apply( final NotifyTaskList taskList ) {
+          return new TaskListQueue( );
+        }
+      } ) );
+
+  private static final AtomicLong pickups = new AtomicLong( );
+  private static final AtomicLong totalPickupMillis = new AtomicLong( );
+  private static final AtomicLong maxPickupMillis = new AtomicLong( );
+  private static final AtomicLong loads = new AtomicLong( );
+  private static final AtomicLong fullLoads = new AtomicLong( );
+  private static final AtomicLong loadedTasks = new AtomicLong( );
+  private static final AtomicLong maxDepth = new AtomicLong( );
+
+  /**
+   * Load pending tasks for a task list.
+   */
+  public interface TaskLoader {
+    /**
+     * @param since Earliest scheduled time for tasks, null for all pending tasks
+     */
+    List<QueuedTask> load( @Nullable Date since ) throws Exception;
+  }
+
+  public static TaskListQueue queue( final AccountFullName accountFullName,
+                                     final String domain,
+                                     final String type,
+                                     final String taskList ) {
+    return queues.getUnchecked( new NotifyTaskList( accountFullName, domain, type, taskList ) );
+  }
+
+  /**
+   * Note that tasks were scheduled for a task list.
+   *
+   * The queue (if any) is loaded before the next poll.
+   */
+  public static void scheduled( final AccountFullName accountFullName,
+                                final String domain,
+                                final String type,
+                                final String taskList ) {
+    final TaskListQueue queue =
+        queues.getIfPresent( new NotifyTaskList( accountFullName, domain, type, taskList ) );
+    if ( queue != null ) {
+      queue.stale.set( true );
+    }
+  }
+
+  public static long getPickups( ) {
+    return pickups.get( );
+  }
+
+  public static double getAveragePickupMillis( ) {
+    final long count = pickups.get( );
+    return count == 0 ? 0.0 : (double) totalPickupMillis.get( ) / count;
+  }
+
+  public static long getMaxPickupMillis( ) {
+    return maxPickupMillis.get( );
+  }
+
+  public static long getMaxDepth( ) {
+    return maxDepth.get( );
+  }
+
+  /**
+   * Current depth for each task list with queued tasks.
+   */
+  public static Map<String,Integer> getDepths( ) {
+    final ImmutableMap.Builder<String,Integer> depths = ImmutableMap.builder( );
+    for ( final Map.Entry<NotifyTaskList,TaskListQueue> entry : queues.asMap( ).entrySet( ) ) {
+      final int depth = entry.getValue( ).size( );
+      if ( depth > 0 ) {
+        depths.put( entry.getKey( ).getChannelName( ), depth );
+      }
+    }
+    return depths.build( );
+  }
+
+  public static String describe( ) {
+    return String.format( "queues=%d pickups=%d avgPickup=%.1fmsec maxPickup=%dmsec maxDepth=%d loads=%d fullLoads=%d loadedTasks=%d depths=%s",
+        queues.size( ), getPickups( ), getAveragePickupMillis( ), getMaxPickupMillis( ), getMaxDepth( ),
+        loads.get( ), fullLoads.get( ), loadedTasks.get( ), getDepths( ) );
+  }
+
+  static void clear( ) {
+    queues.invalidateAll( );
+  }
+
+  private static void max( final AtomicLong max, final long value ) {
+    long current;
+    while ( ( current = max.get( ) ) < value && !max.compareAndSet( current, value ) );
+  }
+
+  public static final class QueuedTask {
+    private final String domainUuid;
+    private final String runId;
+    private final Long scheduledEventId;
+    private final String name;
+    private final long scheduled;
+
+    public QueuedTask( final String domainUuid,
+                       final String runId,
+                       @Nullable final Long scheduledEventId,
+                       final String name,
+                       final Date scheduled ) {
+      this.domainUuid = domainUuid;
+      this.runId = runId;
+      this.scheduledEventId = scheduledEventId;
+      this.name = name;
+      this.scheduled = scheduled == null ? System.currentTimeMillis( ) : scheduled.getTime( );
+    }
+
+    public String getDomainUuid( ) {
+      return domainUuid;
+    }
+
+    public String getRunId( ) {
+      return runId;
+    }
+
+    /**
+     * The scheduled event identifier for an activity task, null for a decision task.
+     */
+    @Nullable
+    public Long getScheduledEventId( ) {
+      return scheduledEventId;
+    }
+
+    /**
+     * The activity identifier or run identifier for logging.
+     */
+    public String getName( ) {
+      return name;
+    }
+
+    public long getScheduled( ) {
+      return scheduled;
+    }
+
+    private String key( ) {
+      return scheduledEventId == null ? runId : runId + "/" + scheduledEventId;
+    }
+  }
+
+  public static final class TaskListQueue {
+    private static final Ordering<QueuedTask> SCHEDULED_ORDER = Ordering.natural( ).onResultOf(
+        new Function<QueuedTask,Long>( ) {
+          @Override
+          public Long apply( final QueuedTask task ) {
+            return task.getScheduled( );
+          }
+        } );
+
+    private final Deque<QueuedTask> tasks = new ConcurrentLinkedDeque<>( );
+    private final Set<String> queued = Collections.newSetFromMap( new ConcurrentHashMap<String,Boolean>( ) );
+    private final AtomicInteger depth = new AtomicInteger( );
+    private final AtomicBoolean stale = new AtomicBoolean( true );
+    private final AtomicLong loadCount = new AtomicLong( );
+    private final Lock loadLock = new ReentrantLock( );
+    private volatile long lastLoad = 0L;
+    private volatile long lastFullLoad = 0L;
+
+    /**
+     * Load tasks from the database if required.
+     *
+     * Concurrent callers share a single load.
+     */
+    public void refresh( final TaskLoader loader ) throws Exception {
+      final long now = System.currentTimeMillis( );
+      if ( !stale.get( ) && !tasks.isEmpty( ) && ( now - lastFullLoad ) < FULL_LOAD_INTERVAL ) return;
+      final long count = loadCount.get( );
+      loadLock.lock( );
+      try {
+        if ( count != loadCount.get( ) ) return; // loaded while waiting
+        final boolean full = ( now - lastFullLoad ) >= FULL_LOAD_INTERVAL;
+        stale.set( false );
+        final List<QueuedTask> loaded = Lists.newArrayList( loader.load( full ?
+            null :
+            new Date( lastLoad - INCREMENTAL_LOAD_OVERLAP ) ) );
+        Collections.sort( loaded, SCHEDULED_ORDER );
+        for ( final QueuedTask task : loaded ) {
+          offer( task );
+        }
+        lastLoad = now;
+        if ( full ) {
+          lastFullLoad = now;
+          fullLoads.incrementAndGet( );
+        }
+        loads.incrementAndGet( );
+        loadedTasks.addAndGet( loaded.size( ) );
+        loadCount.incrementAndGet( );
+      } catch ( final Exception e ) {
+        stale.set( true );
+        throw e;
+      } finally {
+        loadLock.unlock( );
+      }
+    }
+
+    /**
+     * Remove the next task, the caller is the only poller given the task.
+     *
+     * @return The task or null if the queue is empty
+     */
+    @Nullable
+    public QueuedTask poll( ) {
+      final QueuedTask task = tasks.pollFirst( );
+      if ( task != null ) {
+        queued.remove( task.key( ) );
+        depth.decrementAndGet( );
+      }
+      return task;
+    }
+
+    /**
+     * Return tasks that were polled but not taken, preserving their order.
+     */
+    public void requeue( final List<QueuedTask> polled ) {
+      for ( final QueuedTask task : Lists.reverse( polled ) ) {
+        if ( queued.add( task.key( ) ) ) {
+          tasks.offerFirst( task );
+          depth.incrementAndGet( );
+        }
+      }
+    }
+
+    /**
+     * Record that a polled task was taken.
+     */
+    public void taken( final QueuedTask task ) {
+      final long millis = Math.max( 0L, System.currentTimeMillis( ) - task.getScheduled( ) );
+      pickups.incrementAndGet( );
+      totalPickupMillis.addAndGet( millis );
+      max( maxPickupMillis, millis );
+    }
+
+    public int size( ) {
+      return depth.get( );
+    }
+
+    private void offer( final QueuedTask task ) {
+      if ( queued.add( task.key( ) ) ) {
+        tasks.offerLast( task );
+        max( maxDepth, depth.incrementAndGet( ) );
+      }
+    }
+  }
+}
@@ -183,6 +183,9 @@ public class WorkflowExecution extends UserMetadata<WorkflowExecution.ExecutionS
   @Temporal( TemporalType.TIMESTAMP )
   private Date timeoutTimestamp;
 
+  @Column( name = "history_event_count" )
+  private Long historyEventCount;
+
   @OneToMany( fetch = FetchType.LAZY, cascade = { CascadeType.PERSIST, CascadeType.REMOVE }, orphanRemoval = true, mappedBy = "workflowExecution" )
   @OrderBy( "eventOrder" )
   private List<WorkflowHistoryEvent> workflowHistory;
@@ -229,6 +232,7 @@ public class WorkflowExecution extends UserMetadata<WorkflowExecution.ExecutionS
     workflowExecution.setDecisionStatus( DecisionStatus.Pending );
     workflowExecution.setDecisionTimestamp( new Date( ) );
     workflowExecution.setWorkflowHistory( Lists.<WorkflowHistoryEvent>newArrayList( ) );
+    workflowExecution.setHistoryEventCount( 0L );
     for ( final WorkflowEventAttributes attributes : eventAttributes ) {
       workflowExecution.addHistoryEvent( WorkflowHistoryEvent.create( workflowExecution, attributes ) );
     }
@@ -338,10 +342,15 @@ public class WorkflowExecution extends UserMetadata<WorkflowExecution.ExecutionS
 
   public Long addHistoryEvent( final WorkflowHistoryEvent event ) throws WorkflowHistorySizeLimitException {
     // Order would be filled in on save, but we may need the event
-    // identifier before the entity is stored
-    event.setEventOrder( (long) workflowHistory.size( ) );
+    // identifier before the entity is stored. The count is tracked so the
+    // (lazy) history is not loaded to append an event.
+    final long eventOrder = historyEventCount == null ?
+        (long) workflowHistory.size( ) :
+        historyEventCount;
+    event.setEventOrder( eventOrder );
     workflowHistory.add( event );
-    if ( workflowHistory.size( ) > SimpleWorkflowProperties.getWorkflowExecutionHistorySize() ) {
+    historyEventCount = eventOrder + 1;
+    if ( historyEventCount > SimpleWorkflowProperties.getWorkflowExecutionHistorySize() ) {
       throw new WorkflowHistorySizeLimitException( this );
     }
     updateTimeStamps( ); // ensure workflow version incremented
@@ -526,6 +535,14 @@ public class WorkflowExecution extends UserMetadata<WorkflowExecution.ExecutionS
     this.timeoutTimestamp = timeoutTimestamp;
   }
 
+  public Long getHistoryEventCount( ) {
+    return historyEventCount;
+  }
+
+  public void setHistoryEventCount( final Long historyEventCount ) {
+    this.historyEventCount = historyEventCount;
+  }
+
   public List<WorkflowHistoryEvent> getWorkflowHistory() {
     return workflowHistory;
   }
@@ -0,0 +1,176 @@
+/*************************************************************************
+ * Copyright 2009-2014 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.simpleworkflow;
+
+import java.util.Collection;
+import java.util.List;
+import javax.annotation.Nullable;
+import org.hibernate.Criteria;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+import com.eucalyptus.entities.Entities;
+import com.eucalyptus.util.CollectionUtils;
+import com.google.common.base.Optional;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+
+/**
+ * Access to the history of a workflow execution without loading all events.
+ *
+ * History events are only ever appended, an event is identified by its order
+ * within the execution so a page of history is a range query and the most
+ * recent event of a type is a single row lookup. If the history collection
+ * is already loaded (e.g. for a new execution) it is used directly.
+ *
+ * Methods must be called in a transaction for the execution.
+ */
+public class WorkflowHistory {
+
+  public static final int MAXIMUM_PAGE_SIZE = 1000;
+
+  /**
+   * A page of history events.
+   */
+  public static final class Page {
+    private final List<WorkflowHistoryEvent> events;
+    private final Long nextEventOrder;
+
+    private Page( final List<WorkflowHistoryEvent> events, @Nullable final Long nextEventOrder ) {
+      this.events = events;
+      this.nextEventOrder = nextEventOrder;
+    }
+
+    public List<WorkflowHistoryEvent> getEvents( ) {
+      return events;
+    }
+
+    /**
+     * The order of the first event on the next page, null if there are no more events.
+     */
+    @Nullable
+    public Long getNextEventOrder( ) {
+      return nextEventOrder;
+    }
+  }
+
+  /**
+   * Get a page of history events.
+   *
+   * @param execution The workflow execution
+   * Events after the last event are never included, so pages for a decision
+   * task stay within the history as it was when the task was started even
+   * if events are appended while paging.
+   *
+   * @param execution The workflow execution
+   * @param eventOrder The order of the first event for the page, null for the first page
+   * @param lastEventId The identifier of the last event to include, null for no limit
+   * @param pageSize The maximum number of events for the page
+   * @param reverse True to page from the most recent event
+   * @return The page
+   */
+  public static Page page( final WorkflowExecution execution,
+                           @Nullable final Long eventOrder,
+                           @Nullable final Long lastEventId,
+                           final int pageSize,
+                           final boolean reverse ) {
+    final int size = Math.max( 1, Math.min( MAXIMUM_PAGE_SIZE, pageSize ) );
+    final List<WorkflowHistoryEvent> events;
+    if ( isLoaded( execution ) ) {
+      events = Lists.newArrayList( );
+      for ( final WorkflowHistoryEvent event : history( execution, reverse ) ) {
+        if ( lastEventId != null && event.getEventId( ) > lastEventId ) {
+          if ( reverse ) continue;
+          break;
+        }
+        if ( eventOrder == null ||
+            ( reverse ? event.getEventOrder( ) <= eventOrder : event.getEventOrder( ) >= eventOrder ) ) {
+          events.add( event );
+          if ( events.size( ) > size ) break;
+        }
+      }
+    } else {
+      events = list( Entities.createCriteria( WorkflowHistoryEvent.class )
+          .add( Restrictions.eq( "workflowExecution", execution ) )
+          .add( eventOrder == null ?
+              Restrictions.conjunction( ) :
+              reverse ? Restrictions.le( "eventOrder", eventOrder ) : Restrictions.ge( "eventOrder", eventOrder ) )
+          .add( lastEventId == null ?
+              Restrictions.conjunction( ) :
+              Restrictions.le( "eventOrder", lastEventId - 1 ) ) // event identifiers are one based
+          .addOrder( reverse ? Order.desc( "eventOrder" ) : Order.asc( "eventOrder" ) )
+          .setMaxResults( size + 1 ) );
+    }
+    return events.size( ) > size ?
+        new Page( events.subList( 0, size ), events.get( size ).getEventOrder( ) ) :
+        new Page( events, null );
+  }
+
+  /**
+   * Get the most recent history event of the given type.
+   */
+  public static Optional<WorkflowHistoryEvent> latest( final WorkflowExecution execution,
+                                                       final String eventType ) {
+    if ( isLoaded( execution ) ) {
+      return Iterables.tryFind(
+          history( execution, true ),
+          CollectionUtils.propertyPredicate( eventType, WorkflowExecutions.WorkflowHistoryEventStringFunctions.EVENT_TYPE ) );
+    } else {
+      return Optional.fromNullable( Iterables.getFirst( list( Entities.createCriteria( WorkflowHistoryEvent.class )
+          .add( Restrictions.eq( "workflowExecution", execution ) )
+          .add( Restrictions.eq( "eventType", eventType ) )
+          .addOrder( Order.desc( "eventOrder" ) )
+          .setMaxResults( 1 ) ), null ) );
+    }
+  }
+
+  /**
+   * Count history events with any of the given types.
+   */
+  public static long count( final WorkflowExecution execution,
+                            final Collection<String> eventTypes ) {
+    if ( isLoaded( execution ) ) {
+      return CollectionUtils.reduce( execution.getWorkflowHistory( ), 0, CollectionUtils.count(
+          CollectionUtils.propertyPredicate( eventTypes, WorkflowExecutions.WorkflowHistoryEventStringFunctions.EVENT_TYPE ) ) );
+    } else {
+      final Number count = (Number) Entities.createCriteria( WorkflowHistoryEvent.class )
+          .add( Restrictions.eq( "workflowExecution", execution ) )
+          .add( Restrictions.in( "eventType", eventTypes ) )
+          .setProjection( Projections.rowCount( ) )
+          .uniqueResult( );
+      return count == null ? 0 : count.longValue( );
+    }
+  }
+
+  private static boolean isLoaded( final WorkflowExecution execution ) {
+    return Entities.isInitialized( execution.getWorkflowHistory( ) );
+  }
+
+  private static List<WorkflowHistoryEvent> history( final WorkflowExecution execution, final boolean reverse ) {
+    return reverse ?
+        Lists.reverse( execution.getWorkflowHistory( ) ) :
+        execution.getWorkflowHistory( );
+  }
+
+  @SuppressWarnings( "unchecked" )
+  private static List<WorkflowHistoryEvent> list( final Criteria criteria ) {
+    return (List<WorkflowHistoryEvent>) criteria.list( );
+  }
+}
@@ -29,6 +29,7 @@ import javax.persistence.Table;
 import org.apache.log4j.Logger;
 import org.hibernate.annotations.Cache;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Index;
 import org.hibernate.annotations.Type;
 import com.eucalyptus.entities.AbstractPersistent;
 import com.eucalyptus.simpleworkflow.common.model.WorkflowEventAttributes;
@@ -48,6 +49,7 @@ public class WorkflowHistoryEvent extends AbstractPersistent {
 
   @ManyToOne
   @JoinColumn( name = "workflow_execution_id", nullable = false, updatable = false )
+  @Index( name = "swf_workflow_history_event_execution_idx" )
   @Cache( usage = CacheConcurrencyStrategy.TRANSACTIONAL )
   private WorkflowExecution workflowExecution;
 
@@ -25,7 +25,6 @@ import static com.eucalyptus.simpleworkflow.WorkflowExecution.DecisionStatus.Idl
 import static com.eucalyptus.simpleworkflow.WorkflowExecution.DecisionStatus.Pending;
 import java.util.Collection;
 import java.util.Date;
-import java.util.List;
 import java.util.Set;
 import org.apache.log4j.Logger;
 import com.eucalyptus.bootstrap.Bootstrap;
@@ -46,6 +45,7 @@ import com.eucalyptus.simpleworkflow.Timer;
 import com.eucalyptus.simpleworkflow.Timers;
 import com.eucalyptus.simpleworkflow.WorkflowExecution;
 import com.eucalyptus.simpleworkflow.WorkflowExecutions;
+import com.eucalyptus.simpleworkflow.WorkflowHistory;
 import com.eucalyptus.simpleworkflow.WorkflowHistoryEvent;
 import com.eucalyptus.simpleworkflow.WorkflowLock;
 import com.eucalyptus.simpleworkflow.WorkflowType;
@@ -63,14 +63,11 @@ import com.eucalyptus.simpleworkflow.persist.PersistenceDomains;
 import com.eucalyptus.simpleworkflow.persist.PersistenceTimers;
 import com.eucalyptus.simpleworkflow.persist.PersistenceWorkflowExecutions;
 import com.eucalyptus.simpleworkflow.persist.PersistenceWorkflowTypes;
-import com.eucalyptus.util.CollectionUtils;
 import com.eucalyptus.util.Exceptions;
 import com.eucalyptus.util.Pair;
 import com.google.common.base.Function;
 import com.google.common.base.Functions;
 import com.google.common.base.Optional;
-import com.google.common.collect.Iterables;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
 /**
@@ -271,14 +268,10 @@ public class TimeoutManager {
                               .withChildPolicy( workflowExecution.getChildPolicy() )
                       ) );
                 } else { // decision task timed out
-                  final List<WorkflowHistoryEvent> events = workflowExecution.getWorkflowHistory();
-                  final List<WorkflowHistoryEvent> reverseEvents = Lists.reverse( events );
-                  final WorkflowHistoryEvent scheduled = Iterables.find(
-                      reverseEvents,
-                      CollectionUtils.propertyPredicate( "DecisionTaskScheduled", WorkflowExecutions.WorkflowHistoryEventStringFunctions.EVENT_TYPE ) );
-                  final Optional<WorkflowHistoryEvent> previousStarted = Iterables.tryFind(
-                      reverseEvents,
-                      CollectionUtils.propertyPredicate( "DecisionTaskStarted", WorkflowExecutions.WorkflowHistoryEventStringFunctions.EVENT_TYPE ) );
+                  final WorkflowHistoryEvent scheduled =
+                      WorkflowHistory.latest( workflowExecution, "DecisionTaskScheduled" ).get( );
+                  final Optional<WorkflowHistoryEvent> previousStarted =
+                      WorkflowHistory.latest( workflowExecution, "DecisionTaskStarted" );
                   workflowExecution.addHistoryEvent( WorkflowHistoryEvent.create(
                       workflowExecution,
                       new DecisionTaskTimedOutEventAttributes( )
@@ -0,0 +1,104 @@
+/*************************************************************************
+ * Copyright 2009-2014 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.simpleworkflow
+
+import com.eucalyptus.simpleworkflow.TaskListQueues.QueuedTask
+import com.eucalyptus.simpleworkflow.TaskListQueues.TaskListQueue
+import com.eucalyptus.simpleworkflow.TaskListQueues.TaskLoader
+import org.junit.Test
+import static org.junit.Assert.*
+
+/**
+ *
+ */
+class TaskListQueuesTest {
+
+  @Test
+  void testScheduledOrder( ) {
+    TaskListQueue queue = new TaskListQueue( )
+    queue.refresh( loader( [ task( 'run-2', 2000 ), task( 'run-1', 1000 ), task( 'run-3', 3000 ) ] ) )
+    assertEquals( 'depth', 3, queue.size( ) )
+    assertEquals( 'first', 'run-1', queue.poll( ).runId )
+    assertEquals( 'second', 'run-2', queue.poll( ).runId )
+    assertEquals( 'third', 'run-3', queue.poll( ).runId )
+    assertNull( 'empty', queue.poll( ) )
+  }
+
+  @Test
+  void testLoadedOnce( ) {
+    TaskListQueue queue = new TaskListQueue( )
+    List<Date> loads = [ ]
+    TaskLoader taskLoader = { Date since -> loads << since; [ task( 'run-1', 1000 ), task( 'run-2', 2000 ) ] } as TaskLoader
+    queue.refresh( taskLoader )
+    queue.refresh( taskLoader )
+    assertEquals( 'load count', 1, loads.size( ) )
+    assertNull( 'full load', loads[0] )
+    assertEquals( 'depth', 2, queue.size( ) )
+  }
+
+  @Test
+  void testReloadWhenEmpty( ) {
+    TaskListQueue queue = new TaskListQueue( )
+    queue.refresh( loader( [ task( 'run-1', 1000 ), task( 'run-2', 2000 ) ] ) )
+    queue.poll( )
+    queue.poll( )
+    queue.refresh( loader( [ task( 'run-3', 3000 ) ] ) )
+    assertEquals( 'depth', 1, queue.size( ) )
+    assertEquals( 'next', 'run-3', queue.poll( ).runId )
+  }
+
+  @Test
+  void testRequeue( ) {
+    TaskListQueue queue = new TaskListQueue( )
+    queue.refresh( loader( [ task( 'run-1', 1000 ), task( 'run-2', 2000 ), task( 'run-3', 3000 ) ] ) )
+    QueuedTask first = queue.poll( )
+    QueuedTask second = queue.poll( )
+    queue.requeue( [ first, second ] )
+    assertEquals( 'depth', 3, queue.size( ) )
+    assertEquals( 'first', 'run-1', queue.poll( ).runId )
+    assertEquals( 'second', 'run-2', queue.poll( ).runId )
+  }
+
+  @Test
+  void testSingleDelivery( ) {
+    TaskListQueue queue = new TaskListQueue( )
+    queue.refresh( loader( ( 1..1000 ).collect{ Integer index -> task( "run-${index}", index ) } ) )
+    Set<String> taken = Collections.synchronizedSet( new HashSet<String>( ) )
+    List<Thread> threads = ( 1..8 ).collect {
+      Thread.start {
+        QueuedTask queuedTask
+        while ( ( queuedTask = queue.poll( ) ) != null ) {
+          assertTrue( 'taken once', taken.add( queuedTask.runId ) )
+        }
+      }
+    }
+    threads*.join( )
+    assertEquals( 'taken', 1000, taken.size( ) )
+    assertEquals( 'depth', 0, queue.size( ) )
+  }
+
+  private static QueuedTask task( String runId, long scheduled ) {
+    return new QueuedTask( 'domain-uuid', runId, null, runId, new Date( scheduled ) )
+  }
+
+  private static TaskLoader loader( List<QueuedTask> tasks ) {
+    return { Date since -> tasks } as TaskLoader
+  }
+}
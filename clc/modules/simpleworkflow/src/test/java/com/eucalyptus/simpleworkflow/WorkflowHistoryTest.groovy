@@ -0,0 +1,86 @@
+/*************************************************************************
+ * Copyright 2009-2015 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.simpleworkflow
+
+import org.junit.Test
+import static org.junit.Assert.*
+
+/**
+ *
+ */
+class WorkflowHistoryTest {
+
+  @Test
+  void testPaging( ) {
+    WorkflowExecution execution = execution( 5 )
+    WorkflowHistory.Page page = WorkflowHistory.page( execution, null, null, 2, false )
+    assertEquals( 'first page', [ 1L, 2L ], page.events*.eventId )
+    page = WorkflowHistory.page( execution, page.nextEventOrder, null, 2, false )
+    assertEquals( 'second page', [ 3L, 4L ], page.events*.eventId )
+    page = WorkflowHistory.page( execution, page.nextEventOrder, null, 2, false )
+    assertEquals( 'last page', [ 5L ], page.events*.eventId )
+    assertNull( 'no next page', page.nextEventOrder )
+  }
+
+  @Test
+  void testPagingStopsAtLastEventWhileAppending( ) {
+    WorkflowExecution execution = execution( 5 )
+    long startedEventId = 5
+    WorkflowHistory.Page page = WorkflowHistory.page( execution, null, startedEventId, 2, false )
+    assertEquals( 'first page', [ 1L, 2L ], page.events*.eventId )
+
+    append( execution, 3 )
+    page = WorkflowHistory.page( execution, page.nextEventOrder, startedEventId, 2, false )
+    assertEquals( 'second page', [ 3L, 4L ], page.events*.eventId )
+
+    append( execution, 1 )
+    page = WorkflowHistory.page( execution, page.nextEventOrder, startedEventId, 2, false )
+    assertEquals( 'last page', [ 5L ], page.events*.eventId )
+    assertNull( 'no next page', page.nextEventOrder )
+  }
+
+  @Test
+  void testReversePagingStartsAtLastEvent( ) {
+    WorkflowExecution execution = execution( 5 )
+    long startedEventId = 4
+    append( execution, 2 )
+    WorkflowHistory.Page page = WorkflowHistory.page( execution, null, startedEventId, 3, true )
+    assertEquals( 'first page', [ 4L, 3L, 2L ], page.events*.eventId )
+    page = WorkflowHistory.page( execution, page.nextEventOrder, startedEventId, 3, true )
+    assertEquals( 'last page', [ 1L ], page.events*.eventId )
+    assertNull( 'no next page', page.nextEventOrder )
+  }
+
+  private static WorkflowExecution execution( int events ) {
+    WorkflowExecution execution = new WorkflowExecution( )
+    execution.setWorkflowHistory( [ ] )
+    append( execution, events )
+    execution
+  }
+
+  private static void append( WorkflowExecution execution, int events ) {
+    events.times {
+      WorkflowHistoryEvent event = new WorkflowHistoryEvent( )
+      event.setEventOrder( (long) execution.workflowHistory.size( ) )
+      event.setEventType( 'MarkerRecorded' )
+      execution.workflowHistory.add( event )
+    }
+  }
+}
@@ -0,0 +1,60 @@
+/*************************************************************************
+ * Copyright 2009-2014 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.storage.common;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.jboss.netty.channel.DefaultFileRegion;
+import org.jboss.netty.channel.FileRegion;
+
+/**
+ * Chunked file that can also be transferred as a file region.
+ *
+ * Where the channel permits (no SSL or other transformation of written data)
+ * the region should be written in place of the chunks so that the file
+ * content is transferred by the kernel without copying through the heap.
+ */
+public class ZeroCopyDataFile extends ChunkedDataFile {
+  private final RandomAccessFile file;
+  private final long offset;
+  private final long length;
+
+  public ZeroCopyDataFile(RandomAccessFile file, long offset, long length, int chunkSize) throws IOException {
+    super(file, offset, length, chunkSize);
+    this.file = file;
+    this.offset = offset;
+    this.length = length;
+  }
+
+  public long getLength() {
+    return length;
+  }
+
+  /**
+   * Get a file region for the remaining content of this file.
+   *
+   * The region must be used instead of (not as well as) the chunks, the
+   * caller should release the region once written.
+   */
+  public FileRegion toFileRegion() {
+    return new DefaultFileRegion(file.getChannel(), offset, length);
+  }
+}
@@ -73,15 +73,18 @@ import org.jboss.netty.channel.ChannelFuture;
 import org.jboss.netty.channel.ChannelFutureListener;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.FileRegion;
 import org.jboss.netty.channel.MessageEvent;
 import org.jboss.netty.handler.codec.http.DefaultHttpResponse;
 import org.jboss.netty.handler.codec.http.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
 import org.jboss.netty.handler.codec.http.HttpVersion;
+import org.jboss.netty.handler.ssl.SslHandler;
 import org.jboss.netty.handler.stream.ChunkedInput;
 
 import com.eucalyptus.http.MappingHttpResponse;
 import com.eucalyptus.storage.common.DateFormatter;
+import com.eucalyptus.storage.common.ZeroCopyDataFile;
 import com.eucalyptus.storage.msgs.s3.MetaDataEntry;
 import com.eucalyptus.walrus.exceptions.HeadExceptionInterface;
 import com.eucalyptus.walrus.msgs.CopyObjectResponseType;
@@ -253,13 +256,25 @@ public class WalrusOutboundHandler extends MessageStackHandler {
       Channels.write(ctx, writeFuture, httpResponse);
       List<ChunkedInput> dataStreams = response.getDataInputStream();
       if (dataStreams != null) {
+        final boolean zeroCopy = isZeroCopyPermitted(ctx);
         for (final ChunkedInput dataStream : dataStreams) {
-          channel.write(dataStream).addListener(new ChannelFutureListener() {
-            @Override
-            public void operationComplete(ChannelFuture future) throws Exception {
-              dataStream.close();
-            }
-          });
+          if (zeroCopy && dataStream instanceof ZeroCopyDataFile) {
+            final FileRegion region = ((ZeroCopyDataFile) dataStream).toFileRegion();
+            channel.write(region).addListener(new ChannelFutureListener() {
+              @Override
+              public void operationComplete(ChannelFuture future) throws Exception {
+                region.releaseExternalResources();
+                dataStream.close();
+              }
+            });
+          } else {
+            channel.write(dataStream).addListener(new ChannelFutureListener() {
+              @Override
+              public void operationComplete(ChannelFuture future) throws Exception {
+                dataStream.close();
+              }
+            });
+          }
         }
       } else {
         writeFuture.addListener(ChannelFutureListener.CLOSE);
@@ -267,6 +282,14 @@ public class WalrusOutboundHandler extends MessageStackHandler {
     }
   }
 
+  /**
+   * File regions bypass the pipeline so can only be used when no handler
+   * transforms the written data.
+   */
+  private static boolean isZeroCopyPermitted(final ChannelHandlerContext ctx) {
+    return ctx.getPipeline().get(SslHandler.class) == null;
+  }
+
   // TODO: zhill - this should all be done in bindings, just need 2-way bindings
   protected DefaultHttpResponse createHttpResponse(WalrusDataGetResponseType reply) {
     DefaultHttpResponse httpResponse = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
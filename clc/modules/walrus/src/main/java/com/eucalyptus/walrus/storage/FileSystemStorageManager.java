@@ -77,9 +77,12 @@ import java.util.List;
 import org.apache.log4j.Logger;
 import org.jboss.netty.handler.stream.ChunkedInput;
 
+import com.eucalyptus.configurable.ConfigurableClass;
+import com.eucalyptus.configurable.ConfigurableField;
 import com.eucalyptus.records.Logs;
 import com.eucalyptus.storage.common.ChunkedDataFile;
 import com.eucalyptus.storage.common.CompressedChunkedFile;
+import com.eucalyptus.storage.common.ZeroCopyDataFile;
 import com.eucalyptus.storage.common.fs.FileIO;
 import com.eucalyptus.storage.common.fs.FileReader;
 import com.eucalyptus.storage.common.fs.FileWriter;
@@ -94,8 +97,15 @@ import com.eucalyptus.walrus.msgs.WalrusDataGetResponseType;
 import edu.ucsb.eucalyptus.util.StreamConsumer;
 import edu.ucsb.eucalyptus.util.SystemUtil;
 
+@ConfigurableClass(root = "walrusbackend", description = "WalrusBackend file system storage configuration.")
 public class FileSystemStorageManager implements StorageManager {
 
+  @ConfigurableField(description = "Use zero-copy file transfer for uncompressed object data when the connection permits", initial = "true")
+  public static volatile Boolean ZERO_COPY_GET = Boolean.TRUE;
+
+  @ConfigurableField(description = "Chunk size in bytes for object data that is not transferred zero-copy", initial = "65536")
+  public static volatile Integer GET_CHUNK_SIZE_BYTES = 65536;
+
   public static final String FILE_SEPARATOR = "/";
   public static final String lvmRootDirectory = "/dev";
   private static boolean initialized = false;
@@ -499,6 +509,21 @@ public class FileSystemStorageManager implements StorageManager {
 
   }
 
+  private static int chunkSize(long length) {
+    return (int) Math.max(1, Math.min(length, GET_CHUNK_SIZE_BYTES));
+  }
+
+  /**
+   * Uncompressed object data, zero-copy capable if enabled.
+   */
+  private static ChunkedInput dataFile(RandomAccessFile raf, long offset, long length) throws IOException {
+    if (Boolean.TRUE.equals(ZERO_COPY_GET)) {
+      return new ZeroCopyDataFile(raf, offset, length, chunkSize(length));
+    } else {
+      return new ChunkedDataFile(raf, offset, length, chunkSize(length));
+    }
+  }
+
   @Override
   public void getObject(String bucketName, String objectName, final WalrusDataGetResponseType response, Long size, Boolean isCompressed)
       throws WalrusException {
@@ -509,7 +534,7 @@ public class FileSystemStorageManager implements StorageManager {
       if (isCompressed) {
         file = new CompressedChunkedFile(raf, size);
       } else {
-        file = new ChunkedDataFile(raf, 0, size, 8192);
+        file = dataFile(raf, 0, size);
       }
       List<ChunkedInput> dataStreams = new ArrayList<ChunkedInput>();
       dataStreams.add(file);
@@ -527,9 +552,9 @@ public class FileSystemStorageManager implements StorageManager {
       final ChunkedInput file;
       isCompressed = isCompressed == null ? false : isCompressed;
       if (isCompressed) {
-        file = new CompressedChunkedFile(raf, byteRangeStart, byteRangeEnd, (int) Math.min((byteRangeEnd - byteRangeStart), 8192));
+        file = new CompressedChunkedFile(raf, byteRangeStart, byteRangeEnd, chunkSize(byteRangeEnd - byteRangeStart));
       } else {
-        file = new ChunkedDataFile(raf, byteRangeStart, (int) (byteRangeEnd - byteRangeStart), (int) Math.min((byteRangeEnd - byteRangeStart), 8192));
+        file = dataFile(raf, byteRangeStart, byteRangeEnd - byteRangeStart);
       }
       List<ChunkedInput> dataStreams = new ArrayList<>();
       dataStreams.add(file);
@@ -550,7 +575,7 @@ public class FileSystemStorageManager implements StorageManager {
         if (isCompressed) {
           file = new CompressedChunkedFile(raf, part.getSize());
         } else {
-          file = new ChunkedDataFile(raf, 0, part.getSize(), 8192);
+          file = dataFile(raf, 0, part.getSize());
         }
         dataStreams.add(file);
       }
@@ -602,9 +627,9 @@ public class FileSystemStorageManager implements StorageManager {
         }
 
         if (isCompressed) {
-          file = new CompressedChunkedFile(raf, startMarker, tempLength, (int) Math.min(tempLength, 8192));
+          file = new CompressedChunkedFile(raf, startMarker, tempLength, chunkSize(tempLength));
         } else {
-          file = new ChunkedDataFile(raf, startMarker, tempLength, (int) Math.min(tempLength, 8192));
+          file = dataFile(raf, startMarker, tempLength);
         }
 
         dataStreams.add(file);